@@ -10,9 +10,16 @@ import lombok.Getter;
 @Getter
 public enum CompressTypeEnum {
 
-    // 包含了一个枚举值 GZIP，该值表示使用 GZIP 压缩算法进行压缩
+    // NONE 表示消息体未压缩，GZIP 表示使用 GZIP 压缩算法进行压缩
+    // LZ4 / SNAPPY 压缩率较低但速度很快，适合对延迟敏感的服务；ZSTD 压缩率高，适合跨机房的大批量传输
+    // ZSTD_DICT 使用按服务训练的字典压缩，适合大量重复的小消息体
     // code -> name
-    GZIP((byte) 0x01, "gzip");
+    NONE((byte) 0x00, "none"),
+    GZIP((byte) 0x01, "gzip"),
+    LZ4((byte) 0x02, "lz4"),
+    SNAPPY((byte) 0x03, "snappy"),
+    ZSTD((byte) 0x04, "zstd"),
+    ZSTD_DICT((byte) 0x05, "zstd-dict");
 
     // 压缩类型的字节码
     private final byte code;
@@ -28,4 +35,14 @@ public enum CompressTypeEnum {
         }
         return null;
     }
+
+    // 根据字符串表示获取压缩类型，不存在时返回 null
+    public static CompressTypeEnum getByName(String name) {
+        for (CompressTypeEnum c : CompressTypeEnum.values()) {
+            if (c.name.equals(name)) {
+                return c;
+            }
+        }
+        return null;
+    }
 }
@@ -12,7 +12,88 @@ public enum RpcConfigEnum {
     // 枚举类型的成员变量，表示rpc配置文件路径
     RPC_CONFIG_PATH("rpc.properties"),
     // 枚举类型的成员变量，表示ZooKeeper地址
-    ZK_ADDRESS("rpc.zookeeper.address");
+    ZK_ADDRESS("rpc.zookeeper.address"),
+    // 消息体达到该字节数才进行压缩，更小的消息直接以 none 类型发送
+    COMPRESS_THRESHOLD("rpc.compress.threshold"),
+    // 请求和响应使用的压缩类型，取值为 CompressTypeEnum 的名称，默认 gzip
+    COMPRESS_TYPE("rpc.compress.type"),
+    // 消息体超过该字节数时拆分成多个分块帧发送，默认 1M，不能超过最大帧长度
+    CHUNK_SIZE("rpc.chunk.size"),
+    // gzip 压缩级别，取值 1~9，默认 6
+    GZIP_LEVEL("rpc.compress.gzip.level"),
+    // zstd 压缩级别，取值 1~22，默认 3
+    ZSTD_LEVEL("rpc.compress.zstd.level"),
+    // zstd 字典模式下，每个服务训练字典前收集的样本数，默认 1000
+    ZSTD_DICT_SAMPLES("rpc.compress.zstd.dict.samples"),
+    // zstd 字典模式下的字典大小（字节），默认 16K
+    ZSTD_DICT_SIZE("rpc.compress.zstd.dict.size"),
+    // zstd 字典模式下，所有服务等待训练的样本最多占用的内存（字节），默认 32M
+    ZSTD_DICT_SAMPLE_BYTES("rpc.compress.zstd.dict.sample.bytes"),
+    // 服务端执行请求的方式：direct、shared、isolated、virtual，默认 shared，服务可以在 @RpcService 中单独指定
+    DISPATCHER("rpc.dispatcher"),
+    // 共享线程池的线程数，默认 CPU 核数的 2 倍
+    DISPATCHER_THREADS("rpc.dispatcher.threads"),
+    // 共享线程池的队列容量，虚拟线程方式下为同时执行的最大请求数，默认 1024
+    DISPATCHER_QUEUES("rpc.dispatcher.queues"),
+    // 客户端异步调用完成后执行回调的线程数，默认 CPU 核数
+    CLIENT_CALLBACK_THREADS("rpc.client.callback.threads"),
+    // 客户端调用的超时时间（毫秒），默认 5000，配置为 0 或负数时不超时；可以被 @RpcReference、@RpcMethod 覆盖
+    REQUEST_TIMEOUT("rpc.request.timeout"),
+    // 是否按服务提供者上最近的调用耗时计算每次调用的超时时间，默认 false；上面配置的超时时间作为上限
+    REQUEST_TIMEOUT_ADAPTIVE("rpc.request.timeout.adaptive"),
+    // 自适应超时时间取耗时的该分位数，取值 0~1，默认 0.999
+    REQUEST_TIMEOUT_QUANTILE("rpc.request.timeout.adaptive.quantile"),
+    // 自适应超时时间为耗时分位数的该倍数，默认 3
+    REQUEST_TIMEOUT_MULTIPLIER("rpc.request.timeout.adaptive.multiplier"),
+    // 自适应超时时间的下限（毫秒），默认 50
+    REQUEST_TIMEOUT_MIN("rpc.request.timeout.adaptive.min"),
+    // 客户端到每个服务提供者地址的最大连接数，默认 1
+    CONNECTIONS("rpc.connections"),
+    // 多个连接时选择连接的方式：least-pending（未完成请求最少，默认）、round-robin（轮询）
+    CONNECTION_SELECT("rpc.connections.select"),
+    // 多个连接时，连接空闲多久后关闭（毫秒），默认 60000，每个地址至少保留一个连接
+    CONNECTION_IDLE("rpc.connections.idle"),
+    // 连接失败后的初始退避时间（毫秒），默认 100，连续失败时逐次翻倍，退避期间的调用直接失败
+    CONNECT_BACKOFF("rpc.connect.backoff"),
+    // 连接失败后的最大退避时间（毫秒），默认 10000
+    CONNECT_BACKOFF_MAX("rpc.connect.backoff.max"),
+    // 客户端代理的实现：jdk（JDK 动态代理，默认）、javassist（为每个服务接口生成桩类）
+    PROXY("rpc.proxy"),
+    // 客户端是否把同一连接上短时间内的多个请求合并成一条批量消息发送，默认 false；服务端收到批量消息后响应也合并发送
+    BATCH("rpc.batch"),
+    // 一条批量消息最多包含的请求或响应数，默认 64
+    BATCH_SIZE("rpc.batch.size"),
+    // 请求密集时最多等待多久再发送批量消息（微秒），默认 200；请求稀疏时不等待
+    BATCH_LINGER("rpc.batch.linger"),
+    // 批量调用中已经完成的响应最多等待其它请求多久（毫秒），默认 50；到期后先发送已经完成的响应，之后完成的逐个发送
+    MULTI_CALL_LINGER("rpc.multicall.linger"),
+    // 客户端集群容错策略：failfast（快速失败，默认）、failover（失败重试）、hedged（对冲请求）、forking（并行调用）；
+    // 可以被 @RpcReference、@RpcMethod 覆盖
+    CLUSTER("rpc.cluster"),
+    // failover 策略的最多重试次数，默认 2
+    CLUSTER_RETRIES("rpc.cluster.retries"),
+    // 重试和备份请求最多占正常请求的百分比，默认 10
+    CLUSTER_RETRY_BUDGET("rpc.cluster.retry.budget"),
+    // hedged 策略在方法最近耗时的该百分位数后发送备份请求，取值 1~100，默认 95
+    CLUSTER_HEDGE_PERCENTILE("rpc.cluster.hedge.percentile"),
+    // hedged 策略在耗时样本不足时发送备份请求前的等待时间（毫秒），默认 100
+    CLUSTER_HEDGE_DELAY("rpc.cluster.hedge.delay"),
+    // forking 策略同时发送的请求数，默认 2
+    CLUSTER_FORKS("rpc.cluster.forks"),
+    // 是否为每个服务提供者开启熔断，熔断中的服务提供者不会被负载均衡选择，默认 true
+    BREAKER("rpc.breaker"),
+    // 最近 10 秒内的调用数达到该值才判断是否熔断，默认 20
+    BREAKER_MIN_CALLS("rpc.breaker.min.calls"),
+    // 失败调用（连接失败、超时等）达到该百分比时熔断，默认 50
+    BREAKER_FAILURE_RATE("rpc.breaker.failure.rate"),
+    // 耗时达到该值（毫秒）的调用算作慢调用，默认 1000
+    BREAKER_SLOW_THRESHOLD("rpc.breaker.slow.threshold"),
+    // 慢调用达到该百分比时熔断，默认 80
+    BREAKER_SLOW_RATE("rpc.breaker.slow.rate"),
+    // 第一次熔断的时间（毫秒），默认 5000，之后每次连续熔断时间翻倍
+    BREAKER_OPEN("rpc.breaker.open"),
+    // 熔断时间的上限（毫秒），默认 300000
+    BREAKER_OPEN_MAX("rpc.breaker.open.max");
     // 枚举类型的成员变量，表示枚举项对应的属性值
     private final String propertyValue;
 }
@@ -20,7 +20,15 @@ public enum RpcErrorMessageEnum {
     // 注册的服务没有实现任何接口的错误信息
     SERIVCE_NOT_IMPLEMENT_ANY_INTERFACE("注册的服务没有实现任何接口"),
     // 请求和返回的响应不匹配的错误信息
-    REQUEST_NOT_MATCH_RESPONSE("返回结果错误! 请求和返回的响应不匹配");
+    REQUEST_NOT_MATCH_RESPONSE("返回结果错误! 请求和返回的响应不匹配"),
+    // 请求的方法 id 没有在连接上绑定的错误信息
+    METHOD_NOT_BOUND("请求的方法 id 未绑定"),
+    // 连接在调用完成前关闭的错误信息
+    CONNECTION_CLOSED("连接已关闭"),
+    // 流式调用以异常结束的错误信息
+    STREAM_FAILURE("流式调用失败"),
+    // 超时时间内没有收到响应的错误信息
+    REQUEST_TIMEOUT("请求超时");
     // 错误信息
     private final String message;
 }
@@ -0,0 +1,20 @@
+package org.vinci.stream;
+
+/**
+ * 流式数据的发布者，与 Reactive Streams / JDK 9 的 Flow.Publisher 语义相同
+ * <p>
+ * 服务接口的方法返回该类型时为服务端流式调用：服务端按客户端的需求逐个发送元素，
+ * 客户端代理返回的 Publisher 在订阅时才真正发起调用
+ * </p>
+ *
+ * @param <T> 元素类型
+ */
+@FunctionalInterface
+public interface Publisher<T> {
+
+    /**
+     * 订阅，发布者随后调用 {@link Subscriber#onSubscribe(Subscription)}
+     * @param subscriber 订阅者
+     */
+    void subscribe(Subscriber<? super T> subscriber);
+}
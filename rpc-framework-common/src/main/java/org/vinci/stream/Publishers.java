@@ -0,0 +1,247 @@
+package org.vinci.stream;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 常用的 {@link Publisher} 实现
+ */
+public final class Publishers {
+
+    private Publishers() {
+    }
+
+    /**
+     * 按需从 Iterable 中取元素的发布者，适合分页查询、导出等结果集很大的场景：
+     * 元素在订阅者请求时才从迭代器中取出，不需要事先把全部结果放在内存里
+     * @param iterable 元素来源，每次订阅都会重新获取一个迭代器
+     * @param <T> 元素类型
+     * @return 发布者
+     */
+    public static <T> Publisher<T> fromIterable(Iterable<? extends T> iterable) {
+        return subscriber -> {
+            IteratorSubscription<T> subscription = new IteratorSubscription<>(subscriber, iterable.iterator());
+            subscriber.onSubscribe(subscription);
+        };
+    }
+
+    /**
+     * 订阅后立即以异常结束的发布者，用于调用无法发起的情况
+     * @param cause 异常
+     * @param <T> 元素类型
+     * @return 发布者
+     */
+    public static <T> Publisher<T> error(Throwable cause) {
+        return subscriber -> {
+            subscriber.onSubscribe(EmptySubscription.INSTANCE);
+            subscriber.onError(cause);
+        };
+    }
+
+    /**
+     * 以阻塞迭代的方式消费发布者，适合批量导入等逐个处理元素的场景
+     * 每次获取迭代器都会订阅一次，迭代器最多预取 prefetch 个元素，消费过半后再请求下一批，
+     * 消费慢时发布者不会产生过多的元素；流以异常结束时，hasNext 抛出 {@link IllegalStateException}
+     * <p>
+     * 迭代会阻塞当前线程，不能在交付元素的线程中迭代
+     * </p>
+     * @param publisher 元素来源
+     * @param prefetch 预取的元素数量
+     * @param <T> 元素类型
+     * @return 可迭代对象
+     */
+    public static <T> Iterable<T> toIterable(Publisher<? extends T> publisher, int prefetch) {
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch must be positive: " + prefetch);
+        }
+        return () -> {
+            BlockingIterator<T> iterator = new BlockingIterator<>(prefetch);
+            publisher.subscribe(iterator);
+            return iterator;
+        };
+    }
+
+    /**
+     * 阻塞迭代器，订阅者线程放入元素，迭代线程取出元素
+     */
+    private static final class BlockingIterator<T> implements Iterator<T>, Subscriber<T> {
+        // 队列不能放 null，null 元素和结束信号用占位对象表示
+        private static final Object NULL = new Object();
+        private static final Object COMPLETE = new Object();
+
+        private final int prefetch;
+        // 消费多少个元素之后请求下一批
+        private final int limit;
+        private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        private volatile Subscription subscription;
+        // 自上次请求之后消费的元素数量，只在迭代线程中访问
+        private int consumed;
+        // 下一个元素，尚未取出时为 null
+        private Object next;
+
+        private BlockingIterator(int prefetch) {
+            this.prefetch = prefetch;
+            this.limit = Math.max(1, prefetch >> 1);
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(prefetch);
+        }
+
+        @Override
+        public void onNext(T item) {
+            queue.add(item == null ? NULL : item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            queue.add(new ErrorSignal(throwable));
+        }
+
+        @Override
+        public void onComplete() {
+            queue.add(COMPLETE);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    subscription.cancel();
+                    throw new IllegalStateException("interrupted while waiting for the next item", e);
+                }
+            }
+            if (next instanceof ErrorSignal) {
+                throw new IllegalStateException(((ErrorSignal) next).cause.getMessage(), ((ErrorSignal) next).cause);
+            }
+            return next != COMPLETE;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object item = next;
+            next = null;
+            if (++consumed == limit) {
+                consumed = 0;
+                subscription.request(limit);
+            }
+            return item == NULL ? null : (T) item;
+        }
+    }
+
+    /**
+     * 不会产生元素的订阅关系
+     */
+    private enum EmptySubscription implements Subscription {
+        INSTANCE;
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+    /**
+     * 异常结束信号
+     */
+    private static final class ErrorSignal {
+        private final Throwable cause;
+
+        private ErrorSignal(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * 从迭代器中发送元素的订阅关系
+     * request 可能在 onNext 中被重入调用，也可能被多个线程同时调用，通过需求计数保证同一时刻只有一个线程在发送元素
+     */
+    private static final class IteratorSubscription<T> implements Subscription {
+        private final Subscriber<? super T> subscriber;
+        private final Iterator<? extends T> iterator;
+        // 尚未满足的需求
+        private final AtomicLong demand = new AtomicLong();
+        private volatile boolean cancelled;
+
+        private IteratorSubscription(Subscriber<? super T> subscriber, Iterator<? extends T> iterator) {
+            this.subscriber = subscriber;
+            this.iterator = iterator;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("request must be positive: " + n));
+                return;
+            }
+            // 需求原本为 0 时由当前线程负责发送，否则只累加需求，交给正在发送的线程
+            if (addDemand(n) == 0) {
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private long addDemand(long n) {
+            while (true) {
+                long current = demand.get();
+                if (current == Long.MAX_VALUE) {
+                    return current;
+                }
+                long next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                if (demand.compareAndSet(current, next)) {
+                    return current;
+                }
+            }
+        }
+
+        private void drain() {
+            long remaining = demand.get();
+            while (true) {
+                long emitted = 0;
+                try {
+                    while (emitted < remaining) {
+                        if (cancelled) {
+                            return;
+                        }
+                        if (!iterator.hasNext()) {
+                            cancelled = true;
+                            subscriber.onComplete();
+                            return;
+                        }
+                        subscriber.onNext(iterator.next());
+                        emitted++;
+                    }
+                } catch (RuntimeException e) {
+                    cancelled = true;
+                    subscriber.onError(e);
+                    return;
+                }
+                // 扣除已经发送的数量，期间又有新的需求时继续发送
+                remaining = remaining == Long.MAX_VALUE ? remaining : demand.addAndGet(-emitted);
+                if (remaining == 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
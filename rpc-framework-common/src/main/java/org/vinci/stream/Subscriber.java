@@ -0,0 +1,33 @@
+package org.vinci.stream;
+
+/**
+ * 流式数据的订阅者，与 Reactive Streams / JDK 9 的 Flow.Subscriber 语义相同
+ * 发布者只会在订阅者通过 {@link Subscription#request(long)} 请求之后才发送元素
+ *
+ * @param <T> 元素类型
+ */
+public interface Subscriber<T> {
+
+    /**
+     * 订阅成功，在其他方法之前调用一次
+     * @param subscription 订阅关系，用于请求元素或取消订阅
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * 收到一个元素
+     * @param item 元素
+     */
+    void onNext(T item);
+
+    /**
+     * 流以异常结束，之后不会再调用其他方法
+     * @param throwable 异常
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * 流正常结束，之后不会再调用其他方法
+     */
+    void onComplete();
+}
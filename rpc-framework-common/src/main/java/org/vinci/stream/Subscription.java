@@ -0,0 +1,18 @@
+package org.vinci.stream;
+
+/**
+ * 发布者与订阅者之间的订阅关系，与 Reactive Streams / JDK 9 的 Flow.Subscription 语义相同
+ */
+public interface Subscription {
+
+    /**
+     * 请求 n 个元素，多次请求的数量累加
+     * @param n 请求的元素数量，必须大于 0
+     */
+    void request(long n);
+
+    /**
+     * 取消订阅，之后发布者会尽快停止发送元素
+     */
+    void cancel();
+}
@@ -0,0 +1,33 @@
+package org.vinci.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * IO 工具类
+ */
+public final class IoUtil {
+    // 缓冲区大小
+    private static final int BUFFER_SIZE = 1024 * 4;
+
+    private IoUtil() {
+    }
+
+    /**
+     * 读取输入流中剩余的全部数据
+     * @param in 输入流，调用方负责关闭
+     * @return 读取到的字节数组
+     * @throws IOException 读取失败
+     */
+    public static byte[] readAllBytes(InputStream in) throws IOException {
+        // 如果输入流能给出剩余数据的长度，则按该长度初始化输出缓冲区
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 32));
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) > -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
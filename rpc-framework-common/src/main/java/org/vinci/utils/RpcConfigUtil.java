@@ -0,0 +1,108 @@
+package org.vinci.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.vinci.enums.RpcConfigEnum;
+
+import java.util.Properties;
+
+/**
+ * 读取 rpc.properties 中的配置项
+ * 配置文件只在第一次使用时读取一次，之后的读取都走缓存
+ */
+@Slf4j
+public final class RpcConfigUtil {
+
+    private RpcConfigUtil() {
+    }
+
+    /**
+     * 延迟加载配置文件，文件不存在时使用空配置
+     */
+    private static final class PropertiesHolder {
+        private static final Properties PROPERTIES = load();
+
+        private static Properties load() {
+            Properties properties = PropertiesFileUtil.readPropertiesFile(RpcConfigEnum.RPC_CONFIG_PATH.getPropertyValue());
+            return properties != null ? properties : new Properties();
+        }
+    }
+
+    /**
+     * 读取字符串配置
+     * @param key 配置项
+     * @param defaultValue 未配置时的默认值
+     * @return 配置值
+     */
+    public static String getString(RpcConfigEnum key, String defaultValue) {
+        String value = PropertiesHolder.PROPERTIES.getProperty(key.getPropertyValue());
+        return StringUtil.isBlank(value) ? defaultValue : value.trim();
+    }
+
+    /**
+     * 读取整数配置，格式错误时记录日志并使用默认值
+     * @param key 配置项
+     * @param defaultValue 未配置时的默认值
+     * @return 配置值
+     */
+    public static int getInt(RpcConfigEnum key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            log.error("invalid int value [{}] for [{}]", value, key.getPropertyValue());
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 读取长整数配置，格式错误时记录日志并使用默认值
+     * @param key 配置项
+     * @param defaultValue 未配置时的默认值
+     * @return 配置值
+     */
+    public static long getLong(RpcConfigEnum key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.error("invalid long value [{}] for [{}]", value, key.getPropertyValue());
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 读取浮点数配置，格式错误时记录日志并使用默认值
+     * @param key 配置项
+     * @param defaultValue 未配置时的默认值
+     * @return 配置值
+     */
+    public static double getDouble(RpcConfigEnum key, double defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            log.error("invalid double value [{}] for [{}]", value, key.getPropertyValue());
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 读取布尔配置
+     * @param key 配置项
+     * @param defaultValue 未配置时的默认值
+     * @return 配置值
+     */
+    public static boolean getBoolean(RpcConfigEnum key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
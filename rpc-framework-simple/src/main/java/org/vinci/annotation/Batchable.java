@@ -0,0 +1,39 @@
+package org.vinci.annotation;
+
+import java.lang.annotation.*;
+
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+/**
+ * 标注只有一个参数的服务方法，服务端把短时间内并发到达的调用合并起来，调用一次对应的批量方法
+ * <p>
+ * 批量方法与该方法在同一个服务中，参数为 List，返回值为与参数一一对应的 List，或者以参数为键的 Map，
+ * 也可以是完成时得到二者之一的 CompletionStage。例如：
+ * </p>
+ * <pre>
+ * &#64;Batchable("getUsers")
+ * User getUser(Long id);
+ *
+ * List&lt;User&gt; getUsers(List&lt;Long&gt; ids);
+ * </pre>
+ * 同一批中相同的参数只查询一次。标注在服务接口或者实现类的方法上都可以
+ */
+public @interface Batchable {
+
+    /**
+     * 批量方法的名称
+     */
+    String value();
+
+    /**
+     * 第一个调用到达后最多等待多久再调用批量方法（微秒），默认 500
+     */
+    long windowMicros() default 500;
+
+    /**
+     * 一批最多合并的调用数，达到后立即调用批量方法，默认 128
+     */
+    int maxSize() default 128;
+
+}
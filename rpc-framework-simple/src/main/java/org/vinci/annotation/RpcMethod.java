@@ -0,0 +1,23 @@
+package org.vinci.annotation;
+
+import java.lang.annotation.*;
+
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+/**
+ * 服务接口中方法的调用配置，优先于 @RpcReference 和全局配置
+ */
+public @interface RpcMethod {
+
+    /**
+     * 调用超时时间（毫秒），默认为 0，表示使用 @RpcReference 或全局配置
+     */
+    long timeout() default 0;
+
+    /**
+     * 集群容错策略：failfast、failover、hedged、forking，默认为空串，表示使用 @RpcReference 或全局配置
+     */
+    String cluster() default "";
+
+}
@@ -21,4 +21,14 @@ public @interface RpcReference {
      */
     String group() default "";
 
+    /**
+     * 调用超时时间（毫秒），默认为 0，表示使用全局配置
+     */
+    long timeout() default 0;
+
+    /**
+     * 集群容错策略：failfast、failover、hedged、forking，默认为空串，表示使用全局配置
+     */
+    String cluster() default "";
+
 }
@@ -21,4 +21,20 @@ public @interface RpcService {
      */
     String group() default "";
 
+    /**
+     * 执行请求的方式：direct、shared、isolated、virtual，默认为空串，使用 rpc.dispatcher 配置
+     * 只做内存计算、不会阻塞的服务可以使用 direct，直接在 IO 线程中执行，省去线程切换
+     */
+    String dispatcher() default "";
+
+    /**
+     * 服务独占线程池的线程数，大于 0 时使用 isolated 方式，慢服务不会占满其他服务的线程
+     */
+    int threads() default 0;
+
+    /**
+     * 服务独占线程池的队列容量，默认与线程数相同
+     */
+    int queues() default 0;
+
 }
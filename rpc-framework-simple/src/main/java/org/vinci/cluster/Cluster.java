@@ -0,0 +1,23 @@
+package org.vinci.cluster;
+
+import org.vinci.extension.SPI;
+import org.vinci.remoting.dto.RpcResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 集群容错策略：决定一次调用发往哪些服务提供者、发送几次
+ * <p>
+ * 通过 rpc.cluster 配置全局策略，@RpcReference、@RpcMethod 可以为服务或方法单独指定。
+ * 只有调用没有收到响应（连接失败、连接关闭、超时等）时才算失败，服务端返回的失败响应原样交给调用方
+ * </p>
+ */
+@SPI
+public interface Cluster {
+    /**
+     * 发起调用
+     * @param invocation 一次调用，负责选择服务提供者并发送请求
+     * @return 响应，第一次选择服务提供者失败时可以直接抛出异常
+     */
+    CompletableFuture<RpcResponse<Object>> invoke(ClusterInvocation invocation);
+}
@@ -0,0 +1,32 @@
+package org.vinci.cluster;
+
+import org.vinci.remoting.dto.RpcRequest;
+import org.vinci.remoting.dto.RpcResponse;
+
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 交给集群容错策略的一次调用，由传输层实现
+ */
+public interface ClusterInvocation {
+    /**
+     * 本次调用的请求，多次发送时使用同一个请求
+     */
+    RpcRequest getRpcRequest();
+
+    /**
+     * 通过服务发现和负载均衡选择一个服务提供者
+     * @param excluded 不希望选中的服务提供者，全部服务提供者都被排除时仍然从中选择一个
+     * @return 服务提供者地址
+     */
+    InetSocketAddress select(Set<InetSocketAddress> excluded);
+
+    /**
+     * 向服务提供者发送一次请求，成功或者超时的耗时记录到 {@link LatencyTracker}
+     * @param address 服务提供者地址
+     * @return 响应，取消后不再等待该次请求的响应
+     */
+    CompletableFuture<RpcResponse<Object>> send(InetSocketAddress address);
+}
@@ -0,0 +1,117 @@
+package org.vinci.cluster;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 流式分位数草图：以固定的内存估计最近一段时间内耗时的任意分位数
+ * <p>
+ * 耗时按对数划分到 {@value #BUCKETS} 个桶中，相邻的桶相差 {@value #GAMMA} 倍，覆盖 1 微秒到约 8 分钟，
+ * 估计值为所在桶的上界，相对误差不超过 4%，偏大不偏小。记录时只做一次对数运算和两次原子自增，不加锁
+ * </p>
+ * 样本分为当前和上一个两个时间窗口，每个窗口 {@value #WINDOW_SECONDS} 秒，查询时合并两个窗口，
+ * 结果反映最近 10 到 20 秒的情况，服务提供者变慢或恢复后很快体现出来
+ */
+public class LatencySketch {
+    // 相邻的桶相差的倍数
+    private static final double GAMMA = 1.04;
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    // 第一个桶的上界（纳秒），更小的耗时都计入第一个桶
+    private static final long MIN_NANOS = 1000;
+    // 桶数，最后一个桶的上界约为 1 微秒 × 1.04^511
+    private static final int BUCKETS = 512;
+    // 时间窗口长度（秒）
+    private static final int WINDOW_SECONDS = 10;
+    private static final long WINDOW_NANOS = WINDOW_SECONDS * 1_000_000_000L;
+
+    private volatile Window current = new Window(System.nanoTime());
+    private volatile Window previous = new Window(System.nanoTime());
+
+    /**
+     * 记录一次耗时
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(long nanos) {
+        long now = System.nanoTime();
+        Window window = current;
+        if (now - window.start >= WINDOW_NANOS) {
+            window = rotate(window, now);
+        }
+        window.add(bucketOf(nanos));
+    }
+
+    /**
+     * 估计分位数
+     * @param quantile 分位，取值 0~1，例如 0.999 表示 p99.9
+     * @return 耗时（纳秒），没有样本时返回 -1
+     */
+    public long quantile(double quantile) {
+        Window c = current;
+        Window p = previous;
+        long total = c.count.get() + p.count.get();
+        if (total == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(1, Math.max(0, quantile))));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += c.buckets.get(i) + p.buckets.get(i);
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        // 查询期间有新的样本写入，计数和桶不完全一致
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * 最近两个时间窗口内的样本数
+     */
+    public long count() {
+        return current.count.get() + previous.count.get();
+    }
+
+    /**
+     * 开始新的时间窗口，当前窗口成为上一个窗口；超过两个窗口没有样本时旧的样本全部丢弃
+     * @param expired 已经到期的当前窗口
+     * @param now 当前时间
+     * @return 新的当前窗口
+     */
+    private synchronized Window rotate(Window expired, long now) {
+        if (current == expired) {
+            previous = now - expired.start >= 2 * WINDOW_NANOS ? new Window(now) : expired;
+            current = new Window(now);
+        }
+        return current;
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos <= MIN_NANOS) {
+            return 0;
+        }
+        int bucket = (int) Math.ceil(Math.log((double) nanos / MIN_NANOS) / LOG_GAMMA);
+        return Math.min(BUCKETS - 1, bucket);
+    }
+
+    private static long upperBound(int bucket) {
+        return (long) (MIN_NANOS * Math.pow(GAMMA, bucket));
+    }
+
+    /**
+     * 一个时间窗口内的样本
+     */
+    private static final class Window {
+        private final long start;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+
+        private Window(long start) {
+            this.start = start;
+        }
+
+        private void add(int bucket) {
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+        }
+    }
+}
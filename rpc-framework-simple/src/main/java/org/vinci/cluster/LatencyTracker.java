@@ -0,0 +1,104 @@
+package org.vinci.cluster;
+
+import org.vinci.remoting.dto.RpcRequest;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 记录客户端每个方法、以及每个方法在每个服务提供者上的调用耗时
+ * <p>
+ * 耗时保存在 {@link LatencySketch} 中，对冲请求的等待时间、自适应的超时时间都由此得出，
+ * 其他组件可以通过 {@link #sketch(RpcRequest)}、{@link #sketch(RpcRequest, InetSocketAddress)} 读取。
+ * 方法按服务名和方法名区分，重载的方法共用样本
+ * </p>
+ */
+public class LatencyTracker {
+    // 样本少于该数量时不估计分位数
+    private static final int MIN_SAMPLES = 100;
+
+    // 服务名#方法名 -> 该方法的耗时
+    private final ConcurrentMap<String, MethodLatency> methods = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次调用的耗时
+     * @param rpcRequest 请求
+     * @param address 服务提供者地址
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(RpcRequest rpcRequest, InetSocketAddress address, long nanos) {
+        String key = keyOf(rpcRequest);
+        MethodLatency latency = methods.get(key);
+        if (latency == null) {
+            latency = methods.computeIfAbsent(key, k -> new MethodLatency());
+        }
+        latency.all.record(nanos);
+        latency.providerSketch(address).record(nanos);
+    }
+
+    /**
+     * 方法在所有服务提供者上的耗时
+     * @param rpcRequest 请求
+     * @return 耗时草图，还没有调用过时返回 null
+     */
+    public LatencySketch sketch(RpcRequest rpcRequest) {
+        MethodLatency latency = methods.get(keyOf(rpcRequest));
+        return latency == null ? null : latency.all;
+    }
+
+    /**
+     * 方法在一个服务提供者上的耗时
+     * @param rpcRequest 请求
+     * @param address 服务提供者地址
+     * @return 耗时草图，还没有调用过时返回 null
+     */
+    public LatencySketch sketch(RpcRequest rpcRequest, InetSocketAddress address) {
+        MethodLatency latency = methods.get(keyOf(rpcRequest));
+        return latency == null ? null : latency.providers.get(address);
+    }
+
+    /**
+     * 方法最近调用耗时的分位数
+     * @param rpcRequest 请求
+     * @param quantile 分位，取值 0~1
+     * @return 耗时（纳秒），样本不足时返回 -1
+     */
+    public long quantile(RpcRequest rpcRequest, double quantile) {
+        return quantileOf(sketch(rpcRequest), quantile);
+    }
+
+    /**
+     * 方法在一个服务提供者上最近调用耗时的分位数
+     * @param rpcRequest 请求
+     * @param address 服务提供者地址
+     * @param quantile 分位，取值 0~1
+     * @return 耗时（纳秒），样本不足时返回 -1
+     */
+    public long quantile(RpcRequest rpcRequest, InetSocketAddress address, double quantile) {
+        return quantileOf(sketch(rpcRequest, address), quantile);
+    }
+
+    private static long quantileOf(LatencySketch sketch, double quantile) {
+        return sketch == null || sketch.count() < MIN_SAMPLES ? -1 : sketch.quantile(quantile);
+    }
+
+    private static String keyOf(RpcRequest rpcRequest) {
+        return rpcRequest.getRpcServiceName() + "#" + rpcRequest.getMethodName();
+    }
+
+    /**
+     * 一个方法的耗时
+     */
+    private static final class MethodLatency {
+        // 所有服务提供者
+        private final LatencySketch all = new LatencySketch();
+        // 服务提供者地址 -> 在该服务提供者上的耗时
+        private final ConcurrentMap<InetSocketAddress, LatencySketch> providers = new ConcurrentHashMap<>();
+
+        private LatencySketch providerSketch(InetSocketAddress address) {
+            LatencySketch sketch = providers.get(address);
+            return sketch != null ? sketch : providers.computeIfAbsent(address, k -> new LatencySketch());
+        }
+    }
+}
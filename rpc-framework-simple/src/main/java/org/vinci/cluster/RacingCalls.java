@@ -0,0 +1,99 @@
+package org.vinci.cluster;
+
+import org.vinci.remoting.dto.RpcResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 同一个请求的多次发送，以最先收到的响应作为结果，其余的发送随即取消
+ * <p>
+ * 全部发送都失败、并且不会再有新的发送时，以最后一次失败的异常结束。
+ * 发送可能在不同线程中加入和结束，状态由当前对象的锁保护
+ * </p>
+ */
+public class RacingCalls {
+    private final CompletableFuture<RpcResponse<Object>> result = new CompletableFuture<>();
+    // 已经加入的发送
+    private final List<CompletableFuture<RpcResponse<Object>>> calls = new ArrayList<>(2);
+    // 尚未结束的发送数
+    private int running;
+    // 不会再加入新的发送
+    private boolean closed;
+    // 最后一次失败的异常
+    private Throwable lastError;
+
+    public RacingCalls() {
+        // 得到结果或者被调用方取消后，取消其余的发送
+        result.whenComplete((r, e) -> cancelAll());
+    }
+
+    /**
+     * 加入一次发送
+     * @param call 发送的响应
+     */
+    public void add(CompletableFuture<RpcResponse<Object>> call) {
+        synchronized (this) {
+            calls.add(call);
+            running++;
+        }
+        call.whenComplete((response, e) -> {
+            if (e == null) {
+                result.complete(response);
+                return;
+            }
+            boolean failed;
+            synchronized (this) {
+                running--;
+                lastError = e;
+                failed = closed && running == 0;
+            }
+            if (failed) {
+                result.completeExceptionally(e);
+            }
+        });
+        if (result.isDone()) {
+            // 加入时已经有了结果
+            call.cancel(false);
+        }
+    }
+
+    /**
+     * 不会再加入新的发送，此时全部发送都已经失败则以异常结束
+     */
+    public void close() {
+        Throwable failure;
+        synchronized (this) {
+            closed = true;
+            failure = running == 0 ? lastError : null;
+        }
+        if (failure != null) {
+            result.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * 是否已经有了结果
+     */
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    /**
+     * 最先收到的响应
+     */
+    public CompletableFuture<RpcResponse<Object>> result() {
+        return result;
+    }
+
+    private void cancelAll() {
+        List<CompletableFuture<RpcResponse<Object>>> toCancel;
+        synchronized (this) {
+            toCancel = new ArrayList<>(calls);
+        }
+        for (CompletableFuture<RpcResponse<Object>> call : toCancel) {
+            call.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.vinci.cluster;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重试预算：限制重试、对冲等额外请求占正常请求的比例
+ * <p>
+ * 每个正常请求存入一定比例的额度，每个额外请求取出一份，额度不足时不再发送额外请求。
+ * 服务提供者大面积故障时，重试最多让请求量增加该比例，不会形成重试风暴
+ * </p>
+ */
+public class RetryBudget {
+    // 一个额外请求需要的额度
+    private static final long UNIT = 100;
+    // 初始额度，可以发送 10 个额外请求，请求量小的调用方也能重试
+    private static final long INITIAL = 10 * UNIT;
+    // 最多积累的额度
+    private static final long MAX = 100 * UNIT;
+
+    // 每个正常请求存入的额度，即额外请求的百分比
+    private final long percent;
+    private final AtomicLong balance = new AtomicLong(INITIAL);
+
+    /**
+     * @param percent 额外请求最多占正常请求的百分比
+     */
+    public RetryBudget(int percent) {
+        this.percent = Math.max(0, percent);
+    }
+
+    /**
+     * 发送正常请求时存入额度
+     */
+    public void deposit() {
+        if (balance.get() < MAX) {
+            balance.updateAndGet(b -> Math.min(MAX, b + percent));
+        }
+    }
+
+    /**
+     * 发送额外请求前取出额度
+     * @return 额度充足时返回 true
+     */
+    public boolean tryWithdraw() {
+        while (true) {
+            long b = balance.get();
+            if (b < UNIT) {
+                return false;
+            }
+            if (balance.compareAndSet(b, b - UNIT)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.vinci.cluster.breaker;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个服务提供者的熔断器
+ * <p>
+ * 关闭状态下统计最近 10 秒的调用结果，调用数达到下限后失败率或者慢调用率超过阈值即打开，
+ * 服务提供者在一段时间内不再被选择；每次打开的时间是上一次的两倍，不超过上限。
+ * 时间到了之后进入半开状态，放行一个探测调用：成功则关闭熔断器，失败则再次打开。
+ * 探测调用没有返回结果（例如被取消）时，再过一个打开时间后放行下一个探测调用
+ * </p>
+ * 记录调用结果不加锁，状态转换很少发生，在当前对象的锁中进行
+ */
+@Slf4j
+class CircuitBreaker {
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+
+    private final InetSocketAddress address;
+    private final CircuitBreakers.Settings settings;
+
+    private volatile int state = CLOSED;
+    // 打开状态下为打开结束的时间，半开状态下为等待探测调用结果的截止时间
+    private volatile long until;
+    private volatile SlidingWindow window = new SlidingWindow();
+    // 连续打开的次数，决定下一次打开的时间
+    private int openings;
+    // 上一次关闭的时间
+    private long closedAt;
+
+    CircuitBreaker(InetSocketAddress address, CircuitBreakers.Settings settings) {
+        this.address = address;
+        this.settings = settings;
+    }
+
+    /**
+     * 服务提供者当前能否被选择
+     * @param now 当前时间
+     * @return 熔断器关闭，或者可以放行探测调用时返回 true
+     */
+    boolean isAvailable(long now) {
+        return state == CLOSED || now - until >= 0;
+    }
+
+    /**
+     * 服务提供者被选中，熔断器不是关闭状态时该调用作为探测调用
+     * @param now 当前时间
+     */
+    void onSelected(long now) {
+        if (state != CLOSED && now - until >= 0) {
+            synchronized (this) {
+                if (state != CLOSED && now - until >= 0) {
+                    state = HALF_OPEN;
+                    until = now + openNanos();
+                    log.info("circuit breaker of [{}] half open, probing", address);
+                }
+            }
+        }
+    }
+
+    /**
+     * 记录一次调用结果
+     * @param failed 调用失败
+     * @param nanos 耗时（纳秒）
+     */
+    void record(boolean failed, long nanos) {
+        boolean slow = nanos >= settings.slowNanos;
+        int current = state;
+        if (current == CLOSED) {
+            SlidingWindow w = window;
+            w.record(failed, slow);
+            if ((failed || slow) && shouldOpen(w.snapshot())) {
+                open(CLOSED);
+            }
+        } else if (current == HALF_OPEN) {
+            // 打开之前发出的调用也可能在这时返回，同样作为探测的结果
+            if (failed || slow) {
+                open(HALF_OPEN);
+            } else {
+                close();
+            }
+        }
+    }
+
+    private boolean shouldOpen(SlidingWindow.Snapshot snapshot) {
+        return snapshot.total >= settings.minCalls
+                && (snapshot.failures * 100 >= snapshot.total * settings.failureRate
+                || snapshot.slow * 100 >= snapshot.total * settings.slowRate);
+    }
+
+    private synchronized void open(int from) {
+        if (state != from) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (from == CLOSED && now - closedAt >= settings.maxOpenNanos) {
+            // 上一次关闭后已经稳定运行了足够长的时间，重新从最短的打开时间开始
+            openings = 0;
+        }
+        openings++;
+        state = OPEN;
+        until = now + openNanos();
+        log.warn("circuit breaker of [{}] opened for [{}]ms", address, TimeUnit.NANOSECONDS.toMillis(openNanos()));
+    }
+
+    private synchronized void close() {
+        if (state != HALF_OPEN) {
+            return;
+        }
+        window = new SlidingWindow();
+        closedAt = System.nanoTime();
+        state = CLOSED;
+        log.info("circuit breaker of [{}] closed", address);
+    }
+
+    /**
+     * 本次打开的时间，从基础时间开始每次翻倍
+     */
+    private long openNanos() {
+        int shift = Math.min(Math.max(openings - 1, 0), 30);
+        return Math.min(settings.maxOpenNanos, settings.openNanos << shift);
+    }
+}
@@ -0,0 +1,77 @@
+package org.vinci.cluster.breaker;
+
+import org.vinci.enums.RpcConfigEnum;
+import org.vinci.utils.RpcConfigUtil;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端所有服务提供者的熔断器
+ * <p>
+ * 传输层在每次调用结束后记录结果，服务发现在负载均衡之前排除熔断中的服务提供者。
+ * 只有连接失败、连接关闭、超时等没有收到响应的调用算作失败，服务端返回的失败响应不算；
+ * 耗时超过慢调用阈值的调用算作慢调用
+ * </p>
+ */
+public class CircuitBreakers {
+    private final Settings settings = new Settings();
+    // 服务提供者地址 -> 熔断器
+    private final ConcurrentMap<InetSocketAddress, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * 服务提供者当前能否被选择
+     * @param address 服务提供者地址
+     * @return 没有熔断，或者可以放行探测调用时返回 true
+     */
+    public boolean isAvailable(InetSocketAddress address) {
+        if (!settings.enabled) {
+            return true;
+        }
+        CircuitBreaker breaker = breakers.get(address);
+        return breaker == null || breaker.isAvailable(System.nanoTime());
+    }
+
+    /**
+     * 服务提供者被负载均衡选中
+     * @param address 服务提供者地址
+     */
+    public void onSelected(InetSocketAddress address) {
+        CircuitBreaker breaker = breakers.get(address);
+        if (breaker != null) {
+            breaker.onSelected(System.nanoTime());
+        }
+    }
+
+    /**
+     * 记录一次调用结果
+     * @param address 服务提供者地址
+     * @param failed 调用失败
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(InetSocketAddress address, boolean failed, long nanos) {
+        if (!settings.enabled) {
+            return;
+        }
+        CircuitBreaker breaker = breakers.get(address);
+        if (breaker == null) {
+            breaker = breakers.computeIfAbsent(address, k -> new CircuitBreaker(k, settings));
+        }
+        breaker.record(failed, nanos);
+    }
+
+    /**
+     * 熔断配置
+     */
+    static final class Settings {
+        final boolean enabled = RpcConfigUtil.getBoolean(RpcConfigEnum.BREAKER, true);
+        final int minCalls = RpcConfigUtil.getInt(RpcConfigEnum.BREAKER_MIN_CALLS, 20);
+        final int failureRate = RpcConfigUtil.getInt(RpcConfigEnum.BREAKER_FAILURE_RATE, 50);
+        final long slowNanos = TimeUnit.MILLISECONDS.toNanos(RpcConfigUtil.getLong(RpcConfigEnum.BREAKER_SLOW_THRESHOLD, 1000));
+        final int slowRate = RpcConfigUtil.getInt(RpcConfigEnum.BREAKER_SLOW_RATE, 80);
+        final long openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, RpcConfigUtil.getLong(RpcConfigEnum.BREAKER_OPEN, 5000)));
+        final long maxOpenNanos = Math.max(openNanos, TimeUnit.MILLISECONDS.toNanos(RpcConfigUtil.getLong(RpcConfigEnum.BREAKER_OPEN_MAX, 300000)));
+    }
+}
@@ -0,0 +1,99 @@
+package org.vinci.cluster.breaker;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 最近 {@value #BUCKETS} 秒内调用结果的滑动窗口
+ * <p>
+ * 窗口由按秒划分的环形桶组成，桶过期后通过 CAS 换成新桶，记录和统计都不加锁
+ * </p>
+ */
+class SlidingWindow {
+    // 桶数
+    private static final int BUCKETS = 10;
+    // 每个桶的时间跨度（纳秒）
+    private static final long BUCKET_NANOS = 1_000_000_000L;
+
+    private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(BUCKETS);
+
+    /**
+     * 记录一次调用结果
+     * @param failed 调用失败
+     * @param slow 调用耗时超过慢调用阈值
+     */
+    void record(boolean failed, boolean slow) {
+        Bucket bucket = current(System.nanoTime() / BUCKET_NANOS);
+        bucket.total.incrementAndGet();
+        if (failed) {
+            bucket.failures.incrementAndGet();
+        }
+        if (slow) {
+            bucket.slow.incrementAndGet();
+        }
+    }
+
+    /**
+     * 统计窗口内的调用结果
+     * @return 调用数、失败数、慢调用数
+     */
+    Snapshot snapshot() {
+        long epoch = System.nanoTime() / BUCKET_NANOS;
+        long total = 0;
+        long failures = 0;
+        long slow = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && epoch - bucket.epoch < BUCKETS) {
+                total += bucket.total.get();
+                failures += bucket.failures.get();
+                slow += bucket.slow.get();
+            }
+        }
+        return new Snapshot(total, failures, slow);
+    }
+
+    private Bucket current(long epoch) {
+        int index = (int) (epoch % BUCKETS);
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            if (bucket != null && bucket.epoch >= epoch) {
+                return bucket;
+            }
+            // 桶已经过期，换成新桶；其他线程先换好时使用它换上的桶
+            Bucket fresh = new Bucket(epoch);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    /**
+     * 一秒内的调用结果
+     */
+    private static final class Bucket {
+        private final long epoch;
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong slow = new AtomicLong();
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * 窗口内调用结果的统计
+     */
+    static final class Snapshot {
+        final long total;
+        final long failures;
+        final long slow;
+
+        private Snapshot(long total, long failures, long slow) {
+            this.total = total;
+            this.failures = failures;
+            this.slow = slow;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.vinci.cluster.failfast;
+
+import org.vinci.cluster.Cluster;
+import org.vinci.cluster.ClusterInvocation;
+import org.vinci.remoting.dto.RpcResponse;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 快速失败：只发送一次，失败后立即返回，适用于非幂等的调用，默认策略
+ */
+public class FailfastCluster implements Cluster {
+    @Override
+    public CompletableFuture<RpcResponse<Object>> invoke(ClusterInvocation invocation) {
+        return invocation.send(invocation.select(Collections.emptySet()));
+    }
+}
@@ -0,0 +1,69 @@
+package org.vinci.cluster.failover;
+
+import lombok.extern.slf4j.Slf4j;
+import org.vinci.cluster.Cluster;
+import org.vinci.cluster.ClusterInvocation;
+import org.vinci.cluster.RetryBudget;
+import org.vinci.enums.RpcConfigEnum;
+import org.vinci.remoting.dto.RpcResponse;
+import org.vinci.utils.RpcConfigUtil;
+
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 失败重试：调用失败后换一个服务提供者重试，直到成功或者用完重试次数
+ * <p>
+ * 重试优先选择还没有尝试过的服务提供者。重试受 {@link RetryBudget} 限制，
+ * 大面积故障时不会让请求量成倍增加。每次发送各自计算超时时间，重试只适用于幂等的调用
+ * </p>
+ */
+@Slf4j
+public class FailoverCluster implements Cluster {
+    // 最多重试次数
+    private static final int RETRIES = RpcConfigUtil.getInt(RpcConfigEnum.CLUSTER_RETRIES, 2);
+
+    private final RetryBudget retryBudget = new RetryBudget(RpcConfigUtil.getInt(RpcConfigEnum.CLUSTER_RETRY_BUDGET, 10));
+
+    @Override
+    public CompletableFuture<RpcResponse<Object>> invoke(ClusterInvocation invocation) {
+        retryBudget.deposit();
+        CompletableFuture<RpcResponse<Object>> result = new CompletableFuture<>();
+        Set<InetSocketAddress> tried = new HashSet<>();
+        send(invocation, invocation.select(tried), tried, RETRIES, result);
+        return result;
+    }
+
+    /**
+     * 向服务提供者发送一次请求，失败时重试
+     * @param invocation 调用
+     * @param address 服务提供者地址
+     * @param tried 已经尝试过的服务提供者
+     * @param retries 剩余的重试次数
+     * @param result 调用结果
+     */
+    private void send(ClusterInvocation invocation, InetSocketAddress address, Set<InetSocketAddress> tried,
+                      int retries, CompletableFuture<RpcResponse<Object>> result) {
+        tried.add(address);
+        invocation.send(address).whenComplete((response, e) -> {
+            if (e == null) {
+                result.complete(response);
+            } else if (retries > 0 && !result.isDone() && retryBudget.tryWithdraw()) {
+                InetSocketAddress next;
+                try {
+                    next = invocation.select(tried);
+                } catch (RuntimeException ex) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                log.warn("call [{}] failed on [{}], retry on [{}]: {}", invocation.getRpcRequest().getMethodName(),
+                        address, next, e.toString());
+                send(invocation, next, tried, retries - 1, result);
+            } else {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+}
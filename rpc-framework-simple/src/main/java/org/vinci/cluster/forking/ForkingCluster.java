@@ -0,0 +1,45 @@
+package org.vinci.cluster.forking;
+
+import org.vinci.cluster.Cluster;
+import org.vinci.cluster.ClusterInvocation;
+import org.vinci.cluster.RacingCalls;
+import org.vinci.enums.RpcConfigEnum;
+import org.vinci.remoting.dto.RpcResponse;
+import org.vinci.utils.RpcConfigUtil;
+
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 并行调用：同时向多个不同的服务提供者发送请求，以最先收到的响应作为结果，其余的请求取消
+ * <p>
+ * 用成倍的请求量换取更低的延迟，只适用于幂等并且对延迟要求很高的调用。
+ * 服务提供者不足时只向现有的服务提供者各发送一次
+ * </p>
+ */
+public class ForkingCluster implements Cluster {
+    // 同时发送的请求数
+    private static final int FORKS = Math.max(1, RpcConfigUtil.getInt(RpcConfigEnum.CLUSTER_FORKS, 2));
+
+    @Override
+    public CompletableFuture<RpcResponse<Object>> invoke(ClusterInvocation invocation) {
+        RacingCalls calls = new RacingCalls();
+        Set<InetSocketAddress> selected = new HashSet<>();
+        InetSocketAddress address = invocation.select(selected);
+        while (selected.add(address)) {
+            calls.add(invocation.send(address));
+            if (selected.size() >= FORKS || calls.isDone()) {
+                break;
+            }
+            try {
+                address = invocation.select(selected);
+            } catch (RuntimeException e) {
+                break;
+            }
+        }
+        calls.close();
+        return calls.result();
+    }
+}
@@ -0,0 +1,99 @@
+package org.vinci.cluster.hedged;
+
+import lombok.extern.slf4j.Slf4j;
+import org.vinci.cluster.Cluster;
+import org.vinci.cluster.ClusterInvocation;
+import org.vinci.cluster.LatencyTracker;
+import org.vinci.cluster.RacingCalls;
+import org.vinci.cluster.RetryBudget;
+import org.vinci.enums.RpcConfigEnum;
+import org.vinci.factory.SingletonFactory;
+import org.vinci.remoting.dto.RpcResponse;
+import org.vinci.utils.RpcConfigUtil;
+import org.vinci.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对冲请求：先向一个服务提供者发送请求，超过该方法最近耗时的百分位数仍未收到响应时，
+ * 再向另一个服务提供者发送一个备份请求，以先收到的响应作为结果，另一个请求取消
+ * <p>
+ * 等待时间取自 {@link LatencyTracker}，只有最慢的一小部分调用会发送备份请求，
+ * 单个服务提供者的停顿（例如 GC）不再决定调用的尾延迟。首个请求失败时立即发送备份请求。
+ * 备份请求受 {@link RetryBudget} 限制，只有一个服务提供者时不发送，只适用于幂等的调用
+ * </p>
+ */
+@Slf4j
+public class HedgedCluster implements Cluster {
+    // 所有对冲调用共用的定时器
+    private static final ScheduledExecutorService HEDGE_TIMER = Executors.newSingleThreadScheduledExecutor(
+            ThreadPoolFactoryUtil.createThreadFactory("rpc-hedge-timer", true));
+    // 按最近耗时的该百分位数决定发送备份请求前的等待时间
+    private static final int PERCENTILE = RpcConfigUtil.getInt(RpcConfigEnum.CLUSTER_HEDGE_PERCENTILE, 95);
+    // 样本不足时的等待时间（毫秒）
+    private static final long DEFAULT_DELAY = RpcConfigUtil.getLong(RpcConfigEnum.CLUSTER_HEDGE_DELAY, 100);
+
+    private final RetryBudget hedgeBudget = new RetryBudget(RpcConfigUtil.getInt(RpcConfigEnum.CLUSTER_RETRY_BUDGET, 10));
+    private final LatencyTracker latencyTracker = SingletonFactory.getInstance(LatencyTracker.class);
+
+    @Override
+    public CompletableFuture<RpcResponse<Object>> invoke(ClusterInvocation invocation) {
+        hedgeBudget.deposit();
+        InetSocketAddress primary = invocation.select(Collections.emptySet());
+        RacingCalls calls = new RacingCalls();
+        CompletableFuture<RpcResponse<Object>> first = invocation.send(primary);
+        calls.add(first);
+        if (calls.isDone()) {
+            calls.close();
+            return calls.result();
+        }
+        ScheduledFuture<?> hedge = HEDGE_TIMER.schedule(() -> hedge(invocation, primary, calls),
+                delayNanos(invocation), TimeUnit.NANOSECONDS);
+        first.whenComplete((response, e) -> {
+            // 首个请求结束后不再需要等待；失败时立即发送备份请求
+            if (hedge.cancel(false) && e != null && !first.isCancelled()) {
+                hedge(invocation, primary, calls);
+            }
+        });
+        return calls.result();
+    }
+
+    /**
+     * 发送备份请求，此后不会再有新的请求
+     * @param invocation 调用
+     * @param primary 首个请求的服务提供者
+     * @param calls 本次调用的全部请求
+     */
+    private void hedge(ClusterInvocation invocation, InetSocketAddress primary, RacingCalls calls) {
+        try {
+            if (calls.isDone()) {
+                return;
+            }
+            InetSocketAddress backup = invocation.select(Collections.singleton(primary));
+            if (!backup.equals(primary) && hedgeBudget.tryWithdraw()) {
+                log.debug("hedge call [{}] from [{}] to [{}]", invocation.getRpcRequest().getMethodName(), primary, backup);
+                calls.add(invocation.send(backup));
+            }
+        } catch (RuntimeException e) {
+            log.warn("hedge call [{}] failed: {}", invocation.getRpcRequest().getMethodName(), e.toString());
+        } finally {
+            calls.close();
+        }
+    }
+
+    /**
+     * 发送备份请求前的等待时间
+     * @param invocation 调用
+     * @return 等待时间（纳秒）
+     */
+    private long delayNanos(ClusterInvocation invocation) {
+        long delay = latencyTracker.quantile(invocation.getRpcRequest(), PERCENTILE / 100.0);
+        return delay >= 0 ? delay : TimeUnit.MILLISECONDS.toNanos(DEFAULT_DELAY);
+    }
+}
@@ -0,0 +1,285 @@
+package org.vinci.compress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import org.vinci.remoting.constants.RpcConstants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 块压缩算法的抽象类，LZ4 / Snappy / Zstd 等算法的块格式都需要一次拿到完整的输入
+ * 消息体本身就是完整的一块，因此流式接口先把数据缓存起来，关闭时再整体压缩
+ * <p>
+ * 缓存原始数据和压缩结果的字节数组按线程复用，避免每条消息都申请一次大数组；
+ * 超过 {@link #MAX_RETAINED_SIZE} 的数组用完即丢弃，防止偶发的大消息长期占用内存。
+ * 流式解压的结果写入 Netty 池化的缓冲区，关闭返回的输入流时归还，不为每个消息体申请一个完整大小的数组
+ * </p>
+ * 块格式只能整体解压，解压期间整块占用内存，单个消息体解压后的大小不能超过 {@link RpcConstants#MAX_MESSAGE_LENGTH}
+ */
+public abstract class AbstractBlockCompress implements Compress {
+
+    // 初始缓冲区大小
+    private static final int INITIAL_SIZE = 1024 * 4;
+    // 线程缓存的数组上限
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+    // 每个线程缓存一个源数组和一个目标数组，借出期间置空，嵌套使用时退化为新建数组
+    private static final ThreadLocal<byte[]> SRC_BUFFER = new ThreadLocal<>();
+    private static final ThreadLocal<byte[]> DST_BUFFER = new ThreadLocal<>();
+
+    /**
+     * 压缩字节数组
+     * @param bytes 需要压缩的字节数组
+     * @return 压缩后的字节数组
+     */
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        byte[] dst = acquire(DST_BUFFER, maxCompressedLength(bytes.length));
+        try {
+            int n = doCompress(bytes, bytes.length, dst);
+            return Arrays.copyOf(dst, n);
+        } catch (IOException e) {
+            throw new RuntimeException(name() + " compress error", e);
+        } finally {
+            release(DST_BUFFER, dst);
+        }
+    }
+
+    /**
+     * 解压缩字节数组
+     * @param bytes 需要解压缩的字节数组
+     * @return 解压缩后的字节数组
+     */
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        try {
+            return decompress(bytes, bytes.length);
+        } catch (IOException e) {
+            throw new RuntimeException(name() + " decompress error", e);
+        }
+    }
+
+    /**
+     * 返回的输出流把写入的数据缓存在线程复用的数组中，关闭时整体压缩后写入 out 并关闭 out
+     * @param out 压缩数据的目标输出流
+     * @return 压缩输出流
+     */
+    @Override
+    public OutputStream compress(OutputStream out) {
+        return new BlockOutputStream(out);
+    }
+
+    /**
+     * 读出输入流中的全部压缩数据后整体解压到池化的缓冲区中
+     * @param in 压缩数据的输入流
+     * @return 解压输入流，关闭时归还缓冲区
+     */
+    @Override
+    public InputStream decompress(InputStream in) {
+        return decompress(in, this::doDecompress);
+    }
+
+    /**
+     * 读出输入流中的全部压缩数据后使用指定的解压方法整体解压，供需要额外上下文（例如连接上的字典）的子类使用
+     * @param in 压缩数据的输入流
+     * @param decompressor 解压方法，约定同 {@link #doDecompress(byte[], int, byte[], int, int)}
+     * @return 解压输入流，关闭时归还缓冲区
+     */
+    protected final InputStream decompress(InputStream in, BlockDecompressor decompressor) {
+        byte[] src = acquire(SRC_BUFFER, Math.max(INITIAL_SIZE, available(in)));
+        ByteBuf raw = null;
+        try {
+            int length = 0;
+            int n;
+            while ((n = in.read(src, length, src.length - length)) > -1) {
+                length += n;
+                if (length == src.length) {
+                    src = Arrays.copyOf(src, src.length << 1);
+                }
+            }
+            int rawLength = rawLength(src, length);
+            raw = ByteBufAllocator.DEFAULT.heapBuffer(rawLength, rawLength);
+            decompressor.decompress(src, length, raw.array(), raw.arrayOffset(), rawLength);
+            raw.writerIndex(rawLength);
+            InputStream rawIn = new ByteBufInputStream(raw, true);
+            raw = null;
+            return rawIn;
+        } catch (IOException e) {
+            throw new RuntimeException(name() + " decompress error", e);
+        } finally {
+            release(SRC_BUFFER, src);
+            if (raw != null) {
+                raw.release();
+            }
+        }
+    }
+
+    private byte[] decompress(byte[] src, int srcLength) throws IOException {
+        int rawLength = rawLength(src, srcLength);
+        byte[] raw = new byte[rawLength];
+        doDecompress(src, srcLength, raw, 0, rawLength);
+        return raw;
+    }
+
+    /**
+     * 读出原始数据长度，在申请内存之前校验
+     * 长度来自对端写入的块头，几十字节的压缩数据就可以声称 2G 的原始长度，超过单条消息上限的直接拒绝
+     */
+    private int rawLength(byte[] src, int srcLength) throws IOException {
+        int rawLength = uncompressedLength(src, srcLength);
+        if (rawLength < 0) {
+            throw new IOException("invalid uncompressed length: " + rawLength);
+        }
+        if (rawLength > RpcConstants.MAX_MESSAGE_LENGTH) {
+            throw new IOException("uncompressed length " + rawLength + " exceeds " + RpcConstants.MAX_MESSAGE_LENGTH);
+        }
+        return rawLength;
+    }
+
+    /**
+     * 压缩 src 的数据最多需要的目标数组长度
+     * @param rawLength 原始数据长度
+     * @return 目标数组的最小长度
+     */
+    protected abstract int maxCompressedLength(int rawLength);
+
+    /**
+     * 压缩 src[0, srcLength) 的数据写入 dst
+     * @param src 原始数据
+     * @param srcLength 原始数据长度
+     * @param dst 目标数组，长度不小于 {@link #maxCompressedLength(int)}
+     * @return 压缩后的数据长度
+     * @throws IOException 压缩失败
+     */
+    protected abstract int doCompress(byte[] src, int srcLength, byte[] dst) throws IOException;
+
+    /**
+     * 从压缩数据中读出原始数据长度
+     * @param src 压缩数据
+     * @param srcLength 压缩数据长度
+     * @return 原始数据长度
+     * @throws IOException 压缩数据格式错误
+     */
+    protected abstract int uncompressedLength(byte[] src, int srcLength) throws IOException;
+
+    /**
+     * 解压 src[0, srcLength) 的数据，恰好填满 dst[dstOffset, dstOffset + dstLength)
+     * @param src 压缩数据
+     * @param srcLength 压缩数据长度
+     * @param dst 目标数组
+     * @param dstOffset 目标数组中的起始位置
+     * @param dstLength 原始数据长度，等于 {@link #uncompressedLength(byte[], int)}
+     * @throws IOException 解压失败
+     */
+    protected abstract void doDecompress(byte[] src, int srcLength, byte[] dst, int dstOffset, int dstLength)
+            throws IOException;
+
+    /**
+     * 块解压方法
+     */
+    @FunctionalInterface
+    protected interface BlockDecompressor {
+        void decompress(byte[] src, int srcLength, byte[] dst, int dstOffset, int dstLength) throws IOException;
+    }
+
+    /**
+     * 压缩算法名称，用于异常信息
+     * @return 压缩算法名称
+     */
+    protected abstract String name();
+
+    private static int available(InputStream in) {
+        try {
+            return in.available();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static byte[] acquire(ThreadLocal<byte[]> pool, int minLength) {
+        byte[] buffer = pool.get();
+        if (buffer != null && buffer.length >= minLength) {
+            pool.set(null);
+            return buffer;
+        }
+        return new byte[Math.max(minLength, INITIAL_SIZE)];
+    }
+
+    private static void release(ThreadLocal<byte[]> pool, byte[] buffer) {
+        if (buffer.length > MAX_RETAINED_SIZE) {
+            return;
+        }
+        byte[] cached = pool.get();
+        if (cached == null || cached.length < buffer.length) {
+            pool.set(buffer);
+        }
+    }
+
+    /**
+     * 缓存写入的数据，关闭时整体压缩
+     */
+    private final class BlockOutputStream extends OutputStream {
+        private final OutputStream out;
+        private byte[] buffer;
+        private int count;
+
+        private BlockOutputStream(OutputStream out) {
+            this.out = out;
+            this.buffer = acquire(SRC_BUFFER, INITIAL_SIZE);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureOpen();
+            ensureCapacity(count + 1);
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (buffer == null) {
+                return;
+            }
+            byte[] src = buffer;
+            buffer = null;
+            byte[] dst = acquire(DST_BUFFER, maxCompressedLength(count));
+            try {
+                int n = doCompress(src, count, dst);
+                out.write(dst, 0, n);
+            } finally {
+                release(DST_BUFFER, dst);
+                release(SRC_BUFFER, src);
+                out.close();
+            }
+        }
+
+        private void ensureOpen() throws IOException {
+            if (buffer == null) {
+                throw new IOException("stream closed");
+            }
+        }
+
+        private void ensureCapacity(int minCapacity) {
+            if (minCapacity > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(minCapacity, buffer.length << 1));
+            }
+        }
+    }
+}
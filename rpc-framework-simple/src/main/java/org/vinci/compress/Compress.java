@@ -1,6 +1,13 @@
 package org.vinci.compress;
 
 import org.vinci.extension.SPI;
+import org.vinci.utils.IoUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * 压缩算法接口
@@ -21,4 +28,40 @@ public interface Compress {
      * @return 解压缩后的字节数组
      */
     byte[] decompress(byte[] bytes);
+
+    /**
+     * 将输出流包装为压缩输出流，写入的数据压缩后输出到 out
+     * 关闭返回的流时写出剩余的压缩数据并关闭 out
+     * 默认实现先缓存全部数据，关闭时再调用 {@link #compress(byte[])}，实现类可以覆盖为真正的流式压缩
+     *
+     * @param out 压缩数据的目标输出流
+     * @return 压缩输出流
+     */
+    default OutputStream compress(OutputStream out) {
+        return new ByteArrayOutputStream() {
+            @Override
+            public void close() throws IOException {
+                try {
+                    out.write(Compress.this.compress(toByteArray()));
+                } finally {
+                    out.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * 将输入流包装为解压输入流，从返回的流中读取的是解压后的数据
+     * 默认实现先读出全部数据再调用 {@link #decompress(byte[])}，实现类可以覆盖为真正的流式解压
+     *
+     * @param in 压缩数据的输入流
+     * @return 解压输入流
+     */
+    default InputStream decompress(InputStream in) {
+        try {
+            return new ByteArrayInputStream(decompress(IoUtil.readAllBytes(in)));
+        } catch (IOException e) {
+            throw new RuntimeException("decompress error", e);
+        }
+    }
 }
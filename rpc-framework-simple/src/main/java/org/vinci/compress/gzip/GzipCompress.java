@@ -1,16 +1,45 @@
 package org.vinci.compress.gzip;
 
 import org.vinci.compress.Compress;
+import org.vinci.enums.RpcConfigEnum;
+import org.vinci.utils.IoUtil;
+import org.vinci.utils.RpcConfigUtil;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
 
+/**
+ * GZIP 压缩
+ * JDK 的 GZIPOutputStream / GZIPInputStream 每次都会新建 Deflater / Inflater，
+ * 这里自行读写 GZIP 头尾，中间的 deflate 数据交给按线程复用的 Deflater / Inflater 处理
+ * 压缩级别通过 rpc.compress.gzip.level 配置
+ */
 public class GzipCompress implements Compress {
     // 缓冲区大小
     private static final int BUFFER_SIZE = 1024 * 4;
+    // 压缩级别
+    private static final int LEVEL = RpcConfigUtil.getInt(RpcConfigEnum.GZIP_LEVEL, Deflater.DEFAULT_COMPRESSION);
+    // GZIP 头部：魔数、deflate 算法、无标志位、时间戳等全部为 0，与 GZIPOutputStream 写出的一致
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    // GZIP 头部标志位
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    // 每个线程缓存一个 Deflater / Inflater，借出期间置空，嵌套使用时退化为新建
+    private static final ThreadLocal<Deflater> DEFLATERS = new ThreadLocal<>();
+    private static final ThreadLocal<Inflater> INFLATERS = new ThreadLocal<>();
 
     /**
      * 压缩字节数组
@@ -23,22 +52,14 @@ public class GzipCompress implements Compress {
             // 如果字节数组为 null，则抛出空指针异常
             throw new NullPointerException("bytes is null");
         }
-        // 建立字节输出流
-        // 建立 GZIP 压缩输出流
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream();
-             GZIPOutputStream gzip = new GZIPOutputStream(out)) {
-            // 将字节数组写入 GZIP 压缩输出流
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(bytes.length >>> 1, 32));
+        try (OutputStream gzip = compress(out)) {
             gzip.write(bytes);
-            // 刷新缓冲区
-            gzip.flush();
-            // 结束压缩流，写入 GZIP 文件尾
-            gzip.finish();
-            // 返回压缩后的字节数组
-            return out.toByteArray();
         } catch (IOException e) {
             // 如果出现 IO 异常，则抛出运行时异常
             throw new RuntimeException("gzip compress error", e);
         }
+        return out.toByteArray();
     }
 
     /**
@@ -52,24 +73,235 @@ public class GzipCompress implements Compress {
             // 如果字节数组为 null，则抛出空指针异常
             throw new NullPointerException("bytes is null");
         }
-
-        // 建立输出流
-        // 建立 GZIP 解压输入流
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream();
-             GZIPInputStream gunzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
-            // 建立缓冲区
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int n;
-            // 持续读取 GZIP 解压输入流
-            while ((n = gunzip.read(buffer)) > -1) {
-                // 将解压后的数据写入输出流
-                out.write(buffer, 0, n);
-            }
-            // 返回解压后的字节数组
-            return out.toByteArray();
+        try (InputStream gunzip = decompress(new ByteArrayInputStream(bytes))) {
+            return IoUtil.readAllBytes(gunzip);
         } catch (IOException e) {
             // 如果出现 IO 异常，则抛出运行时异常
             throw new RuntimeException("gzip decompress error", e);
         }
     }
+
+    /**
+     * 将输出流包装为 GZIP 压缩输出流
+     * @param out 压缩数据的目标输出流
+     * @return GZIP 压缩输出流，关闭时写入 GZIP 文件尾并归还 Deflater
+     */
+    @Override
+    public OutputStream compress(OutputStream out) {
+        Deflater deflater = acquireDeflater();
+        try {
+            return new PooledGzipOutputStream(out, deflater);
+        } catch (IOException e) {
+            releaseDeflater(deflater);
+            throw new RuntimeException("gzip compress error", e);
+        }
+    }
+
+    /**
+     * 将输入流包装为 GZIP 解压输入流
+     * @param in 压缩数据的输入流
+     * @return GZIP 解压输入流，关闭时归还 Inflater
+     */
+    @Override
+    public InputStream decompress(InputStream in) {
+        Inflater inflater = acquireInflater();
+        try {
+            return new PooledGzipInputStream(in, inflater);
+        } catch (IOException e) {
+            releaseInflater(inflater);
+            throw new RuntimeException("gzip decompress error", e);
+        }
+    }
+
+    private static Deflater acquireDeflater() {
+        Deflater deflater = DEFLATERS.get();
+        if (deflater == null) {
+            // nowrap 模式只输出 deflate 数据，GZIP 头尾由本类负责
+            return new Deflater(LEVEL, true);
+        }
+        DEFLATERS.set(null);
+        return deflater;
+    }
+
+    private static void releaseDeflater(Deflater deflater) {
+        if (DEFLATERS.get() == null) {
+            deflater.reset();
+            DEFLATERS.set(deflater);
+        } else {
+            // 当前线程已经缓存了一个，多余的直接释放本地内存
+            deflater.end();
+        }
+    }
+
+    private static Inflater acquireInflater() {
+        Inflater inflater = INFLATERS.get();
+        if (inflater == null) {
+            return new Inflater(true);
+        }
+        INFLATERS.set(null);
+        return inflater;
+    }
+
+    private static void releaseInflater(Inflater inflater) {
+        if (INFLATERS.get() == null) {
+            inflater.reset();
+            INFLATERS.set(inflater);
+        } else {
+            inflater.end();
+        }
+    }
+
+    private static int readUByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException("Unexpected end of GZIP stream");
+        }
+        return b;
+    }
+
+    private static int readUShort(InputStream in) throws IOException {
+        return readUByte(in) | readUByte(in) << 8;
+    }
+
+    private static long readUInt(InputStream in) throws IOException {
+        return ((long) readUShort(in)) | ((long) readUShort(in)) << 16;
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    /**
+     * 使用外部传入 Deflater 的 GZIP 输出流
+     */
+    private static final class PooledGzipOutputStream extends DeflaterOutputStream {
+        private final CRC32 crc = new CRC32();
+        private boolean closed;
+
+        private PooledGzipOutputStream(OutputStream out, Deflater deflater) throws IOException {
+            super(out, deflater, BUFFER_SIZE);
+            out.write(HEADER);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            crc.update(b, off, len);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (!def.finished()) {
+                super.finish();
+                // GZIP 文件尾：CRC32 和原始数据长度，均为小端序
+                writeInt(out, (int) crc.getValue());
+                writeInt(out, (int) def.getBytesRead());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                finish();
+            } finally {
+                releaseDeflater(def);
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * 使用外部传入 Inflater 的 GZIP 输入流，只处理单个 GZIP 成员
+     */
+    private static final class PooledGzipInputStream extends InflaterInputStream {
+        private final CRC32 crc = new CRC32();
+        private boolean eos;
+        private boolean closed;
+
+        private PooledGzipInputStream(InputStream in, Inflater inflater) throws IOException {
+            super(in, inflater, BUFFER_SIZE);
+            readHeader();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (eos) {
+                return -1;
+            }
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                readTrailer();
+                eos = true;
+            } else {
+                crc.update(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                // Inflater 不是 InflaterInputStream 自己创建的，super.close() 只会关闭 in
+                super.close();
+            } finally {
+                releaseInflater(inf);
+            }
+        }
+
+        private void readHeader() throws IOException {
+            if (readUShort(in) != 0x8b1f) {
+                throw new ZipException("Not in GZIP format");
+            }
+            if (readUByte(in) != Deflater.DEFLATED) {
+                throw new ZipException("Unsupported compression method");
+            }
+            int flags = readUByte(in);
+            // 跳过时间戳、额外标志和操作系统字段
+            for (int i = 0; i < 6; i++) {
+                readUByte(in);
+            }
+            if ((flags & FEXTRA) == FEXTRA) {
+                int length = readUShort(in);
+                for (int i = 0; i < length; i++) {
+                    readUByte(in);
+                }
+            }
+            if ((flags & FNAME) == FNAME) {
+                while (readUByte(in) != 0) {
+                    // 跳过文件名
+                }
+            }
+            if ((flags & FCOMMENT) == FCOMMENT) {
+                while (readUByte(in) != 0) {
+                    // 跳过注释
+                }
+            }
+            if ((flags & FHCRC) == FHCRC) {
+                readUShort(in);
+            }
+        }
+
+        private void readTrailer() throws IOException {
+            // 文件尾可能已经被读入缓冲区，先从缓冲区中剩余的数据读取
+            int remaining = inf.getRemaining();
+            InputStream trailer = remaining > 0
+                    ? new SequenceInputStream(new ByteArrayInputStream(buf, len - remaining, remaining), in)
+                    : in;
+            if (readUInt(trailer) != crc.getValue()
+                    || readUInt(trailer) != (inf.getBytesWritten() & 0xffffffffL)) {
+                throw new ZipException("Corrupt GZIP trailer");
+            }
+        }
+    }
 }
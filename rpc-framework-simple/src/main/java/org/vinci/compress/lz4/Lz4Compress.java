@@ -0,0 +1,61 @@
+package org.vinci.compress.lz4;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.vinci.compress.AbstractBlockCompress;
+
+import java.io.IOException;
+
+/**
+ * LZ4 压缩，压缩率不高但压缩和解压都非常快，适合对延迟敏感的服务
+ * 数据格式为 4 字节的原始数据长度 + LZ4 块，LZ4 块本身不记录原始长度
+ */
+public class Lz4Compress extends AbstractBlockCompress {
+    // 原始长度前缀的字节数
+    private static final int LENGTH_PREFIX = 4;
+    // 压缩器和解压器都是无状态、线程安全的，全局共享一个实例
+    private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+    private static final LZ4Compressor COMPRESSOR = FACTORY.fastCompressor();
+    private static final LZ4SafeDecompressor DECOMPRESSOR = FACTORY.safeDecompressor();
+
+    @Override
+    protected int maxCompressedLength(int rawLength) {
+        return LENGTH_PREFIX + COMPRESSOR.maxCompressedLength(rawLength);
+    }
+
+    @Override
+    protected int doCompress(byte[] src, int srcLength, byte[] dst) {
+        dst[0] = (byte) (srcLength >>> 24);
+        dst[1] = (byte) (srcLength >>> 16);
+        dst[2] = (byte) (srcLength >>> 8);
+        dst[3] = (byte) srcLength;
+        return LENGTH_PREFIX + COMPRESSOR.compress(src, 0, srcLength, dst, LENGTH_PREFIX, dst.length - LENGTH_PREFIX);
+    }
+
+    @Override
+    protected int uncompressedLength(byte[] src, int srcLength) throws IOException {
+        if (srcLength < LENGTH_PREFIX) {
+            throw new IOException("lz4 block too short: " + srcLength);
+        }
+        return (src[0] & 0xff) << 24 | (src[1] & 0xff) << 16 | (src[2] & 0xff) << 8 | (src[3] & 0xff);
+    }
+
+    @Override
+    protected void doDecompress(byte[] src, int srcLength, byte[] dst, int dstOffset, int dstLength) throws IOException {
+        try {
+            int n = DECOMPRESSOR.decompress(src, LENGTH_PREFIX, srcLength - LENGTH_PREFIX, dst, dstOffset, dstLength);
+            if (n != dstLength) {
+                throw new IOException("lz4 uncompressed length mismatch, expected " + dstLength + " but was " + n);
+            }
+        } catch (LZ4Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    protected String name() {
+        return "lz4";
+    }
+}
@@ -0,0 +1,33 @@
+package org.vinci.compress.none;
+
+import org.vinci.compress.Compress;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 不压缩，原样输出
+ * 小消息压缩后往往反而变大，编码器对低于阈值的消息体使用该类型
+ */
+public class NoneCompress implements Compress {
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        return bytes;
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        return bytes;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) {
+        return out;
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) {
+        return in;
+    }
+}
@@ -0,0 +1,41 @@
+package org.vinci.compress.snappy;
+
+import org.vinci.compress.AbstractBlockCompress;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+
+/**
+ * Snappy 压缩，速度与 LZ4 接近，压缩率略高
+ * 使用 Snappy 的原始块格式，块头部已经记录了原始数据长度
+ */
+public class SnappyCompress extends AbstractBlockCompress {
+
+    @Override
+    protected int maxCompressedLength(int rawLength) {
+        return Snappy.maxCompressedLength(rawLength);
+    }
+
+    @Override
+    protected int doCompress(byte[] src, int srcLength, byte[] dst) throws IOException {
+        return Snappy.compress(src, 0, srcLength, dst, 0);
+    }
+
+    @Override
+    protected int uncompressedLength(byte[] src, int srcLength) throws IOException {
+        return Snappy.uncompressedLength(src, 0, srcLength);
+    }
+
+    @Override
+    protected void doDecompress(byte[] src, int srcLength, byte[] dst, int dstOffset, int dstLength) throws IOException {
+        int n = Snappy.uncompress(src, 0, srcLength, dst, dstOffset);
+        if (n != dstLength) {
+            throw new IOException("snappy uncompressed length mismatch, expected " + dstLength + " but was " + n);
+        }
+    }
+
+    @Override
+    protected String name() {
+        return "snappy";
+    }
+}
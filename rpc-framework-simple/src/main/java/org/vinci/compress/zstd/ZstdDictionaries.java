@@ -0,0 +1,210 @@
+package org.vinci.compress.zstd;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.vinci.enums.RpcConfigEnum;
+import org.vinci.utils.RpcConfigUtil;
+import org.vinci.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Zstd 字典的采样、训练和注册中心
+ * <p>
+ * 发送方按采样键（请求为服务名，响应为返回值类型）收集真实的消息体，样本足够后在后台线程训练字典，
+ * 训练完成后该键的消息体都使用字典压缩。这里只保存本端训练的字典，对端发来的字典保存在各自连接的
+ * {@link ZstdPeerDictionaries} 中，两者互不影响
+ * </p>
+ * <p>
+ * 样本只在训练前保存：每个键的样本数或者总大小足够时立即训练，训练结束后释放；所有键的样本总大小有上限，
+ * 达到上限时先放弃长时间凑不够样本的键，仍然不够时丢弃新样本
+ * </p>
+ * 通过 {@link org.vinci.factory.SingletonFactory} 获取全局唯一实例
+ */
+@Slf4j
+public class ZstdDictionaries {
+    // 每个采样键训练前需要收集的样本数
+    private static final int DEFAULT_SAMPLE_COUNT = 1000;
+    // 字典大小
+    private static final int DEFAULT_DICT_SIZE = 16 * 1024;
+    // 超过该大小的消息体不参与采样，大消息体本身就能压缩得很好，字典的收益主要在小消息体上
+    private static final int MAX_SAMPLE_SIZE = 16 * 1024;
+    // 最多为多少个采样键训练字典，避免键数量失控占用内存
+    static final int MAX_KEYS = 256;
+    // 所有采样键的样本总大小上限
+    private static final long DEFAULT_SAMPLE_BYTES = 32 * 1024 * 1024;
+    // 每个采样键的样本总大小达到字典大小的多少倍时不再等待样本数，直接训练
+    private static final int SAMPLE_BYTES_PER_DICT = 100;
+    // 采样超过该时间仍然凑不够样本的键在内存紧张时被放弃
+    private static final long SAMPLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final int sampleCount = RpcConfigUtil.getInt(RpcConfigEnum.ZSTD_DICT_SAMPLES, DEFAULT_SAMPLE_COUNT);
+    private final int dictSize = RpcConfigUtil.getInt(RpcConfigEnum.ZSTD_DICT_SIZE, DEFAULT_DICT_SIZE);
+    private final long maxSampleBytes = RpcConfigUtil.getLong(RpcConfigEnum.ZSTD_DICT_SAMPLE_BYTES, DEFAULT_SAMPLE_BYTES);
+    // 所有采样键当前保存的样本总大小
+    private final AtomicLong sampleBytes = new AtomicLong();
+    // 采样键 -> 采样状态
+    private final Map<String, Sampler> samplers = new ConcurrentHashMap<>();
+    // 训练比较耗时，放在单独的后台线程中进行，不阻塞 IO 线程
+    private final ExecutorService trainer = Executors.newSingleThreadExecutor(
+            ThreadPoolFactoryUtil.createThreadFactory("zstd-dict-trainer", true));
+
+    /**
+     * 记录一个消息体样本，并返回该采样键已经训练好的字典
+     * @param key 采样键
+     * @param body 未压缩的消息体，不会改变其读写索引
+     * @return 训练好的字典，尚未训练完成时返回 null
+     */
+    public ZstdDictionary sample(String key, ByteBuf body) {
+        Sampler sampler = samplers.get(key);
+        if (sampler == null && samplers.size() >= MAX_KEYS) {
+            return null;
+        }
+        if (sampler == null) {
+            sampler = samplers.computeIfAbsent(key, k -> new Sampler());
+        }
+        return sample(key, sampler, body);
+    }
+
+    private ZstdDictionary sample(String key, Sampler sampler, ByteBuf body) {
+        ZstdDictionary dictionary = sampler.dictionary;
+        if (dictionary != null || body.readableBytes() > MAX_SAMPLE_SIZE) {
+            return dictionary;
+        }
+        if (sampler.isClosed() || !reserve(body.readableBytes())) {
+            return null;
+        }
+        List<byte[]> samples = sampler.offer(ByteBufUtil.getBytes(body), sampleCount,
+                (long) dictSize * SAMPLE_BYTES_PER_DICT);
+        if (samples == null) {
+            return null;
+        }
+        if (samples.isEmpty()) {
+            // 采样键已经结束采样，退回占用的额度
+            sampleBytes.addAndGet(-body.readableBytes());
+            return null;
+        }
+        trainer.execute(() -> {
+            try {
+                train(key, sampler, samples);
+            } finally {
+                release(samples);
+            }
+        });
+        return null;
+    }
+
+    /**
+     * 为一个样本占用额度，达到上限时先放弃长时间凑不够样本的键
+     * @param size 样本大小
+     * @return 占用成功时返回 true
+     */
+    private boolean reserve(int size) {
+        if (sampleBytes.addAndGet(size) <= maxSampleBytes) {
+            return true;
+        }
+        sampleBytes.addAndGet(-size);
+        long now = System.nanoTime();
+        samplers.forEach((key, sampler) -> {
+            List<byte[]> abandoned = sampler.abandonIfStale(now);
+            if (abandoned != null) {
+                release(abandoned);
+                log.info("abandon zstd dictionary sampling for [{}] after [{}] samples", key, abandoned.size());
+            }
+        });
+        if (sampleBytes.addAndGet(size) <= maxSampleBytes) {
+            return true;
+        }
+        sampleBytes.addAndGet(-size);
+        return false;
+    }
+
+    private void release(List<byte[]> samples) {
+        long size = 0;
+        for (byte[] sample : samples) {
+            size += sample.length;
+        }
+        sampleBytes.addAndGet(-size);
+    }
+
+    private void train(String key, Sampler sampler, List<byte[]> samples) {
+        try {
+            int totalSize = 0;
+            for (byte[] sample : samples) {
+                totalSize += sample.length;
+            }
+            ZstdDictTrainer dictTrainer = new ZstdDictTrainer(totalSize, dictSize);
+            for (byte[] sample : samples) {
+                dictTrainer.addSample(sample);
+            }
+            ZstdDictionary dictionary = new ZstdDictionary(dictTrainer.trainSamples());
+            sampler.dictionary = dictionary;
+            log.info("zstd dictionary [{}] trained for [{}] from [{}] samples", dictionary.getId(), key, samples.size());
+        } catch (Exception e) {
+            // 样本太少或者太相似时训练会失败，该采样键不再使用字典
+            log.warn("train zstd dictionary for [{}] failed: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 单个采样键的样本集合
+     */
+    private static final class Sampler {
+        // 开始采样的时间
+        private final long startNanos = System.nanoTime();
+        private List<byte[]> samples = new ArrayList<>();
+        // 已经收集的样本总大小
+        private long bytes;
+        private volatile ZstdDictionary dictionary;
+
+        /**
+         * 是否已经结束采样：已经开始训练或者被放弃
+         */
+        private synchronized boolean isClosed() {
+            return samples == null;
+        }
+
+        /**
+         * 添加一个样本
+         * @return 样本数或者样本总大小达到要求时返回全部样本，交由调用方训练；已经结束采样时返回空列表，
+         * 样本没有被保存；否则返回 null
+         */
+        private synchronized List<byte[]> offer(byte[] sample, int sampleCount, long sampleBytes) {
+            if (samples == null) {
+                return Collections.emptyList();
+            }
+            samples.add(sample);
+            bytes += sample.length;
+            if (samples.size() < sampleCount && bytes < sampleBytes) {
+                return null;
+            }
+            List<byte[]> full = samples;
+            // 置空后不再收集，训练只进行一次
+            samples = null;
+            return full;
+        }
+
+        /**
+         * 采样时间过长时放弃采样，该采样键不再使用字典
+         * @return 被放弃的样本，没有放弃时返回 null
+         */
+        private synchronized List<byte[]> abandonIfStale(long now) {
+            if (samples == null || now - startNanos < SAMPLE_TIMEOUT_NANOS) {
+                return null;
+            }
+            List<byte[]> abandoned = samples;
+            samples = null;
+            return abandoned;
+        }
+    }
+}
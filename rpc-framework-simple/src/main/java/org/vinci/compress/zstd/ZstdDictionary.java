@@ -0,0 +1,29 @@
+package org.vinci.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import lombok.Getter;
+
+/**
+ * 本端训练好的 Zstd 字典
+ * 字典 id 由训练器写入字典内容，压缩时会记录到每个 Zstd 帧的帧头中，
+ * 解压方据此找到对应的字典，因此每一帧都可以独立解压
+ */
+@Getter
+public final class ZstdDictionary {
+    // 字典 id
+    private final long id;
+    // 字典原始内容，连接建立后首次使用前发送给对端
+    private final byte[] content;
+    // 预处理过的压缩字典，可以在多个线程间共享；解压使用对端发来的字典，见 ZstdPeerDictionaries
+    private final ZstdDictCompress compressDict;
+
+    public ZstdDictionary(byte[] content) {
+        this.id = Zstd.getDictIdFromDict(content);
+        if (id == 0) {
+            throw new IllegalArgumentException("zstd dictionary has no dictionary id");
+        }
+        this.content = content;
+        this.compressDict = new ZstdDictCompress(content, ZstdCompress.LEVEL);
+    }
+}
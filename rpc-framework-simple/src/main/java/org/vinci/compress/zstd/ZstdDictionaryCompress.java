@@ -0,0 +1,107 @@
+package org.vinci.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 基于训练字典的 Zstd 压缩，用于服务名、方法名、类名和字段布局高度重复的小消息体
+ * <p>
+ * 编码器为每个采样键选择字典后调用 {@link #compress(ByteBuf, ZstdDictionary, ByteBufAllocator)}；
+ * 解码器调用 {@link #decompress(InputStream, ZstdPeerDictionaries)}，从帧头读出字典 id，
+ * 到 {@link ZstdPeerDictionaries} 中查找对端事先通过同一个连接发来的字典。
+ * 不带字典 id 的帧按普通 Zstd 帧解压，因此没有字典时也可以直接使用 SPI 的压缩方法
+ * </p>
+ * 带字典的帧都写入校验和，对端发来的字典与压缩时使用的不一致时解压失败，而不是得到错误的数据
+ */
+public class ZstdDictionaryCompress extends ZstdCompress {
+    // 每个线程复用一个带字典的压缩 / 解压上下文，每次使用前重新引用对应的字典
+    private static final ThreadLocal<ZstdCompressCtx> COMPRESS_CTX = ThreadLocal.withInitial(() ->
+            new ZstdCompressCtx().setLevel(LEVEL).setContentSize(true).setDictID(true).setChecksum(true));
+    private static final ThreadLocal<ZstdDecompressCtx> DECOMPRESS_CTX = ThreadLocal.withInitial(ZstdDecompressCtx::new);
+
+    /**
+     * 使用字典压缩消息体，源数据和压缩结果都使用分配器中的池化缓冲区，不为每个消息体申请数组
+     * @param body 需要压缩的消息体，不会改变其读写索引
+     * @param dictionary 字典
+     * @param alloc 分配压缩结果的分配器
+     * @return 压缩后的消息体，帧头中带有字典 id，由调用方释放
+     */
+    public ByteBuf compress(ByteBuf body, ZstdDictionary dictionary, ByteBufAllocator alloc) {
+        int length = body.readableBytes();
+        // 直接内存中的消息体先复制到池化的堆缓冲区，压缩接口需要数组
+        ByteBuf src = body.hasArray() ? body.retainedDuplicate()
+                : alloc.heapBuffer(length).writeBytes(body, body.readerIndex(), length);
+        int srcOffset = body.hasArray() ? src.arrayOffset() + src.readerIndex() : src.arrayOffset();
+        int bound = maxCompressedLength(length);
+        ByteBuf dst = alloc.heapBuffer(bound, bound);
+        try {
+            int n = COMPRESS_CTX.get().loadDict(dictionary.getCompressDict())
+                    .compressByteArray(dst.array(), dst.arrayOffset(), bound, src.array(), srcOffset, length);
+            dst.writerIndex(n);
+            ByteBuf compressed = dst;
+            dst = null;
+            return compressed;
+        } catch (ZstdException e) {
+            throw new RuntimeException("zstd dictionary compress error", e);
+        } finally {
+            src.release();
+            if (dst != null) {
+                dst.release();
+            }
+        }
+    }
+
+    /**
+     * 解压一个连接上收到的消息体
+     * @param in 压缩数据的输入流
+     * @param dictionaries 对端通过该连接发来的字典，没有收到过字典时为 null
+     * @return 解压输入流，关闭时归还缓冲区
+     */
+    public InputStream decompress(InputStream in, ZstdPeerDictionaries dictionaries) {
+        return decompress(in, (src, srcLength, dst, dstOffset, dstLength) ->
+                doDecompress(src, srcLength, dst, dstOffset, dstLength, dictionaries));
+    }
+
+    /**
+     * 不知道来自哪个连接，只能解压不带字典 id 的帧
+     */
+    @Override
+    protected void doDecompress(byte[] src, int srcLength, byte[] dst, int dstOffset, int dstLength) throws IOException {
+        doDecompress(src, srcLength, dst, dstOffset, dstLength, null);
+    }
+
+    private void doDecompress(byte[] src, int srcLength, byte[] dst, int dstOffset, int dstLength,
+                              ZstdPeerDictionaries dictionaries) throws IOException {
+        long dictId = Zstd.getDictIdFromFrame(src);
+        if (dictId == 0) {
+            super.doDecompress(src, srcLength, dst, dstOffset, dstLength);
+            return;
+        }
+        ZstdDictDecompress dictionary = dictionaries == null ? null : dictionaries.get(dictId);
+        if (dictionary == null) {
+            throw new IOException("unknown zstd dictionary: " + dictId);
+        }
+        try {
+            int n = DECOMPRESS_CTX.get().loadDict(dictionary)
+                    .decompressByteArray(dst, dstOffset, dstLength, src, 0, srcLength);
+            if (n != dstLength) {
+                throw new IOException("zstd uncompressed length mismatch, expected " + dstLength + " but was " + n);
+            }
+        } catch (ZstdException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    protected String name() {
+        return "zstd-dict";
+    }
+}
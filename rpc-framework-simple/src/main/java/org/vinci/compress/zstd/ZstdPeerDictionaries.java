@@ -0,0 +1,73 @@
+package org.vinci.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictDecompress;
+import io.netty.util.AttributeKey;
+import io.netty.util.collection.LongObjectHashMap;
+
+import java.io.IOException;
+
+/**
+ * 对端通过一个连接发来的 Zstd 字典，保存在连接的属性中，解压该连接上带字典 id 的帧时使用
+ * <p>
+ * 字典只在发来它的连接上有效，连接关闭时释放，对端不能用同一个 id 覆盖本端或者其他连接的字典；
+ * 每个连接能注册的字典数有上限，避免对端不断发送新字典占用内存
+ * </p>
+ * 只在连接的 EventLoop 中访问，不需要同步
+ */
+public final class ZstdPeerDictionaries {
+    public static final AttributeKey<ZstdPeerDictionaries> KEY = AttributeKey.valueOf("zstdPeerDictionaries");
+
+    // 每个连接最多注册的字典数，与发送方最多训练的采样键数相同
+    private static final int MAX_DICTIONARIES = ZstdDictionaries.MAX_KEYS;
+
+    // 字典 id -> 预处理过的解压字典
+    private final LongObjectHashMap<ZstdDictDecompress> dictionaries = new LongObjectHashMap<>();
+
+    /**
+     * 注册对端发来的字典，同一个 id 重复发来时保留第一次的字典
+     * @param content 字典内容
+     * @return 字典 id
+     * @throws IOException 字典内容不合法，或者连接上的字典数已经达到上限
+     */
+    public long register(byte[] content) throws IOException {
+        long id = Zstd.getDictIdFromDict(content);
+        if (id == 0) {
+            throw new IOException("zstd dictionary has no dictionary id");
+        }
+        if (dictionaries.containsKey(id)) {
+            return id;
+        }
+        if (dictionaries.size() >= MAX_DICTIONARIES) {
+            throw new IOException("too many zstd dictionaries on one connection, limit " + MAX_DICTIONARIES);
+        }
+        dictionaries.put(id, new ZstdDictDecompress(content));
+        return id;
+    }
+
+    /**
+     * 按字典 id 获取解压字典
+     * @param id 字典 id
+     * @return 解压字典，不存在时返回 null
+     */
+    ZstdDictDecompress get(long id) {
+        return dictionaries.get(id);
+    }
+
+    /**
+     * 已经注册的字典数
+     */
+    public int size() {
+        return dictionaries.size();
+    }
+
+    /**
+     * 释放全部字典持有的本地内存，连接关闭时调用
+     */
+    public void release() {
+        for (ZstdDictDecompress dictionary : dictionaries.values()) {
+            dictionary.close();
+        }
+        dictionaries.clear();
+    }
+}
@@ -21,6 +21,16 @@ public class RpcServiceConfig {
      */
     private String group = "";
 
+    /**
+     * 调用超时时间（毫秒），0 表示使用全局配置，只在客户端使用
+     */
+    private long timeout;
+
+    /**
+     * 集群容错策略，为空表示使用全局配置，只在客户端使用
+     */
+    private String cluster;
+
     /**
      * 目标服务
      */
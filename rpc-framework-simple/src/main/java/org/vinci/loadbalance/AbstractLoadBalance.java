@@ -3,7 +3,9 @@ package org.vinci.loadbalance;
 import org.vinci.remoting.dto.RpcRequest;
 import org.vinci.utils.CollectionUtil;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 抽象负载均衡类，实现了 LoadBalance 接口中的 selectServiceAddress 方法
@@ -27,6 +29,42 @@ public abstract class AbstractLoadBalance implements LoadBalance {
         return doSelect(serviceAddresses, rpcRequest);
     }
 
+    /**
+     * 跳过排除的地址选择一个服务地址，没有排除任何地址时与 {@link #selectServiceAddress(List, RpcRequest)} 相同
+     * @param serviceAddresses 服务地址列表
+     * @param excluded 排除的地址
+     * @param rpcRequest RPC 请求
+     * @return 被选中的服务地址
+     */
+    @Override
+    public String selectServiceAddress(List<String> serviceAddresses, Set<String> excluded, RpcRequest rpcRequest) {
+        if (excluded.isEmpty()) {
+            return selectServiceAddress(serviceAddresses, rpcRequest);
+        }
+        if (CollectionUtil.isEmpty(serviceAddresses)) {
+            return null;
+        }
+        return doSelect(serviceAddresses, excluded, rpcRequest);
+    }
+
+    /**
+     * 跳过排除的地址选择服务地址，默认先去掉排除的地址再交给 {@link #doSelect(List, RpcRequest)}
+     * 按地址列表缓存状态的子类应当覆盖该方法，在完整的地址列表上跳过排除的地址
+     * @param serviceAddresses 服务地址列表
+     * @param excluded 排除的地址，不为空
+     * @param rpcRequest RPC请求
+     * @return 被选中的服务地址
+     */
+    protected String doSelect(List<String> serviceAddresses, Set<String> excluded, RpcRequest rpcRequest) {
+        List<String> candidates = new ArrayList<>(serviceAddresses.size());
+        for (String serviceAddress : serviceAddresses) {
+            if (!excluded.contains(serviceAddress)) {
+                candidates.add(serviceAddress);
+            }
+        }
+        return selectServiceAddress(candidates.isEmpty() ? serviceAddresses : candidates, rpcRequest);
+    }
+
     /**
      * 选择服务地址的具体实现由子类完成
      * @param serviceAddresses 服务地址列表
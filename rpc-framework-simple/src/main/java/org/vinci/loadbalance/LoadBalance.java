@@ -4,6 +4,7 @@ import org.vinci.extension.SPI;
 import org.vinci.remoting.dto.RpcRequest;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * 通过 SPI 机制，为 RPC 框架提供不同的负载均衡算法
@@ -18,4 +19,15 @@ public interface LoadBalance {
      * @return 目标服务地址
      */
     String selectServiceAddress(List<String> serviceUrlList, RpcRequest rpcRequest);
+
+    /**
+     * 在现有的服务地址列表中选择一个，跳过排除的地址
+     * 排除的地址单独传入，地址列表本身保持不变，按地址列表缓存状态的算法不会因为排除而重建状态
+     *
+     * @param serviceUrlList 服务地址列表
+     * @param excluded 排除的地址，至少留下一个地址
+     * @param rpcRequest RPC 请求
+     * @return 目标服务地址
+     */
+    String selectServiceAddress(List<String> serviceUrlList, Set<String> excluded, RpcRequest rpcRequest);
 }
@@ -8,8 +8,10 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -31,6 +33,19 @@ public class ConsistentHashLoadBalance extends AbstractLoadBalance {
      */
     @Override
     protected String doSelect(List<String> serviceAddresses, RpcRequest rpcRequest) {
+        return doSelect(serviceAddresses, Collections.emptySet(), rpcRequest);
+    }
+
+    /**
+     * 哈希环始终按完整的服务地址列表构建，排除的地址在选择时跳过，由顺时针方向的下一个地址接替，
+     * 对冲和重试时不需要重建哈希环，其他请求的落点也不受影响
+     * @param serviceAddresses 服务地址列表
+     * @param excluded 排除的地址
+     * @param rpcRequest RPC请求
+     * @return 适合当前RPC请求的服务地址
+     */
+    @Override
+    protected String doSelect(List<String> serviceAddresses, Set<String> excluded, RpcRequest rpcRequest) {
         // 计算服务地址列表的标识哈希值
         int identityHashCode = System.identityHashCode(serviceAddresses);
         // 通过RPC请求构建RPC服务名称
@@ -43,7 +58,7 @@ public class ConsistentHashLoadBalance extends AbstractLoadBalance {
             selector = selectors.get(rpcServiceName);
         }
         // 通过RPC服务名称和参数列表选择一个服务地址
-        return selector.select(rpcServiceName + Arrays.stream(rpcRequest.getParameters()));
+        return selector.select(rpcServiceName + Arrays.stream(rpcRequest.getParameters()), excluded);
     }
 
     /**
@@ -115,28 +130,44 @@ public class ConsistentHashLoadBalance extends AbstractLoadBalance {
          * 根据输入的服务名 rpcServiceKey，将其转化为字节数组并进行哈希
          * 然后调用 selectForKey 方法来选择服务地址
          * @param rpcServiceKey
+         * @param excluded 排除的地址
          * @return 服务地址
          */
-        public String select(String rpcServiceKey) {
+        public String select(String rpcServiceKey, Set<String> excluded) {
             // 将输入的服务名 rpcServiceKey 转化为字节数组
             byte[] digest = md5(rpcServiceKey);
             // 对字节数组进行哈希, 然后调用 selectForKey 方法来选择服务地址
-            return selectForKey(hash(digest, 0));
+            return selectForKey(hash(digest, 0), excluded);
         }
 
         /**
          * 根据输入的哈希值 hashCode，返回服务地址
          * @param hashCode
+         * @param excluded 排除的地址
          * @return 服务地址
          */
-        public String selectForKey(long hashCode) {
+        public String selectForKey(long hashCode, Set<String> excluded) {
             // 在虚拟节点列表中选择最小的大于等于输入的哈希值的节点
             Map.Entry<Long, String> entry = virtualInvokers.tailMap(hashCode, true).firstEntry();
             // 如果没有这样的节点，则选择列表中的第一个节点
             if (entry == null) {
                 entry = virtualInvokers.firstEntry();
             }
-            // 返回选择的节点的值，即服务地址
+            if (excluded.isEmpty()) {
+                // 返回选择的节点的值，即服务地址
+                return entry.getValue();
+            }
+            // 沿顺时针方向找到第一个没有被排除的节点，绕回起点时说明全部被排除
+            for (String invoker : virtualInvokers.tailMap(entry.getKey(), true).values()) {
+                if (!excluded.contains(invoker)) {
+                    return invoker;
+                }
+            }
+            for (String invoker : virtualInvokers.headMap(entry.getKey(), false).values()) {
+                if (!excluded.contains(invoker)) {
+                    return invoker;
+                }
+            }
             return entry.getValue();
         }
     }
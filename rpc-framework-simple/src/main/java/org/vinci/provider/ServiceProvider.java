@@ -1,6 +1,8 @@
 package org.vinci.provider;
 
 import org.vinci.config.RpcServiceConfig;
+import org.vinci.remoting.handler.MethodInvoker;
+import org.vinci.remoting.handler.MethodKey;
 
 /**
  * 服务提供者接口，定义了向服务提供者注册、获取和发布服务的方法
@@ -20,6 +22,13 @@ public interface ServiceProvider {
      */
     Object getService(String rpcServiceName);
 
+    /**
+     * 获取服务方法编译好的调用器
+     * @param methodKey 方法标识
+     * @return 调用器，服务未注册或者方法不属于服务接口时返回 null
+     */
+    MethodInvoker getMethodInvoker(MethodKey methodKey);
+
     /**
      * 发布服务到注册中心
      * @param rpcServiceConfig 服务相关属性
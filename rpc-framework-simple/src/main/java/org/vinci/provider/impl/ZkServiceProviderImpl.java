@@ -1,14 +1,19 @@
 package org.vinci.provider.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.vinci.annotation.Batchable;
 import org.vinci.config.RpcServiceConfig;
 import org.vinci.enums.RpcErrorMessageEnum;
 import org.vinci.exception.RpcException;
 import org.vinci.extension.ExtensionLoader;
 import org.vinci.provider.ServiceProvider;
 import org.vinci.registry.ServiceRegistry;
+import org.vinci.remoting.handler.CollapsingMethodInvoker;
+import org.vinci.remoting.handler.MethodInvoker;
+import org.vinci.remoting.handler.MethodKey;
 import org.vinci.remoting.transport.netty.server.NettyRpcServer;
 
+import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
@@ -26,6 +31,11 @@ public class ZkServiceProviderImpl implements ServiceProvider {
     private final Map<String, Object> serviceMap;
     // 存储已经注册过的服务名
     private final Set<String> registeredService;
+    /**
+     * key: 方法标识（接口名、分组、版本、方法签名）
+     * value: 添加服务时编译好的方法调用器
+     */
+    private final Map<MethodKey, MethodInvoker> methodInvokers;
     // 服务注册中心
     private final ServiceRegistry serviceRegistry;
 
@@ -33,6 +43,7 @@ public class ZkServiceProviderImpl implements ServiceProvider {
     public ZkServiceProviderImpl() {
         serviceMap = new ConcurrentHashMap<>();
         registeredService = ConcurrentHashMap.newKeySet();
+        methodInvokers = new ConcurrentHashMap<>();
         serviceRegistry = ExtensionLoader.getExtensionLoader(ServiceRegistry.class).getExtension("zk");
     }
 
@@ -50,6 +61,8 @@ public class ZkServiceProviderImpl implements ServiceProvider {
         // 添加服务实现对象到 Map 中
         registeredService.add(rpcServiceName);
         serviceMap.put(rpcServiceName, rpcServiceConfig.getService());
+        // 为服务接口的每个方法编译调用器
+        compileMethodInvokers(rpcServiceConfig);
         // 输出日志，记录服务名和服务实现的接口名
         log.info("Add service: {} and interfaces:{}", rpcServiceName, rpcServiceConfig.getService().getClass().getInterfaces());
     }
@@ -71,6 +84,55 @@ public class ZkServiceProviderImpl implements ServiceProvider {
         return service;
     }
 
+    @Override
+    public MethodInvoker getMethodInvoker(MethodKey methodKey) {
+        return methodInvokers.get(methodKey);
+    }
+
+    /**
+     * 为服务接口的每个方法编译调用器，方法在服务实现类上解析，调用时不再按名称查找方法
+     * 标注了 {@link Batchable} 的方法使用合并调用的调用器
+     * @param rpcServiceConfig rpc 服务相关属性
+     */
+    private void compileMethodInvokers(RpcServiceConfig rpcServiceConfig) {
+        Object service = rpcServiceConfig.getService();
+        String rpcServiceName = rpcServiceConfig.getRpcServiceName();
+        Class<?> serviceInterface = service.getClass().getInterfaces()[0];
+        for (Method interfaceMethod : serviceInterface.getMethods()) {
+            try {
+                Method method = service.getClass().getMethod(interfaceMethod.getName(), interfaceMethod.getParameterTypes());
+                MethodKey methodKey = new MethodKey(rpcServiceConfig.getServiceName(), method.getName(),
+                        method.getParameterTypes(), rpcServiceConfig.getGroup(), rpcServiceConfig.getVersion());
+                methodInvokers.put(methodKey, createMethodInvoker(rpcServiceName, service, interfaceMethod, method));
+            } catch (NoSuchMethodException e) {
+                log.warn("service [{}] does not implement method [{}]", rpcServiceName, interfaceMethod);
+            }
+        }
+    }
+
+    /**
+     * 创建方法的调用器，@Batchable 配置错误时记录错误并按普通方法调用
+     * @param rpcServiceName 服务名称
+     * @param service 服务实例对象
+     * @param interfaceMethod 服务接口中的方法
+     * @param method 服务实现类中的方法
+     * @return 方法的调用器
+     */
+    private MethodInvoker createMethodInvoker(String rpcServiceName, Object service, Method interfaceMethod, Method method) {
+        Batchable batchable = method.isAnnotationPresent(Batchable.class)
+                ? method.getAnnotation(Batchable.class) : interfaceMethod.getAnnotation(Batchable.class);
+        if (batchable != null) {
+            try {
+                Method batchMethod = CollapsingMethodInvoker.batchMethodOf(service, method, batchable);
+                log.info("service [{}] collapses calls of [{}] into [{}]", rpcServiceName, method.getName(), batchMethod.getName());
+                return new CollapsingMethodInvoker(rpcServiceName, service, method, batchMethod, batchable);
+            } catch (IllegalArgumentException e) {
+                log.error("invalid @Batchable on [{}]: {}", method, e.getMessage());
+            }
+        }
+        return new MethodInvoker(rpcServiceName, service, method);
+    }
+
     /**
      * 发布服务，将服务添加到服务映射中，并注册到服务注册中心
      *
@@ -0,0 +1,18 @@
+package org.vinci.proxy;
+
+import org.vinci.extension.SPI;
+
+/**
+ * 创建服务接口的客户端代理，实现类通过 rpc.proxy 配置选择
+ */
+@SPI
+public interface ProxyFactory {
+    /**
+     * 创建代理对象，代理对象的方法调用都交给 invoker 发送
+     * @param interfaceClass 服务接口
+     * @param invoker 发送请求的客户端代理
+     * @param <T> 接口类型
+     * @return 实现了服务接口的代理对象
+     */
+    <T> T getProxy(Class<T> interfaceClass, RpcClientProxy invoker);
+}
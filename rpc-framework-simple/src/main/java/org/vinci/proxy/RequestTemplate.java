@@ -0,0 +1,82 @@
+package org.vinci.proxy;
+
+import lombok.Getter;
+import org.vinci.remoting.dto.RpcRequest;
+import org.vinci.stream.Publisher;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务接口中一个方法的请求模板
+ * <p>
+ * 接口名、方法名、参数类型、分组、版本、超时时间、容错策略和调用方式在第一次调用前确定下来，之后每次调用只需要填入参数；
+ * 模板 id 在客户端内唯一，编码器按 id 直接找到方法在连接上绑定的方法 id，不需要每次计算方法签名的哈希值
+ * </p>
+ */
+@Getter
+public class RequestTemplate {
+    // 模板 id 计数器，0 表示请求不是由模板生成的
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    // 模板 id
+    private final int id;
+    // 服务接口中的方法
+    private final Method method;
+    private final String interfaceName;
+    private final String methodName;
+    private final Class<?>[] paramTypes;
+    private final String group;
+    private final String version;
+    // 调用超时时间（毫秒）
+    private final long timeout;
+    // 集群容错策略
+    private final String cluster;
+    // 返回值为流
+    private final boolean streamResult;
+    // 返回值或者参数中有流
+    private final boolean streamCall;
+    // 返回值为 CompletableFuture 或 CompletionStage，不等待响应
+    private final boolean async;
+
+    public RequestTemplate(Method method, String group, String version, long timeout, String cluster) {
+        this.id = NEXT_ID.incrementAndGet();
+        this.method = method;
+        this.interfaceName = method.getDeclaringClass().getName();
+        this.methodName = method.getName();
+        this.paramTypes = method.getParameterTypes();
+        this.group = group;
+        this.version = version;
+        this.timeout = timeout;
+        this.cluster = cluster;
+        Class<?> returnType = method.getReturnType();
+        this.streamResult = returnType == Publisher.class;
+        this.async = returnType == CompletableFuture.class || returnType == CompletionStage.class;
+        boolean streamArgument = false;
+        for (Class<?> paramType : paramTypes) {
+            streamArgument |= paramType == Publisher.class;
+        }
+        this.streamCall = streamResult || streamArgument;
+    }
+
+    /**
+     * 按模板生成请求，参数类型数组由所有请求共用，不会被修改
+     * @param args 方法参数
+     * @return RPC 请求
+     */
+    public RpcRequest newRequest(Object[] args) {
+        return RpcRequest.builder()
+                .templateId(id)
+                .interfaceName(interfaceName)
+                .methodName(methodName)
+                .parameters(args)
+                .paramTypes(paramTypes)
+                .group(group)
+                .version(version)
+                .timeout(timeout)
+                .cluster(cluster)
+                .build();
+    }
+}
@@ -0,0 +1,166 @@
+package org.vinci.proxy;
+
+import org.vinci.remoting.dto.RpcRequest;
+import org.vinci.remoting.dto.RpcResponse;
+import org.vinci.remoting.transport.netty.client.NettyRpcClient;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 批量调用：先收集一组调用，再一起发送
+ * <p>
+ * 调用可以来自多个 {@link RpcClientProxy}，发往同一个服务提供者的调用合并成一条批量调用消息，
+ * 服务端并发执行后以一条消息返回全部响应，N 个调用只需要一次往返。
+ * 每个调用有各自的结果和超时时间，一个调用失败不影响其他调用
+ * </p>
+ * <pre>
+ * RpcBatch batch = new RpcBatch();
+ * List&lt;CompletableFuture&lt;User&gt;&gt; users = new ArrayList&lt;&gt;();
+ * for (long id : ids) {
+ *     users.add(batch.add(userProxy, UserService.class, "getUser", id));
+ * }
+ * RpcBatchResult result = batch.execute().join();
+ * </pre>
+ * 只支持 Netty 实现的批量发送，其他实现逐个发送；流式调用不能加入批量调用。同一个批量调用不是线程安全的
+ */
+public class RpcBatch {
+    // 收集的调用
+    private final List<Call> calls = new ArrayList<>();
+    // 是否已经发送
+    private boolean executed;
+
+    /**
+     * 加入一个调用
+     * @param proxy 发起调用的代理，决定服务的分组、版本和超时时间
+     * @param method 服务接口中的方法
+     * @param args 方法参数
+     * @param <T> 方法返回值类型，返回值为 CompletableFuture 的方法为其中的值的类型
+     * @return 调用结果，批量调用发送后完成
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> add(RpcClientProxy proxy, Method method, Object... args) {
+        if (executed) {
+            throw new IllegalStateException("batch has been executed");
+        }
+        RequestTemplate template = proxy.template(method);
+        if (template.isStreamCall()) {
+            throw new IllegalArgumentException("method " + method.getName() + " can't be invoked in batch");
+        }
+        Call call = new Call(proxy, template.newRequest(args));
+        calls.add(call);
+        return (CompletableFuture<T>) call.result;
+    }
+
+    /**
+     * 按方法名和参数查找方法并加入调用
+     * @param proxy 发起调用的代理
+     * @param serviceInterface 服务接口
+     * @param methodName 方法名
+     * @param args 方法参数，基本类型的参数传入对应的包装类型
+     * @param <T> 方法返回值类型
+     * @return 调用结果，批量调用发送后完成
+     */
+    public <T> CompletableFuture<T> add(RpcClientProxy proxy, Class<?> serviceInterface, String methodName, Object... args) {
+        return add(proxy, RpcClientProxy.findMethod(serviceInterface, methodName, args), args);
+    }
+
+    /**
+     * 已经加入的调用数
+     */
+    public int size() {
+        return calls.size();
+    }
+
+    /**
+     * 发送全部调用，只能发送一次
+     * @return 全部调用结束后完成，包含每个调用的结果或者异常，不会以异常结束
+     */
+    public CompletableFuture<RpcBatchResult> execute() {
+        if (executed) {
+            throw new IllegalStateException("batch has been executed");
+        }
+        executed = true;
+        // Netty 实现 -> 由它发送的调用
+        Map<NettyRpcClient, List<Call>> callsByClient = new LinkedHashMap<>();
+        for (Call call : calls) {
+            if (call.proxy.getRpcRequestTransport() instanceof NettyRpcClient) {
+                callsByClient.computeIfAbsent((NettyRpcClient) call.proxy.getRpcRequestTransport(), k -> new ArrayList<>()).add(call);
+            } else {
+                call.forward(call.proxy.sendAsync(call.request));
+            }
+        }
+        callsByClient.forEach((client, clientCalls) -> {
+            List<RpcRequest> requests = new ArrayList<>(clientCalls.size());
+            for (Call call : clientCalls) {
+                requests.add(call.request);
+            }
+            List<CompletableFuture<RpcResponse<Object>>> responses;
+            try {
+                responses = client.sendRpcRequests(requests);
+            } catch (RuntimeException e) {
+                clientCalls.forEach(call -> call.result.completeExceptionally(e));
+                return;
+            }
+            for (int i = 0; i < clientCalls.size(); i++) {
+                Call call = clientCalls.get(i);
+                call.forward(call.proxy.complete(responses.get(i), call.request));
+            }
+        });
+        CompletableFuture<?>[] results = new CompletableFuture<?>[calls.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = calls.get(i).result;
+        }
+        return CompletableFuture.allOf(results).handle((v, e) -> {
+            List<Object> values = new ArrayList<>(results.length);
+            List<Throwable> errors = new ArrayList<>(results.length);
+            for (CompletableFuture<?> result : results) {
+                // allOf 完成时每个调用都已经结束，join 不会阻塞
+                try {
+                    values.add(result.join());
+                    errors.add(null);
+                } catch (CompletionException ex) {
+                    values.add(null);
+                    errors.add(ex.getCause());
+                } catch (CancellationException ex) {
+                    values.add(null);
+                    errors.add(ex);
+                }
+            }
+            return new RpcBatchResult(values, errors);
+        });
+    }
+
+    /**
+     * 批量调用中的一个调用
+     */
+    private static final class Call {
+        private final RpcClientProxy proxy;
+        private final RpcRequest request;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Call(RpcClientProxy proxy, RpcRequest request) {
+            this.proxy = proxy;
+            this.request = request;
+        }
+
+        /**
+         * 以实际调用的结果完成返回给调用方的 future，异常不再包装为 CompletionException
+         */
+        private void forward(CompletableFuture<Object> future) {
+            future.whenComplete((value, e) -> {
+                if (e == null) {
+                    result.complete(value);
+                } else {
+                    result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.vinci.proxy;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量调用的结果，按加入的顺序保存每个调用的返回值或者异常
+ */
+public class RpcBatchResult {
+    private final List<Object> values;
+    private final List<Throwable> errors;
+
+    RpcBatchResult(List<Object> values, List<Throwable> errors) {
+        this.values = Collections.unmodifiableList(values);
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * 调用数
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * 第 index 个调用是否成功
+     */
+    public boolean isSuccess(int index) {
+        return errors.get(index) == null;
+    }
+
+    /**
+     * 第 index 个调用的返回值，调用失败时为 null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getValue(int index) {
+        return (T) values.get(index);
+    }
+
+    /**
+     * 第 index 个调用的异常，调用成功时为 null
+     */
+    public Throwable getError(int index) {
+        return errors.get(index);
+    }
+
+    /**
+     * 失败的调用数
+     */
+    public int failureCount() {
+        int count = 0;
+        for (Throwable error : errors) {
+            if (error != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -2,21 +2,33 @@ package org.vinci.proxy;
 
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.vinci.annotation.RpcMethod;
 import org.vinci.config.RpcServiceConfig;
+import org.vinci.enums.RpcConfigEnum;
 import org.vinci.enums.RpcErrorMessageEnum;
 import org.vinci.enums.RpcResponseCodeEnum;
 import org.vinci.exception.RpcException;
+import org.vinci.extension.ExtensionLoader;
 import org.vinci.remoting.dto.RpcRequest;
 import org.vinci.remoting.dto.RpcResponse;
 import org.vinci.remoting.transport.RpcRequestTransport;
 import org.vinci.remoting.transport.netty.client.NettyRpcClient;
 import org.vinci.remoting.transport.socket.SocketRpcClient;
+import org.vinci.utils.RpcConfigUtil;
+import org.vinci.utils.RuntimeUtil;
+import org.vinci.utils.StringUtil;
+import org.vinci.utils.concurrent.threadpool.CustomThreadPoolConfig;
+import org.vinci.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
 
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
-import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * 动态代理类
@@ -35,14 +47,40 @@ public class RpcClientProxy implements InvocationHandler {
     // 表示rpc服务的配置信息
     private final RpcServiceConfig rpcServiceConfig;
 
+    // 异步调用完成后在该线程池中执行回调，不占用 Netty 的 EventLoop
+    private final Executor callbackExecutor;
+
+    // 全局配置的调用超时时间（毫秒）
+    private static final long DEFAULT_TIMEOUT = RpcConfigUtil.getLong(RpcConfigEnum.REQUEST_TIMEOUT, 5000);
+
+    // 全局配置的集群容错策略
+    private static final String DEFAULT_CLUSTER = RpcConfigUtil.getString(RpcConfigEnum.CLUSTER, "failfast");
+
+    // 默认使用 JDK 动态代理
+    private static final String DEFAULT_PROXY = "jdk";
+
+    // 方法 -> 请求模板
+    private final ConcurrentMap<Method, RequestTemplate> templates = new ConcurrentHashMap<>();
+
     /**
      * 构造函数，初始化RpcClientProxy对象。
      * @param rpcRequestTransport 用于发送请求的RpcRequestTransport对象
      * @param rpcServiceConfig rpc服务的配置信息
      */
     public RpcClientProxy(RpcRequestTransport rpcRequestTransport, RpcServiceConfig rpcServiceConfig) {
+        this(rpcRequestTransport, rpcServiceConfig, CallbackExecutorHolder.DEFAULT);
+    }
+
+    /**
+     * 构造函数，初始化RpcClientProxy对象。
+     * @param rpcRequestTransport 用于发送请求的RpcRequestTransport对象
+     * @param rpcServiceConfig rpc服务的配置信息
+     * @param callbackExecutor 执行异步调用回调的线程池
+     */
+    public RpcClientProxy(RpcRequestTransport rpcRequestTransport, RpcServiceConfig rpcServiceConfig, Executor callbackExecutor) {
         this.rpcRequestTransport = rpcRequestTransport;
         this.rpcServiceConfig = rpcServiceConfig;
+        this.callbackExecutor = callbackExecutor;
     }
 
     /**
@@ -50,19 +88,20 @@ public class RpcClientProxy implements InvocationHandler {
      * @param rpcRequestTransport 用于发送请求的RpcRequestTransport对象
      */
     public RpcClientProxy(RpcRequestTransport rpcRequestTransport) {
-        this.rpcRequestTransport = rpcRequestTransport;
-        this.rpcServiceConfig = new RpcServiceConfig();
+        this(rpcRequestTransport, new RpcServiceConfig());
     }
 
     /**
      * 返回一个实现了指定接口的代理对象
+     * 代理对象由 rpc.proxy 配置的 {@link ProxyFactory} 创建，默认使用 JDK 动态代理
      * @param clazz 指定的接口
      * @param <T> 接口类型
      * @return 实现了指定接口的代理对象
      */
-    @SuppressWarnings("unchecked")
     public <T> T getProxy(Class<T> clazz) {
-        return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz}, this);
+        return ExtensionLoader.getExtensionLoader(ProxyFactory.class)
+                .getExtension(RpcConfigUtil.getString(RpcConfigEnum.PROXY, DEFAULT_PROXY))
+                .getProxy(clazz, this);
     }
 
     /**
@@ -73,26 +112,43 @@ public class RpcClientProxy implements InvocationHandler {
      * @return 方法的返回值
      * @throws Exception 如果调用方法失败
      */
-    @SneakyThrows
-    @SuppressWarnings("unchecked")
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) {
-        log.info("invoked method: [{}]", method.getName());
+        return invoke(template(method), args);
+    }
+
+    /**
+     * 按请求模板发起调用，JDK 动态代理和生成的桩类都通过这里发送请求
+     * @param template 方法的请求模板
+     * @param args 方法的参数
+     * @return 方法的返回值
+     */
+    @SneakyThrows
+    @SuppressWarnings("unchecked")
+    public Object invoke(RequestTemplate template, Object[] args) {
+        log.debug("invoked method: [{}]", template.getMethodName());
+        checkTransport(template);
         // 构造 RPC 请求对象
-        RpcRequest rpcRequest = RpcRequest.builder().methodName(method.getName())
-                .parameters(args)
-                .interfaceName(method.getDeclaringClass().getName())
-                .paramTypes(method.getParameterTypes())
-                .requestId(UUID.randomUUID().toString())
-                .group(rpcServiceConfig.getGroup())
-                .version(rpcServiceConfig.getVersion())
-                .build();
+        RpcRequest rpcRequest = template.newRequest(args);
+        if (template.isStreamResult()) {
+            // 返回值为流：直接返回发布者，订阅时才发起调用，元素随到随交给订阅者
+            return ((NettyRpcClient) rpcRequestTransport).sendStreamRequest(rpcRequest);
+        }
+        if (template.isAsync()) {
+            // 返回值为 CompletableFuture：不等待响应，直接返回
+            return sendAsync(rpcRequest);
+        }
         // 构造 RPC 响应对象
         RpcResponse<Object> rpcResponse = null;
         if (rpcRequestTransport instanceof NettyRpcClient) {
             // 如果使用 Netty 实现，则发送异步请求，并等待响应
             CompletableFuture<RpcResponse<Object>> completableFuture = (CompletableFuture<RpcResponse<Object>>) rpcRequestTransport.sendRpcRequest(rpcRequest);
-            rpcResponse = completableFuture.get();
+            try {
+                rpcResponse = completableFuture.get();
+            } catch (ExecutionException e) {
+                // 超时、连接关闭等异常直接抛给调用方
+                throw e.getCause();
+            }
         }
         if (rpcRequestTransport instanceof SocketRpcClient) {
             // 如果使用 Socket 实现，则发送同步请求，并等待响应
@@ -104,6 +160,205 @@ public class RpcClientProxy implements InvocationHandler {
         return rpcResponse.getData();
     }
 
+    /**
+     * 异步调用服务接口中的方法，不需要创建代理对象，调用方线程不等待响应
+     * 按方法名和参数查找方法，同名方法有多个时按参数个数和类型匹配，适用于网关等按名称转发调用的场景
+     * @param serviceInterface 服务接口
+     * @param methodName 方法名
+     * @param args 方法参数
+     * @param <T> 方法返回值类型
+     * @return 调用结果，在回调线程池中完成
+     */
+    public <T> CompletableFuture<T> invokeAsync(Class<?> serviceInterface, String methodName, Object... args) {
+        return invokeAsync(findMethod(serviceInterface, methodName, args), args);
+    }
+
+    /**
+     * 异步调用服务接口中的方法，调用方线程不等待响应
+     * 方法本身的返回值为 CompletableFuture 时，结果即为其中的值
+     * @param method 服务接口中的方法
+     * @param args 方法参数
+     * @param <T> 方法返回值类型
+     * @return 调用结果，在回调线程池中完成
+     * @throws IllegalArgumentException 返回值为流的方法，应当通过代理调用
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> invokeAsync(Method method, Object... args) {
+        RequestTemplate template = template(method);
+        if (template.isStreamResult()) {
+            throw new IllegalArgumentException("stream call should be invoked through proxy: " + method);
+        }
+        checkTransport(template);
+        return (CompletableFuture<T>) sendAsync(template.newRequest(args));
+    }
+
+    /**
+     * 获取方法的请求模板，第一次调用时创建
+     * @param method 服务接口中的方法
+     * @return 请求模板
+     */
+    public RequestTemplate template(Method method) {
+        RequestTemplate template = templates.get(method);
+        if (template == null) {
+            template = templates.computeIfAbsent(method, m -> new RequestTemplate(m, rpcServiceConfig.getGroup(),
+                    rpcServiceConfig.getVersion(), timeoutOf(m), clusterOf(m)));
+        }
+        return template;
+    }
+
+    /**
+     * 流式调用只支持 Netty 实现
+     * 参数中的流由传输层取出单独发送，返回值不是流时仍然同步等待响应
+     * @param template 方法的请求模板
+     * @throws IllegalStateException 流式调用使用了其它传输实现
+     */
+    private void checkTransport(RequestTemplate template) {
+        if (template.isStreamCall() && !(rpcRequestTransport instanceof NettyRpcClient)) {
+            throw new IllegalStateException("stream call is only supported by netty transport, current: "
+                    + rpcRequestTransport.getClass().getName());
+        }
+    }
+
+    /**
+     * 方法的调用超时时间，依次取 @RpcMethod、@RpcReference 和全局配置中大于 0 的值
+     * @param method 被调用的方法
+     * @return 超时时间（毫秒），0 或负数表示不超时
+     */
+    private long timeoutOf(Method method) {
+        RpcMethod rpcMethod = method.getAnnotation(RpcMethod.class);
+        if (rpcMethod != null && rpcMethod.timeout() > 0) {
+            return rpcMethod.timeout();
+        }
+        return rpcServiceConfig.getTimeout() > 0 ? rpcServiceConfig.getTimeout() : DEFAULT_TIMEOUT;
+    }
+
+    /**
+     * 方法的集群容错策略，依次取 @RpcMethod、@RpcReference 和全局配置中不为空的值
+     * @param method 被调用的方法
+     * @return 策略名称
+     */
+    private String clusterOf(Method method) {
+        RpcMethod rpcMethod = method.getAnnotation(RpcMethod.class);
+        if (rpcMethod != null && !StringUtil.isBlank(rpcMethod.cluster())) {
+            return rpcMethod.cluster();
+        }
+        return !StringUtil.isBlank(rpcServiceConfig.getCluster()) ? rpcServiceConfig.getCluster() : DEFAULT_CLUSTER;
+    }
+
+    /**
+     * 发送请求，不等待响应
+     * 响应在 EventLoop 中到达，检查响应、完成返回的 future 都在回调线程池中进行，调用方的回调不会阻塞 IO 线程
+     * @param rpcRequest RPC 请求
+     * @return 方法的返回值
+     */
+    @SuppressWarnings("unchecked")
+    CompletableFuture<Object> sendAsync(RpcRequest rpcRequest) {
+        CompletableFuture<RpcResponse<Object>> responseFuture;
+        if (rpcRequestTransport instanceof NettyRpcClient) {
+            try {
+                responseFuture = (CompletableFuture<RpcResponse<Object>>) rpcRequestTransport.sendRpcRequest(rpcRequest);
+            } catch (RuntimeException e) {
+                // 服务发现、建立连接失败等同步抛出的异常同样通过 future 返回
+                responseFuture = new CompletableFuture<>();
+                responseFuture.completeExceptionally(e);
+            }
+        } else {
+            // Socket 实现只能同步发送，在回调线程池中等待响应
+            responseFuture = CompletableFuture.supplyAsync(
+                    () -> (RpcResponse<Object>) rpcRequestTransport.sendRpcRequest(rpcRequest), callbackExecutor);
+        }
+        return complete(responseFuture, rpcRequest);
+    }
+
+    /**
+     * 在回调线程池中检查响应，得到方法的返回值
+     * @param responseFuture 响应
+     * @param rpcRequest RPC 请求
+     * @return 方法的返回值
+     */
+    CompletableFuture<Object> complete(CompletableFuture<RpcResponse<Object>> responseFuture, RpcRequest rpcRequest) {
+        return responseFuture.thenApplyAsync(rpcResponse -> {
+            check(rpcResponse, rpcRequest);
+            return rpcResponse.getData();
+        }, callbackExecutor);
+    }
+
+    /**
+     * 发送请求使用的传输实现
+     */
+    RpcRequestTransport getRpcRequestTransport() {
+        return rpcRequestTransport;
+    }
+
+    /**
+     * 按方法名和参数查找服务接口中的方法
+     * @param serviceInterface 服务接口
+     * @param methodName 方法名
+     * @param args 方法参数
+     * @return 唯一匹配的方法
+     */
+    static Method findMethod(Class<?> serviceInterface, String methodName, Object[] args) {
+        Method found = null;
+        for (Method method : serviceInterface.getMethods()) {
+            if (method.getName().equals(methodName) && acceptsArguments(method.getParameterTypes(), args)) {
+                if (found != null) {
+                    throw new IllegalArgumentException("ambiguous method " + methodName + " in " + serviceInterface.getName());
+                }
+                found = method;
+            }
+        }
+        if (found == null) {
+            throw new IllegalArgumentException("no method " + methodName + " in " + serviceInterface.getName() + " matches arguments");
+        }
+        return found;
+    }
+
+    /**
+     * 参数能否传给对应类型的形参，基本类型的形参接受对应的包装类型
+     * @param paramTypes 形参类型
+     * @param args 参数
+     * @return 能够传入时返回 true
+     */
+    private static boolean acceptsArguments(Class<?>[] paramTypes, Object[] args) {
+        int length = args == null ? 0 : args.length;
+        if (paramTypes.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (args[i] == null) {
+                if (paramTypes[i].isPrimitive()) {
+                    return false;
+                }
+            } else if (!wrap(paramTypes[i]).isInstance(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    /**
+     * 默认的回调线程池，线程在有回调时才启动；队列无界，回调不会被拒绝，否则返回的 future 永远不会完成
+     */
+    private static final class CallbackExecutorHolder {
+        private static final Executor DEFAULT;
+
+        static {
+            CustomThreadPoolConfig config = new CustomThreadPoolConfig();
+            int threads = RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_CALLBACK_THREADS, RuntimeUtil.cpus());
+            config.setCorePoolSize(threads);
+            config.setMaximumPoolSize(threads);
+            config.setWorkQueue(new LinkedBlockingQueue<>());
+            DEFAULT = ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent(config, "rpc-client-callback", true);
+        }
+    }
+
     /**
      * 检查请求和响应是否有效
      * @param rpcResponse
@@ -114,10 +369,6 @@ public class RpcClientProxy implements InvocationHandler {
         if (rpcResponse == null) {
             throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
         }
-        // 请求和响应不匹配
-        if (!rpcRequest.getRequestId().equals(rpcResponse.getRequestId())) {
-            throw new RpcException(RpcErrorMessageEnum.REQUEST_NOT_MATCH_RESPONSE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
-        }
         // 服务调用失败
         if (rpcResponse.getCode() == null || !rpcResponse.getCode().equals(RpcResponseCodeEnum.SUCCESS.getCode())) {
             throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
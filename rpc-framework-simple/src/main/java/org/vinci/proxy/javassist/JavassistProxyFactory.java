@@ -0,0 +1,139 @@
+package org.vinci.proxy.javassist;
+
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtConstructor;
+import javassist.CtField;
+import javassist.CtMethod;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+import javassist.bytecode.ClassFile;
+import lombok.extern.slf4j.Slf4j;
+import org.vinci.proxy.ProxyFactory;
+import org.vinci.proxy.RequestTemplate;
+import org.vinci.proxy.RpcClientProxy;
+import org.vinci.proxy.jdk.JdkProxyFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 使用 javassist 为每个服务接口生成桩类
+ * <p>
+ * 桩类直接实现服务接口，每个方法持有自己的请求模板，调用时把参数装进数组交给 {@link RpcClientProxy}，
+ * 没有 InvocationHandler 的反射分派，也不需要按 Method 查找模板。
+ * 桩类生成在接口所在的包中，生成失败时退回 JDK 动态代理
+ * </p>
+ */
+@Slf4j
+public class JavassistProxyFactory implements ProxyFactory {
+    // 桩类名称的序号，同名接口在不同类加载器中各自生成
+    private static final AtomicInteger STUB_ID = new AtomicInteger();
+
+    // 服务接口 -> 生成的桩类
+    private final ConcurrentMap<Class<?>, Stub> stubs = new ConcurrentHashMap<>();
+
+    private final JdkProxyFactory fallback = new JdkProxyFactory();
+
+    @Override
+    public <T> T getProxy(Class<T> interfaceClass, RpcClientProxy invoker) {
+        Stub stub;
+        try {
+            stub = stubs.computeIfAbsent(interfaceClass, JavassistProxyFactory::generate);
+        } catch (RuntimeException e) {
+            log.warn("generate stub for [{}] failed, fall back to jdk proxy", interfaceClass.getName(), e);
+            return fallback.getProxy(interfaceClass, invoker);
+        }
+        RequestTemplate[] templates = new RequestTemplate[stub.methods.length];
+        for (int i = 0; i < templates.length; i++) {
+            templates[i] = invoker.template(stub.methods[i]);
+        }
+        try {
+            return interfaceClass.cast(stub.constructor.newInstance(invoker, templates));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("create stub for " + interfaceClass.getName() + " failed", e);
+        }
+    }
+
+    /**
+     * 生成桩类，第 i 个方法的实现为 return ($r) invoker.invoke(templates[i], $args)
+     * @param interfaceClass 服务接口
+     * @return 桩类
+     */
+    private static Stub generate(Class<?> interfaceClass) {
+        List<Method> methods = new ArrayList<>();
+        for (Method method : interfaceClass.getMethods()) {
+            // 默认方法和静态方法保留接口中的实现
+            if (Modifier.isAbstract(method.getModifiers())) {
+                methods.add(method);
+            }
+        }
+        ClassPool pool = new ClassPool(true);
+        pool.appendClassPath(new LoaderClassPath(interfaceClass.getClassLoader()));
+        pool.appendClassPath(new ClassClassPath(RpcClientProxy.class));
+        try {
+            CtClass stubClass = pool.makeClass(interfaceClass.getName() + "$RpcStub" + STUB_ID.incrementAndGet());
+            stubClass.addInterface(pool.get(interfaceClass.getName()));
+            stubClass.addField(CtField.make("private final " + RpcClientProxy.class.getName() + " invoker;", stubClass));
+            stubClass.addField(CtField.make("private final " + RequestTemplate.class.getName() + "[] templates;", stubClass));
+            CtConstructor constructor = new CtConstructor(
+                    new CtClass[]{pool.get(RpcClientProxy.class.getName()), pool.get(RequestTemplate.class.getName() + "[]")}, stubClass);
+            constructor.setBody("{ this.invoker = $1; this.templates = $2; }");
+            stubClass.addConstructor(constructor);
+            for (int i = 0; i < methods.size(); i++) {
+                Method method = methods.get(i);
+                Class<?>[] paramTypes = method.getParameterTypes();
+                CtClass[] params = new CtClass[paramTypes.length];
+                for (int j = 0; j < paramTypes.length; j++) {
+                    params[j] = ctClass(pool, paramTypes[j]);
+                }
+                CtMethod ctMethod = new CtMethod(ctClass(pool, method.getReturnType()), method.getName(), params, stubClass);
+                String call = "this.invoker.invoke(this.templates[" + i + "], $args)";
+                ctMethod.setBody(method.getReturnType() == void.class ? "{ " + call + "; }" : "{ return ($r) " + call + "; }");
+                stubClass.addMethod(ctMethod);
+            }
+            // JDK 9 之后通过接口的 Lookup 在同一个包中定义，JDK 8 直接由接口的类加载器定义
+            Class<?> generated = ClassFile.MAJOR_VERSION >= ClassFile.JAVA_9
+                    ? stubClass.toClass(interfaceClass)
+                    : stubClass.toClass(interfaceClass.getClassLoader(), interfaceClass.getProtectionDomain());
+            stubClass.detach();
+            Constructor<?> stubConstructor = generated.getConstructor(RpcClientProxy.class, RequestTemplate[].class);
+            log.info("generated stub [{}] for [{}]", generated.getName(), interfaceClass.getName());
+            return new Stub(stubConstructor, methods.toArray(new Method[0]));
+        } catch (Exception | LinkageError e) {
+            throw new IllegalStateException("generate stub for " + interfaceClass.getName() + " failed", e);
+        }
+    }
+
+    /**
+     * 类型在 javassist 中的表示，数组类型的名称形如 java.lang.String[][]
+     */
+    private static CtClass ctClass(ClassPool pool, Class<?> type) throws NotFoundException {
+        StringBuilder dims = new StringBuilder();
+        while (type.isArray()) {
+            dims.append("[]");
+            type = type.getComponentType();
+        }
+        return pool.get(type.getName() + dims);
+    }
+
+    /**
+     * 生成的桩类和它实现的方法，方法的顺序与桩类中模板的下标一致
+     */
+    private static final class Stub {
+        private final Constructor<?> constructor;
+        private final Method[] methods;
+
+        private Stub(Constructor<?> constructor, Method[] methods) {
+            this.constructor = constructor;
+            this.methods = methods;
+        }
+    }
+}
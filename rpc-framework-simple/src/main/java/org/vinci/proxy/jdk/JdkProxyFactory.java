@@ -0,0 +1,18 @@
+package org.vinci.proxy.jdk;
+
+import org.vinci.proxy.ProxyFactory;
+import org.vinci.proxy.RpcClientProxy;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * 使用 JDK 动态代理创建代理对象，默认的实现
+ * 每次调用都经过 InvocationHandler，再按 Method 查找请求模板
+ */
+public class JdkProxyFactory implements ProxyFactory {
+
+    @Override
+    public <T> T getProxy(Class<T> interfaceClass, RpcClientProxy invoker) {
+        return interfaceClass.cast(Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class<?>[]{interfaceClass}, invoker));
+    }
+}
@@ -4,6 +4,7 @@ import org.vinci.extension.SPI;
 import org.vinci.remoting.dto.RpcRequest;
 
 import java.net.InetSocketAddress;
+import java.util.Set;
 
 /**
  * 服务发现
@@ -17,4 +18,14 @@ public interface ServiceDiscovery {
      * @return service address
      */
     InetSocketAddress lookupService(RpcRequest rpcRequest);
+
+    /**
+     * 根据 rpcServiceName 获取远程服务地址，尽量不选择排除的地址，集群容错策略据此换一个服务提供者重试
+     * @param rpcRequest
+     * @param excluded 排除的地址，全部地址都被排除时仍然从中选择一个
+     * @return service address
+     */
+    default InetSocketAddress lookupService(RpcRequest rpcRequest, Set<InetSocketAddress> excluded) {
+        return lookupService(rpcRequest);
+    }
 }
@@ -2,9 +2,11 @@ package org.vinci.registry.zk;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.framework.CuratorFramework;
+import org.vinci.cluster.breaker.CircuitBreakers;
 import org.vinci.enums.RpcErrorMessageEnum;
 import org.vinci.exception.RpcException;
 import org.vinci.extension.ExtensionLoader;
+import org.vinci.factory.SingletonFactory;
 import org.vinci.loadbalance.LoadBalance;
 import org.vinci.registry.ServiceDiscovery;
 import org.vinci.registry.zk.util.CuratorUtils;
@@ -12,7 +14,10 @@ import org.vinci.remoting.dto.RpcRequest;
 import org.vinci.utils.CollectionUtil;
 
 import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 服务发现 (基于 Zookeeper 实现)
@@ -20,10 +25,13 @@ import java.util.List;
 @Slf4j
 public class ZkServiceDiscoveryImpl implements ServiceDiscovery {
     private final LoadBalance loadBalance;
+    // 服务提供者的熔断器
+    private final CircuitBreakers circuitBreakers;
 
     public ZkServiceDiscoveryImpl(){
         // 从扩展点中获取 LoadBalance 实现
         this.loadBalance = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension("loadBalance");
+        this.circuitBreakers = SingletonFactory.getInstance(CircuitBreakers.class);
     }
 
     /**
@@ -33,6 +41,18 @@ public class ZkServiceDiscoveryImpl implements ServiceDiscovery {
      */
     @Override
     public InetSocketAddress lookupService(RpcRequest rpcRequest) {
+        return lookupService(rpcRequest, Collections.emptySet());
+    }
+
+    /**
+     * 根据 Rpc 请求找到对应的服务地址，排除的地址和熔断中的地址不交给负载均衡选择
+     * 全部地址都在熔断中时不考虑熔断，不会因为熔断而找不到服务
+     * @param rpcRequest Rpc 请求对象
+     * @param excluded 排除的地址，全部地址都被排除时仍然从全部地址中选择
+     * @return InetSocketAddress 服务地址
+     */
+    @Override
+    public InetSocketAddress lookupService(RpcRequest rpcRequest, Set<InetSocketAddress> excluded) {
         // 获取 rpcServiceName
         String rpcServiceName = rpcRequest.getRpcServiceName();
         // 获取与 ZooKeeper 建立连接的 zkClient
@@ -44,11 +64,49 @@ public class ZkServiceDiscoveryImpl implements ServiceDiscovery {
         if (CollectionUtil.isEmpty(serviceUrlList)){
             throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND);
         }
-        // 通过负载均衡算法选择服务地址
-        String targetServiceUrl = loadBalance.selectServiceAddress(serviceUrlList, rpcRequest);
+        // 通过负载均衡算法选择服务地址，地址列表保持不变，跳过的地址单独传入
+        String targetServiceUrl = loadBalance.selectServiceAddress(serviceUrlList, skipped(serviceUrlList, excluded), rpcRequest);
         log.info("Successfully found the service address: [{}]", targetServiceUrl);
-        // 将地址字符串解析成主机名和端口
-        String[] socketAddressArray = targetServiceUrl.split(":");
+        InetSocketAddress target = toAddress(targetServiceUrl);
+        // 熔断中的服务提供者被选中时，本次调用作为探测调用
+        circuitBreakers.onSelected(target);
+        return target;
+    }
+
+    /**
+     * 负载均衡需要跳过的地址：排除的地址和熔断中的地址，全部熔断时只跳过排除的地址，全部排除时不跳过任何地址
+     * 地址列表本身不变，按地址列表缓存哈希环的一致性哈希负载均衡在对冲和重试时不需要重建哈希环
+     * @param serviceUrlList 全部地址
+     * @param excluded 排除的地址
+     * @return 需要跳过的地址，至少留下一个地址
+     */
+    private Set<String> skipped(List<String> serviceUrlList, Set<InetSocketAddress> excluded) {
+        Set<String> skipped = new HashSet<>();
+        Set<String> ejected = new HashSet<>();
+        for (String serviceUrl : serviceUrlList) {
+            InetSocketAddress address = toAddress(serviceUrl);
+            if (excluded.contains(address)) {
+                skipped.add(serviceUrl);
+            } else if (!circuitBreakers.isAvailable(address)) {
+                ejected.add(serviceUrl);
+            }
+        }
+        if (skipped.size() == serviceUrlList.size()) {
+            return Collections.emptySet();
+        }
+        if (skipped.size() + ejected.size() < serviceUrlList.size()) {
+            skipped.addAll(ejected);
+        }
+        return skipped;
+    }
+
+    /**
+     * 将地址字符串解析成主机名和端口
+     * @param serviceUrl 地址字符串，host:port
+     * @return 服务地址
+     */
+    private static InetSocketAddress toAddress(String serviceUrl) {
+        String[] socketAddressArray = serviceUrl.split(":");
         String host = socketAddressArray[0];
         int port = Integer.parseInt(socketAddressArray[1]);
         return new InetSocketAddress(host, port);
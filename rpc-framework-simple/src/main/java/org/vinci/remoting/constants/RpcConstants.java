@@ -13,16 +13,20 @@ public class RpcConstants {
      * 魔数. 用于验证 RpcMessage
      */
     public static final byte[] MAGIC_NUMBER = {(byte) 'g', (byte) 'r', (byte) 'p', (byte) 'c'};
+    /**
+     * 魔数按大端序组成的 int 值，编解码时一次读写 4 个字节
+     */
+    public static final int MAGIC_CODE = ('g' << 24) | ('r' << 16) | ('p' << 8) | 'c';
     /**
      * 默认字符集编码
      */
     public static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
-    // 版本信息
-    public static final byte VERSION = 1;
+    // 版本信息，版本 2 的请求 id 为 8 字节
+    public static final byte VERSION = 2;
     /**
      * 数据总长度（头部 + 消息体）
      */
-    public static final byte TOTAL_LENGTH = 16;
+    public static final byte TOTAL_LENGTH = 20;
     /**
      * 请求消息类型
      */
@@ -39,10 +43,34 @@ public class RpcConstants {
      * 心跳响应消息类型
      */
     public static final byte HEARTBEAT_RESPONSE_TYPE = 4;
+    /**
+     * 压缩字典消息类型，消息体为字典原始内容，在连接上首次使用该字典前发送
+     */
+    public static final byte DICTIONARY_TYPE = 5;
+    /**
+     * 方法绑定消息类型，消息体为 RpcMethodBinding，在连接上首次调用某个方法前发送
+     */
+    public static final byte METHOD_BIND_TYPE = 6;
+    /**
+     * 流式调用消息类型，消息体为 RpcStreamMessage，请求 id 为所属调用的 id
+     */
+    public static final byte STREAM_TYPE = 7;
+    /**
+     * 批量消息类型，消息体中依次是多条同类型的请求或响应，各自带有请求 id，整体只压缩一次
+     */
+    public static final byte BATCH_TYPE = 8;
+    /**
+     * 批量调用消息类型，消息体格式与批量消息相同；服务端并发执行其中的请求，全部完成后以一条批量消息返回响应
+     */
+    public static final byte MULTI_CALL_TYPE = 9;
+    /**
+     * 分块标志，消息类型带有该标志时表示消息体还有后续分块
+     */
+    public static final byte CHUNK_FLAG = (byte) 0x80;
     /**
      * 头部长度
      */
-    public static final int HEAD_LENGTH = 16;
+    public static final int HEAD_LENGTH = 20;
     /**
      * 心跳ping消息
      */
@@ -55,5 +83,9 @@ public class RpcConstants {
      * 最大帧长度
      */
     public static final int MAX_FRAME_LENGTH = 8 * 1024 * 1024;
+    /**
+     * 单条消息体的最大长度，分块消息拼接后、压缩的消息体解压后都不能超过
+     */
+    public static final int MAX_MESSAGE_LENGTH = 1024 * 1024 * 1024;
 
 }
@@ -0,0 +1,64 @@
+package org.vinci.remoting.dispatcher;
+
+import lombok.extern.slf4j.Slf4j;
+import org.vinci.utils.concurrent.threadpool.CustomThreadPoolConfig;
+import org.vinci.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dispatcher 的抽象类，记录被拒绝的请求数，并提供创建有界线程池的方法
+ */
+@Slf4j
+public abstract class AbstractDispatcher implements Dispatcher {
+    // key: 线程池名称，value: 被拒绝的请求数
+    private final ConcurrentMap<String, LongAdder> rejectedCounts = new ConcurrentHashMap<>();
+
+    @Override
+    public Map<String, Long> getRejectedCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        rejectedCounts.forEach((pool, count) -> counts.put(pool, count.sum()));
+        return counts;
+    }
+
+    /**
+     * 记录一次拒绝，拒绝次数每翻一倍打印一次日志，避免过载时日志刷屏
+     *
+     * @param pool  线程池名称
+     * @param cause 拒绝的原因
+     * @return 原异常，调用方直接抛出
+     */
+    protected RejectedExecutionException rejected(String pool, RejectedExecutionException cause) {
+        LongAdder count = rejectedCounts.computeIfAbsent(pool, k -> new LongAdder());
+        count.increment();
+        long total = count.sum();
+        if (Long.bitCount(total) == 1) {
+            log.warn("dispatcher [{}] is full, {} requests rejected so far", pool, total);
+        }
+        return cause;
+    }
+
+    /**
+     * 创建固定线程数、有界队列的线程池，队列满时抛出 RejectedExecutionException
+     * 线程池登记在 ThreadPoolFactoryUtil 中，服务端关闭时一起关闭
+     *
+     * @param pool    线程池名称，同时作为线程名前缀
+     * @param threads 线程数
+     * @param queues  队列容量
+     * @return 线程池
+     */
+    protected static ExecutorService newBoundedPool(String pool, int threads, int queues) {
+        CustomThreadPoolConfig config = new CustomThreadPoolConfig();
+        config.setCorePoolSize(threads);
+        config.setMaximumPoolSize(threads);
+        config.setWorkQueue(new ArrayBlockingQueue<>(Math.max(1, queues)));
+        return ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent(pool, config);
+    }
+}
@@ -0,0 +1,15 @@
+package org.vinci.remoting.dispatcher;
+
+import org.vinci.remoting.handler.MethodInvoker;
+
+/**
+ * 直接在 IO 线程中执行请求，没有线程切换的开销
+ * 只适用于只做内存计算、不会阻塞的方法，阻塞会拖慢同一个 IO 线程上的所有连接
+ */
+public class DirectDispatcher extends AbstractDispatcher {
+
+    @Override
+    public void dispatch(MethodInvoker invoker, Runnable task) {
+        task.run();
+    }
+}
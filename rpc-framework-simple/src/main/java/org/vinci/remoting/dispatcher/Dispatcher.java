@@ -0,0 +1,34 @@
+package org.vinci.remoting.dispatcher;
+
+import org.vinci.extension.SPI;
+import org.vinci.remoting.handler.MethodInvoker;
+
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 通过 SPI 机制，为服务端提供不同的请求执行方式
+ * <p>
+ * 请求在 IO 线程中解码、查找到目标方法后交给 Dispatcher，由它决定在哪个线程中调用目标方法并发送响应。
+ * 除 direct 外，每种方式都有容量上限，超过上限的请求直接拒绝，由服务端返回失败响应，不会无限堆积
+ * </p>
+ */
+@SPI
+public interface Dispatcher {
+
+    /**
+     * 执行一个请求
+     *
+     * @param invoker 请求的目标方法，按服务隔离的方式据此选择线程池
+     * @param task    调用目标方法并发送响应的任务
+     * @throws RejectedExecutionException 超过容量上限
+     */
+    void dispatch(MethodInvoker invoker, Runnable task);
+
+    /**
+     * 被拒绝的请求数
+     *
+     * @return key: 线程池名称，value: 被拒绝的请求数
+     */
+    Map<String, Long> getRejectedCounts();
+}
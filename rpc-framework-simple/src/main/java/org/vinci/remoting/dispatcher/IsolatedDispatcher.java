@@ -0,0 +1,39 @@
+package org.vinci.remoting.dispatcher;
+
+import org.vinci.annotation.RpcService;
+import org.vinci.extension.ExtensionLoader;
+import org.vinci.remoting.handler.MethodInvoker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 每个服务独占一个有界线程池（舱壁隔离），慢服务占满自己的线程后只拒绝自己的请求，不影响其他服务
+ * 线程数和队列容量在服务的 {@link RpcService} 注解中声明，没有声明线程数的服务使用共享线程池
+ */
+public class IsolatedDispatcher extends AbstractDispatcher {
+    // 线程池名称前缀
+    private static final String POOL_PREFIX = "rpc-dispatcher-";
+
+    // key: rpc 服务名称，value: 服务独占的线程池
+    private final ConcurrentMap<String, ExecutorService> executors = new ConcurrentHashMap<>();
+
+    @Override
+    public void dispatch(MethodInvoker invoker, Runnable task) {
+        RpcService rpcService = invoker.getService().getClass().getAnnotation(RpcService.class);
+        if (rpcService == null || rpcService.threads() <= 0) {
+            ExtensionLoader.getExtensionLoader(Dispatcher.class).getExtension("shared").dispatch(invoker, task);
+            return;
+        }
+        String pool = POOL_PREFIX + invoker.getRpcServiceName();
+        ExecutorService executor = executors.computeIfAbsent(pool, k -> newBoundedPool(k, rpcService.threads(),
+                rpcService.queues() > 0 ? rpcService.queues() : rpcService.threads()));
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            throw rejected(pool, e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.vinci.remoting.dispatcher;
+
+import org.vinci.annotation.RpcService;
+import org.vinci.enums.RpcConfigEnum;
+import org.vinci.extension.ExtensionLoader;
+import org.vinci.remoting.handler.MethodInvoker;
+import org.vinci.utils.RpcConfigUtil;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 为每个服务选择执行请求的 Dispatcher
+ * <p>
+ * 服务在 {@link RpcService} 中指定了执行方式时使用指定的方式，声明了线程数时使用 isolated，
+ * 否则使用 rpc.dispatcher 配置的方式，默认 shared。选择结果按服务缓存
+ * </p>
+ */
+public class ServiceDispatchers {
+    // 默认的执行方式
+    private static final String DEFAULT_DISPATCHER = RpcConfigUtil.getString(RpcConfigEnum.DISPATCHER, "shared");
+
+    // key: rpc 服务名称，value: 服务使用的 Dispatcher
+    private final ConcurrentMap<String, Dispatcher> dispatchers = new ConcurrentHashMap<>();
+
+    /**
+     * 选择请求的目标方法所在服务使用的 Dispatcher
+     * @param invoker 请求的目标方法
+     * @return Dispatcher
+     */
+    public Dispatcher select(MethodInvoker invoker) {
+        return dispatchers.computeIfAbsent(invoker.getRpcServiceName(), k -> ExtensionLoader
+                .getExtensionLoader(Dispatcher.class).getExtension(dispatcherName(invoker.getService())));
+    }
+
+    private static String dispatcherName(Object service) {
+        RpcService rpcService = service.getClass().getAnnotation(RpcService.class);
+        if (rpcService != null && !rpcService.dispatcher().isEmpty()) {
+            return rpcService.dispatcher();
+        }
+        if (rpcService != null && rpcService.threads() > 0) {
+            return "isolated";
+        }
+        return DEFAULT_DISPATCHER;
+    }
+}
@@ -0,0 +1,34 @@
+package org.vinci.remoting.dispatcher;
+
+import org.vinci.enums.RpcConfigEnum;
+import org.vinci.remoting.handler.MethodInvoker;
+import org.vinci.utils.RpcConfigUtil;
+import org.vinci.utils.RuntimeUtil;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 所有服务共用一个有界线程池，默认的执行方式
+ */
+public class SharedDispatcher extends AbstractDispatcher {
+    // 线程池名称
+    private static final String POOL = "rpc-dispatcher-shared";
+
+    private final ExecutorService executor;
+
+    public SharedDispatcher() {
+        int threads = RpcConfigUtil.getInt(RpcConfigEnum.DISPATCHER_THREADS, RuntimeUtil.cpus() * 2);
+        int queues = RpcConfigUtil.getInt(RpcConfigEnum.DISPATCHER_QUEUES, 1024);
+        executor = newBoundedPool(POOL, threads, queues);
+    }
+
+    @Override
+    public void dispatch(MethodInvoker invoker, Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            throw rejected(POOL, e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.vinci.remoting.dispatcher;
+
+import lombok.extern.slf4j.Slf4j;
+import org.vinci.enums.RpcConfigEnum;
+import org.vinci.extension.ExtensionLoader;
+import org.vinci.remoting.handler.MethodInvoker;
+import org.vinci.utils.RpcConfigUtil;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 每个请求一个虚拟线程，适合大量阻塞等待下游的服务，不需要为阻塞预留大量平台线程
+ * <p>
+ * 虚拟线程没有队列，通过信号量限制同时执行的请求数，超过上限的请求直接拒绝。
+ * 虚拟线程需要 JDK 21，更低版本的 JDK 上退回共享线程池
+ * </p>
+ */
+@Slf4j
+public class VirtualThreadDispatcher extends AbstractDispatcher {
+    // 名称，用于拒绝计数
+    private static final String POOL = "rpc-dispatcher-virtual";
+
+    // 虚拟线程执行器，JDK 21 以下为 null
+    private final ExecutorService executor;
+    // 同时执行的请求数
+    private final Semaphore permits;
+
+    public VirtualThreadDispatcher() {
+        executor = VirtualThreads.newThreadPerTaskExecutor(POOL);
+        permits = new Semaphore(RpcConfigUtil.getInt(RpcConfigEnum.DISPATCHER_QUEUES, 1024));
+        if (executor == null) {
+            log.warn("virtual threads require JDK 21+, fall back to shared dispatcher");
+        }
+    }
+
+    @Override
+    public void dispatch(MethodInvoker invoker, Runnable task) {
+        if (executor == null) {
+            ExtensionLoader.getExtensionLoader(Dispatcher.class).getExtension("shared").dispatch(invoker, task);
+            return;
+        }
+        if (!permits.tryAcquire()) {
+            throw rejected(POOL, new RejectedExecutionException("too many concurrent requests"));
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw rejected(POOL, e);
+        }
+    }
+}
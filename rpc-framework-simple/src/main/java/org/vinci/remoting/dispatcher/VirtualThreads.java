@@ -0,0 +1,25 @@
+package org.vinci.remoting.dispatcher;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 创建虚拟线程执行器
+ * <p>
+ * 这是 JDK 8 ~ 20 上的版本，不支持虚拟线程。JDK 21 上构建时，src/main/java21 中的同名类编译到
+ * META-INF/versions/21 下（Multi-Release jar），在 JDK 21 上运行时替换本类
+ * </p>
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的执行器
+     * @param name 线程名前缀
+     * @return 执行器，不支持虚拟线程时返回 null
+     */
+    static ExecutorService newThreadPerTaskExecutor(String name) {
+        return null;
+    }
+}
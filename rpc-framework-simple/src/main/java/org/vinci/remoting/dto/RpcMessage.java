@@ -22,8 +22,8 @@ public class RpcMessage {
     // 压缩类型
     private byte compress;
 
-    // 请求ID
-    private int requestId;
+    // 请求ID，由客户端按连接分配，服务端在响应中原样带回
+    private long requestId;
 
     // 请求数据
     private Object data;
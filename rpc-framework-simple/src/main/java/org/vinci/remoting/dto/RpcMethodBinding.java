@@ -0,0 +1,35 @@
+package org.vinci.remoting.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Builder
+@ToString
+// 方法绑定消息，客户端在一个连接上首次调用某个方法前发送，为该方法分配连接内唯一的方法 id
+// 之后的请求只携带方法 id 和参数，不再携带接口名、方法名、参数类型等信息
+public class RpcMethodBinding implements Serializable {
+    private static final long serialVersionUID = 4380417245937562134L;
+    // 方法 id，从 1 开始
+    private int methodId;
+    // 要调用的接口名称
+    private String interfaceName;
+    // 要调用的方法名称
+    private String methodName;
+    // 方法的参数类型列表
+    private Class<?>[] paramTypes;
+    // 服务版本
+    private String version;
+    // 服务分组
+    private String group;
+
+    /**
+     * 获取RPC服务名称
+     */
+    public String getRpcServiceName() {
+        return this.getInterfaceName() + this.getGroup() + this.getVersion();
+    }
+}
@@ -7,13 +7,13 @@ import java.io.Serializable;
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
-@Builder
+@Builder(toBuilder = true)
 @ToString
 // RPC 请求实体类, 包含要调用的目标方法, 类的名称, 参数等数据
 public class RpcRequest implements Serializable {
     private static final long serialVersionUID = 1905122041950251207L;
-    // 请求ID
-    private String requestId;
+    // 方法 id，大于 0 时表示该方法已经通过 RpcMethodBinding 在连接上绑定，下面的接口名、方法名等字段为空
+    private int methodId;
     // 要调用的接口名称
     private String interfaceName;
     // 要调用的方法名称
@@ -27,6 +27,12 @@ public class RpcRequest implements Serializable {
     private String version;
     // group 处理一个接口有多个类实现的情况
     private String group;
+    // 调用超时时间（毫秒），0 表示不超时，只在客户端使用，不发送给服务端
+    private transient long timeout;
+    // 生成请求的模板 id，0 表示没有模板，编码器据此查找方法 id，不发送给服务端
+    private transient int templateId;
+    // 集群容错策略的名称，为空时使用全局配置，不发送给服务端
+    private transient String cluster;
     /**
      * 获取RPC服务名称
      */
@@ -18,8 +18,6 @@ import java.io.Serializable;
 */
 public class RpcResponse<T> implements Serializable {
     private static final long serialVersionUID = 715745410605631233L;
-    // 请求ID
-    private String requestId;
     // 响应码
     private Integer code;
     // 响应消息
@@ -30,11 +28,10 @@ public class RpcResponse<T> implements Serializable {
     /**
      * 构造成功的响应对象
      */
-    public static <T> RpcResponse<T> success(T data, String requestId){
+    public static <T> RpcResponse<T> success(T data){
         RpcResponse<T> response = new RpcResponse<T>();
         response.setCode(RpcResponseCodeEnum.SUCCESS.getCode());
         response.setMessage(RpcResponseCodeEnum.SUCCESS.getMessage());
-        response.setRequestId(requestId);
         if (null != data){
             response.setData(data);
         }
@@ -0,0 +1,14 @@
+package org.vinci.remoting.dto;
+
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.io.Serializable;
+
+@NoArgsConstructor
+@ToString
+// 请求参数中流的占位符，流中的元素以流信号的形式在同一个请求 id 上单独发送
+// 服务端收到后替换为接收该流的发布者
+public class RpcStreamArgument implements Serializable {
+    private static final long serialVersionUID = -2318905346750123466L;
+}
@@ -0,0 +1,56 @@
+package org.vinci.remoting.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Builder
+@ToString
+// 流式调用的信号，消息头中的请求 id 即所属调用的 id
+// 元素、结束、异常由发送方发出，请求元素、取消由接收方发出
+public class RpcStreamMessage implements Serializable {
+    private static final long serialVersionUID = 6127735094208867329L;
+
+    // 一个元素
+    public static final byte NEXT = 1;
+    // 流正常结束
+    public static final byte COMPLETE = 2;
+    // 流以异常结束
+    public static final byte ERROR = 3;
+    // 接收方请求 demand 个元素
+    public static final byte REQUEST = 4;
+    // 接收方取消订阅
+    public static final byte CANCEL = 5;
+
+    // 信号类型
+    private byte signal;
+    // NEXT 信号携带的元素
+    private Object data;
+    // REQUEST 信号请求的元素数量
+    private long demand;
+    // ERROR 信号携带的异常信息
+    private String error;
+
+    public static RpcStreamMessage next(Object data) {
+        return RpcStreamMessage.builder().signal(NEXT).data(data).build();
+    }
+
+    public static RpcStreamMessage complete() {
+        return RpcStreamMessage.builder().signal(COMPLETE).build();
+    }
+
+    public static RpcStreamMessage error(String error) {
+        return RpcStreamMessage.builder().signal(ERROR).error(error).build();
+    }
+
+    public static RpcStreamMessage request(long demand) {
+        return RpcStreamMessage.builder().signal(REQUEST).demand(demand).build();
+    }
+
+    public static RpcStreamMessage cancel() {
+        return RpcStreamMessage.builder().signal(CANCEL).build();
+    }
+}
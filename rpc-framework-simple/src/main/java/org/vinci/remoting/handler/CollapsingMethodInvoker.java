@@ -0,0 +1,210 @@
+package org.vinci.remoting.handler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.vinci.annotation.Batchable;
+import org.vinci.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 标注了 {@link Batchable} 的方法的调用器
+ * <p>
+ * 调用时不直接执行目标方法，而是把参数加入当前批次，立即返回结果的 future，调用线程随即释放；
+ * 批次在第一个调用到达后等待一个窗口，或者凑满最大数量后，以去重后的参数列表调用一次批量方法，
+ * 再把结果按参数分发给各个调用。服务端对返回 {@link CompletionStage} 的调用在完成后才发送响应
+ * </p>
+ * 与 {@link org.vinci.remoting.transport.netty.codec.RpcMessageBatcher} 一样按调用到达的平均间隔决定是否等待：
+ * 窗口内预计等不到两个新调用时不等待，在当前线程中直接以单个参数调用批量方法，调用稀疏时不增加延迟
+ */
+@Slf4j
+public class CollapsingMethodInvoker extends MethodInvoker {
+    // 所有合并方法共用的等待窗口定时器
+    private static final ScheduledExecutorService WINDOW_TIMER = Executors.newSingleThreadScheduledExecutor(
+            ThreadPoolFactoryUtil.createThreadFactory("rpc-batch-window", true));
+    // 窗口到期的批次在该线程池中调用批量方法，不占用定时器线程
+    private static final ExecutorService BATCH_CALL_POOL = ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent("rpc-batch-call-pool");
+
+    // 批量方法
+    private final MethodInvoker batchInvoker;
+    private final long windowNanos;
+    private final int maxSize;
+
+    // 当前批次，访问时需要持有当前对象的锁
+    private List<PendingCall> pending = new ArrayList<>();
+    // 当前批次的窗口定时任务
+    private ScheduledFuture<?> windowTimeout;
+    // 调用到达的平均间隔（纳秒），按指数加权移动平均计算
+    private long avgIntervalNanos = Long.MAX_VALUE >> 1;
+    // 上一个调用的到达时间
+    private long lastArrivalNanos = System.nanoTime();
+
+    public CollapsingMethodInvoker(String rpcServiceName, Object service, Method method, Method batchMethod,
+                                   Batchable batchable) {
+        super(rpcServiceName, service, method);
+        this.batchInvoker = new MethodInvoker(rpcServiceName, service, batchMethod);
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, batchable.windowMicros()));
+        this.maxSize = Math.max(1, batchable.maxSize());
+    }
+
+    /**
+     * 查找 {@link Batchable} 指定的批量方法
+     * @param service 服务实例对象
+     * @param method 标注的方法
+     * @param batchable 注解
+     * @return 批量方法
+     * @throws IllegalArgumentException 方法不是单参数方法，或者找不到参数为 List 的批量方法
+     */
+    public static Method batchMethodOf(Object service, Method method, Batchable batchable) {
+        if (method.getParameterCount() != 1) {
+            throw new IllegalArgumentException("@Batchable method " + method.getName() + " must have exactly one parameter");
+        }
+        for (Method candidate : service.getClass().getMethods()) {
+            if (candidate.getName().equals(batchable.value()) && candidate.getParameterCount() == 1
+                    && candidate.getParameterTypes()[0].isAssignableFrom(ArrayList.class)) {
+                return candidate;
+            }
+        }
+        throw new IllegalArgumentException("batch method " + batchable.value() + "(List) not found for " + method.getName());
+    }
+
+    /**
+     * 把参数加入当前批次
+     * @param args 方法参数，只有一个
+     * @return 该调用的结果
+     */
+    @Override
+    public Object invoke(Object[] args) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        List<PendingCall> full = null;
+        synchronized (this) {
+            long now = System.nanoTime();
+            avgIntervalNanos += (now - lastArrivalNanos - avgIntervalNanos) >> 3;
+            lastArrivalNanos = now;
+            pending.add(new PendingCall(args == null ? null : args[0], result));
+            if (pending.size() >= maxSize || (pending.size() == 1 && avgIntervalNanos * 2 > windowNanos)) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                windowTimeout = WINDOW_TIMER.schedule(this::windowExpired, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (full != null) {
+            // 批次已满或者不值得等待，在当前线程中调用
+            invokeBatch(full);
+        }
+        return result;
+    }
+
+    /**
+     * 窗口到期，调用当前批次
+     */
+    private void windowExpired() {
+        List<PendingCall> calls;
+        synchronized (this) {
+            calls = takePending();
+        }
+        if (!calls.isEmpty()) {
+            BATCH_CALL_POOL.execute(() -> invokeBatch(calls));
+        }
+    }
+
+    /**
+     * 取出当前批次，取消它的窗口定时任务
+     * @return 当前批次
+     */
+    private List<PendingCall> takePending() {
+        List<PendingCall> calls = pending;
+        pending = new ArrayList<>();
+        if (windowTimeout != null) {
+            windowTimeout.cancel(false);
+            windowTimeout = null;
+        }
+        return calls;
+    }
+
+    /**
+     * 以去重后的参数调用批量方法，结果分发给各个调用
+     * @param calls 批次中的调用
+     */
+    private void invokeBatch(List<PendingCall> calls) {
+        // 参数 -> 使用该参数的调用
+        Map<Object, List<CompletableFuture<Object>>> callsByKey = new LinkedHashMap<>();
+        for (PendingCall call : calls) {
+            callsByKey.computeIfAbsent(call.key, k -> new ArrayList<>(1)).add(call.result);
+        }
+        List<Object> keys = new ArrayList<>(callsByKey.keySet());
+        Object result;
+        try {
+            result = batchInvoker.invoke(new Object[]{keys});
+        } catch (InvocationTargetException | IllegalAccessException | RuntimeException e) {
+            failAll(calls, e instanceof InvocationTargetException && e.getCause() != null ? e.getCause() : e);
+            return;
+        }
+        log.debug("collapse [{}] calls of [{}] into one call", calls.size(), getMethod().getName());
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((value, e) -> {
+                if (e != null) {
+                    failAll(calls, e);
+                } else {
+                    distribute(calls, callsByKey, keys, value);
+                }
+            });
+        } else {
+            distribute(calls, callsByKey, keys, result);
+        }
+    }
+
+    /**
+     * 把批量方法的结果按参数分发给各个调用
+     * @param calls 批次中的调用
+     * @param callsByKey 参数 -> 使用该参数的调用
+     * @param keys 去重后的参数
+     * @param result 批量方法的结果
+     */
+    private void distribute(List<PendingCall> calls, Map<Object, List<CompletableFuture<Object>>> callsByKey,
+                            List<Object> keys, Object result) {
+        if (result instanceof Map) {
+            Map<?, ?> values = (Map<?, ?>) result;
+            callsByKey.forEach((key, futures) -> futures.forEach(f -> f.complete(values.get(key))));
+        } else if (result instanceof List && ((List<?>) result).size() == keys.size()) {
+            List<?> values = (List<?>) result;
+            for (int i = 0; i < keys.size(); i++) {
+                Object value = values.get(i);
+                callsByKey.get(keys.get(i)).forEach(f -> f.complete(value));
+            }
+        } else {
+            failAll(calls, new IllegalStateException("batch method " + batchInvoker.getMethod().getName()
+                    + " must return a List of " + keys.size() + " elements or a Map"));
+        }
+    }
+
+    private static void failAll(List<PendingCall> calls, Throwable cause) {
+        for (PendingCall call : calls) {
+            call.result.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * 批次中的一个调用
+     */
+    private static final class PendingCall {
+        private final Object key;
+        private final CompletableFuture<Object> result;
+
+        private PendingCall(Object key, CompletableFuture<Object> result) {
+            this.key = key;
+            this.result = result;
+        }
+    }
+}
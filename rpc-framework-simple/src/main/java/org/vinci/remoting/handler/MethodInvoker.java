@@ -0,0 +1,94 @@
+package org.vinci.remoting.handler;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * 已经解析好的服务方法，调用时不再需要查找服务和方法
+ * <p>
+ * 创建时把方法编译为绑定了服务实例、参数从数组展开的 {@link MethodHandle}，
+ * 调用时没有 Method.invoke 每次都要进行的访问检查和参数数组校验
+ * </p>
+ */
+@Getter
+public class MethodInvoker {
+    // 编译后的调用类型：(Object[]) -> Object
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+    // 无参方法的参数数组，客户端对无参方法发送的参数为 null
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    // 服务名称
+    private final String rpcServiceName;
+    // 服务实例对象
+    private final Object service;
+    // 目标方法
+    private final Method method;
+    // 编译后的目标方法
+    @Getter(AccessLevel.NONE)
+    private final MethodHandle handle;
+
+    public MethodInvoker(String rpcServiceName, Object service, Method method) {
+        this(rpcServiceName, service, method, compile(service, method));
+    }
+
+    private MethodInvoker(String rpcServiceName, Object service, Method method, MethodHandle handle) {
+        this.rpcServiceName = rpcServiceName;
+        this.service = service;
+        this.method = method;
+        this.handle = handle;
+    }
+
+    /**
+     * 不编译、直接反射调用的方法，用于只调用一次的方法，省去编译的开销
+     * @param rpcServiceName 服务名称
+     * @param service 服务实例对象
+     * @param method 目标方法
+     * @return 解析好的方法
+     */
+    public static MethodInvoker reflective(String rpcServiceName, Object service, Method method) {
+        return new MethodInvoker(rpcServiceName, service, method, null);
+    }
+
+    /**
+     * 调用目标方法
+     * @param args 方法参数
+     * @return 方法执行结果，返回值为 void 时为 null
+     * @throws InvocationTargetException 目标方法抛出异常，或者参数与方法签名不匹配
+     */
+    public Object invoke(Object[] args) throws InvocationTargetException, IllegalAccessException {
+        if (handle == null) {
+            return method.invoke(service, args);
+        }
+        try {
+            return (Object) handle.invokeExact(args == null ? EMPTY_ARGS : args);
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * 编译目标方法，服务类不可访问等情况下返回 null，调用时退回反射
+     * JDK 9 及以上 setAccessible 对未开放的模块抛出 InaccessibleObjectException，它是 RuntimeException，同样退回反射
+     * @param service 服务实例对象
+     * @param method 目标方法
+     * @return 编译后的方法
+     */
+    private static MethodHandle compile(Object service, Method method) {
+        try {
+            // 服务实现类可能不是 public 的，先取消访问检查
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method)
+                    .bindTo(service)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(INVOKER_TYPE);
+        } catch (IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+}
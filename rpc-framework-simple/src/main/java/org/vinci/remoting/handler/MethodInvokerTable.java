@@ -0,0 +1,37 @@
+package org.vinci.remoting.handler;
+
+import java.util.Arrays;
+
+/**
+ * 服务端一个连接上的方法调用表，下标为客户端分配的方法 id
+ * <p>
+ * 绑定和查找都在该连接的 IO 线程中进行，不需要同步；目标方法查找后才交给其他线程执行
+ * </p>
+ */
+public class MethodInvokerTable {
+    // 初始容量
+    private static final int INITIAL_CAPACITY = 16;
+
+    private MethodInvoker[] invokers = new MethodInvoker[INITIAL_CAPACITY];
+
+    /**
+     * 绑定方法 id
+     * @param methodId 方法 id
+     * @param invoker 解析好的方法
+     */
+    public void bind(int methodId, MethodInvoker invoker) {
+        if (methodId >= invokers.length) {
+            invokers = Arrays.copyOf(invokers, Math.max(methodId + 1, invokers.length << 1));
+        }
+        invokers[methodId] = invoker;
+    }
+
+    /**
+     * 按方法 id 查找
+     * @param methodId 方法 id
+     * @return 解析好的方法，未绑定时返回 null
+     */
+    public MethodInvoker get(int methodId) {
+        return methodId > 0 && methodId < invokers.length ? invokers[methodId] : null;
+    }
+}
@@ -0,0 +1,68 @@
+package org.vinci.remoting.handler;
+
+import org.vinci.remoting.dto.RpcMethodBinding;
+import org.vinci.remoting.dto.RpcRequest;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 方法的唯一标识：(接口, 分组, 版本, 方法签名)
+ * <p>
+ * 直接由请求中的字段组成，查找时不需要拼接服务名称等字符串，哈希值只计算一次
+ * </p>
+ */
+public final class MethodKey {
+    private final String interfaceName;
+    private final String methodName;
+    private final Class<?>[] paramTypes;
+    private final String group;
+    private final String version;
+    private final int hash;
+
+    public MethodKey(String interfaceName, String methodName, Class<?>[] paramTypes, String group, String version) {
+        this.interfaceName = interfaceName;
+        this.methodName = methodName;
+        this.paramTypes = paramTypes;
+        this.group = group;
+        this.version = version;
+        this.hash = Objects.hash(interfaceName, methodName, group, version) * 31 + Arrays.hashCode(paramTypes);
+    }
+
+    public static MethodKey of(RpcRequest rpcRequest) {
+        return new MethodKey(rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), rpcRequest.getParamTypes(),
+                rpcRequest.getGroup(), rpcRequest.getVersion());
+    }
+
+    public static MethodKey of(RpcMethodBinding binding) {
+        return new MethodKey(binding.getInterfaceName(), binding.getMethodName(), binding.getParamTypes(),
+                binding.getGroup(), binding.getVersion());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MethodKey)) {
+            return false;
+        }
+        MethodKey that = (MethodKey) o;
+        return hash == that.hash
+                && Objects.equals(interfaceName, that.interfaceName)
+                && Objects.equals(methodName, that.methodName)
+                && Objects.equals(group, that.group)
+                && Objects.equals(version, that.version)
+                && Arrays.equals(paramTypes, that.paramTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return interfaceName + group + version + "#" + methodName + Arrays.toString(paramTypes);
+    }
+}
@@ -1,10 +1,12 @@
 package org.vinci.remoting.handler;
 
 import lombok.extern.slf4j.Slf4j;
+import org.vinci.enums.RpcErrorMessageEnum;
 import org.vinci.exception.RpcException;
 import org.vinci.factory.SingletonFactory;
 import org.vinci.provider.ServiceProvider;
 import org.vinci.provider.impl.ZkServiceProviderImpl;
+import org.vinci.remoting.dto.RpcMethodBinding;
 import org.vinci.remoting.dto.RpcRequest;
 
 import java.lang.reflect.InvocationTargetException;
@@ -32,30 +34,87 @@ public class RpcRequestHandler {
      * @return 调用方法的执行结果
      */
     public Object handle(RpcRequest rpcRequest) {
-        // 获取请求的 service 实例对象
-        Object service = serviceProvider.getService(rpcRequest.getRpcServiceName());
-        // 调用目标方法并返回结果
-        return invokeTargetMethod(rpcRequest, service);
+        return invoke(lookup(rpcRequest, null), rpcRequest.getParameters());
     }
 
     /**
-     * 调用目标方法并返回执行结果
+     * 处理 RpcRequest，已绑定方法 id 的请求直接从连接的方法调用表中查找目标方法
      *
-     * @param rpcRequest 客户端请求
-     * @param service    服务实例对象
-     * @return 目标方法执行结果
+     * @param rpcRequest   RpcRequest 对象
+     * @param invokerTable 请求所在连接的方法调用表
+     * @return 调用方法的执行结果
+     */
+    public Object handle(RpcRequest rpcRequest, MethodInvokerTable invokerTable) {
+        return invoke(lookup(rpcRequest, invokerTable), rpcRequest.getParameters());
+    }
+
+    /**
+     * 查找请求的目标方法
+     * 已绑定方法 id 的请求从连接的方法调用表中查找，服务接口中的方法使用添加服务时编译好的调用器，其余方法退回反射查找
+     *
+     * @param rpcRequest   RpcRequest 对象
+     * @param invokerTable 请求所在连接的方法调用表，没有时为 null
+     * @return 解析好的方法
      */
-    private Object invokeTargetMethod(RpcRequest rpcRequest, Object service) {
-        Object result;
+    public MethodInvoker lookup(RpcRequest rpcRequest, MethodInvokerTable invokerTable) {
+        if (rpcRequest.getMethodId() != 0) {
+            MethodInvoker invoker = invokerTable == null ? null : invokerTable.get(rpcRequest.getMethodId());
+            if (invoker == null) {
+                throw new RpcException(RpcErrorMessageEnum.METHOD_NOT_BOUND, "methodId:" + rpcRequest.getMethodId());
+            }
+            return invoker;
+        }
+        MethodInvoker invoker = serviceProvider.getMethodInvoker(MethodKey.of(rpcRequest));
+        if (invoker != null) {
+            return invoker;
+        }
+        // 获取请求的 service 实例对象，通过反射获取方法
+        String rpcServiceName = rpcRequest.getRpcServiceName();
+        Object service = serviceProvider.getService(rpcServiceName);
         try {
-            // 通过反射获取方法并执行
             Method method = service.getClass().getMethod(rpcRequest.getMethodName(), rpcRequest.getParamTypes());
-            result = method.invoke(service, rpcRequest.getParameters());
-            // 记录日志
-            log.info("service:[{}] successful invoke method:[{}]", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
-        } catch (NoSuchMethodException | IllegalArgumentException | InvocationTargetException | IllegalAccessException e) {
+            return MethodInvoker.reflective(rpcServiceName, service, method);
+        } catch (NoSuchMethodException e) {
+            throw new RpcException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 解析方法绑定消息，查找对应的服务和方法
+     *
+     * @param binding 方法绑定消息
+     * @return 解析好的方法
+     */
+    public MethodInvoker resolve(RpcMethodBinding binding) {
+        MethodInvoker invoker = serviceProvider.getMethodInvoker(MethodKey.of(binding));
+        if (invoker != null) {
+            return invoker;
+        }
+        String rpcServiceName = binding.getRpcServiceName();
+        Object service = serviceProvider.getService(rpcServiceName);
+        try {
+            Method method = service.getClass().getMethod(binding.getMethodName(), binding.getParamTypes());
+            return new MethodInvoker(rpcServiceName, service, method);
+        } catch (NoSuchMethodException e) {
+            throw new RpcException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 通过解析好的方法调用目标方法并返回执行结果
+     * 合并调用的方法（{@link CollapsingMethodInvoker}）返回批量方法调用后完成的 CompletableFuture
+     *
+     * @param invoker 解析好的方法
+     * @param parameters 方法参数
+     * @return 目标方法执行结果
+     */
+    public Object invoke(MethodInvoker invoker, Object[] parameters) {
+        try {
+            Object result = invoker.invoke(parameters);
+            log.info("service:[{}] successful invoke method:[{}]", invoker.getRpcServiceName(), invoker.getMethod().getName());
+            return result;
+        } catch (IllegalArgumentException | InvocationTargetException | IllegalAccessException e) {
             throw new RpcException(e.getMessage(), e);
         }
-        return result;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,229 @@
+package org.vinci.remoting.transport.netty.client;
+
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+import org.vinci.enums.RpcErrorMessageEnum;
+import org.vinci.exception.RpcException;
+import org.vinci.remoting.transport.netty.stream.StreamRegistry;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 一个服务提供者地址上的连接池
+ * <p>
+ * 连接按需建立：已有的连接都有未完成的请求、且连接数没有达到上限时才建立新连接。
+ * Bootstrap 把新连接依次分配给不同的 EventLoop，多个连接的读写分散在多个 IO 线程中进行，一个大响应不会阻塞其他连接上的请求
+ * </p>
+ * <p>
+ * 建立连接不阻塞调用方：同一时刻最多只有一个连接正在建立，没有可用连接时所有调用方共用这一次连接的结果；
+ * 已有可用连接时扩容在后台进行，本次调用仍然使用已有连接。
+ * 连接失败后按指数退避，退避期间的调用直接失败，不会反复连接不可用的地址
+ * </p>
+ * 空闲超过一定时间的连接会被关闭，每个地址至少保留一个连接
+ */
+@Slf4j
+class ChannelPool {
+    private final InetSocketAddress address;
+    // 最大连接数
+    private final int maxSize;
+    // true: 选择未完成请求最少的连接，false: 轮询
+    private final boolean leastPending;
+    // 初始退避时间（毫秒）
+    private final long backoffMillis;
+    // 最大退避时间（毫秒）
+    private final long maxBackoffMillis;
+    // 轮询的下一个位置
+    private final AtomicInteger next = new AtomicInteger();
+    // 池中的连接，修改时复制整个数组，选择连接时不需要加锁
+    private volatile PooledChannel[] channels = new PooledChannel[0];
+    // 正在建立的连接，没有时为 null
+    private CompletableFuture<Channel> connecting;
+    // 连续失败的次数
+    private int failures;
+    // 退避结束的时间
+    private long retryAt;
+    // 最近一次连接失败的原因
+    private Throwable lastFailure;
+
+    ChannelPool(InetSocketAddress address, int maxSize, boolean leastPending, long backoffMillis, long maxBackoffMillis) {
+        this.address = address;
+        this.maxSize = Math.max(1, maxSize);
+        this.leastPending = leastPending;
+        this.backoffMillis = Math.max(1, backoffMillis);
+        this.maxBackoffMillis = Math.max(this.backoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * 选择一个连接，需要时建立新连接
+     * @param connector 建立连接的方法
+     * @return 可用的连接，没有可用连接时在新连接建立后完成
+     */
+    CompletableFuture<Channel> acquire(Function<InetSocketAddress, CompletableFuture<Channel>> connector) {
+        PooledChannel selected = select();
+        if (selected == null) {
+            return connect(connector);
+        }
+        if (shouldGrow(selected)) {
+            connect(connector);
+        }
+        selected.lastUsed = System.currentTimeMillis();
+        return CompletableFuture.completedFuture(selected.channel);
+    }
+
+    /**
+     * 关闭空闲的连接，至少保留一个
+     * @param now 当前时间
+     * @param idleMillis 连接没有被选择、且没有未完成的请求和流超过该时间（毫秒）时关闭
+     */
+    synchronized void shrinkIdle(long now, long idleMillis) {
+        for (PooledChannel pooled : channels) {
+            if (channels.length <= 1) {
+                return;
+            }
+            if (now - pooled.lastUsed > idleMillis && pooled.isIdle()) {
+                log.info("close idle channel [{}], {} channels left", pooled.channel, channels.length - 1);
+                remove(pooled);
+                pooled.channel.close();
+            }
+        }
+    }
+
+    /**
+     * 选择连接：按未完成请求最少选择时从头开始找，负载低时请求集中在前面的连接上，后面的连接才能空闲下来被回收
+     * @return 选中的连接，没有可用连接时返回 null
+     */
+    private PooledChannel select() {
+        PooledChannel[] current = channels;
+        int n = current.length;
+        if (n == 0) {
+            return null;
+        }
+        int start = leastPending ? 0 : (next.getAndIncrement() & Integer.MAX_VALUE) % n;
+        PooledChannel best = null;
+        for (int i = 0; i < n; i++) {
+            PooledChannel pooled = current[(start + i) % n];
+            if (!pooled.channel.isActive()) {
+                continue;
+            }
+            if (!leastPending || pooled.pending() == 0) {
+                return pooled;
+            }
+            if (best == null || pooled.pending() < best.pending()) {
+                best = pooled;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 选中的连接上还有未完成的请求，且连接数没有达到上限时建立新连接
+     */
+    private boolean shouldGrow(PooledChannel selected) {
+        return selected.pending() > 0 && channels.length < maxSize;
+    }
+
+    /**
+     * 建立新连接，已经有连接正在建立时返回它的结果
+     * @param connector 建立连接的方法
+     * @return 新建立的连接
+     */
+    private synchronized CompletableFuture<Channel> connect(Function<InetSocketAddress, CompletableFuture<Channel>> connector) {
+        if (connecting != null) {
+            return connecting;
+        }
+        if (System.currentTimeMillis() < retryAt) {
+            CompletableFuture<Channel> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new RpcException(
+                    RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE.getMessage() + ":" + address, lastFailure));
+            return failed;
+        }
+        CompletableFuture<Channel> attempt;
+        try {
+            attempt = connector.apply(address);
+        } catch (RuntimeException e) {
+            attempt = new CompletableFuture<>();
+            attempt.completeExceptionally(e);
+        }
+        CompletableFuture<Channel> result = attempt.handle(this::connected);
+        // 连接已经完成时回调在当前线程中执行，不再需要记录
+        if (!result.isDone()) {
+            connecting = result;
+        }
+        return result;
+    }
+
+    /**
+     * 连接建立完成：成功时放入池中，失败时开始退避
+     * @param channel 新建立的连接
+     * @param cause 失败原因
+     * @return 新建立的连接
+     */
+    private synchronized Channel connected(Channel channel, Throwable cause) {
+        connecting = null;
+        if (cause != null) {
+            failures++;
+            lastFailure = cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+            // 退避时间逐次翻倍，实际等待其中随机的后一半，避免大量客户端在同一时刻重连
+            long delay = Math.min(maxBackoffMillis, backoffMillis << Math.min(failures - 1, 30));
+            long wait = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+            retryAt = System.currentTimeMillis() + wait;
+            log.warn("connect [{}] failed {} times, retry after {}ms", address, failures, wait, lastFailure);
+            throw cause instanceof CompletionException ? (CompletionException) cause : new CompletionException(cause);
+        }
+        failures = 0;
+        PooledChannel pooled = new PooledChannel(channel);
+        channels = append(channels, pooled);
+        channel.closeFuture().addListener(f -> remove(pooled));
+        return channel;
+    }
+
+    private synchronized void remove(PooledChannel pooled) {
+        PooledChannel[] current = channels;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == pooled) {
+                PooledChannel[] removed = new PooledChannel[current.length - 1];
+                System.arraycopy(current, 0, removed, 0, i);
+                System.arraycopy(current, i + 1, removed, i, current.length - i - 1);
+                channels = removed;
+                return;
+            }
+        }
+    }
+
+    private static PooledChannel[] append(PooledChannel[] current, PooledChannel pooled) {
+        PooledChannel[] appended = Arrays.copyOf(current, current.length + 1);
+        appended[current.length] = pooled;
+        return appended;
+    }
+
+    /**
+     * 池中的连接
+     */
+    private static final class PooledChannel {
+        private final Channel channel;
+        private final UnprocessedRequests unprocessedRequests;
+        private final StreamRegistry streams;
+        // 最近一次被选择的时间
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private PooledChannel(Channel channel) {
+            this.channel = channel;
+            this.unprocessedRequests = channel.attr(UnprocessedRequests.KEY).get();
+            this.streams = channel.attr(StreamRegistry.KEY).get();
+        }
+
+        private int pending() {
+            return unprocessedRequests.pending();
+        }
+
+        private boolean isIdle() {
+            return pending() == 0 && streams.isIdle();
+        }
+    }
+}
@@ -2,67 +2,86 @@ package org.vinci.remoting.transport.netty.client;
 
 import io.netty.channel.Channel;
 import lombok.extern.slf4j.Slf4j;
+import org.vinci.enums.RpcConfigEnum;
+import org.vinci.utils.RpcConfigUtil;
 
 import java.net.InetSocketAddress;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 /**
  * 用于存放 channel (channel 用于在服务端和客户端之间传输数据)
+ * <p>
+ * 每个服务提供者地址对应一个连接池，最多 rpc.connections 个连接，按 rpc.connections.select 选择连接
+ * </p>
  */
 @Slf4j
 public class ChannelProvider {
+    // 按未完成请求最少选择连接
+    private static final String LEAST_PENDING = "least-pending";
 
-    // 存放 channel 的 map
-    private final Map<String, Channel> channelMap;
+    // 每个地址的最大连接数
+    private final int maxConnections;
+    // 是否按未完成请求最少选择连接，否则轮询
+    private final boolean leastPending;
+    // 连接空闲多久后关闭（毫秒）
+    private final long idleMillis;
+    // 连接失败后的初始退避时间（毫秒）
+    private final long backoffMillis;
+    // 连接失败后的最大退避时间（毫秒）
+    private final long maxBackoffMillis;
+    // 空闲检查是否已经开始，每个客户端都会请求一次，只需要执行一个
+    private final AtomicBoolean idleCheckScheduled = new AtomicBoolean();
+    // key: 服务提供者地址，value: 该地址上的连接池
+    private final ConcurrentMap<InetSocketAddress, ChannelPool> pools = new ConcurrentHashMap<>();
 
-    // 初始化 channelMap
-    public ChannelProvider(){
-        channelMap = new ConcurrentHashMap<>();
+    public ChannelProvider() {
+        maxConnections = RpcConfigUtil.getInt(RpcConfigEnum.CONNECTIONS, 1);
+        leastPending = LEAST_PENDING.equals(RpcConfigUtil.getString(RpcConfigEnum.CONNECTION_SELECT, LEAST_PENDING));
+        idleMillis = RpcConfigUtil.getLong(RpcConfigEnum.CONNECTION_IDLE, 60_000);
+        backoffMillis = RpcConfigUtil.getLong(RpcConfigEnum.CONNECT_BACKOFF, 100);
+        maxBackoffMillis = RpcConfigUtil.getLong(RpcConfigEnum.CONNECT_BACKOFF_MAX, 10_000);
     }
 
     /**
-     * 获取指定地址的 channel
-     * @param inetSocketAddress 要获取的 channel 的地址
-     * @return 如果存在指定地址的 channel 且 channel 是有效的，则返回该 channel；否则返回 null。
+     * 获取指定地址的 channel，没有可用的连接或者已有连接都在忙时建立新连接
+     * @param inetSocketAddress 服务提供者地址
+     * @param connector 建立连接的方法
+     * @return 可用的 channel，需要等待连接建立时在连接建立后完成
      */
-    public Channel get(InetSocketAddress inetSocketAddress){
-        // 获取 InetSocketAddress 的字符串表示形式 -> 地址
-        String key = inetSocketAddress.toString();
-        // 判断与相应地址是否存在连接
-        if (channelMap.containsKey(key)){
-            Channel channel = channelMap.get(key);
-            // 如果存在连接, 判断连接是否有效
-            if (channel != null && channel.isActive()){
-                return channel;
-            }else {
-                channelMap.remove(key);
-            }
-        }
-        return null;
+    public CompletableFuture<Channel> acquire(InetSocketAddress inetSocketAddress,
+                                              Function<InetSocketAddress, CompletableFuture<Channel>> connector) {
+        return pools.computeIfAbsent(inetSocketAddress,
+                address -> new ChannelPool(address, maxConnections, leastPending, backoffMillis, maxBackoffMillis))
+                .acquire(connector);
     }
 
     /**
-     * 存放指定地址的 channel
-     * @param inetSocketAddress 要存放的 channel 的地址
-     * @param channel 要存放的 channel
+     * 定期关闭空闲的连接，多次调用时只有第一次生效
+     * @param scheduler 执行检查的线程池
      */
-    public void set(InetSocketAddress inetSocketAddress, Channel channel){
-        // 将地址转为字符串作为 key，存放 channel
-        String key = inetSocketAddress.toString();
-        channelMap.put(key, channel);
+    public void scheduleIdleCheck(ScheduledExecutorService scheduler) {
+        if (maxConnections > 1 && idleCheckScheduled.compareAndSet(false, true)) {
+            scheduler.scheduleWithFixedDelay(() -> {
+                long now = System.currentTimeMillis();
+                pools.values().forEach(pool -> pool.shrinkIdle(now, idleMillis));
+            }, idleMillis, idleMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
-     * 移除指定地址的 channel
-     * @param inetSocketAddress 要移除的 channel 的地址
+     * 移除指定地址的连接池
+     * @param inetSocketAddress 要移除的连接池的地址
      */
-    public void remove(InetSocketAddress inetSocketAddress){
-        // 将地址转为字符串作为 key，从 channelMap 中移除 channel
-        String key = inetSocketAddress.toString();
-        channelMap.remove(key);
-        // 打印当前 channelMap 的大小
-        log.info("Channel Map Size: [{}]", channelMap.size());
+    public void remove(InetSocketAddress inetSocketAddress) {
+        pools.remove(inetSocketAddress);
+        // 打印当前 pools 的大小
+        log.info("Channel pool size: [{}]", pools.size());
     }
 
 }
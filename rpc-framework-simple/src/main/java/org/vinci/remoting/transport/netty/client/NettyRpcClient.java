@@ -9,10 +9,16 @@ import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.vinci.cluster.Cluster;
+import org.vinci.cluster.ClusterInvocation;
+import org.vinci.cluster.LatencyTracker;
+import org.vinci.cluster.breaker.CircuitBreakers;
 import org.vinci.enums.CompressTypeEnum;
+import org.vinci.enums.RpcErrorMessageEnum;
+import org.vinci.enums.RpcConfigEnum;
 import org.vinci.enums.SerializationTypeEnum;
+import org.vinci.exception.RpcException;
 import org.vinci.extension.ExtensionLoader;
 import org.vinci.factory.SingletonFactory;
 import org.vinci.registry.ServiceDiscovery;
@@ -20,22 +26,63 @@ import org.vinci.remoting.constants.RpcConstants;
 import org.vinci.remoting.dto.RpcMessage;
 import org.vinci.remoting.dto.RpcRequest;
 import org.vinci.remoting.dto.RpcResponse;
+import org.vinci.remoting.dto.RpcStreamArgument;
 import org.vinci.remoting.transport.RpcRequestTransport;
+import org.vinci.remoting.transport.netty.codec.ChunkedFrameWriter;
+import org.vinci.remoting.transport.netty.codec.RpcMessageBatcher;
 import org.vinci.remoting.transport.netty.codec.RpcMessageDecoder;
 import org.vinci.remoting.transport.netty.codec.RpcMessageEncoder;
+import org.vinci.remoting.transport.netty.stream.StreamReceiver;
+import org.vinci.remoting.transport.netty.stream.StreamRegistry;
+import org.vinci.stream.Publisher;
+import org.vinci.stream.Publishers;
+import org.vinci.stream.Subscriber;
+import org.vinci.utils.RpcConfigUtil;
+import org.vinci.utils.concurrent.threadpool.CustomThreadPoolConfig;
+import org.vinci.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class NettyRpcClient implements RpcRequestTransport {
+    // 消息体使用的压缩类型，未配置或配置错误时使用 gzip
+    private static final byte COMPRESS_TYPE = Optional.ofNullable(CompressTypeEnum.getByName(
+            RpcConfigUtil.getString(RpcConfigEnum.COMPRESS_TYPE, null))).orElse(CompressTypeEnum.GZIP).getCode();
+
+    // 是否合并发送请求
+    private static final boolean BATCH = RpcConfigUtil.getBoolean(RpcConfigEnum.BATCH, false);
+
+    // 是否按耗时计算超时时间，以及计算时使用的分位、倍数和下限
+    private static final boolean ADAPTIVE_TIMEOUT = RpcConfigUtil.getBoolean(RpcConfigEnum.REQUEST_TIMEOUT_ADAPTIVE, false);
+    private static final double TIMEOUT_QUANTILE = RpcConfigUtil.getDouble(RpcConfigEnum.REQUEST_TIMEOUT_QUANTILE, 0.999);
+    private static final double TIMEOUT_MULTIPLIER = RpcConfigUtil.getDouble(RpcConfigEnum.REQUEST_TIMEOUT_MULTIPLIER, 3);
+    private static final long TIMEOUT_MIN = RpcConfigUtil.getLong(RpcConfigEnum.REQUEST_TIMEOUT_MIN, 50);
+
+    // 参数中的流在该线程池中按服务端的需求产生元素，不占用 IO 线程
+    private static final ExecutorService STREAM_ARGUMENT_POOL = ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent(
+            new CustomThreadPoolConfig(), "rpc-client-stream", true);
+
+    // 请求没有指定集群容错策略时使用全局配置
+    private static final String DEFAULT_CLUSTER = RpcConfigUtil.getString(RpcConfigEnum.CLUSTER, "failfast");
+
     // 服务发现接口
     private final ServiceDiscovery serviceDiscovery;
-    // 未处理请求
-    private final UnprocessedRequests unprocessedRequests;
     // 连接提供者
     private final ChannelProvider channelProvider;
+    // 每个方法的调用耗时
+    private final LatencyTracker latencyTracker;
+    // 服务提供者的熔断器
+    private final CircuitBreakers circuitBreakers;
     // 启动类
     private final Bootstrap bootstrap;
     // 事件循环组
@@ -60,34 +107,43 @@ public class NettyRpcClient implements RpcRequestTransport {
                 .handler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(SocketChannel ch) throws Exception {
+                        // 每个连接单独记录未处理的请求，请求 id 也在连接内分配
+                        ch.attr(UnprocessedRequests.KEY).set(new UnprocessedRequests());
+                        ch.attr(StreamRegistry.KEY).set(new StreamRegistry(ch, SerializationTypeEnum.HESSIAN.getCode(), COMPRESS_TYPE));
                         // 获取通道管道
                         ChannelPipeline p = ch.pipeline();
                         // 如果在 15 秒内没有数据传输, 发送心跳请求
                         p.addLast(new IdleStateHandler(0, 5, 0, TimeUnit.SECONDS));
                         // 添加消息编码器
+                        // 逐块发送超过分块大小的消息
+                        p.addLast(new ChunkedFrameWriter());
                         p.addLast(new RpcMessageEncoder());
                         // 添加消息解码器
                         p.addLast(new RpcMessageDecoder());
+                        // 合并短时间内的多个请求
+                        if (BATCH) {
+                            p.addLast(new RpcMessageBatcher(true));
+                        }
                         // 添加 Netty RPC 客户端处理器
                         p.addLast(new NettyRpcClilentHandler());
                     }
                 });
         // 获取服务发现接口的扩展实现
         this.serviceDiscovery = ExtensionLoader.getExtensionLoader(ServiceDiscovery.class).getExtension("zk");
-        // 获取未处理请求的单例工厂实例
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
         // 获取连接提供者的单例工厂实例
         this.channelProvider = SingletonFactory.getInstance(ChannelProvider.class);
+        this.latencyTracker = SingletonFactory.getInstance(LatencyTracker.class);
+        this.circuitBreakers = SingletonFactory.getInstance(CircuitBreakers.class);
+        channelProvider.scheduleIdleCheck(eventLoopGroup);
     }
 
     /**
      * 连接服务器并获取通道，以便可以将rpc消息发送到服务器
      *
      * @param inetSocketAddress 服务器地址
-     * @return 通道
+     * @return 通道，连接失败时以 {@link RpcException} 结束
      */
-    @SneakyThrows
-    public Channel doConnect(InetSocketAddress inetSocketAddress) {
+    public CompletableFuture<Channel> doConnect(InetSocketAddress inetSocketAddress) {
         // 创建CompletableFuture对象, 它代表一个异步操作的结果, 在此处指channel对象
         CompletableFuture<Channel> completableFuture = new CompletableFuture<>();
         // 尝试连接指定的服务器地址, 连接结果会通过ChannelFutureListener返回
@@ -97,62 +153,370 @@ public class NettyRpcClient implements RpcRequestTransport {
                 log.info("The client has connected [{}] successful!", inetSocketAddress.toString());
                 completableFuture.complete(future.channel());
             } else {
-                // 连接失败, 抛出异常
-                throw new IllegalStateException();
+                // 连接失败, 以异常结束，等待连接的调用方不会一直阻塞
+                completableFuture.completeExceptionally(new RpcException(
+                        RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE.getMessage() + ":" + inetSocketAddress, future.cause()));
             }
         });
-        // 等待异步操作完成并返回结果
-        return completableFuture.get();
+        return completableFuture;
     }
 
+    /**
+     * 发送请求，按请求的集群容错策略选择服务提供者、决定发送几次
+     * 参数中有流时流不能重放，只发送一次
+     *
+     * @param rpcRequest 请求
+     * @return 响应的 CompletableFuture
+     */
     @Override
     public Object sendRpcRequest(RpcRequest rpcRequest) {
+        Publisher<?> upstream = streamArgument(rpcRequest);
+        if (upstream != null) {
+            RpcRequest request = replaceStreamArgument(rpcRequest);
+            // 通过服务发现组件获取rpc服务提供者地址
+            // 参数中有流时调用持续多久取决于流的长度，不设置超时
+            return sendRpcRequest(serviceDiscovery.lookupService(request), request, upstream, 0);
+        }
+        String cluster = rpcRequest.getCluster() != null ? rpcRequest.getCluster() : DEFAULT_CLUSTER;
+        return ExtensionLoader.getExtensionLoader(Cluster.class).getExtension(cluster).invoke(new Invocation(rpcRequest));
+    }
+
+    /**
+     * 向指定的服务提供者发送一次请求
+     *
+     * @param inetSocketAddress 服务提供者地址
+     * @param rpcRequest 请求
+     * @param upstream 参数中的流，没有时为 null
+     * @param timeoutMillis 超时时间（毫秒），0 表示不超时
+     * @return 响应的 CompletableFuture，取消后不再等待响应
+     */
+    private CompletableFuture<RpcResponse<Object>> sendRpcRequest(InetSocketAddress inetSocketAddress, RpcRequest rpcRequest,
+                                                                  Publisher<?> upstream, long timeoutMillis) {
         // 创建CompletableFuture对象, 它代表一个异步操作的结果, 在此处指rpc调用的返回结果
         CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
-        // 通过服务发现组件获取rpc服务提供者地址
-        InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
-        // 获取与rpc服务提供者地址关联的channel对象
-        Channel channel = getChannel(inetSocketAddress);
-        if (channel.isActive()) {
-            // 将请求放入未处理请求map中
-            unprocessedRequests.put(rpcRequest.getRequestId(), resultFuture);
-            // 构建rpc消息
-            RpcMessage rpcMessage = RpcMessage.builder().data(rpcRequest)
+        // 获取与rpc服务提供者地址关联的channel对象，连接建立后再发送，调用方线程不等待连接
+        getChannel(inetSocketAddress).whenComplete((channel, e) -> {
+            if (e != null) {
+                resultFuture.completeExceptionally(unwrap(e));
+            } else if (!channel.isActive()) {
+                // channel对象未激活
+                resultFuture.completeExceptionally(new RpcException(RpcErrorMessageEnum.CONNECTION_CLOSED, inetSocketAddress.toString()));
+            } else {
+                send(channel, rpcRequest, upstream, timeoutMillis, resultFuture);
+            }
+        });
+        // 返回CompletableFuture对象, 该对象代表异步操作的结果, 在此处指rpc调用的返回结果
+        return resultFuture;
+    }
+
+    /**
+     * 批量发送一组请求，发往同一个服务提供者的请求合并成一条批量调用消息，一次往返完成
+     *
+     * @param rpcRequests 请求，不能包含流式调用
+     * @return 每个请求的未来结果，顺序与请求一致
+     */
+    public List<CompletableFuture<RpcResponse<Object>>> sendRpcRequests(List<RpcRequest> rpcRequests) {
+        List<CompletableFuture<RpcResponse<Object>>> resultFutures = new ArrayList<>(rpcRequests.size());
+        // 服务提供者地址 -> 发往该地址的请求下标
+        Map<InetSocketAddress, List<Integer>> requestsByAddress = new LinkedHashMap<>();
+        for (int i = 0; i < rpcRequests.size(); i++) {
+            CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+            resultFutures.add(resultFuture);
+            try {
+                InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequests.get(i));
+                requestsByAddress.computeIfAbsent(inetSocketAddress, k -> new ArrayList<>()).add(i);
+            } catch (RuntimeException e) {
+                resultFuture.completeExceptionally(e);
+            }
+        }
+        requestsByAddress.forEach((inetSocketAddress, indexes) -> getChannel(inetSocketAddress).whenComplete((channel, e) -> {
+            Throwable cause = e != null ? unwrap(e) : channel.isActive() ? null
+                    : new RpcException(RpcErrorMessageEnum.CONNECTION_CLOSED, inetSocketAddress.toString());
+            if (cause != null) {
+                indexes.forEach(i -> resultFutures.get(i).completeExceptionally(cause));
+            } else {
+                sendMultiCall(channel, rpcRequests, resultFutures, indexes);
+            }
+        }));
+        return resultFutures;
+    }
+
+    /**
+     * 在连接上以一条批量调用消息发送多个请求，每个请求仍然有各自的请求 id 和超时时间
+     *
+     * @param channel 连接
+     * @param rpcRequests 全部请求
+     * @param resultFutures 全部请求的未来结果
+     * @param indexes 在该连接上发送的请求下标
+     */
+    private void sendMultiCall(Channel channel, List<RpcRequest> rpcRequests,
+                               List<CompletableFuture<RpcResponse<Object>>> resultFutures, List<Integer> indexes) {
+        UnprocessedRequests unprocessedRequests = channel.attr(UnprocessedRequests.KEY).get();
+        List<RpcMessage> requests = new ArrayList<>(indexes.size());
+        for (int i : indexes) {
+            long requestId = unprocessedRequests.put(resultFutures.get(i), rpcRequests.get(i).getTimeout());
+            requests.add(RpcMessage.builder().data(rpcRequests.get(i))
+                    .requestId(requestId)
                     .codec(SerializationTypeEnum.HESSIAN.getCode())
-                    .compress(CompressTypeEnum.GZIP.getCode())
-                    .messageType(RpcConstants.REQUEST_TYPE).build();
-            // 发送rpc消息到rpc服务提供者地址对应的channel上
-            channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
-                if (future.isSuccess()) {
-                    log.info("client send message: [{}]", rpcMessage);
+                    .compress(COMPRESS_TYPE)
+                    .messageType(RpcConstants.REQUEST_TYPE).build());
+        }
+        // 批量调用消息可能分块发送，使用单独的请求 id
+        RpcMessage rpcMessage = RpcMessage.builder().data(requests)
+                .requestId(unprocessedRequests.nextRequestId())
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(COMPRESS_TYPE)
+                .messageType(RpcConstants.MULTI_CALL_TYPE).build();
+        channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
+            if (future.isSuccess()) {
+                log.debug("client send [{}] requests in one message", requests.size());
+            } else {
+                future.channel().close();
+                for (int j = 0; j < requests.size(); j++) {
+                    unprocessedRequests.remove(requests.get(j).getRequestId());
+                    resultFutures.get(indexes.get(j)).completeExceptionally(future.cause());
+                }
+                log.error("Send failed:", future.cause());
+            }
+        });
+    }
+
+    /**
+     * 在连接上发送请求
+     *
+     * @param channel 连接
+     * @param rpcRequest 请求
+     * @param upstream 参数中的流，没有时为 null
+     * @param timeoutMillis 超时时间（毫秒），0 表示不超时
+     * @param resultFuture 请求的未来结果
+     */
+    private void send(Channel channel, RpcRequest rpcRequest, Publisher<?> upstream, long timeoutMillis,
+                      CompletableFuture<RpcResponse<Object>> resultFuture) {
+        if (resultFuture.isDone()) {
+            // 连接建立前已经被取消
+            return;
+        }
+        // 将请求放入该连接的未处理请求中，并分配请求 id
+        UnprocessedRequests unprocessedRequests = channel.attr(UnprocessedRequests.KEY).get();
+        long requestId = unprocessedRequests.put(resultFuture, timeoutMillis);
+        // 集群容错策略取消的请求不再等待响应，响应到达时直接丢弃
+        resultFuture.whenComplete((r, e) -> {
+            if (resultFuture.isCancelled()) {
+                unprocessedRequests.remove(requestId);
+            }
+        });
+        // 参数中的流在同一个请求 id 上按服务端的需求发送
+        StreamRegistry streams = channel.attr(StreamRegistry.KEY).get();
+        if (upstream != null) {
+            streams.send(requestId, upstream, STREAM_ARGUMENT_POOL);
+        }
+        // 构建rpc消息
+        RpcMessage rpcMessage = RpcMessage.builder().data(rpcRequest)
+                .requestId(requestId)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(COMPRESS_TYPE)
+                .messageType(RpcConstants.REQUEST_TYPE).build();
+        // 发送rpc消息到rpc服务提供者地址对应的channel上
+        channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
+            if (future.isSuccess()) {
+                log.debug("client send message: [{}]", rpcMessage);
+            } else {
+                // rpc调用失败, 关闭channel
+                // 将异常结果通过CompletableFuture.completeExceptionally方法返回
+                future.channel().close();
+                unprocessedRequests.remove(requestId);
+                streams.cancelSender(requestId);
+                resultFuture.completeExceptionally(future.cause());
+                log.error("Send failed:", future.cause());
+            }
+        });
+    }
+
+    /**
+     * 发送返回值为流的请求
+     * 返回的发布者在订阅时才发起调用，每次订阅都是一次独立的调用；
+     * 服务端按订阅者请求的数量逐个发送元素，订阅者通过返回的订阅关系请求更多元素或者取消调用。
+     * 参数中也有流时为双向流式调用，参数中的流在每次调用时重新订阅
+     *
+     * @param rpcRequest 请求
+     * @return 流式返回值
+     */
+    public Publisher<Object> sendStreamRequest(RpcRequest rpcRequest) {
+        Publisher<?> upstream = streamArgument(rpcRequest);
+        RpcRequest request = upstream == null ? rpcRequest : replaceStreamArgument(rpcRequest);
+        return subscriber -> {
+            InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(request);
+            getChannel(inetSocketAddress).whenComplete((channel, e) -> {
+                if (e != null) {
+                    Publishers.error(unwrap(e)).subscribe(subscriber);
                 } else {
-                    // rpc调用失败, 关闭channel
-                    // 将异常结果通过CompletableFuture.completeExceptionally方法返回
-                    future.channel().close();
-                    resultFuture.completeExceptionally(future.cause());
-                    log.error("Send failed:", future.cause());
+                    subscribe(channel, request, upstream, subscriber);
                 }
             });
-        } else {
-            // channel对象未激活, 抛出异常
-            throw new IllegalStateException();
+        };
+    }
+
+    /**
+     * 在连接上发起返回值为流的调用
+     *
+     * @param channel 连接
+     * @param rpcRequest 请求
+     * @param upstream 参数中的流，没有时为 null
+     * @param subscriber 订阅者
+     */
+    private void subscribe(Channel channel, RpcRequest rpcRequest, Publisher<?> upstream, Subscriber<? super Object> subscriber) {
+        long requestId = channel.attr(UnprocessedRequests.KEY).get().nextRequestId();
+        StreamRegistry streams = channel.attr(StreamRegistry.KEY).get();
+        StreamReceiver receiver = streams.receive(requestId, subscriber);
+        // 订阅者在 onSubscribe 中请求的元素先记录在接收流中，请求写出后再发送，服务端只为已经收到的调用记录需求
+        subscriber.onSubscribe(receiver);
+        if (!channel.isActive()) {
+            receiver.fail(new IllegalStateException("channel is not active"));
+            return;
         }
-        // 返回CompletableFuture对象, 该对象代表异步操作的结果, 在此处指rpc调用的返回结果
-        return resultFuture;
+        if (upstream != null) {
+            streams.send(requestId, upstream, STREAM_ARGUMENT_POOL);
+        }
+        RpcMessage rpcMessage = RpcMessage.builder().data(rpcRequest)
+                .requestId(requestId)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(COMPRESS_TYPE)
+                .messageType(RpcConstants.REQUEST_TYPE).build();
+        channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
+            if (future.isSuccess()) {
+                log.debug("client send stream request: [{}]", rpcMessage);
+            } else {
+                future.channel().close();
+                streams.cancelSender(requestId);
+                receiver.fail(future.cause());
+                log.error("Send failed:", future.cause());
+            }
+        });
+        // 同一连接上的写出保持顺序，此后写出的需求一定在请求之后到达服务端
+        receiver.open();
+    }
+
+    /**
+     * 取出参数中的流，流中的元素在请求发出后以流信号的形式单独发送
+     * 流信号以请求 id 区分所属的流，一个调用最多只能有一个流参数
+     *
+     * @param rpcRequest 请求
+     * @return 参数中的流，没有时返回 null
+     * @throws IllegalArgumentException 参数中有多个流
+     */
+    private static Publisher<?> streamArgument(RpcRequest rpcRequest) {
+        Object[] parameters = rpcRequest.getParameters();
+        if (parameters == null) {
+            return null;
+        }
+        Publisher<?> upstream = null;
+        for (Object parameter : parameters) {
+            if (parameter instanceof Publisher) {
+                if (upstream != null) {
+                    throw new IllegalArgumentException("only one stream argument is supported per call: "
+                            + rpcRequest.getInterfaceName() + "." + rpcRequest.getMethodName());
+                }
+                upstream = (Publisher<?>) parameter;
+            }
+        }
+        return upstream;
+    }
+
+    /**
+     * 复制请求，参数中的流替换为占位符，调用方传入的参数数组保持不变
+     *
+     * @param rpcRequest 请求
+     * @return 发送给服务端的请求
+     */
+    private static RpcRequest replaceStreamArgument(RpcRequest rpcRequest) {
+        Object[] parameters = rpcRequest.getParameters().clone();
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i] instanceof Publisher) {
+                parameters[i] = new RpcStreamArgument();
+            }
+        }
+        return rpcRequest.toBuilder().parameters(parameters).build();
     }
 
-    public Channel getChannel(InetSocketAddress inetSocketAddress) {
-        // 从channelProvider中获取与inetSocketAddress关联的channel对象
-        Channel channel = channelProvider.get(inetSocketAddress);
-        if (channel == null) {
-            // channelProvider中不存在与inetSocketAddress关联的channel对象
-            // 创建一个新的channel对象并连接指定地址
-            channel = doConnect(inetSocketAddress);
-            // 将新建的channel对象存入channelProvider中
-            channelProvider.set(inetSocketAddress, channel);
+    /**
+     * 获取与服务提供者地址关联的连接
+     *
+     * @param inetSocketAddress 服务提供者地址
+     * @return 连接，需要建立新连接时在连接建立后完成
+     */
+    public CompletableFuture<Channel> getChannel(InetSocketAddress inetSocketAddress) {
+        // 从channelProvider中选择与inetSocketAddress关联的channel对象，需要时创建新的channel对象并连接指定地址
+        return channelProvider.acquire(inetSocketAddress, this::doConnect);
+    }
+
+    /**
+     * 取出依赖阶段包装的原始异常
+     */
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * 交给集群容错策略的一次调用
+     */
+    private final class Invocation implements ClusterInvocation {
+        private final RpcRequest rpcRequest;
+
+        private Invocation(RpcRequest rpcRequest) {
+            this.rpcRequest = rpcRequest;
+        }
+
+        @Override
+        public RpcRequest getRpcRequest() {
+            return rpcRequest;
+        }
+
+        @Override
+        public InetSocketAddress select(Set<InetSocketAddress> excluded) {
+            return serviceDiscovery.lookupService(rpcRequest, excluded);
+        }
+
+        @Override
+        public CompletableFuture<RpcResponse<Object>> send(InetSocketAddress address) {
+            long timeoutMillis = timeoutOf(rpcRequest, address);
+            long start = System.nanoTime();
+            CompletableFuture<RpcResponse<Object>> resultFuture = sendRpcRequest(address, rpcRequest, null, timeoutMillis);
+            resultFuture.whenComplete((r, e) -> {
+                if (resultFuture.isCancelled()) {
+                    // 被集群容错策略取消的请求不说明服务提供者的好坏
+                    return;
+                }
+                long nanos = System.nanoTime() - start;
+                circuitBreakers.record(address, e != null, nanos);
+                // 超时的调用至少耗时这么久，同样记录下来，服务提供者变慢时超时时间随之变长，不会一直超时
+                if (e == null || (timeoutMillis > 0 && nanos >= TimeUnit.MILLISECONDS.toNanos(timeoutMillis))) {
+                    latencyTracker.record(rpcRequest, address, nanos);
+                }
+            });
+            return resultFuture;
+        }
+    }
+
+    /**
+     * 一次调用的超时时间
+     * 开启自适应超时时间后，取方法在该服务提供者上最近耗时的分位数乘以倍数，不小于下限，不超过配置的超时时间；
+     * 样本不足时使用配置的超时时间
+     *
+     * @param rpcRequest 请求
+     * @param address 服务提供者地址
+     * @return 超时时间（毫秒），0 表示不超时
+     */
+    private long timeoutOf(RpcRequest rpcRequest, InetSocketAddress address) {
+        long timeout = rpcRequest.getTimeout();
+        if (!ADAPTIVE_TIMEOUT) {
+            return timeout;
+        }
+        long quantile = latencyTracker.quantile(rpcRequest, address, TIMEOUT_QUANTILE);
+        if (quantile < 0) {
+            return timeout;
         }
-        // 返回channel对象
-        return channel;
+        long adaptive = Math.max(TIMEOUT_MIN, (long) Math.ceil(quantile * TIMEOUT_MULTIPLIER / 1_000_000));
+        return timeout > 0 ? Math.min(timeout, adaptive) : adaptive;
     }
 
     public void close() {
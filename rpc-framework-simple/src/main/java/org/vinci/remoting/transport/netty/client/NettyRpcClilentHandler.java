@@ -9,29 +9,19 @@ import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.vinci.enums.CompressTypeEnum;
+import org.vinci.enums.RpcErrorMessageEnum;
 import org.vinci.enums.SerializationTypeEnum;
-import org.vinci.factory.SingletonFactory;
+import org.vinci.exception.RpcException;
 import org.vinci.remoting.constants.RpcConstants;
 import org.vinci.remoting.dto.RpcMessage;
 import org.vinci.remoting.dto.RpcResponse;
+import org.vinci.remoting.dto.RpcStreamMessage;
+import org.vinci.remoting.transport.netty.stream.StreamRegistry;
 
-import java.net.InetSocketAddress;
+import java.util.List;
 
 @Slf4j
 public class NettyRpcClilentHandler extends ChannelInboundHandlerAdapter {
-    // 未处理的请求
-    private final UnprocessedRequests unprocessedRequests;
-
-    // NettyRpc客户端
-    private final NettyRpcClient nettyRpcClient;
-
-    public NettyRpcClilentHandler() {
-        // 获取未处理的请求的单例实例
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
-        // 获取NettyRpc客户端的单例实例
-        this.nettyRpcClient = SingletonFactory.getInstance(NettyRpcClient.class);
-    }
-
 
     /**
      * 读取服务器发送的消息
@@ -39,15 +29,21 @@ public class NettyRpcClilentHandler extends ChannelInboundHandlerAdapter {
      * @param msg 消息
      */
     @Override
+    @SuppressWarnings("unchecked")
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
         try {
             // 打印客户端接收到的消息
-            log.info("client receive msg: [{}]", msg);
-            if (msg instanceof RpcResponse){
-                // 将消息的类型转换为RpcResponse
-                RpcResponse<Object> rpcResponse = (RpcResponse<Object>) msg;
-                // 标记请求已处理
-                unprocessedRequests.complete(rpcResponse);
+            log.debug("client receive msg: [{}]", msg);
+            if (msg instanceof RpcMessage) {
+                RpcMessage rpcMessage = (RpcMessage) msg;
+                if (rpcMessage.getMessageType() == RpcConstants.BATCH_TYPE) {
+                    // 批量响应逐个处理
+                    for (RpcMessage response : (List<RpcMessage>) rpcMessage.getData()) {
+                        handle(ctx, response);
+                    }
+                } else {
+                    handle(ctx, rpcMessage);
+                }
             }
         } finally {
             // 释放消息
@@ -55,6 +51,41 @@ public class NettyRpcClilentHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * 处理一条响应或者流信号
+     * @param ctx 操作 Channel 和触发事件
+     * @param rpcMessage 消息
+     */
+    @SuppressWarnings("unchecked")
+    private void handle(ChannelHandlerContext ctx, RpcMessage rpcMessage) {
+        if (rpcMessage.getMessageType() == RpcConstants.RESPONSE_TYPE) {
+            // 按消息头中的请求 id 找到对应的请求，标记请求已处理
+            RpcResponse<Object> rpcResponse = (RpcResponse<Object>) rpcMessage.getData();
+            UnprocessedRequests unprocessedRequests = ctx.channel().attr(UnprocessedRequests.KEY).get();
+            // 流式调用失败或者服务端返回了 null 时，收到的也是普通响应
+            if (!unprocessedRequests.complete(rpcMessage.getRequestId(), rpcResponse)
+                    && !ctx.channel().attr(StreamRegistry.KEY).get().complete(rpcMessage.getRequestId(), rpcResponse)) {
+                log.warn("no pending request for response [{}]", rpcMessage.getRequestId());
+            }
+        } else if (rpcMessage.getMessageType() == RpcConstants.STREAM_TYPE) {
+            // 流信号按请求 id 分发给对应的流
+            ctx.channel().attr(StreamRegistry.KEY).get()
+                    .dispatch(rpcMessage.getRequestId(), (RpcStreamMessage) rpcMessage.getData());
+        }
+    }
+
+    /**
+     * 连接关闭时以异常结束本连接上所有未完成的请求和流
+     * @param ctx 操作 Channel 和触发事件
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        ctx.channel().attr(UnprocessedRequests.KEY).get().failAll(new RpcException(RpcErrorMessageEnum.CONNECTION_CLOSED,
+                String.valueOf(ctx.channel().remoteAddress())));
+        ctx.channel().attr(StreamRegistry.KEY).get().closeAll();
+        super.channelInactive(ctx);
+    }
+
     /**
      * 触发用户事件
      * @param ctx 操作 Channel 和触发事件
@@ -70,8 +101,8 @@ public class NettyRpcClilentHandler extends ChannelInboundHandlerAdapter {
             if (state == IdleState.WRITER_IDLE) {
                 // 输出日志，说明发生了写空闲事件
                 log.info("write idle happen [{}]", ctx.channel().remoteAddress());
-                // 获取与远程地址相关联的通道
-                Channel channel = nettyRpcClient.getChannel((InetSocketAddress) ctx.channel().remoteAddress());
+                // 在空闲的连接上发送心跳，同一地址有多个连接时各自保活
+                Channel channel = ctx.channel();
                 // 构造一个心跳请求消息
                 RpcMessage rpcMessage = new RpcMessage();
                 rpcMessage.setCodec(SerializationTypeEnum.PROTOSTUFF.getCode());
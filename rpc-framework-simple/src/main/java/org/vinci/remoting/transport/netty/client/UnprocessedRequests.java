@@ -1,35 +1,181 @@
 package org.vinci.remoting.transport.netty.client;
 
-import org.vinci.remoting.dto.RpcRequest;
+import io.netty.util.AttributeKey;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.collection.LongObjectHashMap;
+import org.vinci.enums.RpcErrorMessageEnum;
+import org.vinci.exception.RpcException;
 import org.vinci.remoting.dto.RpcResponse;
+import org.vinci.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * 存放未被服务端处理的请求
+ * 存放一个连接上已经发出、尚未收到响应的请求
+ * <p>
+ * 每个连接一个实例，作为 Channel 的属性保存。请求 id 由连接内自增的 64 位计数器分配，
+ * 写入消息头后由服务端原样带回，客户端直接按消息头中的 id 找到对应的 future
+ * </p>
+ * 请求在调用方线程中放入，在 EventLoop 中取出，使用分段加锁的 {@link LongObjectHashMap}，
+ * 既避免 long 装箱，也降低不同线程之间的锁竞争
+ * <p>
+ * 所有连接共用一个 {@link HashedWheelTimer} 处理超时：超时的请求被移除并以异常结束，
+ * 连接关闭时本连接上所有未完成的请求立即以异常结束，不会无限期地等待下去
+ * </p>
  */
 public class UnprocessedRequests {
-    // 存储未处理的请求，使用 ConcurrentHashMap 来实现并发安全
-    private static final
-        Map<String, CompletableFuture<RpcResponse<Object>>> UNPROCESSED_RESPONSE_FUTURES
-            = new ConcurrentHashMap<>();
+    // 保存在 Channel 上的属性名
+    public static final AttributeKey<UnprocessedRequests> KEY = AttributeKey.valueOf("unprocessedRequests");
+    // 分段数量，必须是 2 的幂
+    private static final int STRIPES = 16;
+    // 超时定时器，精度 10 毫秒，时间轮转一圈约 5 秒，超时时间更长的请求多转几圈
+    private static final Timer TIMEOUT_TIMER = new HashedWheelTimer(
+            ThreadPoolFactoryUtil.createThreadFactory("rpc-request-timeout", true), 10, TimeUnit.MILLISECONDS, 512);
 
-    // 存储一个请求对应的未来结果
-    public void put(String requestId, CompletableFuture<RpcResponse<Object>> future){
-        UNPROCESSED_RESPONSE_FUTURES.put(requestId, future);
+    // 请求 id 计数器，0 保留给心跳等不需要匹配响应的消息
+    private final AtomicLong nextRequestId = new AtomicLong();
+    // 按请求 id 的低位分段
+    private final Stripe[] stripes;
+    // 未完成的请求数，连接池据此选择连接
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public UnprocessedRequests() {
+        stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * 分配请求 id 并存储该请求对应的未来结果
+     * @param future 请求的未来结果
+     * @return 分配的请求 id
+     */
+    public long put(CompletableFuture<RpcResponse<Object>> future) {
+        long requestId = nextRequestId();
+        Stripe stripe = stripe(requestId);
+        // 先计数再放入，响应不会在计数之前把请求移除
+        pending.incrementAndGet();
+        synchronized (stripe) {
+            stripe.put(requestId, future);
+        }
+        return requestId;
+    }
+
+    /**
+     * 分配请求 id 并存储该请求对应的未来结果，超时时间内没有收到响应时移除请求，以 {@link RpcException} 结束
+     * @param future 请求的未来结果
+     * @param timeoutMillis 超时时间（毫秒），0 或负数表示不超时
+     * @return 分配的请求 id
+     */
+    public long put(CompletableFuture<RpcResponse<Object>> future, long timeoutMillis) {
+        long requestId = put(future);
+        if (timeoutMillis > 0) {
+            Timeout timeout = TIMEOUT_TIMER.newTimeout(t -> {
+                if (remove(requestId) != null) {
+                    future.completeExceptionally(new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT,
+                            "requestId:" + requestId + ", timeout:" + timeoutMillis + "ms"));
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            // 请求以任何方式结束后都取消定时任务，时间轮中不会堆积已经完成的请求
+            future.whenComplete((r, e) -> timeout.cancel());
+        }
+        return requestId;
+    }
+
+    /**
+     * 分配请求 id，流式调用不需要等待单个响应，只分配 id
+     * @return 请求 id
+     */
+    public long nextRequestId() {
+        return nextRequestId.incrementAndGet();
+    }
+
+    /**
+     * 移除请求，请求发送失败时调用
+     * @param requestId 请求 id
+     * @return 请求对应的未来结果，不存在时返回 null
+     */
+    public CompletableFuture<RpcResponse<Object>> remove(long requestId) {
+        Stripe stripe = stripe(requestId);
+        CompletableFuture<RpcResponse<Object>> future;
+        synchronized (stripe) {
+            future = stripe.remove(requestId);
+        }
+        if (future != null) {
+            pending.decrementAndGet();
+        }
+        return future;
+    }
+
+    /**
+     * 未完成的请求数
+     * @return 请求数
+     */
+    public int pending() {
+        return pending.get();
     }
 
-    // 将请求对应的结果标记为完成状态
-    public void complete(RpcResponse<Object> rpcResponse){
-        CompletableFuture<RpcResponse<Object>> future = UNPROCESSED_RESPONSE_FUTURES.remove(rpcResponse.getRequestId());
-        if (null != future){
-            future.complete(rpcResponse);
-        } else {
-            throw new IllegalStateException();
+    /**
+     * 请求是否仍在等待响应，解码器据此决定是否需要反序列化响应的消息体
+     * @param requestId 请求 id
+     * @return 仍在等待响应时返回 true
+     */
+    public boolean contains(long requestId) {
+        Stripe stripe = stripe(requestId);
+        synchronized (stripe) {
+            return stripe.containsKey(requestId);
         }
     }
 
+    /**
+     * 将请求对应的结果标记为完成状态
+     * @param requestId 消息头中的请求 id
+     * @param rpcResponse 响应
+     * @return 请求仍在等待响应时返回 true
+     */
+    public boolean complete(long requestId, RpcResponse<Object> rpcResponse) {
+        CompletableFuture<RpcResponse<Object>> future = remove(requestId);
+        if (future == null) {
+            return false;
+        }
+        future.complete(rpcResponse);
+        return true;
+    }
+
+    /**
+     * 以异常结束所有未完成的请求，连接关闭时调用
+     * @param cause 异常
+     */
+    public void failAll(Throwable cause) {
+        List<CompletableFuture<RpcResponse<Object>>> futures = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                futures.addAll(stripe.values());
+                stripe.clear();
+            }
+        }
+        pending.addAndGet(-futures.size());
+        // 在锁外结束请求，调用方的回调可能再次访问本对象
+        for (CompletableFuture<RpcResponse<Object>> future : futures) {
+            future.completeExceptionally(cause);
+        }
+    }
+
+    private Stripe stripe(long requestId) {
+        return stripes[(int) requestId & (STRIPES - 1)];
+    }
+
+    /**
+     * 一个分段，具体的类型可以直接创建数组，不需要泛型数组的强制转换
+     */
+    private static final class Stripe extends LongObjectHashMap<CompletableFuture<RpcResponse<Object>>> {
+    }
 }
@@ -0,0 +1,140 @@
+package org.vinci.remoting.transport.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+
+import java.io.OutputStream;
+import java.util.function.IntConsumer;
+
+/**
+ * 消息体的输出流，序列化和压缩的结果写入不超过分块大小的缓冲区
+ * <p>
+ * 第一块缓冲区按预测的大小申请，写满分块大小后换一块新的缓冲区，写完的缓冲区依次加入 {@link CompositeByteBuf}。
+ * 大消息体不需要一整块连续内存，分块发送时每一帧直接使用其中的切片
+ * </p>
+ * 只在 EventLoop 中使用，不需要同步
+ */
+final class BodyOutputStream extends OutputStream {
+    private final ByteBufAllocator alloc;
+    private final int chunkSize;
+    // 已经写满的缓冲区，只有一块时为 null
+    private CompositeByteBuf full;
+    // 正在写入的缓冲区
+    private ByteBuf current;
+
+    /**
+     * @param alloc 内存分配器
+     * @param initialCapacity 第一块缓冲区的初始大小
+     * @param chunkSize 每块缓冲区的最大大小
+     */
+    BodyOutputStream(ByteBufAllocator alloc, int initialCapacity, int chunkSize) {
+        this.alloc = alloc;
+        this.chunkSize = chunkSize;
+        this.current = alloc.ioBuffer(Math.min(initialCapacity, chunkSize), chunkSize);
+    }
+
+    @Override
+    public void write(int b) {
+        ensureWritable(1);
+        current.writeByte(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            ensureWritable(1);
+            int n = Math.min(len, current.maxWritableBytes());
+            current.writeBytes(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    void writeByte(int value) {
+        ensureWritable(1);
+        current.writeByte(value);
+    }
+
+    void writeInt(int value) {
+        ensureWritable(4);
+        current.writeInt(value);
+    }
+
+    void writeLong(long value) {
+        ensureWritable(8);
+        current.writeLong(value);
+    }
+
+    /**
+     * 写入一个 int 占位，数据写完后再回填，用于长度字段
+     * @return 回填占位的操作
+     */
+    IntConsumer writeIntPlaceholder() {
+        ensureWritable(4);
+        ByteBuf buf = current;
+        int index = buf.writerIndex();
+        buf.writeInt(0);
+        return value -> buf.setInt(index, value);
+    }
+
+    /**
+     * 已经写入的字节数
+     */
+    int size() {
+        return (full == null ? 0 : full.readableBytes()) + current.readableBytes();
+    }
+
+    /**
+     * 结束写入
+     * @return 消息体，只有一块缓冲区时直接返回该缓冲区，由调用方释放
+     */
+    ByteBuf finish() {
+        ByteBuf body;
+        if (full == null) {
+            body = current;
+        } else {
+            body = full.addComponent(true, current);
+            full = null;
+        }
+        current = null;
+        return body;
+    }
+
+    /**
+     * 放弃写入的数据，编码失败时调用
+     */
+    void release() {
+        if (full != null) {
+            full.release();
+            full = null;
+        }
+        if (current != null) {
+            current.release();
+            current = null;
+        }
+    }
+
+    /**
+     * 序列化器或压缩流关闭时会关闭目标流，消息体由 {@link #finish()} 取出，这里什么也不做
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * 当前缓冲区剩余的空间不足时换一块新的缓冲区
+     * @param length 需要连续写入的字节数
+     */
+    private void ensureWritable(int length) {
+        if (current.maxWritableBytes() >= length) {
+            return;
+        }
+        if (full == null) {
+            full = alloc.compositeBuffer(Integer.MAX_VALUE);
+        }
+        full.addComponent(true, current);
+        // 已经超过一块，之后的缓冲区直接按分块大小申请
+        current = alloc.ioBuffer(chunkSize, chunkSize);
+    }
+}
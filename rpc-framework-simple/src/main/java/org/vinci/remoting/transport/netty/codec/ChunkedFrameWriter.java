@@ -0,0 +1,153 @@
+package org.vinci.remoting.transport.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.LongObjectHashMap;
+import org.vinci.remoting.constants.RpcConstants;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+
+/**
+ * 逐块发送 {@link ChunkedFrames}
+ * <p>
+ * 上一块写入 Socket 之后才写下一块，期间其他消息可以穿插写出，一个大消息不会阻塞同一连接上的小请求。
+ * 与 Netty 的 ChunkedWriteHandler 不同，后续消息不需要排在大消息之后
+ * </p>
+ * 例外是请求 id 相同的消息：接收方按请求 id 拼接分块，流式调用的后续元素、结束信号必须等前一个分块消息发送完毕，
+ * 这些消息先排队，前一个消息的最后一块写出后再按顺序写出
+ * <p>
+ * 请求 id 为 0 的心跳、方法绑定、字典消息从不排队：使用它们的请求或响应有自己的请求 id，会直接写出，
+ * 控制消息必须先于它们到达。因此可能分块发送的消息都不能使用请求 id 0，批量消息同样分配请求 id
+ * </p>
+ * <p>
+ * 需要添加在 {@link RpcMessageEncoder} 之前（更靠近 pipeline 头部），只在 EventLoop 中执行，不需要同步
+ * </p>
+ */
+public class ChunkedFrameWriter extends ChannelOutboundHandlerAdapter {
+    // 帧中请求 id 的偏移：魔数 4 + 版本 1 + 长度 4 + 消息类型 1 + 序列化类型 1 + 压缩类型 1
+    private static final int REQUEST_ID_OFFSET = 12;
+
+    // 正在逐块发送的请求 id -> 排在其后的同一请求 id 的消息
+    private final LongObjectHashMap<ArrayDeque<PendingWrite>> inFlight = new LongObjectHashMap<>();
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        long requestId;
+        if (!inFlight.isEmpty() && (requestId = requestId(msg)) != 0) {
+            ArrayDeque<PendingWrite> pending = inFlight.get(requestId);
+            if (pending != null) {
+                pending.add(new PendingWrite(msg, promise));
+                return;
+            }
+        }
+        if (msg instanceof ChunkedFrames) {
+            ChunkedFrames chunks = (ChunkedFrames) msg;
+            inFlight.put(chunks.getRequestId(), new ArrayDeque<>());
+            // 第一块跟随调用方的 flush 写出
+            writeNext(ctx, chunks, promise, false);
+        } else {
+            ctx.write(msg, promise);
+        }
+    }
+
+    /**
+     * 连接关闭时释放排队中的消息
+     * @param ctx 操作Channel的上下文信息
+     */
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        ClosedChannelException cause = new ClosedChannelException();
+        for (ArrayDeque<PendingWrite> pending : inFlight.values()) {
+            for (PendingWrite write : pending) {
+                write.release(cause);
+            }
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * 写出下一块，写出成功后继续写后续的块，全部写完后通知调用方
+     * @param ctx 操作Channel的上下文信息
+     * @param chunks 待发送的分块
+     * @param promise 调用方的 promise
+     * @param flush 是否立即 flush
+     */
+    private void writeNext(ChannelHandlerContext ctx, ChunkedFrames chunks, ChannelPromise promise, boolean flush) {
+        ByteBuf frame = chunks.nextFrame(ctx.alloc());
+        boolean end = chunks.isEnd();
+        ChannelFuture future = flush ? ctx.writeAndFlush(frame) : ctx.write(frame);
+        future.addListener(f -> {
+            if (!f.isSuccess()) {
+                chunks.release();
+                promise.tryFailure(f.cause());
+                writePending(ctx, chunks.getRequestId());
+            } else if (end) {
+                chunks.release();
+                promise.trySuccess();
+                writePending(ctx, chunks.getRequestId());
+            } else {
+                writeNext(ctx, chunks, promise, true);
+            }
+        });
+    }
+
+    /**
+     * 分块消息发送结束，按顺序写出排在其后的同一请求 id 的消息
+     * @param ctx 操作Channel的上下文信息
+     * @param requestId 请求 id
+     */
+    private void writePending(ChannelHandlerContext ctx, long requestId) {
+        ArrayDeque<PendingWrite> pending = inFlight.remove(requestId);
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        // 其中再有分块消息时，后面的消息会重新排到它之后
+        for (PendingWrite write : pending) {
+            write(ctx, write.msg, write.promise);
+        }
+        ctx.flush();
+    }
+
+    /**
+     * 消息的请求 id，编码后的帧从消息头中读取
+     * @param msg 编码后的消息
+     * @return 请求 id，心跳、字典、方法绑定等消息为 0
+     */
+    private static long requestId(Object msg) {
+        if (msg instanceof ChunkedFrames) {
+            return ((ChunkedFrames) msg).getRequestId();
+        }
+        if (msg instanceof ByteBuf && ((ByteBuf) msg).readableBytes() >= RpcConstants.HEAD_LENGTH) {
+            ByteBuf frame = (ByteBuf) msg;
+            return frame.getLong(frame.readerIndex() + REQUEST_ID_OFFSET);
+        }
+        return 0;
+    }
+
+    /**
+     * 排队中的消息
+     */
+    private static final class PendingWrite {
+        private final Object msg;
+        private final ChannelPromise promise;
+
+        private PendingWrite(Object msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+
+        private void release(Throwable cause) {
+            if (msg instanceof ChunkedFrames) {
+                ((ChunkedFrames) msg).release();
+            } else {
+                ReferenceCountUtil.release(msg);
+            }
+            promise.tryFailure(cause);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.vinci.remoting.transport.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import org.vinci.remoting.constants.RpcConstants;
+
+/**
+ * 超过分块大小的消息体，按固定大小拆分成多个分块帧逐个发送
+ * <p>
+ * 每个分块帧都带有完整的消息头，请求 id、序列化类型和压缩类型与原消息相同；
+ * 除最后一块外，消息类型都带有 {@link RpcConstants#CHUNK_FLAG} 标志，接收方据此拼接消息体
+ * </p>
+ * 由 {@link RpcMessageEncoder} 创建，交给 {@link ChunkedFrameWriter} 发送，持有消息体的引用直到全部发送完毕
+ */
+public class ChunkedFrames {
+    private final byte messageType;
+    private final byte codec;
+    private final byte compress;
+    private final long requestId;
+    private final int chunkSize;
+    // 尚未发送的消息体
+    private final ByteBuf body;
+
+    public ChunkedFrames(byte messageType, byte codec, byte compress, long requestId, ByteBuf body, int chunkSize) {
+        this.messageType = messageType;
+        this.codec = codec;
+        this.compress = compress;
+        this.requestId = requestId;
+        this.body = body;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 消息的请求 id
+     */
+    public long getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * 是否已经全部发送
+     */
+    public boolean isEnd() {
+        return !body.isReadable();
+    }
+
+    /**
+     * 生成下一个分块帧
+     * @param alloc 内存分配器
+     * @return 分块帧，消息头与消息体切片拼接而成
+     */
+    public ByteBuf nextFrame(ByteBufAllocator alloc) {
+        int length = Math.min(chunkSize, body.readableBytes());
+        ByteBuf chunk = body.readRetainedSlice(length);
+        byte type = body.isReadable() ? (byte) (messageType | RpcConstants.CHUNK_FLAG) : messageType;
+        ByteBuf header = alloc.ioBuffer(RpcConstants.HEAD_LENGTH);
+        header.writeInt(RpcConstants.MAGIC_CODE);
+        header.writeByte(RpcConstants.VERSION);
+        header.writeInt(RpcConstants.HEAD_LENGTH + length);
+        header.writeByte(type);
+        header.writeByte(codec);
+        header.writeByte(compress);
+        header.writeLong(requestId);
+        return alloc.compositeBuffer(2).addComponents(true, header, chunk);
+    }
+
+    /**
+     * 释放剩余的消息体，发送完毕或者发送失败时调用
+     */
+    public void release() {
+        body.release();
+    }
+}
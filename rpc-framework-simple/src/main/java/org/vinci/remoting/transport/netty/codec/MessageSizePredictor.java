@@ -0,0 +1,76 @@
+package org.vinci.remoting.transport.netty.codec;
+
+/**
+ * 按消息类型预测消息体大小，用于编码时一次性申请合适容量的 ByteBuf，减少扩容带来的拷贝
+ * 思路与 Netty 的 AdaptiveRecvByteBufAllocator 类似：实际大小超过预测值时立即调大，
+ * 连续多次明显偏小时才逐步调小
+ * <p>
+ * 每个 Channel 持有一个编码器实例，编码只在该 Channel 的 EventLoop 中执行，因此不需要同步
+ * </p>
+ */
+public class MessageSizePredictor {
+
+    // 最小预测值
+    private static final int MIN_SIZE = 64;
+    // 最大预测值，更大的消息依靠 ByteBuf 自身扩容
+    private static final int MAX_SIZE = 64 * 1024;
+    // 连续偏小多少次后才调小预测值
+    private static final int DECREASE_THRESHOLD = 4;
+    // 支持的消息类型数量（消息类型编号小于该值）
+    private static final int TYPE_SLOTS = 16;
+
+    // 每种消息类型当前的预测值
+    private final int[] predictions = new int[TYPE_SLOTS];
+    // 每种消息类型连续偏小的次数
+    private final int[] decreaseCounts = new int[TYPE_SLOTS];
+
+    public MessageSizePredictor() {
+        for (int i = 0; i < TYPE_SLOTS; i++) {
+            predictions[i] = 256;
+        }
+    }
+
+    /**
+     * 获取指定消息类型的预测大小
+     * @param messageType 消息类型
+     * @return 预测的消息体大小
+     */
+    public int predict(byte messageType) {
+        return predictions[slot(messageType)];
+    }
+
+    /**
+     * 记录一次实际编码出的消息体大小，并据此调整预测值
+     * @param messageType 消息类型
+     * @param actualSize 实际的消息体大小
+     */
+    public void record(byte messageType, int actualSize) {
+        int slot = slot(messageType);
+        int predicted = predictions[slot];
+        if (actualSize > predicted) {
+            // 偏大时立即按 2 的幂调大
+            predictions[slot] = normalize(actualSize);
+            decreaseCounts[slot] = 0;
+        } else if (actualSize <= predicted >>> 2) {
+            // 连续多次不足预测值的四分之一时减半
+            if (++decreaseCounts[slot] >= DECREASE_THRESHOLD) {
+                predictions[slot] = Math.max(MIN_SIZE, predicted >>> 1);
+                decreaseCounts[slot] = 0;
+            }
+        } else {
+            decreaseCounts[slot] = 0;
+        }
+    }
+
+    private static int slot(byte messageType) {
+        return messageType & (TYPE_SLOTS - 1);
+    }
+
+    private static int normalize(int size) {
+        if (size >= MAX_SIZE) {
+            return MAX_SIZE;
+        }
+        int n = Integer.highestOneBit(size);
+        return Math.max(MIN_SIZE, n == size ? n : n << 1);
+    }
+}
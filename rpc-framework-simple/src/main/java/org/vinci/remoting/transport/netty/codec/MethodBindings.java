@@ -0,0 +1,83 @@
+package org.vinci.remoting.transport.netty.codec;
+
+import org.vinci.remoting.dto.RpcMethodBinding;
+import org.vinci.remoting.dto.RpcRequest;
+import org.vinci.remoting.handler.MethodKey;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 客户端一个连接上已经绑定的方法 id
+ * <p>
+ * 方法 id 在编码器中分配，编码只在 Channel 的 EventLoop 中执行，绑定消息一定先于使用该 id 的请求写出，
+ * 因此不需要同步，也不需要等待服务端确认
+ * </p>
+ */
+public class MethodBindings {
+    // 一个连接上最多绑定的方法数，超过后的方法继续发送完整的请求
+    private static final int MAX_METHODS = 1 << 16;
+    // 按下标记录的模板 id 上限，更大的模板 id 按方法签名查找
+    private static final int MAX_TEMPLATES = 1 << 16;
+
+    // (服务, 分组, 版本, 方法签名) -> 方法 id
+    private final Map<MethodKey, Integer> methodIds = new HashMap<>();
+    // 模板 id -> 方法 id，由请求模板生成的请求直接按下标查找
+    private int[] templateMethodIds = new int[16];
+
+    /**
+     * 获取请求对应方法已经绑定的 id
+     * @param rpcRequest 完整的请求
+     * @return 方法 id，尚未绑定时返回 0
+     */
+    public int methodId(RpcRequest rpcRequest) {
+        int templateId = rpcRequest.getTemplateId();
+        if (templateId > 0 && templateId < templateMethodIds.length && templateMethodIds[templateId] != 0) {
+            return templateMethodIds[templateId];
+        }
+        Integer methodId = methodIds.get(MethodKey.of(rpcRequest));
+        if (methodId == null) {
+            return 0;
+        }
+        remember(templateId, methodId);
+        return methodId;
+    }
+
+    /**
+     * 为请求对应的方法分配新的 id
+     * @param rpcRequest 完整的请求
+     * @return 需要发送给服务端的绑定消息，方法数达到上限时返回 null
+     */
+    public RpcMethodBinding bind(RpcRequest rpcRequest) {
+        if (methodIds.size() >= MAX_METHODS) {
+            return null;
+        }
+        int methodId = methodIds.size() + 1;
+        methodIds.put(MethodKey.of(rpcRequest), methodId);
+        remember(rpcRequest.getTemplateId(), methodId);
+        return RpcMethodBinding.builder()
+                .methodId(methodId)
+                .interfaceName(rpcRequest.getInterfaceName())
+                .methodName(rpcRequest.getMethodName())
+                .paramTypes(rpcRequest.getParamTypes())
+                .group(rpcRequest.getGroup())
+                .version(rpcRequest.getVersion())
+                .build();
+    }
+
+    /**
+     * 记录模板对应的方法 id
+     * @param templateId 模板 id，0 表示没有模板
+     * @param methodId 方法 id
+     */
+    private void remember(int templateId, int methodId) {
+        if (templateId <= 0 || templateId >= MAX_TEMPLATES) {
+            return;
+        }
+        if (templateId >= templateMethodIds.length) {
+            templateMethodIds = Arrays.copyOf(templateMethodIds, Math.max(templateId + 1, templateMethodIds.length << 1));
+        }
+        templateMethodIds[templateId] = methodId;
+    }
+}
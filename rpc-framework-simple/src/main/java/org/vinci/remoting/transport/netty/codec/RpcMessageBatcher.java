@@ -0,0 +1,222 @@
+package org.vinci.remoting.transport.netty.codec;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+import org.vinci.enums.RpcConfigEnum;
+import org.vinci.remoting.constants.RpcConstants;
+import org.vinci.remoting.dto.RpcMessage;
+import org.vinci.remoting.transport.netty.client.UnprocessedRequests;
+import org.vinci.utils.RpcConfigUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把同一连接上短时间内写出的多条请求或响应合并成一条 {@link RpcConstants#BATCH_TYPE} 消息
+ * <p>
+ * 合并后的消息只有一个消息头，消息体整体压缩一次，写出时只有一次系统调用。
+ * 等待时间随负载调整：按消息到达的平均间隔估计等待期间还会有多少条消息，
+ * 预计等不到新消息时不设定时器，只把发送推迟到 EventLoop 中已经排队的写操作之后，低负载时几乎不增加延迟；
+ * 消息密集时最多等待配置的时间，或者凑满一批后立即发送
+ * </p>
+ * 其他类型的消息写出前先发送已经攒下的批量消息，保证同一连接上消息的顺序不变。
+ * 需要添加在 {@link RpcMessageEncoder} 之后（更靠近 pipeline 尾部），只在 EventLoop 中执行，不需要同步
+ */
+@Slf4j
+public class RpcMessageBatcher extends ChannelOutboundHandlerAdapter {
+    // 一批最多的消息数
+    private static final int MAX_BATCH_SIZE = Math.max(2, RpcConfigUtil.getInt(RpcConfigEnum.BATCH_SIZE, 64));
+    // 最长等待时间（纳秒）
+    private static final long MAX_LINGER_NANOS = TimeUnit.MICROSECONDS.toNanos(
+            Math.max(0, RpcConfigUtil.getLong(RpcConfigEnum.BATCH_LINGER, 200)));
+    // 服务端连接上批量消息的请求 id 计数器
+    private static final AttributeKey<AtomicLong> BATCH_IDS = AttributeKey.valueOf("batchIds");
+
+    // 攒下的消息和对应的 promise
+    private final List<RpcMessage> messages = new ArrayList<>();
+    private final List<ChannelPromise> promises = new ArrayList<>();
+    // 是否合并，客户端按配置开启，服务端在收到批量消息后开启
+    private boolean enabled;
+    // 是否已经安排了发送任务
+    private boolean flushScheduled;
+    // 消息到达的平均间隔（纳秒），按指数加权移动平均计算
+    private long avgIntervalNanos = Long.MAX_VALUE >> 1;
+    // 上一条消息的到达时间
+    private long lastArrivalNanos = System.nanoTime();
+
+    public RpcMessageBatcher(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 为批量消息、批量调用消息分配请求 id
+     * 批量消息可能分块发送，不能使用控制消息的请求 id 0。客户端与普通请求共用 {@link UnprocessedRequests} 的计数器；
+     * 服务端连接上没有该计数器，从 -1 开始递减分配，不会与客户端分配的请求 id 相同
+     * @param channel 连接
+     * @return 请求 id
+     */
+    public static long nextBatchId(Channel channel) {
+        UnprocessedRequests unprocessedRequests = channel.attr(UnprocessedRequests.KEY).get();
+        if (unprocessedRequests != null) {
+            return unprocessedRequests.nextRequestId();
+        }
+        AtomicLong batchIds = channel.attr(BATCH_IDS).get();
+        if (batchIds == null) {
+            AtomicLong created = new AtomicLong();
+            batchIds = channel.attr(BATCH_IDS).setIfAbsent(created);
+            if (batchIds == null) {
+                batchIds = created;
+            }
+        }
+        return batchIds.decrementAndGet();
+    }
+
+    /**
+     * 开启合并，服务端收到客户端的批量消息后调用，响应也合并发送
+     */
+    public void enable() {
+        enabled = true;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (!enabled) {
+            ctx.write(msg, promise);
+            return;
+        }
+        if (!batchable(msg)) {
+            writeBatch(ctx);
+            ctx.write(msg, promise);
+            return;
+        }
+        RpcMessage rpcMessage = (RpcMessage) msg;
+        if (!messages.isEmpty() && !sameBatch(messages.get(0), rpcMessage)) {
+            writeBatch(ctx);
+        }
+        recordArrival();
+        messages.add(rpcMessage);
+        promises.add(promise);
+        if (messages.size() >= MAX_BATCH_SIZE) {
+            writeBatch(ctx);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (!messages.isEmpty() && !flushScheduled) {
+            flushScheduled = true;
+            long linger = linger();
+            Runnable task = () -> {
+                flushScheduled = false;
+                writeBatch(ctx);
+                ctx.flush();
+            };
+            if (linger > 0) {
+                ctx.executor().schedule(task, linger, TimeUnit.NANOSECONDS);
+            } else {
+                // 排在已经提交的写操作之后执行，这些写操作会加入同一批
+                ctx.executor().execute(task);
+            }
+        }
+        ctx.flush();
+    }
+
+    /**
+     * 连接关闭时以异常结束攒下的消息
+     * @param ctx 操作Channel的上下文信息
+     */
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        ClosedChannelException cause = new ClosedChannelException();
+        for (ChannelPromise promise : promises) {
+            promise.tryFailure(cause);
+        }
+        messages.clear();
+        promises.clear();
+    }
+
+    /**
+     * 写出攒下的消息，只有一条时按原样写出
+     * @param ctx 操作Channel的上下文信息
+     */
+    private void writeBatch(ChannelHandlerContext ctx) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (messages.size() == 1) {
+            ctx.write(messages.get(0), promises.get(0));
+            messages.clear();
+            promises.clear();
+            return;
+        }
+        RpcMessage first = messages.get(0);
+        RpcMessage batch = RpcMessage.builder()
+                .messageType(RpcConstants.BATCH_TYPE)
+                .codec(first.getCodec())
+                .compress(first.getCompress())
+                .requestId(nextBatchId(ctx.channel()))
+                .data(new ArrayList<>(messages))
+                .build();
+        ChannelPromise[] batchPromises = promises.toArray(new ChannelPromise[0]);
+        messages.clear();
+        promises.clear();
+        ctx.write(batch).addListener(f -> {
+            for (ChannelPromise promise : batchPromises) {
+                if (f.isSuccess()) {
+                    promise.trySuccess();
+                } else {
+                    promise.tryFailure(f.cause());
+                }
+            }
+        });
+    }
+
+    /**
+     * 更新消息到达的平均间隔，新样本的权重为 1/8
+     */
+    private void recordArrival() {
+        long now = System.nanoTime();
+        long interval = now - lastArrivalNanos;
+        lastArrivalNanos = now;
+        avgIntervalNanos += (interval - avgIntervalNanos) >> 3;
+    }
+
+    /**
+     * 本批的等待时间：按平均间隔估计凑满一批所需的时间，不超过最长等待时间；
+     * 等待期间预计等不到两条新消息时不值得等待，返回 0
+     * @return 等待时间（纳秒）
+     */
+    private long linger() {
+        if (MAX_LINGER_NANOS == 0 || avgIntervalNanos * 2 > MAX_LINGER_NANOS) {
+            return 0;
+        }
+        return Math.min(MAX_LINGER_NANOS, avgIntervalNanos * (MAX_BATCH_SIZE - messages.size()));
+    }
+
+    /**
+     * 只合并请求和响应，心跳、流信号等消息直接写出
+     */
+    private static boolean batchable(Object msg) {
+        if (!(msg instanceof RpcMessage)) {
+            return false;
+        }
+        byte messageType = ((RpcMessage) msg).getMessageType();
+        return messageType == RpcConstants.REQUEST_TYPE || messageType == RpcConstants.RESPONSE_TYPE;
+    }
+
+    /**
+     * 同一批消息的类型、序列化类型和压缩类型都相同
+     */
+    private static boolean sameBatch(RpcMessage first, RpcMessage next) {
+        return first.getMessageType() == next.getMessageType()
+                && first.getCodec() == next.getCodec()
+                && first.getCompress() == next.getCompress();
+    }
+}
@@ -2,27 +2,40 @@ package org.vinci.remoting.transport.netty.codec;
 
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.collection.LongObjectHashMap;
 import lombok.extern.slf4j.Slf4j;
 import org.vinci.compress.Compress;
+import org.vinci.compress.zstd.ZstdDictionaryCompress;
+import org.vinci.compress.zstd.ZstdPeerDictionaries;
 import org.vinci.enums.CompressTypeEnum;
 import org.vinci.enums.SerializationTypeEnum;
 import org.vinci.extension.ExtensionLoader;
 import org.vinci.remoting.constants.RpcConstants;
 import org.vinci.remoting.dto.RpcMessage;
+import org.vinci.remoting.dto.RpcMethodBinding;
 import org.vinci.remoting.dto.RpcRequest;
 import org.vinci.remoting.dto.RpcResponse;
+import org.vinci.remoting.dto.RpcStreamMessage;
+import org.vinci.remoting.transport.netty.client.UnprocessedRequests;
+import org.vinci.remoting.transport.netty.stream.StreamRegistry;
 import org.vinci.serialize.Serializer;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * custom protocol decoder
  * <pre>
- *   0     1     2     3     4        5     6     7     8         9          10      11     12  13  14   15 16
- *   +-----+-----+-----+-----+--------+----+----+----+------+-----------+-------+----- --+-----+-----+-------+
- *   |   magic   code        |version | full length         | messageType| codec|compress|    RequestId       |
+ *   0     1     2     3     4        5     6     7     8         9          10      11     12               19 20
+ *   +-----+-----+-----+-----+--------+----+----+----+------+-----------+-------+----- --+-----------------+
+ *   |   magic   code        |version | full length         | messageType| codec|compress|    RequestId    |
  *   +-----------------------+--------+---------------------+-----------+-----------+-----------+------------+
  *   |                                                                                                       |
  *   |                                         body                                                          |
@@ -30,7 +43,7 @@ import java.util.Arrays;
  *   |                                        ... ...                                                        |
  *   +-------------------------------------------------------------------------------------------------------+
  * 4B  magic code（魔法数）   1B version（版本）   4B full length（消息长度）    1B messageType（消息类型）
- * 1B compress（压缩类型） 1B codec（序列化类型）    4B  requestId（请求的Id）
+ * 1B compress（压缩类型） 1B codec（序列化类型）    8B  requestId（请求的Id）
  * body（object类型数据）
  * </pre>
  * <p>
@@ -47,6 +60,12 @@ import java.util.Arrays;
  */
 @Slf4j
 public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder{
+    // 读取解压后的批量消息体时每次读取的大小
+    private static final int DECOMPRESS_READ_SIZE = 8 * 1024;
+
+    // 请求 id -> 尚未拼接完成的分块消息体，值为 null 表示该消息已被丢弃，只需跳过后续分块
+    // 每个连接一个解码器实例，只在 EventLoop 中访问
+    private final LongObjectHashMap<CompositeByteBuf> partialBodies = new LongObjectHashMap<>();
 
     /**
      * @param maxFrameLength      最大帧长度, 决定了可以接收的最大数据长度
@@ -87,11 +106,11 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder{
         if (decoded instanceof ByteBuf){
             // 将解码后得到的对象转换为ByteBuf类型
             ByteBuf frame = (ByteBuf) decoded;
-            // 如果ByteBuf中的数据长度大于等于 16
+            // 如果ByteBuf中的数据长度大于等于消息头长度
             if (frame.readableBytes() >= RpcConstants.TOTAL_LENGTH){
                 try{
                     // 对ByteBuf进行解码，得到解码后的对象
-                    return decodeFrame(frame);
+                    return decodeFrame(ctx, frame);
                 } catch (Exception e) {
                     // 如果解码过程中出现异常，记录日志并抛出异常
                     log.error("Decode frame error!", e);
@@ -108,10 +127,11 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder{
 
     /**
      * 帧解码
+     * @param ctx 提供操作Channel的方法和属性
      * @param in 解码后的ByteBuf
-     * @return 解析后的RpcMessage对象
+     * @return 解析后的RpcMessage对象，不需要向后传递的消息返回 null
      */
-    private Object decodeFrame(ByteBuf in) {
+    private Object decodeFrame(ChannelHandlerContext ctx, ByteBuf in) throws IOException {
         // 校验魔数
         checkMagicNumber(in);
         // 校验版本号
@@ -120,12 +140,16 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder{
         int fullLength = in.readInt();
         // 读取消息类型、编解码方式、压缩方式、请求ID
         byte messageType = in.readByte();
+        // 带有分块标志时表示消息体还有后续分块
+        boolean moreChunks = (messageType & RpcConstants.CHUNK_FLAG) != 0;
+        messageType = (byte) (messageType & ~RpcConstants.CHUNK_FLAG);
         byte codecType = in.readByte();
         byte compressType = in.readByte();
-        int requestId = in.readInt();
+        long requestId = in.readLong();
         // 根据读取到的信息构建RpcMessage对象
         RpcMessage rpcMessage = RpcMessage.builder()
                 .codec(codecType)
+                .compress(compressType)
                 .requestId(requestId)
                 .messageType(messageType).build();
         // 若是心跳请求消息，则设置数据为PING并返回RpcMessage对象
@@ -140,32 +164,237 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder{
         }
         // 计算消息体长度
         int bodyLength = fullLength - RpcConstants.HEAD_LENGTH;
+        // 若是压缩字典消息，则注册到本连接的字典中，不向后传递
+        if (messageType == RpcConstants.DICTIONARY_TYPE) {
+            byte[] content = new byte[bodyLength];
+            in.readBytes(content);
+            ZstdPeerDictionaries dictionaries = ctx.channel().attr(ZstdPeerDictionaries.KEY).get();
+            if (dictionaries == null) {
+                dictionaries = new ZstdPeerDictionaries();
+                ctx.channel().attr(ZstdPeerDictionaries.KEY).set(dictionaries);
+            }
+            log.info("receive zstd dictionary [{}] from [{}]", dictionaries.register(content), ctx.channel().remoteAddress());
+            return null;
+        }
+        // 分块消息：前面的块先缓存，最后一块到达后再解码拼接好的消息体
+        if (moreChunks || partialBodies.containsKey(requestId)) {
+            return decodeChunk(ctx, rpcMessage, in, bodyLength, moreChunks);
+        }
+        if (isDiscarded(ctx, messageType, requestId)) {
+            return null;
+        }
         // 若消息体长度大于0，则读取消息体
         if (bodyLength > 0) {
-            byte[] bs = new byte[bodyLength];
-            in.readBytes(bs);
-            // 解压缩
-            String compressName = CompressTypeEnum.getName(compressType);
-            Compress compress = ExtensionLoader.getExtensionLoader(Compress.class)
-                    .getExtension(compressName);
-            bs = compress.decompress(bs);
-            // 反序列化
-            String codecName = SerializationTypeEnum.getName(rpcMessage.getCodec());
-            log.info("codec name: [{}] ", codecName);
-            Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class)
-                    .getExtension(codecName);
-            if (messageType == RpcConstants.REQUEST_TYPE) {
-                RpcRequest tmpValue = serializer.deserialize(bs, RpcRequest.class);
-                rpcMessage.setData(tmpValue);
-            } else {
-                RpcResponse tmpValue = serializer.deserialize(bs, RpcResponse.class);
-                rpcMessage.setData(tmpValue);
-            }
+            // 消息体直接使用帧内存的切片，不拷贝到字节数组
+            decodeBody(ctx, rpcMessage, in.readSlice(bodyLength));
         }
         // 返回RpcMessage对象
         return rpcMessage;
     }
 
+    /**
+     * 处理一个分块帧
+     * 每一块都以切片的形式加入 CompositeByteBuf，不需要申请一整块连续内存，也不拷贝数据
+     * @param ctx 提供操作Channel的方法和属性
+     * @param rpcMessage 根据消息头构建的RpcMessage对象
+     * @param in 当前帧，读索引位于消息体开头
+     * @param bodyLength 当前帧的消息体长度
+     * @param moreChunks 是否还有后续分块
+     * @return 最后一块到达时返回解码后的RpcMessage对象，否则返回 null
+     */
+    private Object decodeChunk(ChannelHandlerContext ctx, RpcMessage rpcMessage, ByteBuf in, int bodyLength,
+                               boolean moreChunks) throws IOException {
+        long requestId = rpcMessage.getRequestId();
+        if (!partialBodies.containsKey(requestId)) {
+            // 第一块，已经不需要的响应只跳过后续分块，不缓存
+            boolean discarded = isDiscarded(ctx, rpcMessage.getMessageType(), requestId);
+            partialBodies.put(requestId, discarded ? null : ctx.alloc().compositeBuffer(Integer.MAX_VALUE));
+        }
+        CompositeByteBuf body = partialBodies.get(requestId);
+        if (body != null) {
+            if ((long) body.readableBytes() + bodyLength > RpcConstants.MAX_MESSAGE_LENGTH) {
+                partialBodies.remove(requestId);
+                body.release();
+                throw new TooLongFrameException("chunked message exceeds " + RpcConstants.MAX_MESSAGE_LENGTH);
+            }
+            body.addComponent(true, in.readRetainedSlice(bodyLength));
+        }
+        if (moreChunks) {
+            return null;
+        }
+        partialBodies.remove(requestId);
+        if (body == null) {
+            return null;
+        }
+        try {
+            decodeBody(ctx, rpcMessage, body);
+        } finally {
+            body.release();
+        }
+        return rpcMessage;
+    }
+
+    /**
+     * 客户端收到的响应如果已经没有对应的请求（例如已经超时，或者作为对冲请求的落后者被取消），直接丢弃，不必反序列化消息体
+     * @param ctx 提供操作Channel的方法和属性
+     * @param messageType 消息类型
+     * @param requestId 请求 id
+     * @return 需要丢弃时返回 true
+     */
+    private boolean isDiscarded(ChannelHandlerContext ctx, byte messageType, long requestId) {
+        if (messageType != RpcConstants.RESPONSE_TYPE) {
+            return false;
+        }
+        UnprocessedRequests unprocessedRequests = ctx.channel().attr(UnprocessedRequests.KEY).get();
+        StreamRegistry streams = ctx.channel().attr(StreamRegistry.KEY).get();
+        if (unprocessedRequests != null && !unprocessedRequests.contains(requestId)
+                && (streams == null || !streams.isReceiving(requestId))) {
+            log.debug("discard response [{}], no pending request", requestId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 解压并反序列化消息体
+     * @param ctx 提供操作Channel的方法和属性
+     * @param rpcMessage 根据消息头构建的RpcMessage对象，解码结果设置到其 data 字段
+     * @param body 消息体
+     */
+    private void decodeBody(ChannelHandlerContext ctx, RpcMessage rpcMessage, ByteBuf body) throws IOException {
+        // 解压缩
+        String compressName = CompressTypeEnum.getName(rpcMessage.getCompress());
+        Compress compress = ExtensionLoader.getExtensionLoader(Compress.class)
+                .getExtension(compressName);
+        // 反序列化
+        String codecName = SerializationTypeEnum.getName(rpcMessage.getCodec());
+        log.debug("codec name: [{}] ", codecName);
+        Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class)
+                .getExtension(codecName);
+        if (rpcMessage.getMessageType() == RpcConstants.BATCH_TYPE
+                || rpcMessage.getMessageType() == RpcConstants.MULTI_CALL_TYPE) {
+            rpcMessage.setData(decodeBatch(ctx, rpcMessage, compress, serializer, body));
+            return;
+        }
+        Class<?> bodyClass = bodyClass(rpcMessage.getMessageType());
+        // 解压和反序列化都通过输入流从消息体中读取
+        try (InputStream bodyIn = decompress(ctx, compress, body)) {
+            rpcMessage.setData(serializer.deserialize(bodyIn, bodyClass));
+        }
+    }
+
+    /**
+     * 解压消息体，使用字典压缩的消息体到对端通过本连接发来的字典中查找字典
+     * @param ctx 提供操作Channel的方法和属性
+     * @param compress 压缩实例
+     * @param body 消息体
+     * @return 解压输入流
+     */
+    private static InputStream decompress(ChannelHandlerContext ctx, Compress compress, ByteBuf body) {
+        if (compress instanceof ZstdDictionaryCompress) {
+            return ((ZstdDictionaryCompress) compress).decompress(new ByteBufInputStream(body),
+                    ctx.channel().attr(ZstdPeerDictionaries.KEY).get());
+        }
+        return compress.decompress(new ByteBufInputStream(body));
+    }
+
+    /**
+     * 解码批量消息的消息体，格式见 {@link RpcMessageEncoder}
+     * 消息体整体解压后，每条消息从各自的切片中反序列化；客户端已经不需要的响应直接跳过
+     * @param ctx 提供操作Channel的方法和属性
+     * @param batch 批量消息
+     * @param compress 压缩实例
+     * @param serializer 序列化实例
+     * @param body 消息体
+     * @return 批量消息中的请求或响应
+     */
+    private List<RpcMessage> decodeBatch(ChannelHandlerContext ctx, RpcMessage batch, Compress compress,
+                                         Serializer serializer, ByteBuf body) throws IOException {
+        if (batch.getCompress() == CompressTypeEnum.NONE.getCode()) {
+            return decodeBatchEntries(ctx, batch, serializer, body);
+        }
+        // 解压结果在池化的缓冲区中，读出后立即归还
+        try (InputStream bodyIn = decompress(ctx, compress, body)) {
+            ByteBuf content = ctx.alloc().heapBuffer();
+            try {
+                int n;
+                do {
+                    n = content.writeBytes(bodyIn, DECOMPRESS_READ_SIZE);
+                } while (n != -1);
+                return decodeBatchEntries(ctx, batch, serializer, content);
+            } finally {
+                content.release();
+            }
+        }
+    }
+
+    /**
+     * 解码未压缩的批量消息体
+     * @param ctx 提供操作Channel的方法和属性
+     * @param batch 批量消息
+     * @param serializer 序列化实例
+     * @param content 未压缩的消息体
+     * @return 批量消息中的请求或响应
+     */
+    private List<RpcMessage> decodeBatchEntries(ChannelHandlerContext ctx, RpcMessage batch, Serializer serializer,
+                                                ByteBuf content) {
+        byte messageType = content.readByte();
+        int count = content.readInt();
+        Class<?> bodyClass = bodyClass(messageType);
+        List<RpcMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long requestId = content.readLong();
+            ByteBuf entry = content.readSlice(content.readInt());
+            if (isDiscarded(ctx, messageType, requestId)) {
+                continue;
+            }
+            messages.add(RpcMessage.builder()
+                    .messageType(messageType)
+                    .codec(batch.getCodec())
+                    .compress(batch.getCompress())
+                    .requestId(requestId)
+                    .data(serializer.deserialize(entry, bodyClass))
+                    .build());
+        }
+        return messages;
+    }
+
+    /**
+     * 连接关闭时释放尚未拼接完成的分块和对端发来的字典
+     * @param ctx 提供操作Channel的方法和属性
+     */
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) {
+        ZstdPeerDictionaries dictionaries = ctx.channel().attr(ZstdPeerDictionaries.KEY).getAndSet(null);
+        if (dictionaries != null) {
+            dictionaries.release();
+        }
+        for (CompositeByteBuf body : partialBodies.values()) {
+            if (body != null) {
+                body.release();
+            }
+        }
+        partialBodies.clear();
+    }
+
+    /**
+     * 消息体对应的类型
+     * @param messageType 消息类型
+     * @return 消息体的类型
+     */
+    private static Class<?> bodyClass(byte messageType) {
+        switch (messageType) {
+            case RpcConstants.REQUEST_TYPE:
+                return RpcRequest.class;
+            case RpcConstants.METHOD_BIND_TYPE:
+                return RpcMethodBinding.class;
+            case RpcConstants.STREAM_TYPE:
+                return RpcStreamMessage.class;
+            default:
+                return RpcResponse.class;
+        }
+    }
+
     /**
      * 检查协议版本
      * @param in 接收到的ByteBuf
@@ -185,17 +414,11 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder{
      * @param in 接收到的数据流
      */
     private void checkMagicNumber(ByteBuf in) {
-        // 读取前4位，即魔数，并进行比较
-        // 魔数的长度
-        int len = RpcConstants.MAGIC_NUMBER.length;
-        byte[] tmp = new byte[len];
-        // 从ByteBuf中读取魔数
-        in.readBytes(tmp);
-        for (int i = 0; i < len; i++) {
-            // 如果读取的魔数与预定义的不一致，则抛出异常
-            if (tmp[i] != RpcConstants.MAGIC_NUMBER[i]) {
-                throw new IllegalArgumentException("Unknown magic code: " + Arrays.toString(tmp));
-            }
+        // 一次读取前4位，即魔数，并进行比较
+        int magicCode = in.readInt();
+        // 如果读取的魔数与预定义的不一致，则抛出异常
+        if (magicCode != RpcConstants.MAGIC_CODE) {
+            throw new IllegalArgumentException("Unknown magic code: " + Integer.toHexString(magicCode));
         }
     }
 }
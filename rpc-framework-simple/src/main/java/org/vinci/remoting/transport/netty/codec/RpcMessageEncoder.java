@@ -2,27 +2,44 @@ package org.vinci.remoting.transport.netty.codec;
 
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
 import lombok.extern.slf4j.Slf4j;
+import org.vinci.compress.AbstractBlockCompress;
 import org.vinci.compress.Compress;
+import org.vinci.compress.zstd.ZstdDictionaries;
+import org.vinci.compress.zstd.ZstdDictionary;
+import org.vinci.compress.zstd.ZstdDictionaryCompress;
 import org.vinci.enums.CompressTypeEnum;
+import org.vinci.enums.RpcConfigEnum;
 import org.vinci.enums.SerializationTypeEnum;
 import org.vinci.extension.ExtensionLoader;
+import org.vinci.factory.SingletonFactory;
 import org.vinci.remoting.constants.RpcConstants;
 import org.vinci.remoting.dto.RpcMessage;
+import org.vinci.remoting.dto.RpcMethodBinding;
+import org.vinci.remoting.dto.RpcRequest;
+import org.vinci.remoting.dto.RpcResponse;
+import org.vinci.remoting.dto.RpcStreamMessage;
 import org.vinci.serialize.Serializer;
+import org.vinci.utils.RpcConfigUtil;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
 
 /**
  * <p>
  * custom protocol decoder
  * <p>
  * <pre>
- *   0     1     2     3     4        5     6     7     8         9          10      11     12  13  14   15 16
- *   +-----+-----+-----+-----+--------+----+----+----+------+-----------+-------+----- --+-----+-----+-------+
- *   |   magic   code        |version | full length         | messageType| codec|compress|    RequestId       |
+ *   0     1     2     3     4        5     6     7     8         9          10      11     12               19 20
+ *   +-----+-----+-----+-----+--------+----+----+----+------+-----------+-------+----- --+-----------------+
+ *   |   magic   code        |version | full length         | messageType| codec|compress|    RequestId    |
  *   +-----------------------+--------+---------------------+-----------+-----------+-----------+------------+
  *   |                                                                                                       |
  *   |                                         body                                                          |
@@ -30,7 +47,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  *   |                                        ... ...                                                        |
  *   +-------------------------------------------------------------------------------------------------------+
  * 4B  magic code（魔法数）   1B version（版本）   4B full length（消息长度）    1B messageType（消息类型）
- * 1B compress（压缩类型） 1B codec（序列化类型）    4B  requestId（请求的Id）
+ * 1B compress（压缩类型） 1B codec（序列化类型）    8B  requestId（请求的Id）
  * body（object类型数据）
  * </pre>
  *
@@ -38,74 +55,312 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 
 @Slf4j
-public class RpcMessageEncoder extends MessageToByteEncoder<RpcMessage> {
-    // 原子整数类, 用于编号
-    private static final AtomicInteger ATOMIC_INTEGER = new AtomicInteger(0);
+public class RpcMessageEncoder extends MessageToMessageEncoder<RpcMessage> {
+    // 默认的压缩阈值（字节）
+    private static final int DEFAULT_COMPRESS_THRESHOLD = 1024;
+
+    // 消息体达到该大小才压缩
+    private static final int COMPRESS_THRESHOLD =
+            RpcConfigUtil.getInt(RpcConfigEnum.COMPRESS_THRESHOLD, DEFAULT_COMPRESS_THRESHOLD);
+
+    // 默认的分块大小（字节）
+    private static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    // 消息体超过该大小时分块发送
+    private static final int CHUNK_SIZE = Math.min(RpcConstants.MAX_FRAME_LENGTH - RpcConstants.HEAD_LENGTH,
+            Math.max(1024, RpcConfigUtil.getInt(RpcConfigEnum.CHUNK_SIZE, DEFAULT_CHUNK_SIZE)));
+
+    // 按消息类型预测消息体大小，用于申请初始缓冲区
+    private final MessageSizePredictor sizePredictor = new MessageSizePredictor();
+
+    // zstd 字典的采样和注册中心
+    private final ZstdDictionaries zstdDictionaries = SingletonFactory.getInstance(ZstdDictionaries.class);
+
+    // 已经在本连接上发送给对端的字典 id，对端收到后才能解压使用该字典压缩的消息
+    private final Set<Long> announcedDictionaries = new HashSet<>();
+
+    // 本连接上已经绑定的方法 id，请求只携带方法 id 和参数
+    private final MethodBindings methodBindings = new MethodBindings();
 
     /**
      * 对 RpcMessage 对象进行编码
+     * 消息头和消息体分别写入池化的 ByteBuf，序列化直接写入消息体缓冲区，
+     * 最后用 CompositeByteBuf 拼接，不产生中间字节数组，也不需要回退写索引来补写长度。
+     * 超过分块大小的消息体由多块缓冲区组成，交给 {@link ChunkedFrameWriter} 逐块发送
      * @param ctx 操作Channel的上下文信息
      * @param rpcMessage 待编码的RpcMessage对象
-     * @param out 用于存储编码后的字节数据
+     * @param out 编码结果
      */
     @Override
-    protected void encode(ChannelHandlerContext ctx, RpcMessage rpcMessage, ByteBuf out) {
+    @SuppressWarnings("unchecked")
+    protected void encode(ChannelHandlerContext ctx, RpcMessage rpcMessage, List<Object> out) throws Exception {
+        byte messageType = rpcMessage.getMessageType();
+        // 实际使用的压缩类型，写入消息头供解码器判断
+        byte compressType = CompressTypeEnum.NONE.getCode();
+        ByteBuf header = ctx.alloc().ioBuffer(RpcConstants.HEAD_LENGTH);
+        ByteBuf body = null;
         try {
-            // 写入魔数（4字节）
-            out.writeBytes(RpcConstants.MAGIC_NUMBER);
-            // 写入协议版本号（1字节）
-            out.writeByte(RpcConstants.VERSION);
-            // 预留4字节，用于写入消息总长度
-            out.writerIndex(out.writerIndex() + 4);
-            // 写入消息类型（1字节）
-            byte messageType = rpcMessage.getMessageType();
-            out.writeByte(messageType);
-            // 写入序列化类型（1字节）
-            out.writeByte(rpcMessage.getCodec());
-            // 写入压缩类型（1字节）
-            out.writeByte(CompressTypeEnum.GZIP.getCode());
-            // 写入消息编号，用于匹配请求和响应
-            out.writeInt(ATOMIC_INTEGER.getAndIncrement());
-            // build full length
-            byte[] bodyBytes = null;
-            int fullLength = RpcConstants.HEAD_LENGTH;
-
             // 如果消息类型不是心跳请求或响应，则需要进行序列化和压缩
-            // fullLength = head length + body length
             if (messageType != RpcConstants.HEARTBEAT_REQUEST_TYPE
                     && messageType != RpcConstants.HEARTBEAT_RESPONSE_TYPE) {
                 // 获取序列化实例，根据序列化类型
                 String codecName = SerializationTypeEnum.getName(rpcMessage.getCodec());
-                log.info("codec name: [{}] ", codecName);
+                log.debug("codec name: [{}] ", codecName);
                 Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class)
                         .getExtension(codecName);
-                // 序列化消息体
-                bodyBytes = serializer.serialize(rpcMessage.getData());
-                // 获取压缩实例，根据压缩类型
-                String compressName = CompressTypeEnum.getName(rpcMessage.getCompress());
-                Compress compress = ExtensionLoader.getExtensionLoader(Compress.class)
-                        .getExtension(compressName);
-                // 压缩消息体
-                bodyBytes = compress.compress(bodyBytes);
-                // 计算总长度
-                fullLength += bodyBytes.length;
+                // 根据预测的大小申请第一块缓冲区，大消息体按分块大小分段写入，不需要一整块连续内存
+                BodyOutputStream bodyOut = new BodyOutputStream(ctx.alloc(), sizePredictor.predict(messageType), CHUNK_SIZE);
+                try {
+                    Object data = rpcMessage.getData();
+                    if (messageType == RpcConstants.BATCH_TYPE || messageType == RpcConstants.MULTI_CALL_TYPE) {
+                        writeBatch(ctx, rpcMessage.getCodec(), serializer, (List<RpcMessage>) data, bodyOut, out);
+                    } else {
+                        if (messageType == RpcConstants.REQUEST_TYPE && data instanceof RpcRequest) {
+                            data = compactRequest(ctx, rpcMessage.getCodec(), (RpcRequest) data, out);
+                        }
+                        // 序列化结果直接写入消息体缓冲区
+                        serializer.serialize(data, bodyOut);
+                    }
+                } catch (RuntimeException e) {
+                    bodyOut.release();
+                    throw e;
+                }
+                body = bodyOut.finish();
+                sizePredictor.record(messageType, body.readableBytes());
+                if (rpcMessage.getCompress() != CompressTypeEnum.NONE.getCode()) {
+                    ByteBuf compressed = null;
+                    // 字典压缩对小消息体同样有效，不受压缩阈值限制；字典压缩需要整块输入，只用于不分块的消息体
+                    if (rpcMessage.getCompress() == CompressTypeEnum.ZSTD_DICT.getCode()
+                            && body.readableBytes() <= CHUNK_SIZE) {
+                        compressed = compressWithDictionary(ctx, rpcMessage, body, out);
+                    }
+                    // 其余情况只有消息体达到阈值时才压缩
+                    if (compressed == null && body.readableBytes() >= COMPRESS_THRESHOLD) {
+                        compressed = compress(ctx, rpcMessage.getCompress(), body);
+                    }
+                    if (compressed != null) {
+                        body.release();
+                        body = compressed;
+                        compressType = rpcMessage.getCompress();
+                    }
+                }
             }
-
-            if (bodyBytes != null) {
-                // 写入压缩后的消息体
-                out.writeBytes(bodyBytes);
+            // 大消息体拆分成分块帧，交给 ChunkedFrameWriter 逐块发送
+            if (body != null && body.readableBytes() > CHUNK_SIZE) {
+                header.release();
+                out.add(new ChunkedFrames(messageType, rpcMessage.getCodec(), compressType,
+                        rpcMessage.getRequestId(), body, CHUNK_SIZE));
+                return;
+            }
+            // fullLength = head length + body length
+            int fullLength = RpcConstants.HEAD_LENGTH + (body == null ? 0 : body.readableBytes());
+            writeHeader(header, fullLength, messageType, rpcMessage.getCodec(), compressType, rpcMessage.getRequestId());
+            if (body == null) {
+                out.add(header);
+            } else {
+                // 拼接消息头和消息体，写出时由底层做 gather write
+                out.add(ctx.alloc().compositeBuffer(2).addComponents(true, header, body));
             }
-            // 记录当前写索引，用于更新消息总长度
-            int writeIndex = out.writerIndex();
-            // 回到预留的长度字段位置
-            out.writerIndex(writeIndex - fullLength + RpcConstants.MAGIC_NUMBER.length + 1);
-            // 写入消息总长度
-            out.writeInt(fullLength);
-            // 回到当前写索引位置
-            out.writerIndex(writeIndex);
         } catch (Exception e) {
+            header.release();
+            if (body != null) {
+                body.release();
+            }
             log.error("Encode request error!", e);
+            throw e;
+        }
+    }
+
+    /**
+     * 写入消息头
+     * @param header 消息头缓冲区
+     * @param fullLength 消息总长度
+     * @param messageType 消息类型
+     * @param codec 序列化类型
+     * @param compressType 实际使用的压缩类型
+     * @param requestId 请求 id
+     */
+    private void writeHeader(ByteBuf header, int fullLength, byte messageType, byte codec, byte compressType,
+                             long requestId) {
+        // 写入魔数（4字节）
+        header.writeInt(RpcConstants.MAGIC_CODE);
+        // 写入协议版本号（1字节）
+        header.writeByte(RpcConstants.VERSION);
+        // 写入消息总长度（4字节）
+        header.writeInt(fullLength);
+        // 写入消息类型（1字节）
+        header.writeByte(messageType);
+        // 写入序列化类型（1字节）
+        header.writeByte(codec);
+        // 写入本条消息实际使用的压缩类型（1字节）
+        header.writeByte(compressType);
+        // 写入请求 id（8字节），用于匹配请求和响应
+        header.writeLong(requestId);
+    }
+
+    /**
+     * 写入批量消息、批量调用消息的消息体：[消息类型 1B][消息数 4B]，然后依次是每条消息的 [请求 id 8B][长度 4B][序列化结果]
+     * 每条消息直接序列化到同一个缓冲区，之后与普通消息一样整体压缩
+     * @param ctx 操作Channel的上下文信息
+     * @param codec 序列化类型
+     * @param serializer 序列化实例
+     * @param messages 同一类型的请求或响应
+     * @param body 消息体缓冲区
+     * @param out 编码结果，必要时在其中追加方法绑定消息
+     */
+    private void writeBatch(ChannelHandlerContext ctx, byte codec, Serializer serializer, List<RpcMessage> messages,
+                            BodyOutputStream body, List<Object> out) {
+        byte messageType = messages.get(0).getMessageType();
+        body.writeByte(messageType);
+        body.writeInt(messages.size());
+        for (RpcMessage message : messages) {
+            Object data = message.getData();
+            if (messageType == RpcConstants.REQUEST_TYPE && data instanceof RpcRequest) {
+                data = compactRequest(ctx, codec, (RpcRequest) data, out);
+            }
+            body.writeLong(message.getRequestId());
+            IntConsumer length = body.writeIntPlaceholder();
+            int start = body.size();
+            serializer.serialize(data, body);
+            length.accept(body.size() - start);
+        }
+    }
+
+    /**
+     * 将请求替换为只携带方法 id 和参数的精简请求
+     * 方法在本连接上首次调用时先输出一条方法绑定消息，服务端按顺序处理，收到请求时已经完成绑定
+     * @param ctx 操作Channel的上下文信息
+     * @param codec 序列化类型
+     * @param rpcRequest 完整的请求
+     * @param out 编码结果，必要时在其中追加方法绑定消息
+     * @return 实际需要序列化的请求
+     */
+    private RpcRequest compactRequest(ChannelHandlerContext ctx, byte codec, RpcRequest rpcRequest, List<Object> out) {
+        if (rpcRequest.getMethodId() != 0) {
+            return rpcRequest;
         }
+        int methodId = methodBindings.methodId(rpcRequest);
+        if (methodId == 0) {
+            RpcMethodBinding binding = methodBindings.bind(rpcRequest);
+            if (binding == null) {
+                return rpcRequest;
+            }
+            ByteBuf header = ctx.alloc().ioBuffer(RpcConstants.HEAD_LENGTH);
+            ByteBuf body = ctx.alloc().ioBuffer();
+            try {
+                ExtensionLoader.getExtensionLoader(Serializer.class)
+                        .getExtension(SerializationTypeEnum.getName(codec))
+                        .serialize(binding, body);
+                writeHeader(header, RpcConstants.HEAD_LENGTH + body.readableBytes(), RpcConstants.METHOD_BIND_TYPE,
+                        codec, CompressTypeEnum.NONE.getCode(), 0);
+            } catch (RuntimeException e) {
+                header.release();
+                body.release();
+                throw e;
+            }
+            out.add(ctx.alloc().compositeBuffer(2).addComponents(true, header, body));
+            methodId = binding.getMethodId();
+        }
+        return RpcRequest.builder()
+                .methodId(methodId)
+                .parameters(rpcRequest.getParameters())
+                .build();
+    }
+
+    /**
+     * 使用按采样键训练的 zstd 字典压缩消息体
+     * 同时把消息体作为样本交给 {@link ZstdDictionaries}；字典在本连接上首次使用时，
+     * 先输出一条字典消息，保证对端在解压这条消息之前已经拿到字典
+     * @param ctx 操作Channel的上下文信息
+     * @param rpcMessage 待编码的RpcMessage对象
+     * @param body 未压缩的消息体
+     * @param out 编码结果，必要时在其中追加字典消息
+     * @return 压缩后的消息体；字典尚未训练好或者压缩后没有变小时返回 null
+     */
+    private ByteBuf compressWithDictionary(ChannelHandlerContext ctx, RpcMessage rpcMessage, ByteBuf body, List<Object> out) {
+        String key = dictionaryKey(rpcMessage.getData());
+        if (key == null) {
+            return null;
+        }
+        ZstdDictionary dictionary = zstdDictionaries.sample(key, body);
+        if (dictionary == null) {
+            return null;
+        }
+        ZstdDictionaryCompress compress = (ZstdDictionaryCompress) ExtensionLoader.getExtensionLoader(Compress.class)
+                .getExtension(CompressTypeEnum.ZSTD_DICT.getName());
+        ByteBuf compressed = compress.compress(body, dictionary, ctx.alloc());
+        if (compressed.readableBytes() >= body.readableBytes()) {
+            compressed.release();
+            return null;
+        }
+        if (announcedDictionaries.add(dictionary.getId())) {
+            ByteBuf header = ctx.alloc().ioBuffer(RpcConstants.HEAD_LENGTH);
+            byte[] content = dictionary.getContent();
+            writeHeader(header, RpcConstants.HEAD_LENGTH + content.length, RpcConstants.DICTIONARY_TYPE,
+                    (byte) 0, CompressTypeEnum.NONE.getCode(), 0);
+            out.add(ctx.alloc().compositeBuffer(2).addComponents(true, header, Unpooled.wrappedBuffer(content)));
+            log.info("announce zstd dictionary [{}] to [{}]", dictionary.getId(), ctx.channel().remoteAddress());
+        }
+        return compressed;
+    }
+
+    /**
+     * 字典的采样键：请求按服务划分，响应按返回值类型划分，流中的元素按元素类型划分
+     * @param data 消息数据
+     * @return 采样键，不参与字典压缩的消息返回 null
+     */
+    private static String dictionaryKey(Object data) {
+        if (data instanceof RpcRequest) {
+            return ((RpcRequest) data).getRpcServiceName();
+        }
+        if (data instanceof RpcResponse) {
+            Object result = ((RpcResponse<?>) data).getData();
+            return result == null ? "response" : "response:" + result.getClass().getName();
+        }
+        if (data instanceof RpcStreamMessage) {
+            // 流中的元素通常是大量同类型的小对象，按元素类型训练字典
+            Object item = ((RpcStreamMessage) data).getData();
+            return item == null ? null : "stream:" + item.getClass().getName();
+        }
+        return null;
+    }
 
+    /**
+     * 压缩消息体
+     * 流式压缩的结果同样分段写入；块压缩需要把整个消息体复制到一块连续内存，超过分块大小的消息体不使用块压缩
+     * @param ctx 操作Channel的上下文信息
+     * @param compressType 压缩类型
+     * @param body 未压缩的消息体
+     * @return 压缩后的消息体；如果不压缩或者压缩后没有变小则返回 null，调用方继续使用原消息体
+     */
+    private ByteBuf compress(ChannelHandlerContext ctx, byte compressType, ByteBuf body) throws IOException {
+        // 获取压缩实例，根据压缩类型
+        String compressName = CompressTypeEnum.getName(compressType);
+        Compress compress = ExtensionLoader.getExtensionLoader(Compress.class)
+                .getExtension(compressName);
+        int rawLength = body.readableBytes();
+        if (rawLength > CHUNK_SIZE && compress instanceof AbstractBlockCompress) {
+            return null;
+        }
+        BodyOutputStream compressedOut = new BodyOutputStream(ctx.alloc(), rawLength >>> 1, CHUNK_SIZE);
+        ByteBuf compressed = null;
+        try {
+            try (OutputStream compressOut = compress.compress(compressedOut)) {
+                body.getBytes(body.readerIndex(), compressOut, rawLength);
+            }
+            compressed = compressedOut.finish();
+            if (compressed.readableBytes() < rawLength) {
+                ByteBuf smaller = compressed;
+                compressed = null;
+                return smaller;
+            }
+            return null;
+        } finally {
+            if (compressed != null) {
+                compressed.release();
+            } else {
+                compressedOut.release();
+            }
+        }
     }
 }
@@ -0,0 +1,129 @@
+package org.vinci.remoting.transport.netty.server;
+
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.vinci.enums.RpcConfigEnum;
+import org.vinci.remoting.constants.RpcConstants;
+import org.vinci.remoting.dto.RpcMessage;
+import org.vinci.remoting.transport.netty.codec.RpcMessageBatcher;
+import org.vinci.utils.RpcConfigUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一条批量调用消息中各个请求的响应，全部完成后以一条批量消息发送
+ * <p>
+ * 请求由各自服务的 Dispatcher 并发执行，响应可能在任意线程中加入。
+ * 慢请求或者一直不完成的异步请求不能拖住其它请求的结果：等待超过 {@link #LINGER_MILLIS} 后
+ * 先发送已经完成的响应，剩余的请求退出批量调用，完成后作为普通响应逐个发送
+ * </p>
+ */
+class MultiCallResponses {
+    // 已经完成的响应最多等待多久
+    private static final long LINGER_MILLIS = Math.max(0, RpcConfigUtil.getLong(RpcConfigEnum.MULTI_CALL_LINGER, 50));
+
+    private final ChannelHandlerContext ctx;
+    // 请求 id -> 所属批量调用的响应，与服务端处理器共用
+    private final Map<Long, MultiCallResponses> multiCalls;
+    private final List<Long> requestIds;
+    // 已经完成、还没有发送的响应
+    private final List<RpcMessage> responses;
+    // 等待到期后发送已经完成的响应
+    private ScheduledFuture<?> lingerFuture;
+    // 已经发送过，之后完成的响应逐个发送
+    private boolean flushed;
+
+    MultiCallResponses(ChannelHandlerContext ctx, Map<Long, MultiCallResponses> multiCalls, List<Long> requestIds) {
+        this.ctx = ctx;
+        this.multiCalls = multiCalls;
+        this.requestIds = requestIds;
+        this.responses = new ArrayList<>(requestIds.size());
+    }
+
+    /**
+     * 登记批量调用中的请求，在执行请求之前调用
+     */
+    void start() {
+        for (Long requestId : requestIds) {
+            multiCalls.put(requestId, this);
+        }
+        ScheduledFuture<?> future = ctx.executor().schedule(this::flush, LINGER_MILLIS, TimeUnit.MILLISECONDS);
+        synchronized (this) {
+            lingerFuture = future;
+            if (flushed) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 加入一个响应，加入的响应已经从批量调用中移除
+     * @param response 响应消息，已经设置好请求 id、序列化方式和压缩方式
+     */
+    void add(RpcMessage response) {
+        List<RpcMessage> batch;
+        synchronized (this) {
+            if (flushed) {
+                batch = null;
+            } else {
+                responses.add(response);
+                if (responses.size() < requestIds.size()) {
+                    return;
+                }
+                batch = drain();
+            }
+        }
+        write(batch != null ? batch : Collections.singletonList(response));
+    }
+
+    /**
+     * 等待到期，发送已经完成的响应，剩余的请求退出批量调用
+     */
+    private void flush() {
+        List<RpcMessage> batch;
+        synchronized (this) {
+            if (flushed) {
+                return;
+            }
+            batch = drain();
+        }
+        for (Long requestId : requestIds) {
+            multiCalls.remove(requestId, this);
+        }
+        write(batch);
+    }
+
+    private List<RpcMessage> drain() {
+        flushed = true;
+        if (lingerFuture != null) {
+            lingerFuture.cancel(false);
+        }
+        List<RpcMessage> batch = new ArrayList<>(responses);
+        responses.clear();
+        return batch;
+    }
+
+    private void write(List<RpcMessage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batch.size() == 1) {
+            ctx.writeAndFlush(batch.get(0)).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+            return;
+        }
+        RpcMessage first = batch.get(0);
+        RpcMessage message = RpcMessage.builder()
+                .messageType(RpcConstants.BATCH_TYPE)
+                .codec(first.getCodec())
+                .compress(first.getCompress())
+                .requestId(RpcMessageBatcher.nextBatchId(ctx.channel()))
+                .data(batch)
+                .build();
+        ctx.writeAndFlush(message).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+}
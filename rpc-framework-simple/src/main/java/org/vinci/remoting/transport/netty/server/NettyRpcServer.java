@@ -8,7 +8,6 @@ import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
-import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -17,10 +16,10 @@ import org.vinci.config.RpcServiceConfig;
 import org.vinci.factory.SingletonFactory;
 import org.vinci.provider.ServiceProvider;
 import org.vinci.provider.impl.ZkServiceProviderImpl;
+import org.vinci.remoting.transport.netty.codec.ChunkedFrameWriter;
+import org.vinci.remoting.transport.netty.codec.RpcMessageBatcher;
 import org.vinci.remoting.transport.netty.codec.RpcMessageDecoder;
 import org.vinci.remoting.transport.netty.codec.RpcMessageEncoder;
-import org.vinci.utils.RuntimeUtil;
-import org.vinci.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
 
 import java.net.InetAddress;
 import java.util.concurrent.TimeUnit;
@@ -52,11 +51,6 @@ public class NettyRpcServer {
         // 创建 bossGroup 和 workerGroup 事件循环组
         EventLoopGroup bossGroup = new NioEventLoopGroup(1);
         EventLoopGroup workerGroup = new NioEventLoopGroup();
-        // 创建服务处理器线程池
-        DefaultEventExecutorGroup serviceHandlerGroup = new DefaultEventExecutorGroup(
-                RuntimeUtil.cpus() * 2,
-                ThreadPoolFactoryUtil.createThreadFactory("service-handler-group", false)
-        );
         try {
             // 创建服务器启动器
             ServerBootstrap b = new ServerBootstrap();
@@ -76,9 +70,14 @@ public class NettyRpcServer {
                             // 30 秒之内没有收到客户端请求的话就关闭连接
                             ChannelPipeline p = ch.pipeline();
                             p.addLast(new IdleStateHandler(30, 0, 0, TimeUnit.SECONDS));
+                            // 逐块发送超过分块大小的消息
+                            p.addLast(new ChunkedFrameWriter());
                             p.addLast(new RpcMessageEncoder());
                             p.addLast(new RpcMessageDecoder());
-                            p.addLast(serviceHandlerGroup, new NettyRpcServerHandler());
+                            // 客户端发送批量消息后，响应也合并发送
+                            p.addLast(new RpcMessageBatcher(false));
+                            // 处理器在 IO 线程中运行，请求按服务配置的 Dispatcher 执行
+                            p.addLast(new NettyRpcServerHandler());
                         }
                     });
 
@@ -90,10 +89,9 @@ public class NettyRpcServer {
             log.error("occur exception when start server:", e);
         } finally {
             log.error("shutdown bossGroup and workerGroup");
-            // 关闭 bossGroup、workerGroup 和服务处理器线程池
+            // 关闭 bossGroup 和 workerGroup，Dispatcher 的线程池由关闭钩子统一关闭
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
-            serviceHandlerGroup.shutdownGracefully();
         }
     }
 }
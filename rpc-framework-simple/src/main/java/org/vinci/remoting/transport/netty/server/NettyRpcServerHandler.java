@@ -8,59 +8,106 @@ import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.vinci.enums.CompressTypeEnum;
+import org.vinci.enums.RpcConfigEnum;
 import org.vinci.enums.RpcResponseCodeEnum;
 import org.vinci.enums.SerializationTypeEnum;
+import org.vinci.exception.RpcException;
 import org.vinci.factory.SingletonFactory;
 import org.vinci.remoting.constants.RpcConstants;
+import org.vinci.remoting.dispatcher.Dispatcher;
+import org.vinci.remoting.dispatcher.ServiceDispatchers;
 import org.vinci.remoting.dto.RpcMessage;
+import org.vinci.remoting.dto.RpcMethodBinding;
 import org.vinci.remoting.dto.RpcRequest;
 import org.vinci.remoting.dto.RpcResponse;
+import org.vinci.remoting.dto.RpcStreamArgument;
+import org.vinci.remoting.dto.RpcStreamMessage;
+import org.vinci.remoting.handler.MethodInvoker;
+import org.vinci.remoting.handler.MethodInvokerTable;
 import org.vinci.remoting.handler.RpcRequestHandler;
+import org.vinci.remoting.transport.netty.codec.RpcMessageBatcher;
+import org.vinci.remoting.transport.netty.stream.StreamRegistry;
+import org.vinci.stream.Publisher;
+import org.vinci.utils.RpcConfigUtil;
+import org.vinci.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
 public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
 
+    // 消息体使用的压缩类型，未配置或配置错误时使用 gzip
+    private static final byte COMPRESS_TYPE = Optional.ofNullable(CompressTypeEnum.getByName(
+            RpcConfigUtil.getString(RpcConfigEnum.COMPRESS_TYPE, null))).orElse(CompressTypeEnum.GZIP).getCode();
+
+    // 参数中有流的调用在该线程池中执行
+    private static final ExecutorService STREAM_CALL_POOL = ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent("stream-call-pool");
+
     private final RpcRequestHandler rpcRequestHandler;
 
+    // 为每个服务选择执行请求的方式
+    private final ServiceDispatchers dispatchers;
+
+    // 本连接上客户端绑定的方法，每个连接一个处理器实例
+    private final MethodInvokerTable methodInvokers = new MethodInvokerTable();
+
+    // 本连接上进行中的流式调用
+    private StreamRegistry streams;
+
+    // 客户端是否发送过批量消息
+    private boolean batching;
+
+    // 请求 id -> 所属批量调用的响应，响应在执行请求的线程中加入；请求完成或者批量调用等待到期时移除
+    private final Map<Long, MultiCallResponses> multiCalls = new ConcurrentHashMap<>();
+
     // 初始化 RpcRequestHandler
     public NettyRpcServerHandler() {
         this.rpcRequestHandler = SingletonFactory.getInstance(RpcRequestHandler.class);
+        this.dispatchers = SingletonFactory.getInstance(ServiceDispatchers.class);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        streams = new StreamRegistry(ctx.channel(), SerializationTypeEnum.HESSIAN.getCode(), COMPRESS_TYPE);
+        ctx.channel().attr(StreamRegistry.KEY).set(streams);
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
         try {
             if (msg instanceof RpcMessage) {
-                log.info("server receive msg: [{}] ", msg);
-                byte messageType = ((RpcMessage) msg).getMessageType();
-                RpcMessage rpcMessage = new RpcMessage();
-                // 设置序列化方式和压缩方式
-                rpcMessage.setCodec(SerializationTypeEnum.HESSIAN.getCode());
-                rpcMessage.setCompress(CompressTypeEnum.GZIP.getCode());
-                if (messageType == RpcConstants.HEARTBEAT_REQUEST_TYPE) {
-                    // 处理心跳请求
-                    rpcMessage.setMessageType(RpcConstants.HEARTBEAT_RESPONSE_TYPE);
-                    rpcMessage.setData(RpcConstants.PONG);
-                } else {
-                    // 处理 RPC 请求
-                    RpcRequest rpcRequest = (RpcRequest) ((RpcMessage) msg).getData();
-                    // 执行目标方法（客户端需要执行的方法）并返回方法结果
-                    Object result = rpcRequestHandler.handle(rpcRequest);
-                    log.info(String.format("server get result: %s", result.toString()));
-                    rpcMessage.setMessageType(RpcConstants.RESPONSE_TYPE);
-                    if (ctx.channel().isActive() && ctx.channel().isWritable()) {
-                        // 封装 RPC 响应并设置到 RpcMessage 的 data 字段中
-                        RpcResponse<Object> rpcResponse = RpcResponse.success(result, rpcRequest.getRequestId());
-                        rpcMessage.setData(rpcResponse);
-                    } else {
-                        // 如果 Channel 不可写，则封装一个失败的 RPC 响应
-                        RpcResponse<Object> rpcResponse = RpcResponse.fail(RpcResponseCodeEnum.FAIL);
-                        rpcMessage.setData(rpcResponse);
-                        log.error("not writable now, message dropped");
+                log.debug("server receive msg: [{}] ", msg);
+                if (((RpcMessage) msg).getMessageType() == RpcConstants.BATCH_TYPE) {
+                    // 客户端开启了批量发送，响应也合并发送；批量中的请求逐个交给各自服务的 Dispatcher 并发执行
+                    if (!batching) {
+                        batching = true;
+                        ctx.pipeline().get(RpcMessageBatcher.class).enable();
+                    }
+                    for (RpcMessage request : (List<RpcMessage>) ((RpcMessage) msg).getData()) {
+                        handle(ctx, request);
+                    }
+                } else if (((RpcMessage) msg).getMessageType() == RpcConstants.MULTI_CALL_TYPE) {
+                    // 批量调用：请求并发执行，响应完成后一起返回，等待过久时先返回已经完成的
+                    List<RpcMessage> requests = (List<RpcMessage>) ((RpcMessage) msg).getData();
+                    List<Long> requestIds = new ArrayList<>(requests.size());
+                    for (RpcMessage request : requests) {
+                        requestIds.add(request.getRequestId());
                     }
+                    new MultiCallResponses(ctx, multiCalls, requestIds).start();
+                    for (RpcMessage request : requests) {
+                        handle(ctx, request);
+                    }
+                } else {
+                    handle(ctx, (RpcMessage) msg);
                 }
-                // 将 RpcMessage 写入 Channel 中，同时添加监听器以在操作失败时关闭 Channel
-                ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
             }
         } finally {
             // 确保释放 ByteBuf，否则可能会导致内存泄漏
@@ -68,6 +115,237 @@ public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * 处理一条客户端消息
+     * @param ctx 操作Channel的上下文信息
+     * @param msg 客户端消息
+     */
+    private void handle(ChannelHandlerContext ctx, RpcMessage msg) {
+        byte messageType = msg.getMessageType();
+        if (messageType == RpcConstants.METHOD_BIND_TYPE) {
+            // 方法绑定消息不需要响应
+            bindMethod((RpcMethodBinding) msg.getData());
+            return;
+        }
+        if (messageType == RpcConstants.STREAM_TYPE) {
+            // 流信号不需要响应
+            streams.dispatch(msg.getRequestId(), (RpcStreamMessage) msg.getData());
+            return;
+        }
+        RpcMessage rpcMessage = new RpcMessage();
+        // 响应带回请求的 id，客户端据此匹配请求
+        rpcMessage.setRequestId(msg.getRequestId());
+        // 设置序列化方式和压缩方式
+        rpcMessage.setCodec(SerializationTypeEnum.HESSIAN.getCode());
+        rpcMessage.setCompress(COMPRESS_TYPE);
+        if (messageType == RpcConstants.HEARTBEAT_REQUEST_TYPE) {
+            // 处理心跳请求
+            rpcMessage.setMessageType(RpcConstants.HEARTBEAT_RESPONSE_TYPE);
+            rpcMessage.setData(RpcConstants.PONG);
+            // 将 RpcMessage 写入 Channel 中，同时添加监听器以在操作失败时关闭 Channel
+            ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+            return;
+        }
+        // 处理 RPC 请求：在 IO 线程中查找目标方法，再交给服务的 Dispatcher 执行
+        RpcRequest rpcRequest = (RpcRequest) msg.getData();
+        MethodInvoker invoker;
+        try {
+            invoker = rpcRequestHandler.lookup(rpcRequest, methodInvokers);
+        } catch (RpcException e) {
+            log.error("lookup method of [{}] failed: {}", rpcMessage.getRequestId(), e.getMessage());
+            writeResponse(ctx, rpcMessage, RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+            return;
+        }
+        if (Publisher.class.isAssignableFrom(invoker.getMethod().getReturnType())) {
+            // 返回值为流：客户端订阅时发出的需求可能先于方法返回到达；
+            // 之后的需求同样交给服务的 Dispatcher，发布者可能阻塞，不能在 IO 线程中产生元素
+            Dispatcher dispatcher = dispatchers.select(invoker);
+            streams.expect(rpcMessage.getRequestId(), task -> dispatcher.dispatch(invoker, task));
+        }
+        if (bindStreamArguments(rpcMessage.getRequestId(), rpcRequest)) {
+            // 参数中有流：方法可能阻塞等待流中的元素，而元素由 IO 线程交付，
+            // 因此总是在单独的线程池中调用，即使服务使用 direct 方式
+            invokeWithStreamArguments(ctx, rpcMessage, invoker, rpcRequest.getParameters());
+        } else {
+            dispatch(ctx, rpcMessage, invoker, rpcRequest.getParameters());
+        }
+    }
+
+    /**
+     * 交给服务的 Dispatcher 执行目标方法，超过容量上限时直接返回失败响应
+     * @param ctx 操作Channel的上下文信息
+     * @param rpcMessage 待发送的响应消息，已经设置好请求 id、序列化方式和压缩方式
+     * @param invoker 目标方法
+     * @param parameters 方法参数
+     */
+    private void dispatch(ChannelHandlerContext ctx, RpcMessage rpcMessage, MethodInvoker invoker, Object[] parameters) {
+        try {
+            dispatchers.select(invoker).dispatch(invoker, () -> {
+                try {
+                    invoke(ctx, rpcMessage, invoker, parameters, false);
+                } catch (RuntimeException e) {
+                    log.error("invoke [{}] failed", rpcMessage.getRequestId(), e);
+                    writeResponse(ctx, rpcMessage, RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            writeResponse(ctx, rpcMessage, RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+        }
+    }
+
+    /**
+     * 执行目标方法并发送结果
+     * <p>
+     * 返回值为 {@link CompletionStage} 时方法只是发起了异步操作，立即释放当前线程，结果完成后再发送响应，
+     * 少量线程即可承载大量等待下游的调用
+     * </p>
+     * @param ctx 操作Channel的上下文信息
+     * @param rpcMessage 待发送的响应消息
+     * @param invoker 目标方法
+     * @param parameters 方法参数
+     * @param streamArguments 参数中是否有流，调用结束时需要通知客户端停止发送
+     */
+    private void invoke(ChannelHandlerContext ctx, RpcMessage rpcMessage, MethodInvoker invoker, Object[] parameters,
+                        boolean streamArguments) {
+        // 执行目标方法（客户端需要执行的方法）并返回方法结果
+        Object result = rpcRequestHandler.invoke(invoker, parameters);
+        log.debug("server get result: [{}]", result);
+        if (result instanceof Publisher) {
+            // 流式返回值：不发送响应，元素按客户端的需求以流信号的形式逐个发送，两个方向的流各自结束
+            streams.sendExpected(rpcMessage.getRequestId(), (Publisher<?>) result);
+            return;
+        }
+        // 不是流式返回值，丢弃客户端提前发来的需求
+        streams.cancelSender(rpcMessage.getRequestId());
+        if (!(result instanceof CompletionStage)) {
+            endCall(ctx, rpcMessage, RpcResponse.success(result), streamArguments);
+            return;
+        }
+        ((CompletionStage<?>) result).whenComplete((value, e) -> {
+            if (e != null) {
+                log.error("async invoke [{}] failed", rpcMessage.getRequestId(), e);
+                endCall(ctx, rpcMessage, RpcResponse.fail(RpcResponseCodeEnum.FAIL), streamArguments);
+            } else {
+                endCall(ctx, rpcMessage, RpcResponse.success(value), streamArguments);
+            }
+        });
+    }
+
+    /**
+     * 调用结束，发送响应
+     * @param ctx 操作Channel的上下文信息
+     * @param rpcMessage 待发送的响应消息
+     * @param rpcResponse 响应
+     * @param streamArguments 参数中是否有流
+     */
+    private void endCall(ChannelHandlerContext ctx, RpcMessage rpcMessage, RpcResponse<Object> rpcResponse,
+                         boolean streamArguments) {
+        if (streamArguments) {
+            streams.cancelReceiver(rpcMessage.getRequestId());
+        }
+        if (ctx.channel().isActive() && ctx.channel().isWritable()) {
+            // 封装 RPC 响应
+            writeResponse(ctx, rpcMessage, rpcResponse);
+        } else {
+            // 如果 Channel 不可写，则封装一个失败的 RPC 响应
+            writeResponse(ctx, rpcMessage, RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+            log.error("not writable now, message dropped");
+        }
+    }
+
+    /**
+     * 在流式调用线程池中执行参数中有流的方法
+     * 方法返回普通结果或者调用失败时调用已经结束，通知客户端停止发送参数中的流；返回值也是流时两个方向的流各自结束
+     * @param ctx 操作Channel的上下文信息
+     * @param rpcMessage 待发送的响应消息
+     * @param invoker 目标方法
+     * @param parameters 方法参数
+     */
+    private void invokeWithStreamArguments(ChannelHandlerContext ctx, RpcMessage rpcMessage, MethodInvoker invoker,
+                                           Object[] parameters) {
+        long requestId = rpcMessage.getRequestId();
+        try {
+            STREAM_CALL_POOL.execute(() -> {
+                try {
+                    invoke(ctx, rpcMessage, invoker, parameters, true);
+                } catch (RuntimeException e) {
+                    log.error("invoke stream call [{}] failed", requestId, e);
+                    streams.cancelReceiver(requestId);
+                    writeResponse(ctx, rpcMessage, RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.error("stream call pool is full, reject [{}]", requestId);
+            streams.cancelReceiver(requestId);
+            writeResponse(ctx, rpcMessage, RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+        }
+    }
+
+    /**
+     * 将参数中的流占位符替换为接收客户端流的发布者
+     * @param requestId 请求 id，即流 id
+     * @param rpcRequest 请求
+     * @return 参数中有流时返回 true
+     */
+    private boolean bindStreamArguments(long requestId, RpcRequest rpcRequest) {
+        Object[] parameters = rpcRequest.getParameters();
+        if (parameters == null) {
+            return false;
+        }
+        boolean bound = false;
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i] instanceof RpcStreamArgument) {
+                parameters[i] = streams.receive(requestId);
+                bound = true;
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * 发送 RPC 响应，写出失败时关闭 Channel；批量调用中的请求的响应交给所属的批量调用一起发送
+     * @param ctx 操作Channel的上下文信息
+     * @param rpcMessage 响应消息
+     * @param rpcResponse 响应
+     */
+    private void writeResponse(ChannelHandlerContext ctx, RpcMessage rpcMessage, RpcResponse<Object> rpcResponse) {
+        // 调用以普通响应结束（包括失败），丢弃为流式返回值登记的发送流
+        streams.cancelSender(rpcMessage.getRequestId());
+        rpcMessage.setMessageType(RpcConstants.RESPONSE_TYPE);
+        rpcMessage.setData(rpcResponse);
+        if (!multiCalls.isEmpty()) {
+            MultiCallResponses responses = multiCalls.remove(rpcMessage.getRequestId());
+            if (responses != null) {
+                responses.add(rpcMessage);
+                return;
+            }
+        }
+        ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    /**
+     * 绑定客户端分配的方法 id，服务或方法不存在时不绑定，使用该 id 的请求会调用失败
+     * @param binding 方法绑定消息
+     */
+    private void bindMethod(RpcMethodBinding binding) {
+        try {
+            methodInvokers.bind(binding.getMethodId(), rpcRequestHandler.resolve(binding));
+        } catch (RpcException e) {
+            log.error("bind method [{}] failed: {}", binding, e.getMessage());
+        }
+    }
+
+    /**
+     * 连接关闭时停止本连接上所有的流
+     * @param ctx 操作Channel的上下文信息
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        streams.closeAll();
+        multiCalls.clear();
+        super.channelInactive(ctx);
+    }
+
     // 用户事件触发器，在超时时关闭 Channel
     /*
     Netty提供了一个IdleStateHandler类，可以用于在指定的时间间隔内检测空闲状态事件，并触发相应的操作。
@@ -0,0 +1,121 @@
+package org.vinci.remoting.transport.netty.stream;
+
+import lombok.Getter;
+import org.vinci.enums.RpcErrorMessageEnum;
+import org.vinci.exception.RpcException;
+import org.vinci.remoting.dto.RpcStreamMessage;
+import org.vinci.stream.Subscriber;
+import org.vinci.stream.Subscription;
+
+/**
+ * 本端接收元素的流：把对端发来的元素交给本地的订阅者
+ * <p>
+ * 本地订阅者请求元素和取消订阅时向对端发送 REQUEST、CANCEL 信号。
+ * 元素在连接的 EventLoop 中交给订阅者，订阅者不应在 onNext 中执行耗时操作
+ * </p>
+ * 对端只为已经收到的调用记录需求，调用发出前订阅者请求的元素先累加起来，{@link #open()} 时一次性发送
+ */
+public class StreamReceiver implements Subscription {
+    private final StreamRegistry registry;
+    @Getter
+    private final long streamId;
+    private final Subscriber<? super Object> downstream;
+
+    // 流已经结束或者已经取消
+    private volatile boolean done;
+    // 所属的调用是否已经发出
+    private boolean opened;
+    // 调用发出前累计的需求
+    private long pendingDemand;
+
+    StreamReceiver(StreamRegistry registry, long streamId, Subscriber<? super Object> downstream) {
+        this.registry = registry;
+        this.streamId = streamId;
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void request(long n) {
+        if (done) {
+            return;
+        }
+        if (n <= 0) {
+            cancel();
+            downstream.onError(new IllegalArgumentException("request must be positive: " + n));
+            return;
+        }
+        synchronized (this) {
+            if (!opened) {
+                pendingDemand = pendingDemand + n < 0 ? Long.MAX_VALUE : pendingDemand + n;
+                return;
+            }
+        }
+        registry.write(streamId, RpcStreamMessage.request(n));
+    }
+
+    /**
+     * 所属的调用已经发出，发送之前累计的需求，此后的需求直接发送
+     */
+    public void open() {
+        long demand;
+        synchronized (this) {
+            if (opened) {
+                return;
+            }
+            opened = true;
+            demand = pendingDemand;
+            pendingDemand = 0;
+        }
+        if (demand > 0 && !done) {
+            registry.write(streamId, RpcStreamMessage.request(demand));
+        }
+    }
+
+    @Override
+    public void cancel() {
+        if (done) {
+            return;
+        }
+        done = true;
+        registry.remove(this);
+        registry.write(streamId, RpcStreamMessage.cancel());
+    }
+
+    /**
+     * 本地的原因导致流结束，例如请求发送失败、连接关闭
+     * @param cause 异常
+     */
+    public void fail(Throwable cause) {
+        if (done) {
+            return;
+        }
+        done = true;
+        registry.remove(this);
+        downstream.onError(cause);
+    }
+
+    /**
+     * 处理对端发来的元素、结束或异常信号
+     * @param message 流信号
+     */
+    void dispatch(RpcStreamMessage message) {
+        if (done) {
+            return;
+        }
+        switch (message.getSignal()) {
+            case RpcStreamMessage.NEXT:
+                downstream.onNext(message.getData());
+                break;
+            case RpcStreamMessage.COMPLETE:
+                done = true;
+                registry.remove(this);
+                downstream.onComplete();
+                break;
+            case RpcStreamMessage.ERROR:
+                fail(new RpcException(RpcErrorMessageEnum.STREAM_FAILURE, message.getError()));
+                break;
+            default:
+                break;
+        }
+    }
+}
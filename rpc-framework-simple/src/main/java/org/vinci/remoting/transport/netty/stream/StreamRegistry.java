@@ -0,0 +1,271 @@
+package org.vinci.remoting.transport.netty.stream;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+import org.vinci.enums.RpcErrorMessageEnum;
+import org.vinci.enums.RpcResponseCodeEnum;
+import org.vinci.exception.RpcException;
+import org.vinci.remoting.constants.RpcConstants;
+import org.vinci.remoting.dto.RpcMessage;
+import org.vinci.remoting.dto.RpcResponse;
+import org.vinci.remoting.dto.RpcStreamMessage;
+import org.vinci.stream.Publisher;
+import org.vinci.stream.Subscriber;
+import org.vinci.stream.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一个连接上进行中的流式调用
+ * <p>
+ * 每个连接一个实例，作为 Channel 的属性保存，客户端和服务端共用。流 id 即所属调用的请求 id，
+ * 同一个调用在每个方向上最多一条流：本端发出元素的流由 {@link StreamSender} 表示，
+ * 本端接收元素的流由 {@link StreamReceiver} 表示，收到的信号按类型分发给二者之一。
+ * 客户端的流参数和服务端的流式返回值都是发出的流，两个方向可以同时进行
+ * </p>
+ * 流控基于需求：接收方通过 REQUEST 信号告诉发送方还能接收多少个元素，发送方不会发送超过需求的元素，
+ * 慢消费者不会让发送方在内存中堆积大量已编码的消息
+ */
+@Slf4j
+public class StreamRegistry {
+    // 保存在 Channel 上的属性名
+    public static final AttributeKey<StreamRegistry> KEY = AttributeKey.valueOf("streamRegistry");
+
+    // 订阅失败时交给订阅者的空订阅关系
+    private static final Subscription EMPTY_SUBSCRIPTION = new Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private final Channel channel;
+    // 流消息使用的序列化类型
+    private final byte codec;
+    // 流消息使用的压缩类型
+    private final byte compress;
+    // 本端发出元素的流
+    private final ConcurrentMap<Long, StreamSender> senders = new ConcurrentHashMap<>();
+    // 本端接收元素的流
+    private final ConcurrentMap<Long, StreamReceiver> receivers = new ConcurrentHashMap<>();
+
+    public StreamRegistry(Channel channel, byte codec, byte compress) {
+        this.channel = channel;
+        this.codec = codec;
+        this.compress = compress;
+    }
+
+    /**
+     * 将本地的发布者作为流发送给对端，元素按对端的需求逐个发送
+     * @param streamId 流 id
+     * @param publisher 元素来源
+     * @param executor 处理对端需求的执行器，发布者在其中产生元素，不占用 IO 线程
+     */
+    public void send(long streamId, Publisher<?> publisher, Executor executor) {
+        publisher.subscribe(senders.computeIfAbsent(streamId, id -> new StreamSender(this, id, executor)));
+    }
+
+    /**
+     * 登记一个返回值为流的调用，调用开始执行前对端发来的需求先记录在这里
+     * 调用以流的形式返回时通过 {@link #sendExpected} 发送，否则必须通过 {@link #cancelSender} 丢弃
+     * @param streamId 流 id
+     * @param executor 处理对端需求的执行器，返回的发布者在其中产生元素，不占用 IO 线程
+     */
+    public void expect(long streamId, Executor executor) {
+        senders.computeIfAbsent(streamId, id -> new StreamSender(this, id, executor));
+    }
+
+    /**
+     * 发送之前登记过的流；等待期间对端已经取消时直接取消本地的发布者
+     * @param streamId 流 id
+     * @param publisher 元素来源
+     */
+    public void sendExpected(long streamId, Publisher<?> publisher) {
+        StreamSender sender = senders.get(streamId);
+        if (sender == null) {
+            sender = new StreamSender(this, streamId, null);
+            sender.cancel();
+        }
+        publisher.subscribe(sender);
+    }
+
+    /**
+     * 接收对端发来的流，调用方随后调用订阅者的 onSubscribe，发出所属的调用后再调用 {@link StreamReceiver#open()}
+     * @param streamId 流 id
+     * @param subscriber 本地的订阅者
+     * @return 订阅关系，请求元素和取消订阅会发送给对端
+     */
+    public StreamReceiver receive(long streamId, Subscriber<? super Object> subscriber) {
+        StreamReceiver receiver = new StreamReceiver(this, streamId, subscriber);
+        receivers.put(streamId, receiver);
+        return receiver;
+    }
+
+    /**
+     * 接收对端发来的流，以发布者的形式交给本地的方法
+     * 对端的流只能被订阅一次，订阅时才开始请求元素
+     * @param streamId 流 id
+     * @return 发布者
+     */
+    public Publisher<Object> receive(long streamId) {
+        AtomicBoolean subscribed = new AtomicBoolean();
+        return subscriber -> {
+            if (!subscribed.compareAndSet(false, true)) {
+                subscriber.onSubscribe(EMPTY_SUBSCRIPTION);
+                subscriber.onError(new IllegalStateException("stream " + streamId + " can only be subscribed once"));
+                return;
+            }
+            // 对端的调用已经到达，需求可以直接发送
+            StreamReceiver receiver = receive(streamId, subscriber);
+            receiver.open();
+            subscriber.onSubscribe(receiver);
+        };
+    }
+
+    /**
+     * 连接上是否没有进行中的流，连接池据此判断连接是否空闲
+     * @return 没有进行中的流时返回 true
+     */
+    public boolean isIdle() {
+        return senders.isEmpty() && receivers.isEmpty();
+    }
+
+    /**
+     * 是否有对应的接收流，解码器据此决定是否需要反序列化消息体
+     * @param streamId 流 id
+     * @return 存在时返回 true
+     */
+    public boolean isReceiving(long streamId) {
+        return receivers.containsKey(streamId);
+    }
+
+    /**
+     * 分发收到的流信号
+     * @param streamId 流 id
+     * @param message 流信号
+     */
+    public void dispatch(long streamId, RpcStreamMessage message) {
+        switch (message.getSignal()) {
+            case RpcStreamMessage.REQUEST:
+                // 对端的需求可能先于本端开始发送到达，由登记过的发送流先记录下来；
+                // 没有发送流说明流已经结束或者从未登记，不能再创建，否则没有人移除它，连接永远不会空闲
+                StreamSender demanded = senders.get(streamId);
+                if (demanded == null) {
+                    log.debug("discard stream demand [{}], no sender", streamId);
+                } else {
+                    demanded.request(message.getDemand());
+                }
+                break;
+            case RpcStreamMessage.CANCEL:
+                StreamSender sender = senders.get(streamId);
+                if (sender != null) {
+                    sender.cancel();
+                }
+                break;
+            default:
+                StreamReceiver receiver = receivers.get(streamId);
+                if (receiver == null) {
+                    log.warn("discard stream message [{}], no receiver", streamId);
+                } else {
+                    receiver.dispatch(message);
+                }
+        }
+    }
+
+    /**
+     * 流式调用收到的是普通响应：调用失败，或者服务端方法返回了 null
+     * @param streamId 流 id
+     * @param rpcResponse 响应
+     * @return 存在对应的接收流时返回 true
+     */
+    public boolean complete(long streamId, RpcResponse<Object> rpcResponse) {
+        StreamReceiver receiver = receivers.get(streamId);
+        if (receiver == null) {
+            return false;
+        }
+        if (rpcResponse.getCode() == null || !rpcResponse.getCode().equals(RpcResponseCodeEnum.SUCCESS.getCode())) {
+            receiver.fail(new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, rpcResponse.getMessage()));
+            return true;
+        }
+        if (rpcResponse.getData() != null) {
+            receiver.dispatch(RpcStreamMessage.next(rpcResponse.getData()));
+        }
+        receiver.dispatch(RpcStreamMessage.complete());
+        return true;
+    }
+
+    /**
+     * 停止本端发出的流：调用没有以流的形式返回时丢弃对端提前发来的需求，或者请求发送失败
+     * @param streamId 流 id
+     */
+    public void cancelSender(long streamId) {
+        StreamSender sender = senders.remove(streamId);
+        if (sender != null) {
+            sender.cancel();
+        }
+    }
+
+    /**
+     * 停止接收对端的流：调用已经结束，对端不需要再发送剩余的元素
+     * 本端可能还没有订阅这个流，此时同样通知对端取消
+     * @param streamId 流 id
+     */
+    public void cancelReceiver(long streamId) {
+        StreamReceiver receiver = receivers.get(streamId);
+        if (receiver != null) {
+            receiver.cancel();
+        } else {
+            write(streamId, RpcStreamMessage.cancel());
+        }
+    }
+
+    /**
+     * 连接关闭，结束所有的流
+     */
+    public void closeAll() {
+        List<StreamSender> closedSenders = new ArrayList<>(senders.values());
+        senders.clear();
+        for (StreamSender sender : closedSenders) {
+            sender.cancel();
+        }
+        List<StreamReceiver> closedReceivers = new ArrayList<>(receivers.values());
+        receivers.clear();
+        RpcException cause = new RpcException(RpcErrorMessageEnum.CONNECTION_CLOSED, channel.toString());
+        for (StreamReceiver receiver : closedReceivers) {
+            receiver.fail(cause);
+        }
+    }
+
+    /**
+     * 向对端发送流信号
+     * @param streamId 流 id
+     * @param message 流信号
+     * @return 写出结果
+     */
+    ChannelFuture write(long streamId, RpcStreamMessage message) {
+        RpcMessage rpcMessage = RpcMessage.builder().data(message)
+                .requestId(streamId)
+                .codec(codec)
+                .compress(compress)
+                .messageType(RpcConstants.STREAM_TYPE).build();
+        return channel.writeAndFlush(rpcMessage);
+    }
+
+    void remove(StreamSender sender) {
+        senders.remove(sender.getStreamId(), sender);
+    }
+
+    void remove(StreamReceiver receiver) {
+        receivers.remove(receiver.getStreamId(), receiver);
+    }
+}
@@ -0,0 +1,168 @@
+package org.vinci.remoting.transport.netty.stream;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.vinci.remoting.dto.RpcStreamMessage;
+import org.vinci.stream.Subscriber;
+import org.vinci.stream.Subscription;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 本端发出元素的流：订阅本地的发布者，把元素逐个编码发送给对端
+ * <p>
+ * 对端的 REQUEST 信号转发给本地发布者的订阅关系，发布者只在对端有需求时才产生元素；
+ * 需求可能在订阅完成前到达，先累加起来，订阅完成后一次性请求
+ * </p>
+ * 发布者在请求元素的线程中产生元素，可能阻塞；指定了执行器时对端的需求交给执行器处理，不占用 IO 线程。
+ * 同一时刻只有一个线程向发布者请求元素：正在请求时到达的需求只累加起来，由正在请求的线程处理完当前需求后继续请求
+ */
+@Slf4j
+class StreamSender implements Subscriber<Object> {
+    private final StreamRegistry registry;
+    @Getter
+    private final long streamId;
+    // 处理对端需求的执行器，为 null 时在收到需求的线程中处理
+    private final Executor executor;
+
+    // 本地发布者的订阅关系，订阅完成前为 null
+    private Subscription upstream;
+    // 尚未转交给本地发布者的需求
+    private long pendingDemand;
+    // 是否有线程正在向本地发布者请求元素
+    private boolean draining;
+    // 对端取消或者连接关闭
+    private boolean cancelled;
+    // 本地发布者已经结束
+    private volatile boolean done;
+
+    StreamSender(StreamRegistry registry, long streamId, Executor executor) {
+        this.registry = registry;
+        this.streamId = streamId;
+        this.executor = executor;
+    }
+
+    /**
+     * 对端请求 n 个元素
+     * @param n 元素数量
+     */
+    void request(long n) {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            pendingDemand = pendingDemand + n < 0 ? Long.MAX_VALUE : pendingDemand + n;
+            // 订阅完成前只累加；已经有线程在请求时交给它处理
+            if (upstream == null || draining) {
+                return;
+            }
+            draining = true;
+        }
+        if (executor == null) {
+            drain();
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            log.error("stream [{}] demand rejected", streamId);
+            synchronized (this) {
+                draining = false;
+            }
+            cancel();
+            registry.write(streamId, RpcStreamMessage.error(String.valueOf(e)));
+        }
+    }
+
+    /**
+     * 把累计的需求转交给本地发布者，直到没有新的需求为止
+     */
+    private void drain() {
+        while (true) {
+            Subscription subscription;
+            long demand;
+            synchronized (this) {
+                if (cancelled || pendingDemand == 0) {
+                    draining = false;
+                    return;
+                }
+                subscription = upstream;
+                demand = pendingDemand;
+                pendingDemand = 0;
+            }
+            subscription.request(demand);
+        }
+    }
+
+    /**
+     * 对端取消订阅或者连接关闭，停止本地发布者
+     */
+    void cancel() {
+        Subscription subscription;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            subscription = upstream;
+        }
+        registry.remove(this);
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        synchronized (this) {
+            if (upstream != null || cancelled) {
+                // 重复订阅或者已经取消
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            if (pendingDemand == 0) {
+                return;
+            }
+            draining = true;
+        }
+        // 订阅前累计的需求在订阅的线程中一次性请求
+        drain();
+    }
+
+    @Override
+    public void onNext(Object item) {
+        if (done) {
+            return;
+        }
+        // 每个元素产生后立即编码发送，写出失败说明连接已经不可用
+        registry.write(streamId, RpcStreamMessage.next(item)).addListener(future -> {
+            if (!future.isSuccess()) {
+                log.error("send stream [{}] item failed", streamId, future.cause());
+                cancel();
+            }
+        });
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (done) {
+            return;
+        }
+        done = true;
+        registry.remove(this);
+        log.error("stream [{}] failed", streamId, throwable);
+        registry.write(streamId, RpcStreamMessage.error(String.valueOf(throwable)));
+    }
+
+    @Override
+    public void onComplete() {
+        if (done) {
+            return;
+        }
+        done = true;
+        registry.remove(this);
+        registry.write(streamId, RpcStreamMessage.complete());
+    }
+}
@@ -36,6 +36,10 @@ public class SocketRpcClient implements RpcRequestTransport {
         try (Socket socket = new Socket()) {
             // 通过 socket 连接到远程服务地址
             socket.connect(inetSocketAddress);
+            if (rpcRequest.getTimeout() > 0) {
+                // 超时时间内没有读到响应时抛出 SocketTimeoutException
+                socket.setSoTimeout((int) Math.min(rpcRequest.getTimeout(), Integer.MAX_VALUE));
+            }
             // 创建 ObjectOutputStream 对象，用于将 RpcRequest 对象发送给远程服务
             ObjectOutputStream objectOutputStream = new ObjectOutputStream(socket.getOutputStream());
             // 将 RpcRequest 对象写入输出流
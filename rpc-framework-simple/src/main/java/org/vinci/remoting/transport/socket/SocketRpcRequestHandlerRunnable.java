@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.util.concurrent.CompletionStage;
 
 @Slf4j
 public class SocketRpcRequestHandlerRunnable implements Runnable{
@@ -37,8 +38,12 @@ public class SocketRpcRequestHandlerRunnable implements Runnable{
             RpcRequest rpcRequest = (RpcRequest) objectInputStream.readObject();
             // 使用 RpcRequestHandler 处理 RpcRequest，并获取处理结果
             Object result = rpcRequestHandler.handle(rpcRequest);
+            if (result instanceof CompletionStage) {
+                // 每个连接独占一个线程，异步返回值在这里等待完成即可
+                result = ((CompletionStage<?>) result).toCompletableFuture().join();
+            }
             // 将 RpcResponse 对象写入输出流
-            objectOutputStream.writeObject(RpcResponse.success(result, rpcRequest.getRequestId()));
+            objectOutputStream.writeObject(RpcResponse.success(result));
             // 刷新输出流，确保 RpcResponse 对象被立即发送给客户端
             objectOutputStream.flush();
         } catch (IOException | ClassNotFoundException e) {
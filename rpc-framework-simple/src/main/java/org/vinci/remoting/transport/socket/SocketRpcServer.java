@@ -1,6 +1,5 @@
 package org.vinci.remoting.transport.socket;
 
-import com.sun.xml.internal.ws.policy.privateutil.PolicyUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.vinci.config.CustomShutdownHook;
 import org.vinci.config.RpcServiceConfig;
@@ -1,6 +1,15 @@
 package org.vinci.serialize;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import org.vinci.exception.SerializeException;
 import org.vinci.extension.SPI;
+import org.vinci.utils.IoUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 @SPI
 public interface Serializer {
@@ -22,4 +31,58 @@ public interface Serializer {
      * @return 反序列化的对象
      */
     <T> T deserialize(byte[] bytes, Class<T> clazz);
+
+    /**
+     * 序列化到输出流
+     * 默认实现桥接到 {@link #serialize(Object)}，实现类可以覆盖该方法直接写入输出流，省去中间的字节数组
+     *
+     * @param obj 要序列化的对象
+     * @param out 输出流，调用方负责关闭
+     */
+    default void serialize(Object obj, OutputStream out) {
+        try {
+            out.write(serialize(obj));
+        } catch (IOException e) {
+            throw new SerializeException("Serialization failed");
+        }
+    }
+
+    /**
+     * 从输入流反序列化
+     * 默认实现读出全部数据后桥接到 {@link #deserialize(byte[], Class)}，实现类可以覆盖该方法直接从输入流读取
+     *
+     * @param in    输入流，调用方负责关闭
+     * @param clazz 目标类
+     * @param <T>   类的类型
+     * @return 反序列化的对象
+     */
+    default <T> T deserialize(InputStream in, Class<T> clazz) {
+        try {
+            return deserialize(IoUtil.readAllBytes(in), clazz);
+        } catch (IOException e) {
+            throw new SerializeException("Deserialization failed");
+        }
+    }
+
+    /**
+     * 序列化到 ByteBuf，数据从 out 的写索引处开始写入
+     *
+     * @param obj 要序列化的对象
+     * @param out 目标 ByteBuf
+     */
+    default void serialize(Object obj, ByteBuf out) {
+        serialize(obj, new ByteBufOutputStream(out));
+    }
+
+    /**
+     * 从 ByteBuf 的可读数据反序列化
+     *
+     * @param in    源 ByteBuf，读取后读索引会前移
+     * @param clazz 目标类
+     * @param <T>   类的类型
+     * @return 反序列化的对象
+     */
+    default <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        return deserialize(new ByteBufInputStream(in), clazz);
+    }
 }
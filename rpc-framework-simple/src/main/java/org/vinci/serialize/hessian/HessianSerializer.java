@@ -7,6 +7,8 @@ import org.vinci.serialize.Serializer;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * HessianSerializer 是一个基于二进制的序列化器，用于将对象转换为二进制数据流
@@ -22,31 +24,55 @@ public class HessianSerializer implements Serializer {
      */
     @Override
     public byte[] serialize(Object obj) {
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        serialize(obj, byteArrayOutputStream);
+        // 返回序列化后的字节数组
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * 将字节数组反序列化为指定类型的对象
+     * @param bytes 序列化后的字节数组
+     * @param clazz 目标类
+     * @return 反序列化后的对象
+     * @throws SerializeException 反序列化异常
+     */
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        return deserialize(new ByteArrayInputStream(bytes), clazz);
+    }
+
+    /**
+     * 将对象直接序列化到输出流中
+     * @param obj 要序列化的对象
+     * @param out 输出流
+     * @throws SerializeException 序列化异常
+     */
+    @Override
+    public void serialize(Object obj, OutputStream out) {
+        try {
             // 创建输出流
-            HessianOutput hessianOutput = new HessianOutput(byteArrayOutputStream);
+            HessianOutput hessianOutput = new HessianOutput(out);
             // 将对象序列化到输出流中
             hessianOutput.writeObject(obj);
-            // 返回序列化后的字节数组
-            return byteArrayOutputStream.toByteArray();
+            hessianOutput.flush();
         } catch (Exception e) {
             throw new SerializeException("Serialization failed");
         }
-
     }
 
     /**
-     * 将字节数组反序列化为指定类型的对象
-     * @param bytes 序列化后的字节数组
+     * 直接从输入流中反序列化出指定类型的对象
+     * @param in 输入流
      * @param clazz 目标类
      * @return 反序列化后的对象
      * @throws SerializeException 反序列化异常
      */
     @Override
-    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
-        try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes)) {
+    public <T> T deserialize(InputStream in, Class<T> clazz) {
+        try {
             // 创建输入流
-            HessianInput hessianInput = new HessianInput(byteArrayInputStream);
+            HessianInput hessianInput = new HessianInput(in);
             // 从输入流中反序列化对象
             Object o = hessianInput.readObject();
             // 将反序列化得到的对象强制转换为指定类型
@@ -11,6 +11,8 @@ import org.vinci.serialize.Serializer;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Kryo序列化类，Kryo序列化效率很高，但只兼容Java语言
@@ -18,6 +20,9 @@ import java.io.ByteArrayOutputStream;
 @Slf4j
 public class KryoSerializer implements Serializer {
 
+    // Kryo 输入输出的缓冲区大小
+    private static final int BUFFER_SIZE = 1024 * 4;
+
     /**
      * 因为 Kryo 不是线程安全的，所以使用 ThreadLocal 存储 Kryo 对象
      */
@@ -29,37 +34,56 @@ public class KryoSerializer implements Serializer {
         return kryo;
     });
 
+    /**
+     * 每个线程复用同一个 Output/Input 及其缓冲区，使用时再绑定目标流
+     */
+    private final ThreadLocal<Output> outputThreadLocal = ThreadLocal.withInitial(() -> new Output(BUFFER_SIZE));
+    private final ThreadLocal<Input> inputThreadLocal = ThreadLocal.withInitial(() -> new Input(BUFFER_SIZE));
+
     @Override
     public byte[] serialize(Object obj) {
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-             Output output = new Output(byteArrayOutputStream)) {
-            Kryo kryo = kryoThreadLocal.get();
-            // 使用Kryo对象将Java对象序列化为字节数组
-            kryo.writeObject(output, obj);
-            // 在序列化完成后，清除当前线程中的Kryo对象
-            kryoThreadLocal.remove();
-            // 将序列化结果输出为字节数组并返回
-            return output.toBytes();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        serialize(obj, byteArrayOutputStream);
+        // 将序列化结果输出为字节数组并返回
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        return deserialize(new ByteArrayInputStream(bytes), clazz);
+    }
+
+    @Override
+    public void serialize(Object obj, OutputStream out) {
+        Output output = outputThreadLocal.get();
+        try {
+            output.setOutputStream(out);
+            // 使用Kryo对象将Java对象直接序列化到输出流
+            kryoThreadLocal.get().writeObject(output, obj);
+            output.flush();
         } catch (Exception e) {
             // 抛出序列化异常
             throw new SerializeException("Serialization failed");
+        } finally {
+            // 解除与目标流的绑定，避免线程持有外部流的引用
+            output.setOutputStream(null);
         }
     }
 
     @Override
-    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
-        try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-             Input input = new Input(byteArrayInputStream)) {
-            Kryo kryo = kryoThreadLocal.get();
-            // 使用Kryo对象将字节数组反序列化为Java对象
-            Object o = kryo.readObject(input, clazz);
-            // 在反序列化完成后，清除当前线程中的Kryo对象
-            kryoThreadLocal.remove();
+    public <T> T deserialize(InputStream in, Class<T> clazz) {
+        Input input = inputThreadLocal.get();
+        try {
+            input.setInputStream(in);
+            // 使用Kryo对象直接从输入流反序列化出Java对象
+            Object o = kryoThreadLocal.get().readObject(input, clazz);
             // 将反序列化结果强制转换为指定的类并返回
             return clazz.cast(o);
         } catch (Exception e) {
             // 抛出反序列化异常
             throw new SerializeException("Deserialization failed");
+        } finally {
+            input.setInputStream(null);
         }
     }
 
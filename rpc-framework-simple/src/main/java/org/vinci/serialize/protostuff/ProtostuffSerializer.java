@@ -4,14 +4,22 @@ import io.protostuff.LinkedBuffer;
 import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
 import io.protostuff.runtime.RuntimeSchema;
+import org.vinci.exception.SerializeException;
 import org.vinci.serialize.Serializer;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 public class ProtostuffSerializer implements Serializer {
 
     /**
      * 避免每次序列化时重新申请缓冲区空间
+     * LinkedBuffer 不是线程安全的，因此每个线程持有一个
      */
-    private static final LinkedBuffer BUFFER = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+    private static final ThreadLocal<LinkedBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
 
     /*
     在Protostuff中，Schema是一个接口，用于描述Java对象的字段结构和序列化信息。
@@ -26,20 +34,10 @@ public class ProtostuffSerializer implements Serializer {
      */
     @Override
     public byte[] serialize(Object obj) {
-        // 获取对象的Class对象
-        Class<?> clazz = obj.getClass();
-        // 获取Class对象的Schema对象
-        Schema schema = RuntimeSchema.getSchema(clazz);
-        byte[] bytes;
-        try {
-            // 使用ProtostuffIOUtil工具类将Java对象序列化为字节数组
-            bytes = ProtostuffIOUtil.toByteArray(obj, schema, BUFFER);
-        } finally {
-            // 清空缓冲区
-            BUFFER.clear();
-        }
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        serialize(obj, byteArrayOutputStream);
         // 返回序列化结果
-        return bytes;
+        return byteArrayOutputStream.toByteArray();
     }
 
     @Override
@@ -53,4 +51,37 @@ public class ProtostuffSerializer implements Serializer {
         // 返回反序列化结果
         return obj;
     }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void serialize(Object obj, OutputStream out) {
+        // 获取Class对象的Schema对象
+        Schema<Object> schema = (Schema<Object>) RuntimeSchema.getSchema(obj.getClass());
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            // 缓冲区写满时直接刷到输出流中
+            ProtostuffIOUtil.writeTo(out, obj, schema, buffer);
+        } catch (IOException e) {
+            throw new SerializeException("Serialization failed");
+        } finally {
+            // 清空缓冲区
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, Class<T> clazz) {
+        Schema<T> schema = RuntimeSchema.getSchema(clazz);
+        T obj = schema.newMessage();
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            // 借用线程内的缓冲区作为读缓冲，从输入流直接反序列化
+            ProtostuffIOUtil.mergeFrom(in, obj, schema, buffer);
+        } catch (IOException e) {
+            throw new SerializeException("Deserialization failed");
+        } finally {
+            buffer.clear();
+        }
+        return obj;
+    }
 }
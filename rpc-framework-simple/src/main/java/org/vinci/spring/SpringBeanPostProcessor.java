@@ -66,7 +66,9 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
                 // 构建 RPC 服务配置类
                 RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder()
                         .group(rpcReference.group())
-                        .version(rpcReference.version()).build();
+                        .version(rpcReference.version())
+                        .timeout(rpcReference.timeout())
+                        .cluster(rpcReference.cluster()).build();
                 // 创建 RPC 代理对象
                 RpcClientProxy rpcClientProxy = new RpcClientProxy(rpcClient, rpcServiceConfig);
                 // 获取远程调用的代理对象
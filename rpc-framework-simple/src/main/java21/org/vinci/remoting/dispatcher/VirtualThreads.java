@@ -0,0 +1,22 @@
+package org.vinci.remoting.dispatcher;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 创建虚拟线程执行器，JDK 21 上的版本
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的执行器
+     * @param name 线程名前缀
+     * @return 执行器
+     */
+    static ExecutorService newThreadPerTaskExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+}
@@ -0,0 +1,76 @@
+package org.vinci.cluster;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分位数草图的误差：估计值不小于实际分位数，且最多偏大 4%
+ */
+public class LatencySketchTest {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1};
+
+    @Test
+    public void emptySketchHasNoQuantile() {
+        LatencySketch sketch = new LatencySketch();
+
+        assertEquals(-1, sketch.quantile(0.99));
+        assertEquals(0, sketch.count());
+    }
+
+    @Test
+    public void quantilesStayWithinRelativeError() {
+        Random random = new Random(42);
+        LatencySketch sketch = new LatencySketch();
+        // 10 微秒到 1 秒之间按对数均匀分布
+        long[] samples = new long[100_000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (long) (10_000 * Math.pow(100_000, random.nextDouble()));
+            sketch.record(samples[i]);
+        }
+        Arrays.sort(samples);
+
+        assertEquals(samples.length, sketch.count());
+        for (double quantile : QUANTILES) {
+            long exact = samples[(int) Math.ceil(samples.length * quantile) - 1];
+            assertWithin(exact, sketch.quantile(quantile));
+        }
+    }
+
+    @Test
+    public void skewedTailIsEstimated() {
+        LatencySketch sketch = new LatencySketch();
+        // 99% 的请求 1 毫秒，1% 的请求 200 毫秒
+        for (int i = 0; i < 9_900; i++) {
+            sketch.record(1_000_000);
+        }
+        for (int i = 0; i < 100; i++) {
+            sketch.record(200_000_000);
+        }
+
+        assertWithin(1_000_000, sketch.quantile(0.99));
+        assertWithin(200_000_000, sketch.quantile(0.995));
+    }
+
+    @Test
+    public void valuesOutsideRangeAreClamped() {
+        LatencySketch sketch = new LatencySketch();
+        sketch.record(0);
+        sketch.record(500);
+
+        assertEquals(1000, sketch.quantile(1));
+
+        sketch.record(Long.MAX_VALUE);
+        long max = sketch.quantile(1);
+        assertTrue(max > 60_000_000_000L && max < Long.MAX_VALUE);
+    }
+
+    private static void assertWithin(long exact, long estimate) {
+        assertTrue(estimate + " < " + exact, estimate >= exact);
+        assertTrue(estimate + " > " + exact, estimate <= exact * 1.04);
+    }
+}
@@ -0,0 +1,94 @@
+package org.vinci.cluster;
+
+import org.junit.Test;
+import org.vinci.remoting.dto.RpcResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 多次发送的竞速：最先收到的响应作为结果，全部失败后才以异常结束
+ */
+public class RacingCallsTest {
+    private final RacingCalls racing = new RacingCalls();
+
+    @Test
+    public void firstResponseWinsAndCancelsOthers() throws Exception {
+        CompletableFuture<RpcResponse<Object>> slow = new CompletableFuture<>();
+        CompletableFuture<RpcResponse<Object>> fast = new CompletableFuture<>();
+        racing.add(slow);
+        racing.add(fast);
+
+        fast.complete(RpcResponse.success("fast"));
+
+        assertEquals("fast", racing.result().get().getData());
+        assertTrue(slow.isCancelled());
+    }
+
+    @Test
+    public void callAddedAfterResultIsCancelled() {
+        CompletableFuture<RpcResponse<Object>> first = new CompletableFuture<>();
+        racing.add(first);
+        first.complete(RpcResponse.success("first"));
+
+        CompletableFuture<RpcResponse<Object>> late = new CompletableFuture<>();
+        racing.add(late);
+
+        assertTrue(racing.isDone());
+        assertTrue(late.isCancelled());
+    }
+
+    @Test
+    public void failureWaitsForOtherCalls() throws Exception {
+        CompletableFuture<RpcResponse<Object>> failing = new CompletableFuture<>();
+        CompletableFuture<RpcResponse<Object>> other = new CompletableFuture<>();
+        racing.add(failing);
+        racing.add(other);
+        racing.close();
+
+        failing.completeExceptionally(new IllegalStateException("first"));
+        assertFalse(racing.isDone());
+
+        other.complete(RpcResponse.success("other"));
+        assertEquals("other", racing.result().get().getData());
+    }
+
+    @Test
+    public void failsWithLastErrorWhenAllCallsFail() throws Exception {
+        CompletableFuture<RpcResponse<Object>> first = new CompletableFuture<>();
+        CompletableFuture<RpcResponse<Object>> second = new CompletableFuture<>();
+        racing.add(first);
+        racing.add(second);
+        IllegalStateException last = new IllegalStateException("second");
+
+        first.completeExceptionally(new IllegalStateException("first"));
+        second.completeExceptionally(last);
+        // 还可能加入新的发送，不能结束
+        assertFalse(racing.isDone());
+
+        racing.close();
+
+        try {
+            racing.result().get();
+            fail("all calls failed");
+        } catch (ExecutionException e) {
+            assertSame(last, e.getCause());
+        }
+    }
+
+    @Test
+    public void cancellingResultCancelsCalls() {
+        CompletableFuture<RpcResponse<Object>> call = new CompletableFuture<>();
+        racing.add(call);
+
+        racing.result().cancel(false);
+
+        assertTrue(call.isCancelled());
+    }
+}
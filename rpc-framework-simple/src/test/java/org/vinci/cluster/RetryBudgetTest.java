@@ -0,0 +1,55 @@
+package org.vinci.cluster;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 重试预算：额外请求最多占正常请求的配置比例
+ */
+public class RetryBudgetTest {
+
+    @Test
+    public void initialBudgetAllowsTenExtraCalls() {
+        RetryBudget budget = new RetryBudget(0);
+
+        assertEquals(10, drain(budget));
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    public void depositsRefillByPercent() {
+        RetryBudget budget = new RetryBudget(10);
+        drain(budget);
+
+        for (int i = 0; i < 9; i++) {
+            budget.deposit();
+        }
+        assertFalse(budget.tryWithdraw());
+
+        budget.deposit();
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    public void balanceIsCapped() {
+        RetryBudget budget = new RetryBudget(100);
+
+        for (int i = 0; i < 1000; i++) {
+            budget.deposit();
+        }
+
+        assertEquals(100, drain(budget));
+    }
+
+    private static int drain(RetryBudget budget) {
+        int withdrawn = 0;
+        while (budget.tryWithdraw()) {
+            withdrawn++;
+        }
+        return withdrawn;
+    }
+}
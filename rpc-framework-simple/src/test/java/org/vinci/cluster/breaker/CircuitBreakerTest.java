@@ -0,0 +1,119 @@
+package org.vinci.cluster.breaker;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 熔断器的状态转换，使用默认配置：至少 20 次调用、失败率 50%、慢调用 1 秒且比例 80%、打开 5 秒
+ */
+public class CircuitBreakerTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long OPEN = 5000 * MILLIS;
+    private static final long FAST = 10 * MILLIS;
+    private static final long SLOW = 2000 * MILLIS;
+
+    private final CircuitBreaker breaker = new CircuitBreaker(
+            InetSocketAddress.createUnresolved("provider", 1), new CircuitBreakers.Settings());
+
+    @Test
+    public void opensWhenFailureRateIsReached() {
+        for (int i = 0; i < 19; i++) {
+            breaker.record(true, FAST);
+        }
+        // 调用数不足下限时不打开
+        assertTrue(breaker.isAvailable(System.nanoTime()));
+
+        breaker.record(true, FAST);
+
+        long now = System.nanoTime();
+        assertFalse(breaker.isAvailable(now));
+        assertTrue(breaker.isAvailable(now + OPEN));
+    }
+
+    @Test
+    public void staysClosedBelowFailureRate() {
+        for (int i = 0; i < 11; i++) {
+            breaker.record(false, FAST);
+        }
+        for (int i = 0; i < 9; i++) {
+            breaker.record(true, FAST);
+        }
+
+        assertTrue(breaker.isAvailable(System.nanoTime()));
+    }
+
+    @Test
+    public void opensWhenSlowRateIsReached() {
+        for (int i = 0; i < 4; i++) {
+            breaker.record(false, FAST);
+        }
+        for (int i = 0; i < 15; i++) {
+            breaker.record(false, SLOW);
+        }
+        assertTrue(breaker.isAvailable(System.nanoTime()));
+
+        breaker.record(false, SLOW);
+
+        assertFalse(breaker.isAvailable(System.nanoTime()));
+    }
+
+    @Test
+    public void successfulProbeCloses() {
+        long probe = open();
+
+        breaker.onSelected(probe);
+        // 半开状态下只放行一个探测调用
+        assertFalse(breaker.isAvailable(probe));
+
+        breaker.record(false, FAST);
+
+        assertTrue(breaker.isAvailable(probe));
+        // 关闭后重新统计，一次失败不会立即打开
+        breaker.record(true, FAST);
+        assertTrue(breaker.isAvailable(System.nanoTime()));
+    }
+
+    @Test
+    public void failedProbeReopensForLonger() {
+        long probe = open();
+        breaker.onSelected(probe);
+
+        breaker.record(true, FAST);
+
+        long now = System.nanoTime();
+        assertFalse(breaker.isAvailable(now + OPEN));
+        assertTrue(breaker.isAvailable(now + 2 * OPEN));
+    }
+
+    @Test
+    public void lostProbeAllowsAnotherAfterOpenTime() {
+        long probe = open();
+        breaker.onSelected(probe);
+        assertFalse(breaker.isAvailable(probe + OPEN - MILLIS));
+
+        assertTrue(breaker.isAvailable(probe + OPEN));
+        breaker.onSelected(probe + OPEN);
+        breaker.record(false, FAST);
+
+        assertTrue(breaker.isAvailable(probe + OPEN));
+    }
+
+    /**
+     * 打开熔断器
+     * @return 可以放行探测调用的时间
+     */
+    private long open() {
+        for (int i = 0; i < 20; i++) {
+            breaker.record(true, FAST);
+        }
+        long probe = System.nanoTime() + OPEN;
+        assertFalse(breaker.isAvailable(probe - OPEN));
+        assertTrue(breaker.isAvailable(probe));
+        return probe;
+    }
+}
@@ -0,0 +1,127 @@
+package org.vinci.cluster.failover;
+
+import org.junit.Test;
+import org.vinci.cluster.ClusterInvocation;
+import org.vinci.remoting.dto.RpcRequest;
+import org.vinci.remoting.dto.RpcResponse;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * 失败重试：失败后换一个没有尝试过的服务提供者，最多重试配置的次数
+ */
+public class FailoverClusterTest {
+    private static final InetSocketAddress A = InetSocketAddress.createUnresolved("a", 1);
+    private static final InetSocketAddress B = InetSocketAddress.createUnresolved("b", 1);
+    private static final InetSocketAddress C = InetSocketAddress.createUnresolved("c", 1);
+    private static final InetSocketAddress D = InetSocketAddress.createUnresolved("d", 1);
+
+    private final FailoverCluster cluster = new FailoverCluster();
+
+    @Test
+    public void retriesOnAnotherProvider() throws Exception {
+        FakeInvocation invocation = new FakeInvocation(Arrays.asList(A, B, C));
+        invocation.fail(A);
+
+        RpcResponse<Object> response = cluster.invoke(invocation).get();
+
+        assertEquals("b", response.getData());
+        assertEquals(Arrays.asList(A, B), invocation.sent);
+    }
+
+    @Test
+    public void stopsAfterConfiguredRetries() throws Exception {
+        FakeInvocation invocation = new FakeInvocation(Arrays.asList(A, B, C, D));
+        invocation.fail(A);
+        invocation.fail(B);
+        IllegalStateException last = invocation.fail(C);
+
+        try {
+            cluster.invoke(invocation).get();
+            fail("every attempt failed");
+        } catch (ExecutionException e) {
+            assertSame(last, e.getCause());
+        }
+        // 默认重试 2 次，共发送 3 次
+        assertEquals(Arrays.asList(A, B, C), invocation.sent);
+    }
+
+    @Test
+    public void selectionFailureEndsWithCallError() throws Exception {
+        FakeInvocation invocation = new FakeInvocation(Arrays.asList(A));
+        IllegalStateException cause = invocation.fail(A);
+        invocation.selectable = 1;
+
+        try {
+            cluster.invoke(invocation).get();
+            fail("no provider left");
+        } catch (ExecutionException e) {
+            assertSame(cause, e.getCause());
+        }
+        assertEquals(Arrays.asList(A), invocation.sent);
+    }
+
+    /**
+     * 按顺序选择没有排除的服务提供者，每个服务提供者返回预先设定的结果
+     */
+    private static class FakeInvocation implements ClusterInvocation {
+        private final List<InetSocketAddress> providers;
+        private final Map<InetSocketAddress, IllegalStateException> failures = new HashMap<>();
+        private final List<InetSocketAddress> sent = new ArrayList<>();
+        // 允许选择的次数，超过后服务发现失败
+        private int selectable = Integer.MAX_VALUE;
+
+        FakeInvocation(List<InetSocketAddress> providers) {
+            this.providers = providers;
+        }
+
+        IllegalStateException fail(InetSocketAddress address) {
+            IllegalStateException cause = new IllegalStateException("failed on " + address.getHostString());
+            failures.put(address, cause);
+            return cause;
+        }
+
+        @Override
+        public RpcRequest getRpcRequest() {
+            return RpcRequest.builder().interfaceName("org.vinci.HelloService").methodName("hello").build();
+        }
+
+        @Override
+        public InetSocketAddress select(Set<InetSocketAddress> excluded) {
+            if (selectable-- <= 0) {
+                throw new IllegalStateException("no provider");
+            }
+            for (InetSocketAddress provider : providers) {
+                if (!excluded.contains(provider)) {
+                    return provider;
+                }
+            }
+            return providers.get(0);
+        }
+
+        @Override
+        public CompletableFuture<RpcResponse<Object>> send(InetSocketAddress address) {
+            sent.add(address);
+            CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+            IllegalStateException cause = failures.get(address);
+            if (cause != null) {
+                future.completeExceptionally(cause);
+            } else {
+                future.complete(RpcResponse.success(address.getHostString()));
+            }
+            return future;
+        }
+    }
+}
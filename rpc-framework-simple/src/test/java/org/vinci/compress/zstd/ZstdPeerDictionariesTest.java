@@ -0,0 +1,122 @@
+package org.vinci.compress.zstd;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 对端发来的字典只在本连接上有效，每个连接的字典数有上限，带字典的帧写入校验和
+ */
+public class ZstdPeerDictionariesTest {
+    private static final byte[] BODY = sample(4242);
+    private static ZstdDictionary dictionary;
+
+    private final ZstdDictionaryCompress compress = new ZstdDictionaryCompress();
+    private final ZstdPeerDictionaries connection = new ZstdPeerDictionaries();
+    private final ZstdPeerDictionaries otherConnection = new ZstdPeerDictionaries();
+
+    @BeforeClass
+    public static void train() {
+        ZstdDictTrainer trainer = new ZstdDictTrainer(1024 * 1024, 4 * 1024);
+        for (int i = 0; i < 2000; i++) {
+            trainer.addSample(sample(i));
+        }
+        dictionary = new ZstdDictionary(trainer.trainSamples());
+    }
+
+    @After
+    public void tearDown() {
+        connection.release();
+        otherConnection.release();
+    }
+
+    @Test
+    public void frameIsDecompressedWithDictionaryOfItsConnection() throws IOException {
+        ByteBuf compressed = compressBody();
+        // 帧头描述符中的校验和标志
+        assertTrue((compressed.getByte(4) & 0x04) != 0);
+
+        assertEquals(dictionary.getId(), connection.register(dictionary.getContent()));
+        try (InputStream in = compress.decompress(new ByteBufInputStream(compressed.duplicate()), connection)) {
+            byte[] decompressed = new byte[BODY.length];
+            assertEquals(BODY.length, in.read(decompressed));
+            assertArrayEquals(BODY, decompressed);
+        }
+
+        // 其他连接没有收到过这个字典
+        assertUnknownDictionary(() -> compress.decompress(new ByteBufInputStream(compressed.duplicate()), otherConnection));
+        assertUnknownDictionary(() -> compress.decompress(new ByteBufInputStream(compressed.duplicate()), null));
+        assertUnknownDictionary(() -> compress.decompress(new ByteBufInputStream(compressed.duplicate())));
+        compressed.release();
+    }
+
+    @Test
+    public void repeatedDictionaryIdKeepsFirstDictionary() throws IOException {
+        connection.register(dictionary.getContent());
+        connection.register(withId(dictionary.getContent(), dictionary.getId()));
+
+        assertEquals(1, connection.size());
+    }
+
+    @Test
+    public void dictionariesPerConnectionAreCapped() throws IOException {
+        for (int i = 1; i <= ZstdDictionaries.MAX_KEYS; i++) {
+            connection.register(withId(dictionary.getContent(), i));
+        }
+        try {
+            connection.register(withId(dictionary.getContent(), ZstdDictionaries.MAX_KEYS + 1));
+            fail("dictionary over the limit was registered");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("too many"));
+        }
+        // 上限只针对单个连接
+        otherConnection.register(dictionary.getContent());
+        assertEquals(ZstdDictionaries.MAX_KEYS, connection.size());
+        assertEquals(1, otherConnection.size());
+    }
+
+    private ByteBuf compressBody() {
+        return compress.compress(Unpooled.wrappedBuffer(BODY), dictionary, UnpooledByteBufAllocator.DEFAULT);
+    }
+
+    private static void assertUnknownDictionary(Runnable decompress) {
+        try {
+            decompress.run();
+            fail("frame was decompressed without its dictionary");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause().getMessage().contains("unknown zstd dictionary"));
+        }
+    }
+
+    /**
+     * 复制字典并改写字典 id，熵表不变，仍然是合法的字典
+     */
+    private static byte[] withId(byte[] content, long id) {
+        byte[] copy = Arrays.copyOf(content, content.length);
+        for (int i = 0; i < 4; i++) {
+            copy[4 + i] = (byte) (id >>> (8 * i));
+        }
+        return copy;
+    }
+
+    private static byte[] sample(int i) {
+        return ("{\"id\":" + i + ",\"name\":\"user-" + (i * 31 % 997) + "\",\"email\":\"user" + i
+                + "@example.com\",\"roles\":[\"reader\",\"writer\"],\"active\":" + (i % 3 == 0) + "}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
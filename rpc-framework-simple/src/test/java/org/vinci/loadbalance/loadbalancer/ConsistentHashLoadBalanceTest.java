@@ -0,0 +1,67 @@
+package org.vinci.loadbalance.loadbalancer;
+
+import org.junit.Test;
+import org.vinci.remoting.dto.RpcRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * 一致性哈希在完整的地址列表上跳过排除的地址，不因为排除而改变哈希环
+ */
+public class ConsistentHashLoadBalanceTest {
+    private static final List<String> ADDRESSES = Arrays.asList(
+            "10.0.0.1:9998", "10.0.0.2:9998", "10.0.0.3:9998", "10.0.0.4:9998");
+
+    private final ConsistentHashLoadBalance.ConsistentHashSelector selector =
+            new ConsistentHashLoadBalance.ConsistentHashSelector(ADDRESSES, 160, System.identityHashCode(ADDRESSES));
+
+    @Test
+    public void excludedAddressIsTakenOverByNextOnRing() {
+        for (int i = 0; i < 100; i++) {
+            String key = "org.vinci.HelloService" + i;
+            String target = selector.select(key, Collections.emptySet());
+
+            String takeover = selector.select(key, Collections.singleton(target));
+
+            assertNotEquals(target, takeover);
+            // 排除其他地址不影响原本的落点
+            Set<String> others = new HashSet<>(ADDRESSES);
+            others.remove(target);
+            others.remove(takeover);
+            assertEquals(target, selector.select(key, others));
+        }
+    }
+
+    @Test
+    public void lastRemainingAddressIsSelected() {
+        Set<String> excluded = new HashSet<>(ADDRESSES.subList(0, 3));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(ADDRESSES.get(3), selector.select("key" + i, excluded));
+        }
+    }
+
+    @Test
+    public void loadBalanceNeverSelectsExcludedAddress() {
+        ConsistentHashLoadBalance loadBalance = new ConsistentHashLoadBalance();
+        Set<String> excluded = new HashSet<>(Arrays.asList(ADDRESSES.get(0), ADDRESSES.get(2)));
+
+        for (int i = 0; i < 100; i++) {
+            RpcRequest request = RpcRequest.builder()
+                    .interfaceName("org.vinci.HelloService")
+                    .parameters(new Object[]{i})
+                    .group("test")
+                    .version("1.0")
+                    .build();
+            assertFalse(excluded.contains(loadBalance.selectServiceAddress(ADDRESSES, excluded, request)));
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.vinci.remoting.handler;
+
+import org.junit.Test;
+import org.vinci.annotation.Batchable;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 合并调用：窗口到期或者凑满一批时调用一次批量方法，相同参数只查询一次，结果按参数分发
+ */
+public class CollapsingMethodInvokerTest {
+    // 足够让调用的平均间隔降到窗口一半以下的预热调用数
+    private static final int WARM_UP_CALLS = 400;
+
+    private final UserService service = new UserService();
+
+    @Test
+    public void batchIsInvokedWhenWindowExpires() throws Exception {
+        CollapsingMethodInvoker invoker = warmedUp("find");
+
+        List<CompletableFuture<Object>> results = invokeAll(invoker, 1, 2, 3);
+        assertFalse(results.get(0).isDone());
+
+        assertEquals(Arrays.asList("user-1", "user-2", "user-3"), join(results));
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3)), service.batches);
+    }
+
+    @Test
+    public void fullBatchIsInvokedWithoutWaiting() throws Exception {
+        CollapsingMethodInvoker invoker = warmedUp("find");
+
+        List<CompletableFuture<Object>> results = invokeAll(invoker, 1, 2, 3, 4);
+
+        // 第四个调用凑满一批，在调用线程中直接执行批量方法
+        for (CompletableFuture<Object> result : results) {
+            assertTrue(result.isDone());
+        }
+        assertEquals(Arrays.asList("user-1", "user-2", "user-3", "user-4"), join(results));
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3, 4)), service.batches);
+    }
+
+    @Test
+    public void duplicateKeysAreQueriedOnce() throws Exception {
+        CollapsingMethodInvoker invoker = warmedUp("find");
+
+        List<CompletableFuture<Object>> results = invokeAll(invoker, 7, 8, 7);
+
+        assertEquals(Arrays.asList("user-7", "user-8", "user-7"), join(results));
+        assertEquals(Arrays.asList(Arrays.asList(7, 8)), service.batches);
+        assertSame(results.get(0).get(), results.get(2).get());
+    }
+
+    @Test
+    public void wrongSizeListFailsEveryCall() throws Exception {
+        CollapsingMethodInvoker invoker = warmedUp("findShort");
+
+        List<CompletableFuture<Object>> results = invokeAll(invoker, 1, 2);
+
+        for (CompletableFuture<Object> result : results) {
+            Throwable cause = failure(result);
+            assertTrue(cause instanceof IllegalStateException);
+            assertTrue(cause.getMessage().contains("must return a List of 2 elements"));
+        }
+    }
+
+    @Test
+    public void failingBatchMethodFailsEveryCall() throws Exception {
+        CollapsingMethodInvoker invoker = warmedUp("findFailing");
+
+        List<CompletableFuture<Object>> results = invokeAll(invoker, 1, 2);
+
+        for (CompletableFuture<Object> result : results) {
+            Throwable cause = failure(result);
+            assertTrue(cause instanceof UnsupportedOperationException);
+            assertEquals("backend down", cause.getMessage());
+        }
+    }
+
+    /**
+     * 创建调用器并快速调用一段时间，之后的调用会等待窗口而不是直接执行
+     */
+    private CollapsingMethodInvoker warmedUp(String methodName) throws Exception {
+        Method method = UserService.class.getMethod(methodName, Integer.class);
+        Batchable batchable = method.getAnnotation(Batchable.class);
+        CollapsingMethodInvoker invoker = new CollapsingMethodInvoker("UserService", service, method,
+                CollapsingMethodInvoker.batchMethodOf(service, method, batchable), batchable);
+        List<CompletableFuture<Object>> results = new ArrayList<>();
+        for (int i = 0; i < WARM_UP_CALLS; i++) {
+            results.add(invoke(invoker, -i));
+        }
+        for (CompletableFuture<Object> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                // 故意失败的批量方法
+            }
+        }
+        service.batches.clear();
+        return invoker;
+    }
+
+    private static List<CompletableFuture<Object>> invokeAll(CollapsingMethodInvoker invoker, Integer... ids) {
+        List<CompletableFuture<Object>> results = new ArrayList<>();
+        for (Integer id : ids) {
+            results.add(invoke(invoker, id));
+        }
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<Object> invoke(CollapsingMethodInvoker invoker, Integer id) {
+        return (CompletableFuture<Object>) invoker.invoke(new Object[]{id});
+    }
+
+    private static List<Object> join(List<CompletableFuture<Object>> results) throws Exception {
+        List<Object> values = new ArrayList<>();
+        for (CompletableFuture<Object> result : results) {
+            values.add(result.get(5, TimeUnit.SECONDS));
+        }
+        return values;
+    }
+
+    private static Throwable failure(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("future completed normally");
+        return null;
+    }
+
+    public static class UserService {
+        // 批量方法每次收到的参数
+        private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+
+        @Batchable(value = "findAll", windowMicros = 50_000, maxSize = 4)
+        public String find(Integer id) {
+            throw new UnsupportedOperationException();
+        }
+
+        public List<String> findAll(List<Integer> ids) {
+            batches.add(new ArrayList<>(ids));
+            List<String> users = new ArrayList<>(ids.size());
+            for (Integer id : ids) {
+                users.add("user-" + id);
+            }
+            return users;
+        }
+
+        @Batchable(value = "findAllButLast", windowMicros = 50_000, maxSize = 4)
+        public String findShort(Integer id) {
+            throw new UnsupportedOperationException();
+        }
+
+        public List<String> findAllButLast(List<Integer> ids) {
+            List<String> users = findAll(ids);
+            return users.subList(0, users.size() - 1);
+        }
+
+        @Batchable(value = "findAllFailing", windowMicros = 50_000, maxSize = 4)
+        public String findFailing(Integer id) {
+            throw new UnsupportedOperationException();
+        }
+
+        public List<String> findAllFailing(List<Integer> ids) {
+            throw new UnsupportedOperationException("backend down");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.vinci.remoting.handler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.vinci.remoting.dto.RpcRequest;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务端调用目标方法的开销对比：每次按名称反射查找方法 vs 添加服务时编译好的 {@link MethodInvoker}
+ * <p>
+ * 运行方式：mvn test-compile 后以 test classpath 执行本类的 main 方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodInvokerBenchmark {
+
+    public interface Calculator {
+        int add(int a, int b);
+
+        String greet(String name, long times);
+    }
+
+    public static class CalculatorImpl implements Calculator {
+        @Override
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Override
+        public String greet(String name, long times) {
+            return name;
+        }
+    }
+
+    private Object service;
+    private RpcRequest request;
+    private Method cachedMethod;
+    private Map<String, Object> serviceMap;
+    private MethodInvoker invoker;
+    private Map<MethodKey, MethodInvoker> invokers;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        service = new CalculatorImpl();
+        request = RpcRequest.builder()
+                .interfaceName(Calculator.class.getCanonicalName())
+                .methodName("greet")
+                .paramTypes(new Class<?>[]{String.class, long.class})
+                .parameters(new Object[]{"vinci", 3L})
+                .group("")
+                .version("")
+                .build();
+        cachedMethod = CalculatorImpl.class.getMethod("greet", String.class, long.class);
+        serviceMap = new ConcurrentHashMap<>();
+        serviceMap.put(request.getRpcServiceName(), service);
+        invokers = new ConcurrentHashMap<>();
+        invoker = new MethodInvoker(request.getRpcServiceName(), service, cachedMethod);
+        invokers.put(MethodKey.of(request), invoker);
+    }
+
+    /**
+     * 原有的方式：拼接服务名称查找服务，再按名称和参数类型查找方法并反射调用
+     */
+    @Benchmark
+    public Object reflectiveLookup() throws Exception {
+        Object target = serviceMap.get(request.getRpcServiceName());
+        Method method = target.getClass().getMethod(request.getMethodName(), request.getParamTypes());
+        return method.invoke(target, request.getParameters());
+    }
+
+    /**
+     * 缓存 Method 对象，只保留反射调用本身的开销
+     */
+    @Benchmark
+    public Object cachedReflection() throws Exception {
+        return cachedMethod.invoke(service, request.getParameters());
+    }
+
+    /**
+     * 直接调用编译好的调用器，只保留调用本身的开销，与 cachedReflection 对比
+     */
+    @Benchmark
+    public Object cachedInvoker() throws Exception {
+        return invoker.invoke(request.getParameters());
+    }
+
+    /**
+     * 按请求字段组成的方法标识查找编译好的调用器并调用
+     */
+    @Benchmark
+    public Object compiledInvoker() throws Exception {
+        return invokers.get(MethodKey.of(request)).invoke(request.getParameters());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MethodInvokerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
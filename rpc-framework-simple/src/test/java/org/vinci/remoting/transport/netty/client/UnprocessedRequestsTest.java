@@ -0,0 +1,92 @@
+package org.vinci.remoting.transport.netty.client;
+
+import org.junit.Test;
+import org.vinci.exception.RpcException;
+import org.vinci.remoting.dto.RpcResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 未完成请求的超时、完成和连接关闭
+ */
+public class UnprocessedRequestsTest {
+    private final UnprocessedRequests requests = new UnprocessedRequests();
+
+    @Test
+    public void timeoutRemovesRequestAndFailsFuture() throws Exception {
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        long requestId = requests.put(future, 50);
+        assertEquals(1, requests.pending());
+
+        Throwable cause = failure(future, 5000);
+
+        assertTrue(cause instanceof RpcException);
+        assertTrue(cause.getMessage().contains("requestId:" + requestId));
+        assertEquals(0, requests.pending());
+        assertFalse(requests.contains(requestId));
+        // 超时之后到达的响应被丢弃
+        assertFalse(requests.complete(requestId, RpcResponse.success("late")));
+    }
+
+    @Test
+    public void responseBeforeTimeoutCompletesFuture() throws Exception {
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        long requestId = requests.put(future, 200);
+
+        assertTrue(requests.complete(requestId, RpcResponse.success("ok")));
+
+        assertEquals("ok", future.get().getData());
+        assertEquals(0, requests.pending());
+        // 超过超时时间后结果保持不变
+        Thread.sleep(300);
+        assertFalse(future.isCompletedExceptionally());
+        assertEquals(0, requests.pending());
+    }
+
+    @Test
+    public void requestWithoutTimeoutStaysPending() throws Exception {
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        long requestId = requests.put(future, 0);
+
+        Thread.sleep(100);
+
+        assertFalse(future.isDone());
+        assertTrue(requests.contains(requestId));
+        assertEquals(1, requests.pending());
+    }
+
+    @Test
+    public void failAllFailsEveryPendingRequest() throws Exception {
+        CompletableFuture<RpcResponse<Object>> first = new CompletableFuture<>();
+        CompletableFuture<RpcResponse<Object>> second = new CompletableFuture<>();
+        long firstId = requests.put(first, 10_000);
+        long secondId = requests.put(second);
+        assertNotEquals(firstId, secondId);
+        IllegalStateException closed = new IllegalStateException("channel closed");
+
+        requests.failAll(closed);
+
+        assertSame(closed, failure(first, 1000));
+        assertSame(closed, failure(second, 1000));
+        assertEquals(0, requests.pending());
+    }
+
+    private static Throwable failure(CompletableFuture<?> future, long timeoutMillis) throws Exception {
+        try {
+            future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("future completed normally");
+        return null;
+    }
+}
@@ -0,0 +1,240 @@
+package org.vinci.remoting.transport.netty.codec;
+
+import io.netty.buffer.AbstractByteBufAllocator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vinci.enums.CompressTypeEnum;
+import org.vinci.enums.SerializationTypeEnum;
+import org.vinci.remoting.constants.RpcConstants;
+import org.vinci.remoting.dto.RpcMessage;
+import org.vinci.remoting.dto.RpcMethodBinding;
+import org.vinci.remoting.dto.RpcRequest;
+import org.vinci.remoting.dto.RpcResponse;
+import org.vinci.remoting.transport.netty.client.UnprocessedRequests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 超过分块大小的消息体拆分成多个帧发送，接收方拼接后解码
+ */
+public class ChunkedFramesTest {
+    // 默认的分块大小
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private EmbeddedChannel encoder;
+    private EmbeddedChannel decoder;
+
+    @Before
+    public void setUp() {
+        encoder = new EmbeddedChannel(new ChunkedFrameWriter(), new RpcMessageEncoder());
+        decoder = new EmbeddedChannel(new RpcMessageDecoder());
+    }
+
+    @After
+    public void tearDown() {
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+    }
+
+    @Test
+    public void largeBodyIsSplitAndReassembled() {
+        for (CompressTypeEnum compress : new CompressTypeEnum[]{CompressTypeEnum.NONE, CompressTypeEnum.LZ4}) {
+            byte[] payload = randomBytes(3 * CHUNK_SIZE + 123);
+
+            ChannelFuture future = encoder.writeAndFlush(response(7L, payload, compress));
+            List<ByteBuf> frames = drainFrames();
+
+            assertTrue(future.isSuccess());
+            assertEquals(compress.getName(), 4, frames.size());
+            for (ByteBuf frame : frames) {
+                assertTrue(frame.readableBytes() <= RpcConstants.HEAD_LENGTH + CHUNK_SIZE);
+                assertEquals(7L, frame.getLong(12));
+            }
+            List<RpcMessage> decoded = decode(frames);
+            assertEquals(1, decoded.size());
+            assertArrayEquals(payload, (byte[]) ((RpcResponse<?>) decoded.get(0).getData()).getData());
+        }
+    }
+
+    @Test
+    public void largeBodyNeverNeedsContiguousBuffer() {
+        TrackingAllocator alloc = new TrackingAllocator();
+        encoder.config().setAllocator(alloc);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 3 * CHUNK_SIZE; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        byte[] payload = text.toString().getBytes();
+
+        // 流式压缩的结果同样分段写入，块压缩需要整块输入，大消息体不压缩
+        for (CompressTypeEnum compress : new CompressTypeEnum[]{CompressTypeEnum.GZIP, CompressTypeEnum.LZ4}) {
+            encoder.writeAndFlush(response(9L, payload, compress));
+            List<ByteBuf> frames = drainFrames();
+
+            byte expected = compress == CompressTypeEnum.GZIP ? compress.getCode() : CompressTypeEnum.NONE.getCode();
+            assertEquals(compress.getName(), expected, frames.get(0).getByte(11));
+            assertTrue(compress.getName(), alloc.maxCapacity() <= CHUNK_SIZE);
+            List<RpcMessage> decoded = decode(frames);
+            assertArrayEquals(payload, (byte[]) ((RpcResponse<?>) decoded.get(0).getData()).getData());
+        }
+    }
+
+    @Test
+    public void messagesAfterLargeOneAreDecodedIntact() {
+        byte[] payload = randomBytes(2 * CHUNK_SIZE + 1);
+
+        encoder.writeAndFlush(response(1L, payload, CompressTypeEnum.NONE));
+        encoder.writeAndFlush(response(2L, "small".getBytes(), CompressTypeEnum.NONE));
+        List<RpcMessage> decoded = decode(drainFrames());
+
+        assertEquals(2, decoded.size());
+        assertEquals(1L, decoded.get(0).getRequestId());
+        assertArrayEquals(payload, (byte[]) ((RpcResponse<?>) decoded.get(0).getData()).getData());
+        assertEquals(2L, decoded.get(1).getRequestId());
+        assertArrayEquals("small".getBytes(), (byte[]) ((RpcResponse<?>) decoded.get(1).getData()).getData());
+    }
+
+    @Test
+    public void controlFramesAreNotQueuedBehindChunkedBatch() {
+        encoder.attr(UnprocessedRequests.KEY).set(new UnprocessedRequests());
+        long batchId = RpcMessageBatcher.nextBatchId(encoder);
+        assertTrue(batchId != 0);
+        RpcMessage batch = RpcMessage.builder()
+                .messageType(RpcConstants.BATCH_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .requestId(batchId)
+                .data(Arrays.asList(request(1L, "upload", randomBytes(2 * CHUNK_SIZE)), request(2L, "upload", new byte[0])))
+                .build();
+
+        // 批量消息的第一块写出后、其余分块发送完之前，首次调用的方法需要绑定
+        encoder.write(batch);
+        encoder.write(request(3L, "hello", new byte[0]));
+        encoder.flush();
+        List<RpcMessage> decoded = decode(drainFrames());
+
+        List<Byte> types = new ArrayList<>();
+        for (RpcMessage message : decoded) {
+            types.add(message.getMessageType());
+        }
+        assertEquals(Arrays.asList(RpcConstants.METHOD_BIND_TYPE, RpcConstants.METHOD_BIND_TYPE,
+                RpcConstants.REQUEST_TYPE, RpcConstants.BATCH_TYPE), types);
+        assertEquals("hello", ((RpcMethodBinding) decoded.get(1).getData()).getMethodName());
+        assertEquals(3L, decoded.get(2).getRequestId());
+        assertEquals(((RpcMethodBinding) decoded.get(1).getData()).getMethodId(),
+                ((RpcRequest) decoded.get(2).getData()).getMethodId());
+        assertEquals(batchId, decoded.get(3).getRequestId());
+    }
+
+    private List<ByteBuf> drainFrames() {
+        List<ByteBuf> frames = new ArrayList<>();
+        // 每一块写出成功后才写下一块，EmbeddedChannel 中写出立即成功，反复读取直到没有新的帧
+        ByteBuf frame;
+        while ((frame = encoder.readOutbound()) != null) {
+            frames.add(frame);
+            encoder.runPendingTasks();
+        }
+        return frames;
+    }
+
+    private List<RpcMessage> decode(List<ByteBuf> frames) {
+        for (ByteBuf frame : frames) {
+            decoder.writeInbound(frame);
+        }
+        List<RpcMessage> decoded = new ArrayList<>();
+        RpcMessage next;
+        while ((next = decoder.readInbound()) != null) {
+            decoded.add(next);
+        }
+        return decoded;
+    }
+
+    private static RpcMessage response(long requestId, byte[] payload, CompressTypeEnum compress) {
+        return RpcMessage.builder()
+                .messageType(RpcConstants.RESPONSE_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(compress.getCode())
+                .requestId(requestId)
+                .data(RpcResponse.success(payload))
+                .build();
+    }
+
+    private static RpcMessage request(long requestId, String methodName, byte[] payload) {
+        RpcRequest request = RpcRequest.builder()
+                .interfaceName("org.vinci.HelloService")
+                .methodName(methodName)
+                .parameters(new Object[]{payload})
+                .paramTypes(new Class<?>[]{byte[].class})
+                .group("test")
+                .version("1.0")
+                .build();
+        return RpcMessage.builder()
+                .messageType(RpcConstants.REQUEST_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .requestId(requestId)
+                .data(request)
+                .build();
+    }
+
+    /**
+     * 记录编码器申请的全部缓冲区，检查其中最大的一块
+     */
+    private static final class TrackingAllocator extends AbstractByteBufAllocator {
+        private final List<ByteBuf> buffers = new ArrayList<>();
+
+        private TrackingAllocator() {
+            super(false);
+        }
+
+        @Override
+        protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+            ByteBuf buffer = Unpooled.buffer(initialCapacity, maxCapacity);
+            buffers.add(buffer);
+            return buffer;
+        }
+
+        @Override
+        protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+            ByteBuf buffer = Unpooled.directBuffer(initialCapacity, maxCapacity);
+            buffers.add(buffer);
+            return buffer;
+        }
+
+        @Override
+        public boolean isDirectBufferPooled() {
+            return false;
+        }
+
+        /**
+         * 仍在使用的缓冲区中最大的容量
+         */
+        private int maxCapacity() {
+            int max = 0;
+            for (ByteBuf buffer : buffers) {
+                if (buffer.refCnt() > 0) {
+                    max = Math.max(max, buffer.capacity());
+                }
+            }
+            return max;
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
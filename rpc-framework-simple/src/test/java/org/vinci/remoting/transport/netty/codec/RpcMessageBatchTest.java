@@ -0,0 +1,187 @@
+package org.vinci.remoting.transport.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vinci.enums.CompressTypeEnum;
+import org.vinci.enums.SerializationTypeEnum;
+import org.vinci.remoting.constants.RpcConstants;
+import org.vinci.remoting.dto.RpcMessage;
+import org.vinci.remoting.dto.RpcRequest;
+import org.vinci.remoting.dto.RpcResponse;
+import org.vinci.remoting.transport.netty.client.UnprocessedRequests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 批量消息的编解码：同一连接上连续写出的多条消息合并为一帧，解码后保持各自的请求 id 和顺序
+ */
+public class RpcMessageBatchTest {
+    private EmbeddedChannel encoder;
+    private EmbeddedChannel decoder;
+
+    @Before
+    public void setUp() {
+        // 出站方向从尾部开始，合并器在编码器之前处理消息
+        encoder = new EmbeddedChannel(new RpcMessageEncoder(), new RpcMessageBatcher(true));
+        decoder = new EmbeddedChannel(new RpcMessageDecoder());
+    }
+
+    @After
+    public void tearDown() {
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+    }
+
+    @Test
+    public void responsesAreMergedIntoOneFrame() {
+        // 合并后的消息体超过压缩阈值，整体压缩一次
+        StringBuilder second = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            second.append("second ");
+        }
+        for (CompressTypeEnum compress : new CompressTypeEnum[]{CompressTypeEnum.NONE, CompressTypeEnum.GZIP}) {
+            List<ByteBuf> frames = writeAll(response(11L, "first", compress),
+                    response(12L, second.toString(), compress), response(13L, "third", compress));
+
+            assertEquals(compress.getName(), 1, frames.size());
+            assertEquals(RpcConstants.BATCH_TYPE, frames.get(0).getByte(9));
+            assertEquals(compress.getCode(), frames.get(0).getByte(11));
+            // 服务端连接上的批量消息使用负数请求 id
+            assertTrue(frames.get(0).getLong(12) < 0);
+            List<RpcMessage> entries = batchEntries(decode(frames));
+            assertEquals(Arrays.asList(11L, 12L, 13L), requestIds(entries));
+            assertEquals(second.toString(), ((RpcResponse<?>) entries.get(1).getData()).getData());
+            assertEquals(RpcConstants.RESPONSE_TYPE, entries.get(1).getMessageType());
+        }
+    }
+
+    @Test
+    public void requestsInBatchAreBoundBeforeTheBatch() {
+        List<ByteBuf> frames = writeAll(request(1L, "a"), request(2L, "b"));
+
+        // 首次调用的方法先发送绑定消息，批量消息中只携带方法 id
+        assertEquals(2, frames.size());
+        assertEquals(RpcConstants.METHOD_BIND_TYPE, frames.get(0).getByte(9));
+        assertEquals(RpcConstants.BATCH_TYPE, frames.get(1).getByte(9));
+        List<RpcMessage> decoded = decode(frames);
+        List<RpcMessage> entries = batchEntries(decoded.get(1));
+        assertEquals(Arrays.asList(1L, 2L), requestIds(entries));
+        assertArrayEquals(new Object[]{"b"}, ((RpcRequest) entries.get(1).getData()).getParameters());
+    }
+
+    @Test
+    public void otherMessagesFlushPendingBatchFirst() {
+        RpcMessage ping = RpcMessage.builder()
+                .messageType(RpcConstants.HEARTBEAT_REQUEST_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .build();
+
+        List<ByteBuf> frames = writeAll(
+                response(1L, "a", CompressTypeEnum.NONE), response(2L, "b", CompressTypeEnum.NONE), ping);
+
+        assertEquals(2, frames.size());
+        assertEquals(RpcConstants.BATCH_TYPE, frames.get(0).getByte(9));
+        assertEquals(RpcConstants.HEARTBEAT_REQUEST_TYPE, frames.get(1).getByte(9));
+        frames.forEach(ByteBuf::release);
+    }
+
+    @Test
+    public void responsesWithoutPendingRequestAreSkipped() {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests();
+        long pendingId = unprocessedRequests.put(new CompletableFuture<>());
+        decoder.attr(UnprocessedRequests.KEY).set(unprocessedRequests);
+
+        List<ByteBuf> frames = writeAll(response(pendingId + 100, "late", CompressTypeEnum.NONE),
+                response(pendingId, "wanted", CompressTypeEnum.NONE));
+
+        List<RpcMessage> entries = batchEntries(decode(frames));
+        assertEquals(Arrays.asList(pendingId), requestIds(entries));
+        assertEquals("wanted", ((RpcResponse<?>) entries.get(0).getData()).getData());
+    }
+
+    /**
+     * 连续写出多条消息后统一刷新，返回编码后的全部帧
+     */
+    private List<ByteBuf> writeAll(RpcMessage... messages) {
+        for (RpcMessage message : messages) {
+            encoder.write(message);
+        }
+        encoder.flush();
+        // 合并后的消息在 EventLoop 的后续任务中写出
+        encoder.runPendingTasks();
+        List<ByteBuf> frames = new ArrayList<>();
+        ByteBuf frame;
+        while ((frame = encoder.readOutbound()) != null) {
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    private List<RpcMessage> decode(List<ByteBuf> frames) {
+        for (ByteBuf frame : frames) {
+            decoder.writeInbound(frame);
+        }
+        List<RpcMessage> decoded = new ArrayList<>();
+        RpcMessage next;
+        while ((next = decoder.readInbound()) != null) {
+            decoded.add(next);
+        }
+        return decoded;
+    }
+
+    private static List<RpcMessage> batchEntries(List<RpcMessage> decoded) {
+        assertEquals(1, decoded.size());
+        return batchEntries(decoded.get(0));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<RpcMessage> batchEntries(RpcMessage batch) {
+        assertEquals(RpcConstants.BATCH_TYPE, batch.getMessageType());
+        return (List<RpcMessage>) batch.getData();
+    }
+
+    private static List<Long> requestIds(List<RpcMessage> messages) {
+        List<Long> requestIds = new ArrayList<>();
+        for (RpcMessage message : messages) {
+            requestIds.add(message.getRequestId());
+        }
+        return requestIds;
+    }
+
+    private static RpcMessage response(long requestId, String value, CompressTypeEnum compress) {
+        return message(RpcConstants.RESPONSE_TYPE, requestId, RpcResponse.success(value), compress);
+    }
+
+    private static RpcMessage request(long requestId, String argument) {
+        RpcRequest request = RpcRequest.builder()
+                .interfaceName("org.vinci.HelloService")
+                .methodName("hello")
+                .parameters(new Object[]{argument})
+                .paramTypes(new Class<?>[]{String.class})
+                .group("test")
+                .version("1.0")
+                .build();
+        return message(RpcConstants.REQUEST_TYPE, requestId, request, CompressTypeEnum.NONE);
+    }
+
+    private static RpcMessage message(byte messageType, long requestId, Object data, CompressTypeEnum compress) {
+        return RpcMessage.builder()
+                .messageType(messageType)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(compress.getCode())
+                .requestId(requestId)
+                .data(data)
+                .build();
+    }
+}
@@ -0,0 +1,190 @@
+package org.vinci.remoting.transport.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vinci.enums.CompressTypeEnum;
+import org.vinci.enums.SerializationTypeEnum;
+import org.vinci.remoting.constants.RpcConstants;
+import org.vinci.remoting.dto.RpcMessage;
+import org.vinci.remoting.dto.RpcMethodBinding;
+import org.vinci.remoting.dto.RpcRequest;
+import org.vinci.remoting.dto.RpcResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 编码器和解码器的往返测试：编码器输出的帧交给解码器，解码结果与原消息一致
+ */
+public class RpcMessageCodecTest {
+    private EmbeddedChannel encoder;
+    private EmbeddedChannel decoder;
+
+    @Before
+    public void setUp() {
+        encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        decoder = new EmbeddedChannel(new RpcMessageDecoder());
+    }
+
+    @After
+    public void tearDown() {
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+    }
+
+    @Test
+    public void heartbeatRoundTrip() {
+        RpcMessage ping = RpcMessage.builder()
+                .messageType(RpcConstants.HEARTBEAT_REQUEST_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .build();
+
+        List<RpcMessage> decoded = roundTrip(ping);
+
+        assertEquals(1, decoded.size());
+        assertEquals(RpcConstants.HEARTBEAT_REQUEST_TYPE, decoded.get(0).getMessageType());
+        assertEquals(RpcConstants.PING, decoded.get(0).getData());
+    }
+
+    @Test
+    public void requestIsSentAsBindingFollowedByMethodId() {
+        RpcRequest request = request("hello", 42);
+
+        List<RpcMessage> first = roundTrip(message(RpcConstants.REQUEST_TYPE, 7L, request, CompressTypeEnum.NONE));
+        List<RpcMessage> second = roundTrip(message(RpcConstants.REQUEST_TYPE, 8L, request, CompressTypeEnum.NONE));
+
+        // 第一次发送时先绑定方法，之后的请求只携带方法 id 和参数
+        assertEquals(2, first.size());
+        assertEquals(RpcConstants.METHOD_BIND_TYPE, first.get(0).getMessageType());
+        RpcMethodBinding binding = (RpcMethodBinding) first.get(0).getData();
+        assertEquals(request.getInterfaceName(), binding.getInterfaceName());
+        assertEquals(request.getMethodName(), binding.getMethodName());
+        RpcRequest decoded = (RpcRequest) first.get(1).getData();
+        assertEquals(7L, first.get(1).getRequestId());
+        assertEquals(binding.getMethodId(), decoded.getMethodId());
+        assertNull(decoded.getInterfaceName());
+        assertArrayEquals(request.getParameters(), decoded.getParameters());
+
+        assertEquals(1, second.size());
+        assertEquals(8L, second.get(0).getRequestId());
+        assertEquals(binding.getMethodId(), ((RpcRequest) second.get(0).getData()).getMethodId());
+    }
+
+    @Test
+    public void responseRoundTripWithEveryCompressType() {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            value.append("item-").append(i).append(',');
+        }
+        for (CompressTypeEnum compress : CompressTypeEnum.values()) {
+            RpcMessage response = message(RpcConstants.RESPONSE_TYPE, 99L, RpcResponse.success(value.toString()), compress);
+
+            List<RpcMessage> decoded = roundTrip(response);
+
+            assertEquals(compress.getName(), 1, decoded.size());
+            assertEquals(99L, decoded.get(0).getRequestId());
+            assertEquals(compress.getName(), value.toString(), ((RpcResponse<?>) decoded.get(0).getData()).getData());
+        }
+    }
+
+    @Test
+    public void largeBodyIsCompressedAndSmallBodyIsNot() {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            value.append("repeated ");
+        }
+        assertEquals(CompressTypeEnum.GZIP.getCode(), frameCompress(message(RpcConstants.RESPONSE_TYPE, 1L,
+                RpcResponse.success(value.toString()), CompressTypeEnum.GZIP)));
+        assertEquals(CompressTypeEnum.NONE.getCode(), frameCompress(message(RpcConstants.RESPONSE_TYPE, 2L,
+                RpcResponse.success("tiny"), CompressTypeEnum.GZIP)));
+    }
+
+    @Test
+    public void oversizedUncompressedLengthIsRejected() {
+        // LZ4 块头声称原始长度接近 2G，实际只有几个字节
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeInt(RpcConstants.MAGIC_CODE);
+        frame.writeByte(RpcConstants.VERSION);
+        frame.writeInt(RpcConstants.HEAD_LENGTH + 8);
+        frame.writeByte(RpcConstants.RESPONSE_TYPE);
+        frame.writeByte(SerializationTypeEnum.HESSIAN.getCode());
+        frame.writeByte(CompressTypeEnum.LZ4.getCode());
+        frame.writeLong(1L);
+        frame.writeInt(Integer.MAX_VALUE - 8);
+        frame.writeInt(0);
+
+        try {
+            decoder.writeInbound(frame);
+            fail("oversized length prefix accepted");
+        } catch (DecoderException e) {
+            Throwable cause = e;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            assertTrue(cause.getMessage(), cause.getMessage().contains("exceeds"));
+        }
+    }
+
+    /**
+     * 编码后逐帧交给解码器，返回解码出的全部消息
+     */
+    private List<RpcMessage> roundTrip(RpcMessage message) {
+        assertTrue(encoder.writeOutbound(message));
+        ByteBuf frame;
+        while ((frame = encoder.readOutbound()) != null) {
+            decoder.writeInbound(frame);
+        }
+        List<RpcMessage> decoded = new ArrayList<>();
+        RpcMessage next;
+        while ((next = decoder.readInbound()) != null) {
+            decoded.add(next);
+        }
+        return decoded;
+    }
+
+    /**
+     * 编码一条消息，返回消息头中实际使用的压缩类型
+     */
+    private byte frameCompress(RpcMessage message) {
+        assertTrue(encoder.writeOutbound(message));
+        ByteBuf frame = encoder.readOutbound();
+        try {
+            return frame.getByte(11);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private static RpcMessage message(byte messageType, long requestId, Object data, CompressTypeEnum compress) {
+        return RpcMessage.builder()
+                .messageType(messageType)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(compress.getCode())
+                .requestId(requestId)
+                .data(data)
+                .build();
+    }
+
+    private static RpcRequest request(String greeting, int count) {
+        return RpcRequest.builder()
+                .interfaceName("org.vinci.HelloService")
+                .methodName("hello")
+                .parameters(new Object[]{greeting, count})
+                .paramTypes(new Class<?>[]{String.class, int.class})
+                .group("test")
+                .version("1.0")
+                .build();
+    }
+}
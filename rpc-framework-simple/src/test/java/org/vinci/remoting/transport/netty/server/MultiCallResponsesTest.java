@@ -0,0 +1,133 @@
+package org.vinci.remoting.transport.netty.server;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vinci.enums.CompressTypeEnum;
+import org.vinci.enums.SerializationTypeEnum;
+import org.vinci.remoting.constants.RpcConstants;
+import org.vinci.remoting.dto.RpcMessage;
+import org.vinci.remoting.dto.RpcResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 批量调用的响应：全部完成时合并发送，慢请求不拖住已经完成的响应
+ */
+public class MultiCallResponsesTest {
+    private EmbeddedChannel channel;
+    private ChannelHandlerContext ctx;
+    private final Map<Long, MultiCallResponses> multiCalls = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp() {
+        channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ctx = channel.pipeline().firstContext();
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void allResponsesAreSentAsOneBatch() {
+        MultiCallResponses responses = start(1L, 2L, 3L);
+        assertSame(responses, multiCalls.get(2L));
+
+        responses.add(response(2L));
+        responses.add(response(1L));
+        assertNull(channel.readOutbound());
+        responses.add(response(3L));
+
+        RpcMessage batch = channel.readOutbound();
+        assertEquals(RpcConstants.BATCH_TYPE, batch.getMessageType());
+        assertEquals(Arrays.asList(2L, 1L, 3L), requestIds(batch));
+        assertTrue(batch.getRequestId() != 0);
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void slowResponseIsSentAfterLinger() throws Exception {
+        MultiCallResponses responses = start(1L, 2L, 3L);
+        responses.add(response(1L));
+        responses.add(response(3L));
+
+        Thread.sleep(120);
+        channel.runScheduledPendingTasks();
+
+        // 等待到期后先发送已经完成的响应，慢请求退出批量调用
+        RpcMessage batch = channel.readOutbound();
+        assertEquals(RpcConstants.BATCH_TYPE, batch.getMessageType());
+        assertEquals(Arrays.asList(1L, 3L), requestIds(batch));
+        assertTrue(multiCalls.isEmpty());
+
+        responses.add(response(2L));
+
+        RpcMessage late = channel.readOutbound();
+        assertEquals(RpcConstants.RESPONSE_TYPE, late.getMessageType());
+        assertEquals(2L, late.getRequestId());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void singleResponseIsSentAsPlainResponse() throws Exception {
+        MultiCallResponses responses = start(1L, 2L);
+        responses.add(response(2L));
+
+        Thread.sleep(120);
+        channel.runScheduledPendingTasks();
+
+        RpcMessage message = channel.readOutbound();
+        assertEquals(RpcConstants.RESPONSE_TYPE, message.getMessageType());
+        assertEquals(2L, message.getRequestId());
+    }
+
+    @Test
+    public void nothingIsSentWhenNoResponseCompleted() throws Exception {
+        start(1L, 2L);
+
+        Thread.sleep(120);
+        channel.runScheduledPendingTasks();
+
+        assertNull(channel.readOutbound());
+        assertTrue(multiCalls.isEmpty());
+    }
+
+    private MultiCallResponses start(Long... requestIds) {
+        MultiCallResponses responses = new MultiCallResponses(ctx, multiCalls, Arrays.asList(requestIds));
+        responses.start();
+        return responses;
+    }
+
+    private static RpcMessage response(long requestId) {
+        return RpcMessage.builder()
+                .messageType(RpcConstants.RESPONSE_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .requestId(requestId)
+                .data(RpcResponse.success("result-" + requestId))
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> requestIds(RpcMessage batch) {
+        List<Long> requestIds = new ArrayList<>();
+        for (RpcMessage message : (List<RpcMessage>) batch.getData()) {
+            requestIds.add(message.getRequestId());
+        }
+        return requestIds;
+    }
+}
@@ -0,0 +1,289 @@
+package org.vinci.remoting.transport.netty.stream;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vinci.enums.CompressTypeEnum;
+import org.vinci.enums.SerializationTypeEnum;
+import org.vinci.remoting.dto.RpcMessage;
+import org.vinci.remoting.dto.RpcStreamMessage;
+import org.vinci.stream.Publisher;
+import org.vinci.stream.Publishers;
+import org.vinci.stream.Subscriber;
+import org.vinci.stream.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 基于需求的流控和取消：发送方只发送对端请求的元素，流结束或取消后连接回到空闲状态
+ */
+public class StreamRegistryTest {
+    // 在当前线程中处理需求
+    private static final Executor INLINE = Runnable::run;
+
+    private EmbeddedChannel channel;
+    private StreamRegistry streams;
+
+    @Before
+    public void setUp() {
+        channel = new EmbeddedChannel();
+        streams = new StreamRegistry(channel, SerializationTypeEnum.HESSIAN.getCode(), CompressTypeEnum.NONE.getCode());
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void senderEmitsOnlyRequestedItems() {
+        streams.expect(1L, INLINE);
+        streams.sendExpected(1L, Publishers.fromIterable(Arrays.asList(1, 2, 3, 4, 5)));
+        assertTrue(written().isEmpty());
+
+        streams.dispatch(1L, RpcStreamMessage.request(2));
+        assertEquals(Arrays.asList(next(1), next(2)), written());
+
+        streams.dispatch(1L, RpcStreamMessage.request(10));
+        assertEquals(Arrays.asList(next(3), next(4), next(5), "complete"), written());
+        assertTrue(streams.isIdle());
+    }
+
+    @Test
+    public void demandArrivingBeforeResultIsKept() {
+        streams.expect(1L, INLINE);
+        streams.dispatch(1L, RpcStreamMessage.request(2));
+
+        streams.sendExpected(1L, Publishers.fromIterable(Arrays.asList("a", "b", "c")));
+
+        assertEquals(Arrays.asList(next("a"), next("b")), written());
+    }
+
+    @Test
+    public void demandForFinishedOrUnknownStreamIsDropped() {
+        streams.send(1L, Publishers.fromIterable(Arrays.asList("a")), INLINE);
+        streams.dispatch(1L, RpcStreamMessage.request(5));
+        assertEquals(Arrays.asList(next("a"), "complete"), written());
+        assertTrue(streams.isIdle());
+
+        // 接收方消费完后继续请求，不能为已经结束的流重新创建发送流
+        streams.dispatch(1L, RpcStreamMessage.request(5));
+        streams.dispatch(2L, RpcStreamMessage.request(5));
+
+        assertTrue(written().isEmpty());
+        assertTrue(streams.isIdle());
+    }
+
+    @Test
+    public void demandIsForwardedOneRequestAtATime() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        AtomicLong requested = new AtomicLong();
+        // 每次请求都停留一段时间，并发调用时会被观察到
+        Publisher<Object> slow = subscriber -> subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                requested.addAndGet(n);
+                active.decrementAndGet();
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            streams.expect(1L, executor);
+            streams.sendExpected(1L, slow);
+            for (int i = 0; i < 50; i++) {
+                streams.dispatch(1L, RpcStreamMessage.request(1));
+            }
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (requested.get() < 50 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(50, requested.get());
+        assertEquals(1, maxActive.get());
+    }
+
+    @Test
+    public void cancelStopsSender() {
+        List<String> signals = new ArrayList<>();
+        streams.send(1L, tracking(signals, Publishers.fromIterable(Arrays.asList(1, 2, 3))), INLINE);
+        streams.dispatch(1L, RpcStreamMessage.request(1));
+        assertEquals(Arrays.asList(next(1)), written());
+
+        streams.dispatch(1L, RpcStreamMessage.cancel());
+        streams.dispatch(1L, RpcStreamMessage.request(10));
+
+        assertTrue(written().isEmpty());
+        assertEquals(Arrays.asList("cancel"), signals);
+        assertTrue(streams.isIdle());
+    }
+
+    @Test
+    public void cancelBeforeResultCancelsPublisher() {
+        List<String> signals = new ArrayList<>();
+        streams.expect(1L, INLINE);
+        streams.dispatch(1L, RpcStreamMessage.cancel());
+
+        streams.sendExpected(1L, tracking(signals, Publishers.fromIterable(Arrays.asList(1, 2, 3))));
+
+        assertEquals(Arrays.asList("cancel"), signals);
+        assertTrue(written().isEmpty());
+        assertTrue(streams.isIdle());
+    }
+
+    @Test
+    public void plainResponseDropsExpectedSender() {
+        streams.expect(1L, INLINE);
+        assertFalse(streams.isIdle());
+
+        streams.cancelSender(1L);
+
+        assertTrue(streams.isIdle());
+    }
+
+    @Test
+    public void receiverHoldsDemandUntilOpened() {
+        List<Object> items = new ArrayList<>();
+        StreamReceiver receiver = streams.receive(1L, collecting(items));
+        receiver.request(2);
+        assertTrue(written().isEmpty());
+
+        receiver.open();
+        receiver.request(1);
+
+        assertEquals(Arrays.asList("request 2", "request 1"), written());
+    }
+
+    @Test
+    public void receiverDeliversItemsAndCancels() {
+        List<Object> items = new ArrayList<>();
+        StreamReceiver receiver = streams.receive(1L, collecting(items));
+        receiver.open();
+
+        streams.dispatch(1L, RpcStreamMessage.next("a"));
+        receiver.cancel();
+        streams.dispatch(1L, RpcStreamMessage.next("b"));
+
+        assertEquals(Arrays.asList("a"), items);
+        assertEquals(Arrays.asList("cancel"), written());
+        assertTrue(streams.isIdle());
+    }
+
+    /**
+     * 取出写出的流信号，转换为便于比较的字符串
+     */
+    private List<String> written() {
+        List<String> signals = new ArrayList<>();
+        RpcMessage message;
+        while ((message = channel.readOutbound()) != null) {
+            RpcStreamMessage signal = (RpcStreamMessage) message.getData();
+            switch (signal.getSignal()) {
+                case RpcStreamMessage.NEXT:
+                    signals.add(next(signal.getData()));
+                    break;
+                case RpcStreamMessage.COMPLETE:
+                    signals.add("complete");
+                    break;
+                case RpcStreamMessage.REQUEST:
+                    signals.add("request " + signal.getDemand());
+                    break;
+                case RpcStreamMessage.CANCEL:
+                    signals.add("cancel");
+                    break;
+                default:
+                    signals.add("error " + signal.getError());
+            }
+        }
+        return signals;
+    }
+
+    private static String next(Object item) {
+        return "next " + item;
+    }
+
+    /**
+     * 记录订阅关系被取消的发布者
+     */
+    private static <T> Publisher<T> tracking(List<String> signals, Publisher<T> publisher) {
+        return subscriber -> publisher.subscribe(new Subscriber<T>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscriber.onSubscribe(new Subscription() {
+                    @Override
+                    public void request(long n) {
+                        subscription.request(n);
+                    }
+
+                    @Override
+                    public void cancel() {
+                        signals.add("cancel");
+                        subscription.cancel();
+                    }
+                });
+            }
+
+            @Override
+            public void onNext(T item) {
+                subscriber.onNext(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                subscriber.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                subscriber.onComplete();
+            }
+        });
+    }
+
+    private static Subscriber<Object> collecting(List<Object> items) {
+        return new Subscriber<Object>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+            }
+
+            @Override
+            public void onNext(Object item) {
+                items.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                items.add(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        };
+    }
+}